@@ -0,0 +1,92 @@
+package com.realmone.tleasy.tle;
+
+import java.io.OutputStream;
+import java.io.Writer;
+import java.nio.charset.StandardCharsets;
+
+/**
+ * Generates TLE catalogs of any size for the benchmarks.  Identifiers run through the whole 5-digit and Alpha-5 space,
+ * epochs are spread over the year, and every tenth record has no title line, so the catalogs exercise the same paths
+ * as a real catalog pull.
+ */
+final class SyntheticCatalog {
+
+    /**
+     * Catalog sizes the benchmarks are run against, as JMH parameter values.
+     */
+    static final String SMALL = "1000";
+    static final String MEDIUM = "50000";
+    static final String LARGE = "500000";
+
+    /**
+     * An {@link OutputStream} that throws everything away, so benchmarks only measure the code under test.
+     */
+    static final OutputStream NULL_OUTPUT = new OutputStream() {
+        @Override
+        public void write(int b) {
+        }
+
+        @Override
+        public void write(byte[] b, int off, int len) {
+        }
+    };
+
+    /**
+     * A {@link Writer} that throws everything away, so benchmarks only measure the code under test.
+     */
+    static final Writer NULL_WRITER = new Writer() {
+        @Override
+        public void write(char[] cbuf, int off, int len) {
+        }
+
+        @Override
+        public void write(String str, int off, int len) {
+        }
+
+        @Override
+        public void flush() {
+        }
+
+        @Override
+        public void close() {
+        }
+    };
+
+    private SyntheticCatalog() {
+    }
+
+    /**
+     * @param records The number of records in the catalog
+     * @return The catalog as bytes
+     */
+    static byte[] generate(int records) {
+        StringBuilder builder = new StringBuilder(records * 166);
+        for (int i = 0; i < records; i++) {
+            String id = NoradIdSet.format(id(i, records));
+            if (i % 10 != 0) {
+                builder.append("SAT ").append(id).append(" [DTC]\n");
+            }
+            builder.append(line1(id, i)).append('\n')
+                    .append("2 ").append(id).append("  42.9990  67.0699 0001472 289.4728  70.5983 15.77865734  5328\n");
+        }
+        return builder.toString().getBytes(StandardCharsets.UTF_8);
+    }
+
+    /**
+     * @param id    The identifier of the record
+     * @param index The position of the record in the catalog, which picks its epoch
+     * @return The first element line of the record
+     */
+    static String line1(String id, int index) {
+        return String.format("1 %sU 25019A   25%03d.%08d  .00004910  00000+0  31049-4 0  9999", id,
+                index % 365 + 1, (index * 7919L) % 100000000L);
+    }
+
+    /**
+     * Spreads the records evenly over the catalog numbers, wrapping around once there are more records than numbers.
+     */
+    private static int id(int index, int records) {
+        long stride = Math.max(1, (NoradIdSet.MAX_ID + 1L) / records);
+        return (int) ((index * stride) % (NoradIdSet.MAX_ID + 1L));
+    }
+}
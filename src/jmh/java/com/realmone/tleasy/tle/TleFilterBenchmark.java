@@ -0,0 +1,55 @@
+package com.realmone.tleasy.tle;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Throughput of filtering a full catalog pull down to a wide selection of identifiers, as done for every download,
+ * with the line based {@link SimpleTleFilter} and the byte level {@link ByteTleFilter} side by side.
+ * Run with {@code -prof gc} (the default for the {@code benchmarks} profile) to see the allocation rate alongside.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class TleFilterBenchmark {
+
+    @Param({SyntheticCatalog.SMALL, SyntheticCatalog.MEDIUM, SyntheticCatalog.LARGE})
+    public int records;
+
+    private byte[] catalog;
+    private NoradIdSet ids;
+
+    @Setup
+    public void setup() {
+        catalog = SyntheticCatalog.generate(records);
+        ids = TleUtils.parseIdentifiers("00000-09999, 25544, A0000-B9999");
+    }
+
+    @Benchmark
+    public long simpleFilter() throws IOException {
+        return SimpleTleFilter.builder().targetNoradIds(ids).build()
+                .filter(new ByteArrayInputStream(catalog), SyntheticCatalog.NULL_OUTPUT);
+    }
+
+    @Benchmark
+    public long byteFilter() throws IOException {
+        return ByteTleFilter.builder().targetNoradIds(ids).build()
+                .filter(new ByteArrayInputStream(catalog), SyntheticCatalog.NULL_OUTPUT);
+    }
+}
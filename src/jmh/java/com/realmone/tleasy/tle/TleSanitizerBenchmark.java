@@ -0,0 +1,62 @@
+package com.realmone.tleasy.tle;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.io.BufferedReader;
+import java.io.BufferedWriter;
+import java.io.IOException;
+import java.io.StringReader;
+import java.nio.charset.StandardCharsets;
+import java.time.LocalDateTime;
+import java.time.ZoneOffset;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Throughput of the sanitize pass run over the filtered TLE data before it is loaded into STK, with the old epoch check
+ * turned on.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class TleSanitizerBenchmark {
+
+    @Param({SyntheticCatalog.SMALL, SyntheticCatalog.MEDIUM, SyntheticCatalog.LARGE})
+    public int records;
+
+    private String data;
+    private Map<String, String> idToColorMap;
+    private LocalDateTime epochLimit;
+
+    @Setup
+    public void setup() {
+        data = new String(SyntheticCatalog.generate(records), StandardCharsets.UTF_8);
+        idToColorMap = new HashMap<>();
+        for (int i = 0; i < 100; i++) {
+            idToColorMap.put(NoradIdSet.format(i), "#FF0000");
+        }
+        epochLimit = LocalDateTime.now(ZoneOffset.UTC).minusDays(1);
+    }
+
+    @Benchmark
+    public TleSanitizer.Result sanitize() throws IOException {
+        try (BufferedReader reader = new BufferedReader(new StringReader(data));
+             BufferedWriter writer = new BufferedWriter(SyntheticCatalog.NULL_WRITER)) {
+            return TleSanitizer.sanitize(reader, writer, idToColorMap, epochLimit);
+        }
+    }
+}
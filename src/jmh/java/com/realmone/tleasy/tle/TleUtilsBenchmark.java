@@ -0,0 +1,93 @@
+package com.realmone.tleasy.tle;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.time.LocalDateTime;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Throughput of the {@link TleUtils} helpers that run once per request ({@code parseIdentifiers}) and once per record
+ * ({@code parseTleEpoch}).
+ */
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class TleUtilsBenchmark {
+
+    @State(Scope.Benchmark)
+    public static class Identifiers {
+
+        /**
+         * The shape of the identifier input: a single identifier, the whole 5-digit space, every catalog number, or a
+         * long list of single identifiers and short ranges as pasted in by an analyst.
+         */
+        @Param({"single", "wide", "alpha5", "list"})
+        public String identifiers;
+
+        private String input;
+
+        @Setup
+        public void setup() {
+            switch (identifiers) {
+                case "single":
+                    input = "25544";
+                    break;
+                case "wide":
+                    input = "00000-99999";
+                    break;
+                case "alpha5":
+                    input = "00000-99999, A0000-Z9999";
+                    break;
+                case "list":
+                    StringBuilder builder = new StringBuilder();
+                    for (int i = 0; i < 500; i++) {
+                        builder.append(i == 0 ? "" : ", ").append(NoradIdSet.format(i * 97));
+                        if (i % 5 == 0) {
+                            builder.append('-').append(NoradIdSet.format(i * 97 + 50));
+                        }
+                    }
+                    input = builder.toString();
+                    break;
+                default:
+                    throw new IllegalArgumentException("Unknown identifier input: " + identifiers);
+            }
+        }
+    }
+
+    @State(Scope.Thread)
+    public static class Epochs {
+
+        private final String[] line1s = new String[1024];
+        private int next;
+
+        @Setup
+        public void setup() {
+            for (int i = 0; i < line1s.length; i++) {
+                line1s[i] = SyntheticCatalog.line1(NoradIdSet.format(i), i);
+            }
+        }
+    }
+
+    @Benchmark
+    public NoradIdSet parseIdentifiers(Identifiers state) {
+        return TleUtils.parseIdentifiers(state.input);
+    }
+
+    @Benchmark
+    public LocalDateTime parseTleEpoch(Epochs state) {
+        state.next = (state.next + 1) & (state.line1s.length - 1);
+        return TleUtils.parseTleEpoch(state.line1s[state.next]);
+    }
+}
@@ -0,0 +1,104 @@
+package com.realmone.tleasy.util;
+
+import com.realmone.tleasy.TLEasy.AccessReportResult;
+import com.realmone.tleasy.tle.TleRecord;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Time taken by the whole STK workflow, from creating the scenario through loading the satellites to generating the
+ * access report, against a {@link FakeStkServer} that takes {@code latencyMicros} over each {@code Access} and
+ * {@code Report_RM}.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class StkWorkflowBenchmark {
+
+    private static final String SCENARIO = "TLEasy";
+    private static final int FACILITIES = 10;
+
+    @Param({"50", "200"})
+    public int satellites;
+
+    @Param({"1", "4"})
+    public int sessions;
+
+    @Param({"0", "200"})
+    public int latencyMicros;
+
+    private FakeStkServer stk;
+    private File tleFile;
+    private List<TleRecord> records;
+    private List<String> facilityNames;
+
+    @Setup
+    public void setup() throws IOException {
+        stk = new FakeStkServer()
+                .setLatency("Access", latencyMicros, TimeUnit.MICROSECONDS)
+                .setLatency("Report_RM", latencyMicros, TimeUnit.MICROSECONDS);
+        records = new ArrayList<>();
+        StringBuilder tle = new StringBuilder();
+        for (int i = 0; i < satellites; i++) {
+            TleRecord record = TleRecord.parse("SAT-" + i,
+                    String.format("1 %05dU 98067A   25055.50000000  .00016717  00000-0  10270-3 0  9005", i),
+                    String.format("2 %05d  51.6416 247.4627 0006703 130.5360 325.0288 15.72125391563537", i));
+            records.add(record);
+            tle.append(record.getName()).append('\n').append(record.getLine1()).append('\n')
+                    .append(record.getLine2()).append('\n');
+        }
+        tleFile = File.createTempFile("tleasy_benchmark_", ".tle");
+        Files.write(tleFile.toPath(), tle.toString().getBytes(StandardCharsets.US_ASCII));
+        facilityNames = new ArrayList<>();
+        for (int i = 0; i < FACILITIES; i++) {
+            facilityNames.add("Facility-" + i);
+        }
+    }
+
+    @TearDown
+    public void teardown() throws IOException {
+        stk.close();
+        Files.deleteIfExists(tleFile.toPath());
+    }
+
+    @Benchmark
+    public AccessReportResult workflow() throws IOException {
+        StkCon con = stk.newConnection();
+        if (con.connect() != 0) {
+            throw new IOException("Could not connect to the fake STK");
+        }
+        con.sendConCommand("New / Scenario " + SCENARIO);
+        for (String facility : facilityNames) {
+            con.sendConCommand("New / */Facility " + facility);
+        }
+        new SatelliteLoader(con).loadAll(SCENARIO, tleFile, records, new HashMap<>());
+        try (StkConPool pool = StkConPool.connect(con, sessions)) {
+            return new AccessReportGenerator(con, pool, status -> { })
+                    .generateAccessReportCsv(SCENARIO, records);
+        } finally {
+            con.disconnect();
+        }
+    }
+}
@@ -49,18 +49,26 @@ public class ConfigSetup extends JDialog {
     private final JTextField keystoreField;
     private final JPasswordField keystorePassField;
     private final JCheckBox skipCertValidationCheckBox;
+    private final JCheckBox memoryMapTleFileCheckBox;
     private final JCheckBox darkThemeCheckBox;
     private final JTextField scenarioSaveFileField;
     private final JTextField exeLocationField;
     private final JSpinner minutesSpinner;
     private final JSpinner secondsSpinner;
+    private final JCheckBox tleCacheCheckBox;
+    private final JSpinner tleCacheMaxAgeSpinner;
     private final JCheckBox filterOldTleCheckBox;
     private final JCheckBox filterAccessTimeCheckBox;
+    private final JSpinner stkConnectSessionsSpinner;
+    private final JSpinner stkCommandTimeoutSpinner;
+    private final JCheckBox stkKeepAliveCheckBox;
+    private final JCheckBox stkBulkTleImportCheckBox;
+    private final JCheckBox stkBatchGraphicsCheckBox;
 
     public ConfigSetup(boolean exitOnClose) {
         setTitle("Initial Configuration Setup");
         setModal(true);
-        setSize(670, 480);
+        setSize(670, 730);
         setDefaultCloseOperation(DISPOSE_ON_CLOSE);
 
         // Fields for input
@@ -69,6 +77,11 @@ public class ConfigSetup extends JDialog {
         keystoreField = new JTextField();
         keystorePassField = new JPasswordField();
         skipCertValidationCheckBox = new JCheckBox("Skip SSL Certificate Validation");
+        memoryMapTleFileCheckBox = new JCheckBox("Memory map the TLE catalog (faster repeated queries on large catalogs)");
+        tleCacheCheckBox = new JCheckBox("Cache downloaded TLE data for (minutes):");
+        // Up to a day between checks with the endpoint
+        tleCacheMaxAgeSpinner = new JSpinner(new SpinnerNumberModel(10, 0, 1440, 1));
+        tleCacheCheckBox.addActionListener(e -> tleCacheMaxAgeSpinner.setEnabled(tleCacheCheckBox.isSelected()));
         darkThemeCheckBox = new JCheckBox("Enable Dark Theme");
         scenarioSaveFileField = new JTextField();
         exeLocationField = new JTextField();
@@ -80,6 +93,12 @@ public class ConfigSetup extends JDialog {
         SpinnerModel secondsModel = new SpinnerNumberModel(0, 0, 59, 1);
         secondsSpinner = new JSpinner(secondsModel);
 
+        // Access reports are computed over this many STK Connect sessions at once
+        stkConnectSessionsSpinner = new JSpinner(new SpinnerNumberModel(1, 1, 16, 1));
+
+        // A Connect command STK hasn't answered in this many seconds is given up on; 0 waits forever
+        stkCommandTimeoutSpinner = new JSpinner(new SpinnerNumberModel(300, 0, 3600, 30));
+
         // Set a number format to ensure two digits are always displayed (e.g., "05").
         JSpinner.NumberEditor minutesEditor = new JSpinner.NumberEditor(minutesSpinner, "00");
         minutesSpinner.setEditor(minutesEditor);
@@ -109,6 +128,10 @@ public class ConfigSetup extends JDialog {
         JPanel endpointRow = new JPanel(new BorderLayout(5, 5));
         endpointRow.add(new JLabel("TLE Data Endpoint:"), BorderLayout.WEST);
         endpointRow.add(tleEndpointField, BorderLayout.CENTER);
+        JPanel tleCachePanel = new JPanel(new FlowLayout(FlowLayout.LEFT, 2, 0));
+        tleCachePanel.add(tleCacheCheckBox);
+        tleCachePanel.add(tleCacheMaxAgeSpinner);
+        endpointRow.add(tleCachePanel, BorderLayout.SOUTH);
         panel.add(endpointRow);
 
         // Row 3: TLE File Endpoint
@@ -160,6 +183,11 @@ public class ConfigSetup extends JDialog {
         skipCertRow.add(skipCertValidationCheckBox);
         panel.add(skipCertRow);
 
+        // Row 6a: Memory map the TLE catalog
+        JPanel memoryMapRow = new JPanel(new FlowLayout(FlowLayout.LEFT));
+        memoryMapRow.add(memoryMapTleFileCheckBox);
+        panel.add(memoryMapRow);
+
         // Row 7: Dark Theme
         darkThemeCheckBox.setSelected(Configuration.isDarkTheme());
         JPanel darkThemeRow = new JPanel(new FlowLayout(FlowLayout.LEFT));
@@ -216,6 +244,35 @@ public class ConfigSetup extends JDialog {
         accessTimeFilterRow.add(filterAccessTimeCheckBox);
         stkPanel.add(accessTimeFilterRow);
 
+        // STK Row 5 (Row 13): Parallel STK Connect sessions
+        JPanel stkConnectSessionsRow = new JPanel(new FlowLayout(FlowLayout.LEFT));
+        stkConnectSessionsRow.add(new JLabel("STK Connect sessions for access reports:"));
+        stkConnectSessionsRow.add(stkConnectSessionsSpinner);
+        stkPanel.add(stkConnectSessionsRow);
+
+        // STK Row 6 (Row 14): Connect command timeout
+        JPanel stkCommandTimeoutRow = new JPanel(new FlowLayout(FlowLayout.LEFT));
+        stkCommandTimeoutRow.add(new JLabel("STK command timeout in seconds (0 for none):"));
+        stkCommandTimeoutRow.add(stkCommandTimeoutSpinner);
+        stkPanel.add(stkCommandTimeoutRow);
+
+        // STK Row 7 (Row 15): Keep the STK Connect session open between runs
+        stkKeepAliveCheckBox = new JCheckBox("Keep the STK connection open between runs");
+        JPanel stkKeepAliveRow = new JPanel(new FlowLayout(FlowLayout.LEFT));
+        stkKeepAliveRow.add(stkKeepAliveCheckBox);
+        stkPanel.add(stkKeepAliveRow);
+
+        // STK Row 8 (Row 16): Load satellites with one TLE file import
+        stkBulkTleImportCheckBox = new JCheckBox("Import all satellites from the TLE file at once");
+        JPanel stkBulkTleImportRow = new JPanel(new FlowLayout(FlowLayout.LEFT));
+        stkBulkTleImportRow.add(stkBulkTleImportCheckBox);
+        stkPanel.add(stkBulkTleImportRow);
+
+        // STK Row 9 (Row 17): Suspend STK graphics updates while loading
+        stkBatchGraphicsCheckBox = new JCheckBox("Pause STK graphics updates while loading satellites");
+        JPanel stkBatchGraphicsRow = new JPanel(new FlowLayout(FlowLayout.LEFT));
+        stkBatchGraphicsRow.add(stkBatchGraphicsCheckBox);
+        stkPanel.add(stkBatchGraphicsRow);
 
         // Final Row: Buttons
         JPanel buttonRow = new JPanel(new FlowLayout(FlowLayout.CENTER));
@@ -272,6 +329,7 @@ public class ConfigSetup extends JDialog {
             }
             keystorePassField.setText(new String(Configuration.getKeystorePassword()));
             skipCertValidationCheckBox.setSelected(Configuration.isSkipCertificateValidation());
+            memoryMapTleFileCheckBox.setSelected(Configuration.isMemoryMapTleFile());
         }
         if (Configuration.getScenarioSaveFile() != null) {
             scenarioSaveFileField.setText(Configuration.getScenarioSaveFile().getAbsolutePath());
@@ -281,10 +339,18 @@ public class ConfigSetup extends JDialog {
             exeLocationField.setText(Configuration.getExeFile().getAbsolutePath());
         }
 
+        tleCacheCheckBox.setSelected(Configuration.isTleCacheEnabled());
+        tleCacheMaxAgeSpinner.setValue(Configuration.getTleCacheMaxAgeMinutes());
+        tleCacheMaxAgeSpinner.setEnabled(tleCacheCheckBox.isSelected());
         minutesSpinner.setValue(Configuration.getTimeFilterMinutes());
         secondsSpinner.setValue(Configuration.getTimeFilterSeconds());
         filterOldTleCheckBox.setSelected(Configuration.isJulianDateFilterEnabled());
         filterAccessTimeCheckBox.setSelected(Configuration.isAccessTimeFilterEnabled());
+        stkConnectSessionsSpinner.setValue(Configuration.getStkConnectSessions());
+        stkCommandTimeoutSpinner.setValue(Configuration.getStkCommandTimeoutSeconds());
+        stkKeepAliveCheckBox.setSelected(Configuration.isStkKeepAlive());
+        stkBulkTleImportCheckBox.setSelected(Configuration.isStkBulkTleImport());
+        stkBatchGraphicsCheckBox.setSelected(Configuration.isStkBatchGraphics());
 
         // Add panel to dialog
         add(panel);
@@ -351,6 +417,9 @@ public class ConfigSetup extends JDialog {
         newConfiguration.setProperty(Configuration.PROP_KEYSTORE, keystoreField.getText());
         newConfiguration.setProperty(Configuration.PROP_KEYSTORE_PASS, new String(keystorePassField.getPassword()));
         newConfiguration.setProperty(Configuration.PROP_SKIP_CERT_VALIDATE, String.valueOf(skipCertValidationCheckBox.isSelected()));
+        newConfiguration.setProperty(Configuration.PROP_MEMORY_MAP_TLE_FILE, String.valueOf(memoryMapTleFileCheckBox.isSelected()));
+        newConfiguration.setProperty(Configuration.PROP_TLE_CACHE, String.valueOf(tleCacheCheckBox.isSelected()));
+        newConfiguration.setProperty(Configuration.PROP_TLE_CACHE_MAX_AGE, String.valueOf(tleCacheMaxAgeSpinner.getValue()));
         newConfiguration.setProperty(Configuration.PROP_DARK_THEME, String.valueOf(darkThemeCheckBox.isSelected()));
         newConfiguration.setProperty(Configuration.PROP_SCENARIO_SAVE_FILE, scenarioSaveFileField.getText());
         newConfiguration.setProperty(Configuration.PROP_EXE_LOCATION, exeLocationField.getText());
@@ -358,6 +427,11 @@ public class ConfigSetup extends JDialog {
         newConfiguration.setProperty(Configuration.PROP_TIME_FILTER_SECONDS, String.valueOf(secondsSpinner.getValue()));
         newConfiguration.setProperty(Configuration.PROP_JULIAN_DATE_FILTER, String.valueOf(filterOldTleCheckBox.isSelected()));
         newConfiguration.setProperty(Configuration.PROP_ACCESS_TIME_FILTER, String.valueOf(filterAccessTimeCheckBox.isSelected()));
+        newConfiguration.setProperty(Configuration.PROP_STK_CONNECT_SESSIONS, String.valueOf(stkConnectSessionsSpinner.getValue()));
+        newConfiguration.setProperty(Configuration.PROP_STK_COMMAND_TIMEOUT, String.valueOf(stkCommandTimeoutSpinner.getValue()));
+        newConfiguration.setProperty(Configuration.PROP_STK_KEEP_ALIVE, String.valueOf(stkKeepAliveCheckBox.isSelected()));
+        newConfiguration.setProperty(Configuration.PROP_STK_BULK_TLE_IMPORT, String.valueOf(stkBulkTleImportCheckBox.isSelected()));
+        newConfiguration.setProperty(Configuration.PROP_STK_BATCH_GRAPHICS, String.valueOf(stkBatchGraphicsCheckBox.isSelected()));
 
         return newConfiguration;
     }
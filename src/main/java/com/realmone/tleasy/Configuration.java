@@ -12,6 +12,8 @@ import java.util.Properties;
 public class Configuration {
 
     private static final File CONFIG_FILE = new File(System.getProperty("user.home"), ".tleasy-config.properties");
+    private static final File TLE_CACHE_DIRECTORY = new File(System.getProperty("user.home"),
+            ".tleasy" + File.separator + "cache");
     // TODO: Update this to the correct path from Dan
     private static final String DEFAULT_KEYSTORE = System.getProperty("user.home") + File.separator + "tleasy"
             + File.separator + "src" + File.separator + "test" + File.separator + "resources"
@@ -19,6 +21,9 @@ public class Configuration {
 
     public static final String PROP_TLE_ENDPOINT = "tle_data_endpoint";
     public static final String PROP_TLE_FILE = "tle_data_file";
+    public static final String PROP_MEMORY_MAP_TLE_FILE = "memory_map_tle_file";
+    public static final String PROP_TLE_CACHE = "tle_cache";
+    public static final String PROP_TLE_CACHE_MAX_AGE = "tle_cache_max_age_minutes";
     public static final String PROP_KEYSTORE = "keystore";
     public static final String PROP_KEYSTORE_PASS = PROP_KEYSTORE + "_password";
     public static final String PROP_SKIP_CERT_VALIDATE = "skip_cert_validation";
@@ -29,6 +34,11 @@ public class Configuration {
     public static final String PROP_TIME_FILTER_SECONDS = "time_filter_seconds";
     public static final String PROP_JULIAN_DATE_FILTER = "julian_date_filter";
     public static final String PROP_ACCESS_TIME_FILTER = "access_time_filter";
+    public static final String PROP_STK_CONNECT_SESSIONS = "stk_connect_sessions";
+    public static final String PROP_STK_COMMAND_TIMEOUT = "stk_command_timeout";
+    public static final String PROP_STK_KEEP_ALIVE = "stk_keep_alive";
+    public static final String PROP_STK_BULK_TLE_IMPORT = "stk_bulk_tle_import";
+    public static final String PROP_STK_BATCH_GRAPHICS = "stk_batch_graphics";
 
     private static Properties properties = new Properties();
 
@@ -56,6 +66,26 @@ public class Configuration {
         return path.isEmpty() ? null : new File(path);
     }
 
+    public static boolean isMemoryMapTleFile() {
+        return Boolean.parseBoolean(properties.getProperty(PROP_MEMORY_MAP_TLE_FILE, "false"));
+    }
+
+    public static boolean isTleCacheEnabled() {
+        return Boolean.parseBoolean(properties.getProperty(PROP_TLE_CACHE, "true"));
+    }
+
+    public static int getTleCacheMaxAgeMinutes() {
+        try {
+            return Integer.parseInt(properties.getProperty(PROP_TLE_CACHE_MAX_AGE, "10"));
+        } catch (NumberFormatException e) {
+            return 10; // Default value if parsing fails
+        }
+    }
+
+    public static File getTleCacheDirectory() {
+        return TLE_CACHE_DIRECTORY;
+    }
+
     public static File getExeFile() {
         String path = properties.getProperty(PROP_EXE_LOCATION, "C:\\Program Files\\AGI\\STK 12\\bin\\AgUiApplication.exe");
         return path.isEmpty() ? null : new File(path);
@@ -107,6 +137,50 @@ public class Configuration {
         return Boolean.parseBoolean(properties.getProperty(PROP_ACCESS_TIME_FILTER, "false"));
     }
 
+    /**
+     * @return The number of STK Connect sessions to compute accesses over in parallel; at least 1, and 1 unless
+     * configured otherwise
+     */
+    public static int getStkConnectSessions() {
+        try {
+            return Math.max(1, Integer.parseInt(properties.getProperty(PROP_STK_CONNECT_SESSIONS, "1")));
+        } catch (NumberFormatException e) {
+            return 1; // Default value if parsing fails
+        }
+    }
+
+    /**
+     * @return How many seconds to wait on STK to answer each Connect command; 0 to wait as long as it takes
+     */
+    public static int getStkCommandTimeoutSeconds() {
+        try {
+            return Math.max(0, Integer.parseInt(properties.getProperty(PROP_STK_COMMAND_TIMEOUT, "300")));
+        } catch (NumberFormatException e) {
+            return 300; // Default value if parsing fails
+        }
+    }
+
+    /**
+     * @return Whether to keep the STK Connect session open between runs
+     */
+    public static boolean isStkKeepAlive() {
+        return Boolean.parseBoolean(properties.getProperty(PROP_STK_KEEP_ALIVE, "false"));
+    }
+
+    /**
+     * @return Whether to load satellites into STK with a single TLE file import rather than one at a time
+     */
+    public static boolean isStkBulkTleImport() {
+        return Boolean.parseBoolean(properties.getProperty(PROP_STK_BULK_TLE_IMPORT, "false"));
+    }
+
+    /**
+     * @return Whether to suspend STK's graphics updates while satellites are loaded and accesses computed
+     */
+    public static boolean isStkBatchGraphics() {
+        return Boolean.parseBoolean(properties.getProperty(PROP_STK_BATCH_GRAPHICS, "true"));
+    }
+
     private static void load() {
         if (isConfigured()) {
             try (FileInputStream in = new FileInputStream(CONFIG_FILE)) {
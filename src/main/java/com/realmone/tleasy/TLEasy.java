@@ -1,10 +1,25 @@
 package com.realmone.tleasy;
 
 import com.realmone.tleasy.rest.SimpleTleClient;
-import com.realmone.tleasy.tle.SimpleTleFilter;
+import com.realmone.tleasy.rest.TleResponseCache;
+import com.realmone.tleasy.tle.ByteTleFilter;
+import com.realmone.tleasy.tle.IndexedTleFilter;
+import com.realmone.tleasy.tle.NoradIdSet;
+import com.realmone.tleasy.tle.ParallelTleFilter;
+import com.realmone.tleasy.tle.TleIndex;
+import com.realmone.tleasy.tle.TleRecord;
+import com.realmone.tleasy.tle.TleSanitizer;
 import com.realmone.tleasy.tle.TleUtils;
 import com.realmone.tleasy.util.AccessReportGenerator;
+import com.realmone.tleasy.util.BatchGraphics;
+import com.realmone.tleasy.util.LoadedSatellites;
+import com.realmone.tleasy.util.SatelliteLoader;
+import com.realmone.tleasy.util.ScenarioPaths;
 import com.realmone.tleasy.util.StkCon;
+import com.realmone.tleasy.util.StkConPool;
+import com.realmone.tleasy.util.StkMetrics;
+import com.realmone.tleasy.util.StkReadinessProbe;
+import com.realmone.tleasy.util.StkSessionManager;
 
 import java.awt.Color;
 import java.awt.Point;
@@ -29,17 +44,21 @@ import java.io.FileWriter;
 import java.io.IOException;
 import java.io.InputStream;
 import java.io.InputStreamReader;
+import java.io.InterruptedIOException;
+import java.io.OutputStream;
 import java.net.URL;
+import java.nio.ByteBuffer;
+import java.nio.file.Files;
 import java.util.ArrayList;
 import java.util.Arrays;
 import java.util.Collections;
 import java.util.HashMap;
-import java.util.HashSet;
 import java.util.Iterator;
 import java.util.LinkedHashSet;
 import java.util.List;
 import java.util.Map;
 import java.util.Optional;
+import java.util.concurrent.TimeUnit;
 import java.util.stream.Collectors;
 import java.util.stream.Stream;
 import java.util.Set;
@@ -98,8 +117,23 @@ public class TLEasy extends JFrame {
     private static final int HISTORY_LIMIT = 30;
 
     // STK
-    private StkCon stkConnection;
+    private volatile StkCon stkConnection;
+    private volatile StkConPool stkPool;
+    // The session the current run acquired, and the probe waiting on STK to start; what cancelling a run cancels
+    private volatile StkCon stkRunConnection;
+    private volatile StkReadinessProbe stkProbe;
+    // Keeps the STK connection open between runs, if configured to
+    private final StkSessionManager stkSessions = new StkSessionManager(false);
+    // What was loaded into each scenario, so later runs only send STK what changed
+    private final LoadedSatellites loadedSatellites = new LoadedSatellites();
+    // Whether an STK run is going, and whether the user asked to cancel it
+    private boolean stkRunning;
+    private volatile boolean stkRunCancelled;
     private static final String STK_EXECUTABLE_TO_USE = "AgUiApplication.exe";
+    // Where STK's Connect socket listens, and how long to wait on a starting STK to answer on it
+    private static final String STK_HOST = "localhost";
+    private static final int STK_PORT = 5001;
+    private static final long STK_STARTUP_TIMEOUT_MILLIS = 45000;
 
     private static final JFileChooser fileChooser = new JFileChooser();
 
@@ -135,13 +169,14 @@ public class TLEasy extends JFrame {
      */
     private static class TleFileData {
         final File sanitizedFile;
-        final List<String> satelliteNames;
+        // Every satellite written to the file, parsed once for loading and reporting
+        final List<TleRecord> records;
         final int filteredTleCount;
         final Map<String, String> satelliteColorMap;
 
-        TleFileData(File sanitizedFile, List<String> satelliteNames, int filteredTleCount, Map<String, String> satelliteColorMap) {
+        TleFileData(File sanitizedFile, List<TleRecord> records, int filteredTleCount, Map<String, String> satelliteColorMap) {
             this.sanitizedFile = sanitizedFile;
-            this.satelliteNames = satelliteNames;
+            this.records = records;
             this.filteredTleCount = filteredTleCount;
             this.satelliteColorMap = satelliteColorMap;
         }
@@ -155,6 +190,14 @@ public class TLEasy extends JFrame {
             this.csvData = csvData;
             this.filteredAccessCount = filteredAccessCount;
         }
+
+        public String getCsvData() {
+            return csvData;
+        }
+
+        public int getFilteredAccessCount() {
+            return filteredAccessCount;
+        }
     }
 
     public TLEasy() {
@@ -289,6 +332,11 @@ public class TLEasy extends JFrame {
         });
 
         openInStkButton.addActionListener(e -> {
+            // While a run is going the button cancels it
+            if (stkRunning) {
+                cancelStkRun();
+                return;
+            }
             inputHistory.remove(idField.getText().trim());
             inputHistory.add(idField.getText().trim());
             generateAndOpenInStk();
@@ -353,32 +401,15 @@ public class TLEasy extends JFrame {
     private Map<String, String> buildSatIdToColorMap(String rawInput) {
         Map<String, String> idToColor = new HashMap<>();
 
-        // 1. Parse all IDs from the input string
-        Set<Integer> allIds = new HashSet<>();
-        String[] parts = rawInput.trim().split("\\s*,\\s*");
-        for (String part : parts) {
-            if (part.matches("\\d{5}\\s*-\\s*\\d{5}")) {
-                String[] rangeParts = part.split("\\s*-\\s*");
-                int start = Integer.parseInt(rangeParts[0]);
-                int end = Integer.parseInt(rangeParts[1]);
-                if (start <= end) {
-                    allIds.addAll(getNumbersBetween(start, end));
-                }
-            } else if (part.matches("\\d{5}")) {
-                allIds.add(Integer.parseInt(part));
-            }
-        }
+        // 1. Parse all IDs from the input string; the set is walked in ascending order below
+        NoradIdSet allIds = TleUtils.parseIdentifiers(rawInput);
 
-        // 2. Convert to a sorted list
-        List<Integer> sortedIds = new ArrayList<>(allIds);
-        Collections.sort(sortedIds);
-
-        // 3. Iterate the sorted list and assign perceptually distinct colors to groups
+        // 2. Iterate the sorted IDs and assign perceptually distinct colors to groups
         float currentHue = RANDOM.nextFloat(); // Start with a random hue
         String currentGroupColor = convertHueToHex(currentHue);
         int lastId = -1;
 
-        for (int id : sortedIds) {
+        for (int id = allIds.nextId(0); id >= 0; id = allIds.nextId(id + 1)) {
             // If the current ID is not sequential to the last one, generate a new distinct color
             if (id != lastId + 1) {
                 // Add the golden ratio conjugate to the hue and wrap around (using % 1.0f)
@@ -387,7 +418,7 @@ public class TLEasy extends JFrame {
                 currentGroupColor = convertHueToHex(currentHue);
             }
 
-            idToColor.put(String.valueOf(id), currentGroupColor);
+            idToColor.put(NoradIdSet.format(id), currentGroupColor);
             lastId = id; // Update the lastId for the next loop
         }
 
@@ -433,9 +464,71 @@ public class TLEasy extends JFrame {
                 .keystoreFile(Configuration.getKeyStoreFile())
                 .keystorePassword(Configuration.getKeystorePassword())
                 .skipCertValidation(Configuration.isSkipCertificateValidation())
+                .memoryMapTleFile(Configuration.isMemoryMapTleFile())
+                .responseCache(Configuration.isTleCacheEnabled()
+                        ? new TleResponseCache(Configuration.getTleCacheDirectory(),
+                        TimeUnit.MINUTES.toMillis(Configuration.getTleCacheMaxAgeMinutes()))
+                        : null)
                 .build();
     }
 
+    /**
+     * Filters the TLE data from the client down to the provided identifiers.  A local catalog (a configured file or the
+     * cached response of the endpoint) is filtered through its persistent {@link TleIndex} so only the targeted records
+     * are read, falling back to a parallel full scan if the index can't be loaded or the catalog no longer matches it.
+     * Otherwise the data is streamed from
+     * {@link TleClient#fetchTle()}.
+     *
+     * @param ids    The NORAD identifiers to keep
+     * @param output Where to write the filtered TLE data; closed once the filter finishes
+     * @return The number of TLE records that made it through the filter
+     * @throws IOException          If there is an issue fetching or filtering the TLE data
+     * @throws InterruptedException If there is an issue on the client side making the request
+     */
+    private static long filterTleData(NoradIdSet ids, OutputStream output) throws IOException, InterruptedException {
+        TleFilter filter = ByteTleFilter.builder().targetNoradIds(ids).build();
+        Optional<File> catalog = client.localTleFile();
+        if (!catalog.isPresent()) {
+            try (InputStream data = client.fetchTle()) {
+                return filter.filter(data, output);
+            }
+        }
+        try {
+            filter = IndexedTleFilter.builder().index(TleIndex.load(catalog.get())).targetNoradIds(ids).build();
+        } catch (IOException e) {
+            System.err.println("Falling back to a full scan of the TLE data: " + e.getMessage());
+            return scanTleData(ids, catalog.get(), output);
+        }
+        try {
+            Optional<ByteBuffer> mappedTle = client.mapTle();
+            if (mappedTle.isPresent()) {
+                return filter.filter(mappedTle.get(), output);
+            }
+            try (InputStream data = Files.newInputStream(catalog.get().toPath())) {
+                return filter.filter(data, output);
+            }
+        } catch (IndexedTleFilter.StaleIndexException e) {
+            // The catalog was replaced after it was indexed; nothing has been written yet, so scan it in full
+            System.err.println("Falling back to a full scan of the TLE data: " + e.getMessage());
+            return scanTleData(ids, catalog.get(), output);
+        }
+    }
+
+    /**
+     * Filters the whole cached TLE catalog, scanning it in parallel.
+     *
+     * @param ids     The NORAD Identifiers to include
+     * @param catalog The cached TLE catalog
+     * @param output  Where to write the matching TLE data
+     * @return The number of TLE entries written
+     * @throws IOException If there is an issue reading or filtering the TLE data
+     */
+    private static long scanTleData(NoradIdSet ids, File catalog, OutputStream output) throws IOException {
+        ParallelTleFilter parallel = ParallelTleFilter.builder().targetNoradIds(ids).build();
+        Optional<ByteBuffer> mappedTle = client.mapTle();
+        return mappedTle.isPresent() ? parallel.filter(mappedTle.get(), output) : parallel.filter(catalog, output);
+    }
+
     /**
      * Uses the {@link ConfigSetup} window to save the configuration and setup the {@link TleClient}. Loops until the
      * client can be initialized without exceptions.
@@ -486,18 +579,15 @@ public class TLEasy extends JFrame {
             @Override
             protected Long doInBackground() throws Exception {
                 System.out.println("Setting up filter for: " + idField.getText());
-                TleFilter filter = SimpleTleFilter.builder()
-                        .targetNoradIds(TleUtils.parseIdentifiers(idField.getText()))
-                        .build();
+                NoradIdSet ids = TleUtils.parseIdentifiers(idField.getText());
                 Optional<File> saveFile = getSaveFile();
                 if (!saveFile.isPresent()) {
                     // TODO: figure out something better here
                     System.out.println("No save file selected");
                     return null;
                 }
-                try (InputStream data = client.fetchTle();
-                     FileOutputStream output = new FileOutputStream(saveFile.get())) {
-                    return filter.filter(data, output);
+                try (FileOutputStream output = new FileOutputStream(saveFile.get())) {
+                    return filterTleData(ids, output);
                 } catch (IOException | InterruptedException ex) {
                     System.err.println("Exception thrown when pulling data: " + ex.getMessage());
                     ex.printStackTrace();
@@ -518,9 +608,8 @@ public class TLEasy extends JFrame {
                     }
                 }
                 // Trying again after trusting certs
-                try (InputStream data = client.fetchTle();
-                     FileOutputStream output = new FileOutputStream(saveFile.get())) {
-                    return filter.filter(data, output);
+                try (FileOutputStream output = new FileOutputStream(saveFile.get())) {
+                    return filterTleData(ids, output);
                 } catch (IOException | InterruptedException ex) {
                     System.err.println("Exception thrown when pulling data: " + ex.getMessage());
                     ex.printStackTrace();
@@ -580,72 +669,6 @@ public class TLEasy extends JFrame {
         return Optional.empty();
     }
 
-    /**
-     * Parses the text from the ID input field to extract valid ID numbers.
-     *
-     * <p>
-     * This method supports two input formats:
-     * <ul>
-     *   <li>Single 5-digit identifiers (e.g., "12345").</li>
-     *   <li>Ranges of 5-digit identifiers specified with a hyphen (e.g., "12345-12350").
-     *       In this case, all numbers in the inclusive range are added to the result.</li>
-     * </ul>
-     * The input string may contain multiple IDs or ranges separated by commas. Whitespace around
-     * commas or hyphens is ignored. If a range is specified where the start number is greater than
-     * the end number, an {@code IllegalArgumentException} is thrown.
-     * </p>
-     *
-     * @return a {@link Set} of ID Strings extracted from the input; returns an empty set if no valid IDs
-     * are found.
-     */
-    private Set<String> getIds() {
-        String input = idField.getText().trim();
-        Set<String> result = new HashSet<>();
-        // Split input by commas to allow mixed single IDs and ranges
-        String[] parts = input.split("\\s*,\\s*");
-        for (String part : parts) {
-            // If the part is a 5 digit identifier
-            if (part.matches("\\d{5}")) {
-                result.add(part);
-            }
-            // Else if the part is a range specification
-            else if (part.matches("\\d{5}\\s*-\\s*\\d{5}")) {
-                // Grab the start and end part
-                String[] rangeParts = part.split("\\s*-\\s*");
-                int start = Integer.parseInt(rangeParts[0]);
-                int end = Integer.parseInt(rangeParts[1]);
-                // Simple validation to ensure the first number is smaller than the second...
-                if (start > end) {
-                    throw new IllegalArgumentException("Range must be in ascending order.");
-                }
-                // Add all the target numbers in the specified range
-                result.addAll(getNumbersBetween(start, end).stream()
-                        .map(Object::toString)
-                        .collect(Collectors.toSet()));
-            }
-        }
-        return result;
-    }
-
-    /**
-     * Creates a Set of integers representing the range of numbers between the provided start and end values.
-     *
-     * @param start The integer to start the range with
-     * @param end   The integer to end the range with
-     * @return A {@link Set} of {@link Integer}s representing all numbers from the start to the end inclusive
-     */
-    private Set<Integer> getNumbersBetween(int start, int end) {
-        if (start > end) {
-            throw new IllegalArgumentException("Start number must be less than or equal to end number.");
-        }
-
-        Set<Integer> numbers = new HashSet<>();
-        for (int i = start; i <= end; i++) {
-            numbers.add(i);
-        }
-        return numbers;
-    }
-
     /**
      * Determines whether the ID field is a valid format and sets the enabled property on the download button
      * accordingly.
@@ -658,8 +681,8 @@ public class TLEasy extends JFrame {
     }
 
     /**
-     * Returns a boolean representing whether the provided string is a valid ID input. Must be a single 5-digit ID, a
-     * comma separate set of 5-digit IDs, or a hyphen separated range of 5-digit IDs.
+     * Returns a boolean representing whether the provided string is a valid ID input. Must be a single 5-digit (or
+     * Alpha-5) ID, a comma separate set of IDs, or a hyphen separated range of IDs.
      *
      * @param input A string value from the ID field
      * @return True if the value is valid; false otherwise
@@ -671,12 +694,12 @@ public class TLEasy extends JFrame {
         // Split input by commas
         String[] parts = input.split("\\s*,\\s*");
         for (String part : parts) {
-            if (part.matches("\\d{5}")) {
+            if (part.matches(TleUtils.ID_PATTERN)) {
                 continue;
-            } else if (part.matches("\\d{5}\\s*-\\s*\\d{5}")) {
+            } else if (part.matches(TleUtils.ID_PATTERN + "\\s*-\\s*" + TleUtils.ID_PATTERN)) {
                 String[] rangeParts = part.split("\\s*-\\s*");
-                int start = Integer.parseInt(rangeParts[0]);
-                int end = Integer.parseInt(rangeParts[1]);
+                int start = NoradIdSet.parse(rangeParts[0], 0, rangeParts[0].length());
+                int end = NoradIdSet.parse(rangeParts[1], 0, rangeParts[1].length());
                 if (start > end) {
                     return false;
                 }
@@ -798,8 +821,8 @@ public class TLEasy extends JFrame {
 
     /**
      * Ensures STK is running and establishes a connection, with a timeout.
-     * This method will launch STK if it's not already running, then poll
-     * for a successful TCP connection.
+     * This method will launch STK if it's not already running, then probe
+     * until STK answers a Connect session.
      *
      * @return A connected StkCon instance.
      * @throws IOException if STK executable is not found or if the process times out.
@@ -845,8 +868,6 @@ public class TLEasy extends JFrame {
                     command.add("STK");
                 }
                 new ProcessBuilder(command).start();
-                // Give it a moment to create the process before we start polling.
-                Thread.sleep(3000);
             } else {
                 // 4. If neither path worked, throw a comprehensive error
                 String primaryPathForError = (primaryPath != null) ? primaryPath : "[Not Configured]";
@@ -855,26 +876,21 @@ public class TLEasy extends JFrame {
             }
         }
 
-        // Now, poll for a successful connection.
-        int maxRetries = 15;  // 15 retries * 3 seconds = 45 seconds timeout
-        int interval = 3000; // 3 seconds
-
-        for (int i = 0; i < maxRetries; i++) {
-            setStatus("Waiting for STK to initialize... Attempt " + (i + 1) + "/" + maxRetries);
-
-            StkCon tempConnection = new StkCon();
-            if (tempConnection.connect() == 0) {
-                // Success! The TCP server is ready.
-                setStatus("Connection successful!");
-                return tempConnection;
+        // Now, probe until STK answers, backing off from tens of milliseconds rather than sleeping seconds at a time
+        setStatus("Waiting for STK to initialize...");
+        StkReadinessProbe probe = new StkReadinessProbe(STK_HOST, STK_PORT);
+        stkProbe = probe;
+        StkCon connection;
+        try {
+            if (stkRunCancelled) {
+                probe.cancel();
             }
-
-            // Wait before the next attempt.
-            Thread.sleep(interval);
+            connection = probe.await(STK_STARTUP_TIMEOUT_MILLIS);
+        } finally {
+            stkProbe = null;
         }
-
-        // If we exit the loop, it means we timed out.
-        throw new IOException("Timed out after 45 seconds waiting for STK to become ready for connection.");
+        setStatus("Connection successful!");
+        return connection;
     }
 
     /**
@@ -883,7 +899,9 @@ public class TLEasy extends JFrame {
      */
     private void generateAndOpenInStk() {
         setStatus("Starting STK process...");
-        openInStkButton.setEnabled(false);
+        stkRunning = true;
+        stkRunCancelled = false;
+        openInStkButton.setText("Cancel");
         downloadButton.setEnabled(false);
 
         SwingWorker<StkWorkerResult, Void> worker = new SwingWorker<StkWorkerResult, Void>() {
@@ -912,6 +930,7 @@ public class TLEasy extends JFrame {
                     Map<String, String> idToColorMap = buildSatIdToColorMap(idField.getText());
                     // Generate and sanitize the TLE file, passing the color map in
                     TleFileData tleData = generateSanitizedTleFile(idField.getText(), idToColorMap);
+                    checkStkRunCancelled("after preparing the TLE data");
                     // Notify the user if any TLEs were filtered
                     if (tleData.filteredTleCount > 0) {
                         final int count = tleData.filteredTleCount;
@@ -925,19 +944,38 @@ public class TLEasy extends JFrame {
 
                     // Launch, Connect, and Load/Create Scenario
                     String scenarioName = establishStkConnectionAndScenario();
-
-                    // Load all satellites into the scenario
-                    loadAllSatellites(scenarioName, tleData);
-
-                    // Create an instance of the new report generator class
-                    AccessReportGenerator reportGenerator = new AccessReportGenerator(stkConnection, TLEasy.this);
-
-                    // Generate the access report for all loaded satellites
-                    AccessReportResult reportResult = reportGenerator.generateAccessReportCsv(
-                            scenarioName,
-                            tleData.satelliteNames,
-                            tleData.sanitizedFile
-                    );
+                    checkStkRunCancelled("while connecting to STK");
+                    // The scenario's object paths, encoded once for this run and shared by its loading and reporting
+                    ScenarioPaths scenarioPaths = ScenarioPaths.of(scenarioName);
+
+                    AccessReportResult reportResult;
+                    // Keep STK from redrawing after every satellite, turning graphics back on however the run ends
+                    try (BatchGraphics batchGraphics = BatchGraphics.suspend(stkConnection,
+                            Configuration.isStkBatchGraphics())) {
+                        if (batchGraphics.isSuspended()) {
+                            System.out.println("STK graphics updates suspended until the run finishes");
+                        }
+                        // Load all satellites into the scenario
+                        loadAllSatellites(scenarioPaths, tleData);
+                        checkStkRunCancelled("after loading satellites");
+
+                        // Open extra sessions to STK so accesses can be computed over several at once
+                        try (StkConPool stkPool = StkConPool.connect(stkConnection,
+                                Configuration.getStkConnectSessions())) {
+                            TLEasy.this.stkPool = stkPool;
+                            // Create an instance of the new report generator class
+                            AccessReportGenerator reportGenerator = new AccessReportGenerator(stkConnection, stkPool,
+                                    TLEasy.this);
+
+                            // Generate the access report for all loaded satellites
+                            reportResult = reportGenerator.generateAccessReportCsv(
+                                    scenarioPaths,
+                                    tleData.records
+                            );
+                        } finally {
+                            TLEasy.this.stkPool = null;
+                        }
+                    }
 
                     String reportData = reportResult.csvData;
                     int filteredAccessCount = reportResult.filteredAccessCount;
@@ -949,17 +987,30 @@ public class TLEasy extends JFrame {
                     return new StkWorkerResult(message, reportData, filteredAccessCount);
 
                 } catch (Exception e) {
-                    // Ensure disconnection on any failure
-                    if (stkConnection != null) stkConnection.disconnect();
+                    // Ensure disconnection on any failure once the run has a session, as it may be left in any state;
+                    // a session kept from the last run that this one never got to is left alone
+                    if (stkRunConnection != null) {
+                        stkSessions.discard();
+                    }
                     throw e; // Re-throw to be caught by done()
                 } finally {
-                    // Always disconnect when the background task is finished
-                    if (stkConnection != null) stkConnection.disconnect();
+                    // Disconnect when the background task is finished, unless keeping the connection for next time
+                    StkCon connection = stkRunConnection;
+                    stkRunConnection = null;
+                    if (connection != null) {
+                        StkMetrics metrics = connection.getMetrics();
+                        if (metrics != null) {
+                            System.out.println("STK Connect command timings (ms):\n" + metrics.summary());
+                        }
+                    }
+                    stkSessions.release();
                 }
             }
 
             @Override
             protected void done() {
+                stkRunning = false;
+                openInStkButton.setText("Open in STK");
                 try {
                     StkWorkerResult result = get();
                     setStatus(result.message);
@@ -993,8 +1044,12 @@ public class TLEasy extends JFrame {
                     }
 
                 } catch (Exception ex) {
-                    ex.printStackTrace();
                     Throwable cause = ex.getCause() != null ? ex.getCause() : ex;
+                    if (stkRunCancelled && cause instanceof InterruptedIOException) {
+                        setStatus("STK run cancelled.");
+                        return;
+                    }
+                    ex.printStackTrace();
                     displayErrorMessage(cause.getMessage());
                     setStatus("Error: " + cause.getMessage());
                 } finally {
@@ -1005,6 +1060,30 @@ public class TLEasy extends JFrame {
         worker.execute();
     }
 
+    /**
+     * Cancels the STK run going in the background.  The run stops as soon as its STK sessions notice, within a fraction
+     * of a second even if STK itself is hung, and its connections are dropped.  Before the run has a session, it stops
+     * once the phase it's in ends, such as preparing the TLE data or waiting on STK to start.
+     */
+    private void cancelStkRun() {
+        stkRunCancelled = true;
+        openInStkButton.setEnabled(false);
+        setStatus("Cancelling...");
+        StkReadinessProbe probe = stkProbe;
+        if (probe != null) {
+            probe.cancel();
+        }
+        // Only the session this run acquired; one kept from the last run is left alone until this run gets to it
+        StkCon connection = stkRunConnection;
+        if (connection != null) {
+            connection.cancel();
+        }
+        StkConPool pool = stkPool;
+        if (pool != null) {
+            pool.cancel();
+        }
+    }
+
     /**
      * Generates a unique File object in the JFileChooser's current directory
      * to avoid overwriting existing files. If "basename.ext" exists, it will
@@ -1056,119 +1135,60 @@ public class TLEasy extends JFrame {
      * names for satellites when the name line is missing.
      *
      * @param idFilter The user-provided filter string for NORAD IDs.
-     * @return A TleFileData object containing the sanitized file and list of satellite names.
+     * @return A TleFileData object containing the sanitized file and the parsed record of each satellite in it.
      * @throws Exception if no TLEs are found or file operations fail.
      */
     private TleFileData generateSanitizedTleFile(String idFilter, Map<String, String> idToColorMap) throws Exception {
         setStatus("Generating temporary TLE file...");
-        TleFilter filter = SimpleTleFilter.builder()
-                .targetNoradIds(TleUtils.parseIdentifiers(idFilter))
-                .build();
+        NoradIdSet ids = TleUtils.parseIdentifiers(idFilter);
         File originalTempTleFile = File.createTempFile("tleasy_original_", ".tle");
         originalTempTleFile.deleteOnExit();
-        try (InputStream data = client.fetchTle();
-             FileOutputStream output = new FileOutputStream(originalTempTleFile)) {
-            long count = filter.filter(data, output);
+        try (FileOutputStream output = new FileOutputStream(originalTempTleFile)) {
+            long count = filterTleData(ids, output);
             if (count == 0) {
                 throw new Exception("No matching TLEs found for the given IDs.");
             }
         }
+        checkStkRunCancelled("after fetching the TLE data");
 
         File sanitizedTleFile = File.createTempFile("tleasy_sanitized_", ".tle");
         sanitizedTleFile.deleteOnExit();
-        List<String> satelliteNames = new ArrayList<>();
-        Map<String, String> satelliteColorMap = new HashMap<>();
-        int filteredCount = 0;
-        final boolean isJulianFilterEnabled = Configuration.isJulianDateFilterEnabled();
-        final LocalDateTime julianDateLimit = LocalDateTime.now(ZoneOffset.UTC).minusDays(1);
+        final LocalDateTime julianDateLimit = Configuration.isJulianDateFilterEnabled()
+                ? LocalDateTime.now(ZoneOffset.UTC).minusDays(1)
+                : null;
+        TleSanitizer.Result sanitized;
         try (BufferedReader reader = new BufferedReader(new FileReader(originalTempTleFile));
              BufferedWriter writer = new BufferedWriter(new FileWriter(sanitizedTleFile))) {
-
-            // Read all lines into a list to process them in chunks
-            List<String> lines = reader.lines().collect(Collectors.toList());
-            int i = 0;
-            while (i < lines.size()) {
-                String currentLine = lines.get(i).trim();
-
-                // Skip any blank lines that might separate TLE chunks
-                if (currentLine.isEmpty()) {
-                    i++;
-                    continue;
-                }
-
-                String nameLine;
-                String tleLine1;
-                String tleLine2;
-
-                // Case 1: The current line is a TLE line 1 (2-line format or missing name)
-                if (currentLine.startsWith("1 ")) {
-                    tleLine1 = currentLine;
-
-                    // The next line must be TLE line 2
-                    if (i + 1 < lines.size() && lines.get(i + 1).trim().startsWith("2 ")) {
-                        tleLine2 = lines.get(i + 1).trim();
-                        // Extract ID from line 1 to generate a default name
-                        String noradId = tleLine1.substring(2, 7).trim();
-                        nameLine = "tle-" + noradId;
-                        i += 2; // We have consumed two lines from the list
-                    } else {
-                        // Malformed entry: Found a Line 1 without a following Line 2. Skip it.
-                        System.err.println("Warning: Found TLE Line 1 without a following Line 2. Skipping: " + tleLine1);
-                        i++;
-                        continue;
-                    }
-                }
-                // Case 2: The current line is a name (standard 3-line format)
-                else {
-                    nameLine = currentLine;
-
-                    // The next two lines must be TLE line 1 and line 2
-                    if (i + 2 < lines.size() &&
-                            lines.get(i + 1).trim().startsWith("1 ") &&
-                            lines.get(i + 2).trim().startsWith("2 ")) {
-
-                        tleLine1 = lines.get(i + 1).trim();
-                        tleLine2 = lines.get(i + 2).trim();
-                        i += 3; // We have consumed three lines from the list
-                    } else {
-                        // Malformed entry: A name line wasn't followed by TLE lines. Skip it.
-                        System.err.println("Warning: Found a line that wasn't a TLE Line 1 and wasn't followed by a valid TLE set. Skipping: " + nameLine);
-                        i++;
-                        continue;
-                    }
-                }
-                String noradId = tleLine1.substring(2, 7).trim();
-
-                if (isJulianFilterEnabled) {
-                    LocalDateTime tleEpoch = TleUtils.parseTleEpoch(tleLine1);
-                    if (tleEpoch.isBefore(julianDateLimit)) {
-                        filteredCount++;
-                    }
-                }
-
-                String sanitizedName = nameLine.trim().replace(" ", "_").replace("[", "").replace("]", "");
-                satelliteNames.add(sanitizedName);
-
-                // If this ID has a group color, map it to the satellite's name
-                if (idToColorMap.containsKey(noradId)) {
-                    satelliteColorMap.put(sanitizedName, idToColorMap.get(noradId));
-                }
-
-                writer.write(sanitizedName);
-                writer.newLine();
-                writer.write(tleLine1);
-                writer.newLine();
-                writer.write(tleLine2);
-                writer.newLine();
-            }
+            sanitized = TleSanitizer.sanitize(reader, writer, idToColorMap, julianDateLimit);
         }
 
         // Final check to ensure we actually processed something from the file
-        if (satelliteNames.isEmpty()) {
+        if (sanitized.getRecords().isEmpty()) {
             throw new Exception("The TLE data was present but could not be parsed into valid satellite entries.");
         }
 
-        return new TleFileData(sanitizedTleFile, satelliteNames, filteredCount, satelliteColorMap);
+        return new TleFileData(sanitizedTleFile, sanitized.getRecords(), sanitized.getFilteredTleCount(),
+                sanitized.getSatelliteColorMap());
+    }
+
+    /**
+     * Connects to STK, launching it and waiting on it to start listening if it isn't already running.
+     *
+     * @return The connected session
+     * @throws IOException          If STK can't be launched or connected to
+     * @throws InterruptedException If interrupted while waiting on STK
+     */
+    private StkCon connectToStk() throws IOException, InterruptedException {
+        // First, try a quick connection in case STK is already running and ready.
+        StkCon connection = new StkCon(STK_HOST, STK_PORT);
+
+        // If the initial, simple connection attempt fails:
+        if (connection.connect() != 0) {
+            // Start pollin'
+            setStatus("STK not found or not ready. Starting connection process...");
+            connection = launchAndConnectToStk(); // This will return a valid connection or throw an exception.
+        }
+        return connection;
     }
 
     /**
@@ -1179,19 +1199,23 @@ public class TLEasy extends JFrame {
      * @throws Exception if a connection cannot be established or if scenario handling fails.
      */
     private String establishStkConnectionAndScenario() throws Exception {
-        // First, try a quick connection in case STK is already running and ready.
+        // Reuse the connection kept open from the last run if STK still answers it, or else connect afresh
         setStatus("Attempting to connect to STK...");
-        stkConnection = new StkCon();
-
-        // If the initial, simple connection attempt fails:
-        if (stkConnection.connect() != 0) {
-            // Start pollin'
-            setStatus("STK not found or not ready. Starting connection process...");
-            stkConnection = launchAndConnectToStk(); // This will return a valid connection or throw an exception.
+        stkSessions.setKeepAlive(Configuration.isStkKeepAlive());
+        stkConnection = stkSessions.acquire(this::connectToStk);
+        stkRunConnection = stkConnection;
+        if (!stkSessions.isReused()) {
+            // STK may have been restarted since the last run, so nothing recorded about its scenarios still holds
+            loadedSatellites.forgetAll();
         }
+        checkStkRunCancelled("while connecting to STK");
 
         // By this point, the connection is guaranteed to be established.
         setStatus("STK Connection Established.");
+        // Time every command sent this run, so the summary shows where the STK time went
+        stkConnection.setMetrics(new StkMetrics());
+        // Give up on STK rather than hanging forever if it stops answering
+        stkConnection.setCommandTimeout(TimeUnit.SECONDS.toMillis(Configuration.getStkCommandTimeoutSeconds()));
 
         String scenarioName;
         String scenarioCheck = stkConnection.sendConCommand("CheckScenario /");
@@ -1226,10 +1250,24 @@ public class TLEasy extends JFrame {
             if (!stkConnection.getAckStatus()) {
                 throw new Exception("Failed to load or create scenario.");
             }
+            // Whatever was loaded into a scenario by this name before isn't in this one
+            loadedSatellites.forget(scenarioName);
         }
         return scenarioName;
     }
 
+    /**
+     * Ends the STK run if the user cancelled it, for the phases of the run that can't be cancelled part way through.
+     *
+     * @param phase Where the run was cancelled, for the exception message
+     * @throws InterruptedIOException If the run was cancelled
+     */
+    private void checkStkRunCancelled(String phase) throws InterruptedIOException {
+        if (stkRunCancelled) {
+            throw new InterruptedIOException("Cancelled " + phase);
+        }
+    }
+
     /**
      * Get scenario name helper method
      */
@@ -1242,83 +1280,25 @@ public class TLEasy extends JFrame {
     }
 
     /**
-     * Loads all satellite objects into the specified STK scenario.
-     * @param scenarioName The name of the target scenario.
+     * Loads all satellite objects into the specified STK scenario, only sending STK the satellites that changed since
+     * they were last loaded into it.
+     * @param scenarioPaths The paths of the target scenario's objects.
      * @param tleData The TLE data containing satellite names and the file path.
      * @throws Exception
      */
-    private void loadAllSatellites(String scenarioName, TleFileData tleData) throws Exception {
+    private void loadAllSatellites(ScenarioPaths scenarioPaths, TleFileData tleData) throws Exception {
         setStatus("Loading all satellites...");
-        for (String satName : tleData.satelliteNames) {
-
-            // Create the satellite object
-            stkConnection.sendConCommand("New / */Satellite " + satName);
-            if (!stkConnection.getAckStatus()) {
-                System.err.println("Warning: Failed to create satellite for " + satName);
-                continue; // Skip to next satellite if creation fails
-            }
-
-            // Build the explicit path for this satellite
-            String satPath = String.format("/Scenario/%s/Satellite/%s", scenarioName, satName);
-
-            // Get the SSC number
-            String sscNumber = getSscNumberFromFile(tleData.sanitizedFile, satName);
-            if (sscNumber.isEmpty()) {
-                System.err.println("Warning: Could not find SSC number for " + satName);
-                continue;
-            }
-
-            // Propagate the satellite's orbit
-            String setStateCommand = String.format(
-                    "SetState %s SGP4 UseScenarioInterval 60.0 %s TLESource Automatic Source File \"%s\"",
-                    satPath,
-                    sscNumber,
-                    tleData.sanitizedFile.getAbsolutePath()
-            );
-            stkConnection.sendConCommand(setStateCommand);
-            if (!stkConnection.getAckStatus()) {
-                System.err.println("Warning: Failed to set state for " + satName);
-                continue; // If SetState fails, skip coloring
-            }
-
-            // Check if this satellite has a color assigned in the map
-            if (tleData.satelliteColorMap.containsKey(satName)) {
-                // Get the color (e.g., "Red", "Green", "255 0 255") from the map
-                String color = tleData.satelliteColorMap.get(satName);
-                String setColorCmd = String.format("Graphics %s SetColor %s", satPath, color);
-                stkConnection.sendConCommand(setColorCmd);
-
-                if (!stkConnection.getAckStatus()) {
-                    System.err.println("Warning: Failed to set color for " + satName);
-                }
-            }
-        }
-
-        // Add a small pause after all satellites are loaded to ensure STK is fully caught up
-        setStatus("Finalizing satellite propagation...");
-        Thread.sleep(1000); // Wait 1 second
-    }
-
-    /**
-     * A helper method to retrieve the SSC number for a satellite from a TLE file.
-     * @param tleFile The file to search in.
-     * @param satelliteName The name of the satellite.
-     * @return The 5-digit SSC number as a String, or an empty string if not found.
-     * @throws IOException
-     */
-    private String getSscNumberFromFile(File tleFile, String satelliteName) throws IOException {
-        try (BufferedReader reader = new BufferedReader(new FileReader(tleFile))) {
-            String line;
-            while ((line = reader.readLine()) != null) {
-                if (line.trim().equals(satelliteName)) {
-                    String tleLine1 = reader.readLine();
-                    if (tleLine1 != null && tleLine1.length() >= 7) {
-                        return tleLine1.substring(2, 7).trim();
-                    }
-                }
-            }
+        SatelliteLoader.LoadResult result = new SatelliteLoader(stkConnection, loadedSatellites,
+                Configuration.isStkBulkTleImport())
+                .loadAll(scenarioPaths, tleData.sanitizedFile, tleData.records, tleData.satelliteColorMap);
+        System.out.println("Satellites in " + scenarioPaths.getScenarioName() + ": " + result);
+        setStatus("Loaded satellites (" + result.getMethod() + ") in " + result.getElapsedMillis() + " ms");
+
+        // STK runs Connect commands in order, so once it answers a query sent after the loads, they're all done
+        if (result.isChanged()) {
+            setStatus("Finalizing satellite propagation...");
+            StkReadinessProbe.sync(stkConnection);
         }
-        return ""; // Not found
     }
 
     /**
@@ -1344,10 +1324,8 @@ public class TLEasy extends JFrame {
      * Disconnects the socket connection to STK.
      */
     public void disconnectFromStk() {
-        if (this.stkConnection != null) {
-            this.stkConnection.disconnect();
-            this.stkConnection = null;
-        }
+        stkSessions.close();
+        this.stkConnection = null;
     }
 
     /**
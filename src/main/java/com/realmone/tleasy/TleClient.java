@@ -1,7 +1,10 @@
 package com.realmone.tleasy;
 
+import java.io.File;
 import java.io.IOException;
 import java.io.InputStream;
+import java.nio.ByteBuffer;
+import java.util.Optional;
 
 /**
  * This is a simple interface that describes a client that will make a request to a remote system that serves
@@ -18,6 +21,30 @@ public interface TleClient {
      */
     InputStream fetchTle() throws IOException, InterruptedException;
 
+    /**
+     * The local file the client serves the TLE data from, if there is one, such as a configured catalog file or a
+     * cached copy of the remote catalog (brought up to date by this call).  A local catalog can be indexed so only the
+     * targeted records have to be read from it.
+     *
+     * @return The local TLE catalog file; empty if the data can only be streamed through {@link #fetchTle()}
+     * @throws IOException If there is an issue bringing a cached copy of the remote catalog up to date
+     */
+    default Optional<File> localTleFile() throws IOException {
+        return Optional.empty();
+    }
+
+    /**
+     * Memory maps the TLE data if the client is serving it from a local catalog file and mapping is enabled, so it can
+     * be filtered straight out of the OS page cache without copying it through the Java heap.  The catalog is mapped
+     * as returned by the last call to {@link #localTleFile()}, without refreshing it again.
+     *
+     * @return The mapped TLE data; empty if the data can't be mapped and should be read through {@link #fetchTle()}
+     * @throws IOException If there is an issue mapping the local file
+     */
+    default Optional<ByteBuffer> mapTle() throws IOException {
+        return Optional.empty();
+    }
+
     /**
      * Runs through the client's endpoint's server certificates and adds all to the underlying truststore.
      *
@@ -3,6 +3,7 @@ package com.realmone.tleasy;
 import java.io.IOException;
 import java.io.InputStream;
 import java.io.OutputStream;
+import java.nio.ByteBuffer;
 
 /**
  * This simple interface describes a way of filtering a stream of TLE data.  The incoming {@link InputStream} of TLE
@@ -19,4 +20,34 @@ public interface TleFilter {
      * @throws IOException If there is an issue working with the streams of data
      */
     long filter(InputStream tleStream, OutputStream outputStream) throws IOException;
+
+    /**
+     * This function will filter TLE data that is already in memory, such as a memory mapped catalog file.  The data
+     * between the buffer's position and limit is filtered.  Implementations that can work on the buffer directly
+     * should override this; by default the buffer is read through an {@link InputStream}.
+     *
+     * @param tleData      The incoming TLE data
+     * @param outputStream The TLE data to include in the output of the filter
+     * @return The number of TLE records that made it through the filtering
+     * @throws IOException If there is an issue working with the data
+     */
+    default long filter(ByteBuffer tleData, OutputStream outputStream) throws IOException {
+        ByteBuffer data = tleData.duplicate();
+        return filter(new InputStream() {
+            @Override
+            public int read() {
+                return data.hasRemaining() ? data.get() & 0xFF : -1;
+            }
+
+            @Override
+            public int read(byte[] bytes, int offset, int length) {
+                if (!data.hasRemaining()) {
+                    return -1;
+                }
+                int count = Math.min(length, data.remaining());
+                data.get(bytes, offset, count);
+                return count;
+            }
+        }, outputStream);
+    }
 }
@@ -0,0 +1,105 @@
+package com.realmone.tleasy.rest;
+
+import lombok.experimental.UtilityClass;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.PushbackInputStream;
+import java.util.Locale;
+import java.util.zip.GZIPInputStream;
+import java.util.zip.Inflater;
+import java.util.zip.InflaterInputStream;
+
+/**
+ * Helpers for the compressed forms TLE data can arrive in: {@code gzip} or {@code deflate} encoded HTTP responses, and
+ * pre-compressed {@code .gz} catalog files.  Everything is decompressed as a stream, so a filter reading the result can
+ * start on the first records while the rest of the body is still arriving.
+ */
+@UtilityClass
+class ContentEncodings {
+
+    /**
+     * The value sent in the {@code Accept-Encoding} request header.
+     */
+    static final String ACCEPT_ENCODING = "gzip, deflate";
+
+    private static final int BUFFER_SIZE = 64 * 1024;
+
+    /**
+     * Wraps a response body so it reads as the decoded content.
+     *
+     * @param body            The response body as sent
+     * @param contentEncoding The {@code Content-Encoding} response header, or null
+     * @return A stream of the decoded body
+     * @throws IOException If the encoding isn't supported or the body doesn't match it
+     */
+    static InputStream decode(InputStream body, String contentEncoding) throws IOException {
+        String encoding = contentEncoding == null ? "" : contentEncoding.trim().toLowerCase(Locale.ROOT);
+        switch (encoding) {
+            case "":
+            case "identity":
+                return body;
+            case "gzip":
+            case "x-gzip":
+                return new GZIPInputStream(body, BUFFER_SIZE);
+            case "deflate":
+                return inflate(body);
+            default:
+                body.close();
+                throw new IOException("Unsupported content encoding: " + contentEncoding);
+        }
+    }
+
+    /**
+     * @param file A TLE catalog file
+     * @return Whether the file is gzip compressed, going by its {@code .gz} extension
+     */
+    static boolean isGzipFile(File file) {
+        return file.getName().toLowerCase(Locale.ROOT).endsWith(".gz");
+    }
+
+    /**
+     * Opens a pre-compressed catalog file.
+     *
+     * @param in The contents of a {@code .gz} file
+     * @return A stream of the decompressed catalog
+     * @throws IOException If the file isn't gzip compressed
+     */
+    static InputStream gunzip(InputStream in) throws IOException {
+        return new GZIPInputStream(in, BUFFER_SIZE);
+    }
+
+    /**
+     * Servers disagree on whether {@code deflate} means a zlib wrapped stream (as the spec says) or a raw deflate
+     * stream, so peek at the first two bytes for a zlib header to tell which one arrived.
+     */
+    private static InputStream inflate(InputStream body) throws IOException {
+        PushbackInputStream in = new PushbackInputStream(body, 2);
+        byte[] header = new byte[2];
+        int read = 0;
+        while (read < header.length) {
+            int count = in.read(header, read, header.length - read);
+            if (count < 0) {
+                break;
+            }
+            read += count;
+        }
+        in.unread(header, 0, read);
+        int cmf = header[0] & 0xFF;
+        int flg = header[1] & 0xFF;
+        boolean zlib = read == 2 && (cmf & 0x0F) == 8 && ((cmf << 8) | flg) % 31 == 0;
+        Inflater inflater = new Inflater(!zlib);
+        return new InflaterInputStream(in, inflater, BUFFER_SIZE) {
+            @Override
+            public void close() throws IOException {
+                try {
+                    super.close();
+                } finally {
+                    // A caller supplied inflater isn't released by InflaterInputStream itself
+                    inflater.end();
+                }
+            }
+        };
+    }
+}
@@ -3,23 +3,37 @@ package com.realmone.tleasy.rest;
 import com.realmone.tleasy.TleClient;
 import lombok.Builder;
 
+import java.io.EOFException;
 import java.io.File;
 import java.io.IOException;
 import java.io.InputStream;
+import java.io.OutputStream;
 import java.net.HttpURLConnection;
 import java.net.URI;
 import java.net.URL;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
 import java.nio.file.Files;
+import java.nio.file.StandardOpenOption;
 import java.security.GeneralSecurityException;
 import java.security.KeyStore;
 import java.security.KeyStoreException;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
 import java.security.cert.Certificate;
 import java.security.cert.X509Certificate;
 import java.util.Enumeration;
+import java.util.Map;
+import java.util.Optional;
 import java.util.UUID;
+import java.util.concurrent.ConcurrentHashMap;
+import javax.net.ssl.HostnameVerifier;
 import javax.net.ssl.HttpsURLConnection;
+import javax.net.ssl.KeyManager;
 import javax.net.ssl.KeyManagerFactory;
 import javax.net.ssl.SSLContext;
+import javax.net.ssl.SSLSocketFactory;
 import javax.net.ssl.TrustManager;
 import javax.net.ssl.TrustManagerFactory;
 import javax.net.ssl.X509TrustManager;
@@ -29,27 +43,75 @@ public class SimpleTleClient implements TleClient {
     private static final String PKCS12 = "PKCS12";
     private static final String TRUSTSTORE = "truststore.p12";
     private static final String TRUSTSTORE_PW = "realm1p@ss";
+    /**
+     * How many times a cached download is attempted in one fetch before giving up; each attempt picks up where the
+     * last one was cut off.
+     */
+    private static final int MAX_DOWNLOAD_ATTEMPTS = 3;
+    private static final int HTTP_RANGE_NOT_SATISFIABLE = 416;
+    /**
+     * A link that stalls without closing has to be noticed before it can be resumed.
+     */
+    private static final int CONNECT_TIMEOUT_MILLIS = 30_000;
+    private static final int READ_TIMEOUT_MILLIS = 60_000;
+    private static final HostnameVerifier TRUST_ALL_HOSTS = (hostname, session) -> true;
+    /**
+     * Key managers loaded from each client keystore, keyed by {@link #fingerprint(File, char[])}, so the PKCS12 file is
+     * only parsed once per process no matter how often the client is rebuilt.
+     */
+    private static final Map<String, KeyManager[]> KEY_MANAGERS = new ConcurrentHashMap<>();
+    /**
+     * Socket factories keyed by keystore fingerprint and validation mode.  Handing every connection the same factory
+     * lets {@link HttpsURLConnection} reuse kept-alive connections (its keep-alive cache is keyed by factory) and lets
+     * the underlying {@link SSLContext}'s session cache resume TLS sessions instead of doing full handshakes.
+     */
+    private static final Map<String, SSLSocketFactory> SOCKET_FACTORIES = new ConcurrentHashMap<>();
     private final String tleDataEndpoint;
     private final File tleFile;
     private final File keystoreFile;
     private final char[] keystorePassword;
     private final boolean skipCertValidation;
-    private SSLContext sslContext;
+    private final boolean memoryMapTleFile;
+    private final TleResponseCache responseCache;
+    private final String keystoreFingerprint;
+    private SSLSocketFactory socketFactory;
 
+    /**
+     * Lombok generated builder based on this private constructor.
+     *
+     * @param tleDataEndpoint    The endpoint serving the TLE catalog; takes precedence over the TLE file
+     * @param tleFile            The local TLE catalog, used when no endpoint is configured
+     * @param keystoreFile       The client keystore file
+     * @param keystorePassword   The password for the keystore
+     * @param skipCertValidation Whether to disable SSL certificate validation
+     * @param memoryMapTleFile   Whether to memory map the local catalog
+     * @param responseCache      Where to cache the endpoint's responses; null to always download the full catalog
+     * @throws IOException If the TLS configuration can't be set up
+     */
     @Builder
     private SimpleTleClient(String tleDataEndpoint, File tleFile, File keystoreFile, char[] keystorePassword,
-                            boolean skipCertValidation)
+                            boolean skipCertValidation, boolean memoryMapTleFile, TleResponseCache responseCache)
             throws IOException {
         this.tleDataEndpoint = tleDataEndpoint;
         this.tleFile = tleFile;
         this.keystoreFile = keystoreFile;
         this.keystorePassword = keystorePassword;
         this.skipCertValidation = skipCertValidation;
-        this.sslContext = createSecureSslContext(keystoreFile, keystorePassword, skipCertValidation);
+        this.memoryMapTleFile = memoryMapTleFile;
+        this.responseCache = responseCache;
+        this.keystoreFingerprint = fingerprint(keystoreFile, keystorePassword);
+        SSLSocketFactory cached = SOCKET_FACTORIES.get(socketFactoryKey());
+        if (cached == null) {
+            cached = createSecureSslContext(keystoreFile, keystorePassword, skipCertValidation).getSocketFactory();
+            SOCKET_FACTORIES.putIfAbsent(socketFactoryKey(), cached);
+        }
+        this.socketFactory = SOCKET_FACTORIES.get(socketFactoryKey());
     }
 
     /**
-     * Fetches the TLE data using Java 8's HttpURLConnection.
+     * Fetches the TLE data using Java 8's HttpURLConnection.  When a response cache is configured, the catalog is
+     * revalidated with a conditional request and served from the cache.  Compressed responses and {@code .gz} catalog
+     * files are decompressed as they are read.
      *
      * @return The {@link InputStream} of TLE data
      * @throws IOException If there is an issue connecting to the remote server
@@ -57,39 +119,260 @@ public class SimpleTleClient implements TleClient {
     @Override
     public InputStream fetchTle() throws IOException {
         // If an endpoint was provided instead of a file
-        if (tleDataEndpoint != null && !tleDataEndpoint.isEmpty()) {
-            URL url = URI.create(tleDataEndpoint).toURL();
-            HttpURLConnection connection = (HttpURLConnection) url.openConnection();
-            HttpURLConnection.setFollowRedirects(true);
-
-            if (connection instanceof HttpsURLConnection) {
-                HttpsURLConnection httpsConnection = (HttpsURLConnection) connection;
-                httpsConnection.setSSLSocketFactory(sslContext.getSocketFactory());
-                if (skipCertValidation) {
-                    // Bypass hostname verification
-                    httpsConnection.setHostnameVerifier((hostname, session) -> true);
-                }
+        if (isEndpointConfigured()) {
+            if (responseCache != null) {
+                return Files.newInputStream(refreshCachedTle().toPath());
             }
-
-            connection.setRequestMethod("GET");
-            connection.setDoInput(true);
-
+            HttpURLConnection connection = openConnection();
             int responseCode = connection.getResponseCode();
             // Redirects are now handled automatically
             if (responseCode != HttpURLConnection.HTTP_OK) {
-                throw new IOException("Remote server did not respond with success: " + responseCode);
+                throw unsuccessfulResponse(connection, responseCode);
             }
 
-            return connection.getInputStream();
+            return ContentEncodings.decode(connection.getInputStream(), connection.getContentEncoding());
+        } else if (ContentEncodings.isGzipFile(tleFile)) { // If a pre-compressed file was provided
+            return ContentEncodings.gunzip(Files.newInputStream(tleFile.toPath()));
         } else { // If a file was provided instead of an endpoint
             return Files.newInputStream(tleFile.toPath());
         }
     }
 
+    /**
+     * Returns the catalog on disk: the configured TLE file, or when an endpoint is configured with a response cache,
+     * the cached response after revalidating it with the server.
+     *
+     * @return The local TLE catalog file; empty if an endpoint is configured without a response cache, or the
+     * configured file is compressed and can only be streamed
+     * @throws IOException If there is an issue refreshing the cached response
+     */
+    @Override
+    public Optional<File> localTleFile() throws IOException {
+        if (isEndpointConfigured()) {
+            return responseCache == null ? Optional.empty() : Optional.of(refreshCachedTle());
+        }
+        return tleFile == null || ContentEncodings.isGzipFile(tleFile) ? Optional.empty() : Optional.of(tleFile);
+    }
+
+    /**
+     * Maps the local TLE catalog read-only with {@link FileChannel#map}.  Repeated queries against a large catalog
+     * then read straight out of the OS page cache instead of being copied through the Java heap.  The mapping stays
+     * valid after the channel is closed.  A cached response is mapped as it stands, without revalidating it.
+     *
+     * @return The mapped TLE file; empty if there is no local catalog, mapping is disabled, or the file is too large
+     * to map into a single buffer
+     * @throws IOException If there is an issue mapping the file
+     */
+    @Override
+    public Optional<ByteBuffer> mapTle() throws IOException {
+        File file = isEndpointConfigured()
+                ? responseCache == null ? null : responseCache.bodyFile(tleDataEndpoint)
+                : tleFile;
+        if (file == null || !file.isFile() || ContentEncodings.isGzipFile(file) || !memoryMapTleFile) {
+            return Optional.empty();
+        }
+        try (FileChannel channel = FileChannel.open(file.toPath(), StandardOpenOption.READ)) {
+            long size = channel.size();
+            if (size > Integer.MAX_VALUE) {
+                return Optional.empty();
+            }
+            return Optional.of(channel.map(FileChannel.MapMode.READ_ONLY, 0, size));
+        }
+    }
+
+    /**
+     * Brings the cached response for the endpoint up to date.  A cached catalog younger than the cache's max age is
+     * used as is; otherwise the request is sent with {@code If-None-Match}/{@code If-Modified-Since} so an unchanged
+     * catalog costs a {@code 304} instead of a full download.  A download that gets cut off is resumed from where it
+     * stopped, both right away and on the next fetch if every attempt fails.
+     *
+     * @return The cached catalog file
+     * @throws IOException If there is an issue connecting to the remote server or updating the cache
+     */
+    private File refreshCachedTle() throws IOException {
+        if (responseCache.isFresh(tleDataEndpoint)) {
+            return responseCache.bodyFile(tleDataEndpoint);
+        }
+        for (int attempt = 1; ; attempt++) {
+            try {
+                return downloadToCache();
+            } catch (InterruptedTransferException e) {
+                if (attempt >= MAX_DOWNLOAD_ATTEMPTS) {
+                    throw e;
+                }
+                System.err.println("TLE download was interrupted, resuming: " + e.getMessage());
+            }
+        }
+    }
+
+    /**
+     * Makes one attempt at bringing the cached response up to date.  If a partial download is on disk, it is resumed
+     * with a {@code Range} request guarded by {@code If-Range}, so the server sends the rest of the catalog only if it
+     * hasn't changed, and the whole new catalog otherwise.
+     *
+     * @return The cached catalog file
+     * @throws InterruptedTransferException If the transfer was cut off; what was received is kept for resuming
+     * @throws IOException                  If there is an issue connecting to the remote server or updating the cache
+     */
+    private File downloadToCache() throws IOException {
+        TleResponseCache.Partial partial = responseCache.partial(tleDataEndpoint);
+        HttpURLConnection connection = openConnection();
+        if (partial != null) {
+            connection.setRequestProperty("Range", "bytes=" + partial.getLength() + "-");
+            connection.setRequestProperty("If-Range", partial.validator());
+        } else {
+            String etag = responseCache.etag(tleDataEndpoint);
+            if (etag != null) {
+                connection.setRequestProperty("If-None-Match", etag);
+            }
+            String lastModified = responseCache.lastModified(tleDataEndpoint);
+            if (lastModified != null) {
+                connection.setRequestProperty("If-Modified-Since", lastModified);
+            }
+        }
+        int responseCode = connection.getResponseCode();
+        if (responseCode == HttpURLConnection.HTTP_NOT_MODIFIED && responseCache.bodyFile(tleDataEndpoint).isFile()) {
+            System.out.println("Cached TLE data is up to date");
+            return responseCache.revalidated(tleDataEndpoint);
+        }
+        boolean resume = responseCode == HttpURLConnection.HTTP_PARTIAL && partial != null;
+        if (responseCode == HTTP_RANGE_NOT_SATISFIABLE && partial != null) {
+            // The partial download is already as long as (or longer than) the catalog, so start over
+            responseCache.discardPartial(tleDataEndpoint);
+            unsuccessfulResponse(connection, responseCode);
+            throw new InterruptedTransferException("Server could not resume the TLE download");
+        } else if (resume && rangeStart(connection) != partial.getLength()) {
+            // Not the range we asked for, so the partial download can't be trusted
+            responseCache.discardPartial(tleDataEndpoint);
+            connection.disconnect();
+            throw new InterruptedTransferException("Server resumed the TLE download at the wrong offset");
+        } else if (!resume && responseCode != HttpURLConnection.HTTP_OK) {
+            throw unsuccessfulResponse(connection, responseCode);
+        }
+        // A 200 means there was nothing to resume, or the catalog changed since the partial download began
+        long expected = connection.getContentLengthLong();
+        long received = 0L;
+        try (InputStream body = connection.getInputStream();
+             OutputStream out = responseCache.openPartial(tleDataEndpoint, resume,
+                     connection.getHeaderField("ETag"), connection.getHeaderField("Last-Modified"),
+                     connection.getContentEncoding())) {
+            byte[] buffer = new byte[64 * 1024];
+            int read;
+            while ((read = body.read(buffer)) >= 0) {
+                out.write(buffer, 0, read);
+                received += read;
+            }
+            if (expected >= 0 && received < expected) {
+                throw new EOFException("Connection closed " + received + " of " + expected + " bytes in");
+            }
+        } catch (IOException e) {
+            if (responseCache.partial(tleDataEndpoint) == null) {
+                // Served without a validator, so what was received can't be safely resumed
+                responseCache.discardPartial(tleDataEndpoint);
+                throw e;
+            }
+            throw new InterruptedTransferException(e.getMessage(), e);
+        }
+        try {
+            return responseCache.completePartial(tleDataEndpoint);
+        } catch (IOException e) {
+            // A download that can't be decoded would otherwise be resumed forever
+            responseCache.discardPartial(tleDataEndpoint);
+            throw e;
+        }
+    }
+
+    /**
+     * @return The first byte offset in the {@code Content-Range} of a partial response, or -1 if it can't be parsed
+     */
+    private static long rangeStart(HttpURLConnection connection) {
+        // e.g. "bytes 1000-29245/29246"
+        String contentRange = connection.getHeaderField("Content-Range");
+        if (contentRange == null || !contentRange.startsWith("bytes ") || contentRange.indexOf('-') < 0) {
+            return -1L;
+        }
+        try {
+            return Long.parseLong(contentRange.substring("bytes ".length(), contentRange.indexOf('-')).trim());
+        } catch (NumberFormatException e) {
+            return -1L;
+        }
+    }
+
+    /**
+     * Opens a GET request to the configured endpoint, using our {@link SSLContext} for HTTPS.
+     *
+     * @return The connection, not yet connected
+     * @throws IOException If the endpoint URL is invalid
+     */
+    private HttpURLConnection openConnection() throws IOException {
+        URL url = URI.create(tleDataEndpoint).toURL();
+        HttpURLConnection connection = (HttpURLConnection) url.openConnection();
+        HttpURLConnection.setFollowRedirects(true);
+
+        if (connection instanceof HttpsURLConnection) {
+            HttpsURLConnection httpsConnection = (HttpsURLConnection) connection;
+            httpsConnection.setSSLSocketFactory(socketFactory);
+            if (skipCertValidation) {
+                // Bypass hostname verification
+                httpsConnection.setHostnameVerifier(TRUST_ALL_HOSTS);
+            }
+        }
+
+        connection.setRequestMethod("GET");
+        connection.setDoInput(true);
+        connection.setConnectTimeout(CONNECT_TIMEOUT_MILLIS);
+        connection.setReadTimeout(READ_TIMEOUT_MILLIS);
+        // The catalog is plain text and compresses several times over
+        connection.setRequestProperty("Accept-Encoding", ContentEncodings.ACCEPT_ENCODING);
+        return connection;
+    }
+
+    /**
+     * Drains and closes the error body of an unsuccessful response so the connection can go back into the keep-alive
+     * cache, and builds the exception to report it with.
+     */
+    private static IOException unsuccessfulResponse(HttpURLConnection connection, int responseCode) {
+        try (InputStream error = connection.getErrorStream()) {
+            if (error != null) {
+                byte[] buffer = new byte[8192];
+                while (error.read(buffer) >= 0) {
+                    // Discard
+                }
+            }
+        } catch (IOException e) {
+            // The connection just won't be reused
+        }
+        return new IOException("Remote server did not respond with success: " + responseCode);
+    }
+
+    /**
+     * Thrown when a download is cut off part way through, after what was received has been kept for resuming.
+     */
+    private static final class InterruptedTransferException extends IOException {
+
+        private static final long serialVersionUID = 1L;
+
+        private InterruptedTransferException(String message) {
+            super(message);
+        }
+
+        private InterruptedTransferException(String message, Throwable cause) {
+            super(message, cause);
+        }
+    }
+
+    private boolean isEndpointConfigured() {
+        return tleDataEndpoint != null && !tleDataEndpoint.isEmpty();
+    }
+
+    private String socketFactoryKey() {
+        return keystoreFingerprint + (skipCertValidation ? ":trust-all" : ":verify");
+    }
+
     @Override
     public void trustCerts() throws IOException {
         // Only performed if an endpoint was provided instead of a file
-        if (tleDataEndpoint != null && !tleDataEndpoint.isEmpty()) {
+        if (isEndpointConfigured()) {
             URL url = URI.create(tleDataEndpoint).toURL();
             HttpURLConnection connection = (HttpURLConnection) url.openConnection();
             if (connection instanceof HttpsURLConnection) {
@@ -99,10 +382,12 @@ public class SimpleTleClient implements TleClient {
                 try {
                     SSLContext trustAllSSLContext = getTrustAllSSLContext(keystoreFile, keystorePassword);
                     httpsConnection.setSSLSocketFactory(trustAllSSLContext.getSocketFactory());
-                    httpsConnection.setHostnameVerifier((hostname, session) -> true);
+                    httpsConnection.setHostnameVerifier(TRUST_ALL_HOSTS);
                     connection.connect();
-                    this.sslContext = createSecureSslContext(keystoreFile, keystorePassword, skipCertValidation,
-                            httpsConnection.getServerCertificates());
+                    // Replace the shared factory so every client for this keystore trusts the server from now on
+                    this.socketFactory = createSecureSslContext(keystoreFile, keystorePassword, skipCertValidation,
+                            httpsConnection.getServerCertificates()).getSocketFactory();
+                    SOCKET_FACTORIES.put(socketFactoryKey(), socketFactory);
                 } catch (GeneralSecurityException ex) {
                     throw new RuntimeException(ex);
                 }
@@ -144,7 +429,7 @@ public class SimpleTleClient implements TleClient {
             SSLContext sslContext = SSLContext.getInstance("TLS");
 
             // Load client keystore
-            KeyManagerFactory kmf = getKeyManagerFactory(keystoreFile, keystorePassword);
+            KeyManager[] keyManagers = getKeyManagers(keystoreFile, keystorePassword);
 
             TrustManagerFactory tmf = null;
             if (!skipCertValidation) {
@@ -171,7 +456,7 @@ public class SimpleTleClient implements TleClient {
             }
 
             // Initialize SSLContext
-            sslContext.init(kmf.getKeyManagers(), trustManagers, null);
+            sslContext.init(keyManagers, trustManagers, null);
 
             return sslContext;
         } catch (GeneralSecurityException e) {
@@ -215,6 +500,50 @@ public class SimpleTleClient implements TleClient {
         }
     }
 
+    /**
+     * Gets the key managers for the provided keystore, loading the keystore only the first time it is seen.
+     *
+     * @param keystoreFile       The client keystore file
+     * @param keystorePassword   The password for the keystore
+     * @return The {@link KeyManager}s to use to create an {@link SSLContext}
+     * @throws GeneralSecurityException If an issue occurs creating and loading the keystore
+     * @throws IOException If an issue occurs reading the keystore file
+     */
+    private static KeyManager[] getKeyManagers(File keystoreFile, char[] keystorePassword)
+            throws GeneralSecurityException, IOException {
+        String fingerprint = fingerprint(keystoreFile, keystorePassword);
+        KeyManager[] keyManagers = KEY_MANAGERS.get(fingerprint);
+        if (keyManagers == null) {
+            keyManagers = getKeyManagerFactory(keystoreFile, keystorePassword).getKeyManagers();
+            KEY_MANAGERS.putIfAbsent(fingerprint, keyManagers);
+        }
+        return keyManagers;
+    }
+
+    /**
+     * Fingerprints a keystore by hashing its contents along with its password, so an edited or replaced keystore (or a
+     * corrected password) never picks up TLS state cached for the old one.
+     *
+     * @param keystoreFile     The client keystore file
+     * @param keystorePassword The password for the keystore
+     * @return A hex encoded SHA-256 fingerprint
+     * @throws IOException If an issue occurs reading the keystore file
+     */
+    private static String fingerprint(File keystoreFile, char[] keystorePassword) throws IOException {
+        try {
+            MessageDigest digest = MessageDigest.getInstance("SHA-256");
+            digest.update(Files.readAllBytes(keystoreFile.toPath()));
+            digest.update(new String(keystorePassword).getBytes(StandardCharsets.UTF_8));
+            StringBuilder fingerprint = new StringBuilder();
+            for (byte b : digest.digest()) {
+                fingerprint.append(String.format("%02x", b));
+            }
+            return fingerprint.toString();
+        } catch (NoSuchAlgorithmException e) {
+            throw new IOException("Issue managing TLS certificates to make TLE file request", e);
+        }
+    }
+
     /**
      * Creates a {@link KeyManagerFactory} with the provided {@link KeyStore} with the provided password for use in
      * creating an {@link SSLContext}.
@@ -252,13 +581,13 @@ public class SimpleTleClient implements TleClient {
         SSLContext sslContext = SSLContext.getInstance("TLS");
 
         // Load client keystore
-        KeyManagerFactory kmf = getKeyManagerFactory(keystoreFile, keystorePassword);
+        KeyManager[] keyManagers = getKeyManagers(keystoreFile, keystorePassword);
 
         // Get Trust All Manager
         TrustManager[] trustManagers = new TrustManager[]{getTrustAllManager()};
 
         // Initialize SSLContext
-        sslContext.init(kmf.getKeyManagers(), trustManagers, null);
+        sslContext.init(keyManagers, trustManagers, null);
 
         return sslContext;
     }
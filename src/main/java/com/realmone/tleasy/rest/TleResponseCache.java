@@ -0,0 +1,370 @@
+package com.realmone.tleasy.rest;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.AtomicMoveNotSupportedException;
+import java.nio.file.Files;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.Properties;
+
+/**
+ * On-disk cache of the TLE catalog served by an endpoint.  The response body is stored as a plain TLE file alongside a
+ * small properties file holding the validators ({@code ETag}/{@code Last-Modified}) the server sent with it, so the
+ * next request can be made conditional and a {@code 304 Not Modified} served straight from disk.
+ * <p>
+ * Entries are keyed by a hash of the endpoint URL, so switching endpoints never serves another endpoint's catalog.
+ * <p>
+ * A download in progress is written to a partial file exactly as it comes off the wire (still compressed, if it was
+ * sent that way), along with the validator it was served with.  If the transfer is cut off, the partial file is kept
+ * so the download can be resumed with a {@code Range} request instead of starting over.
+ */
+public class TleResponseCache {
+
+    private static final String PROP_ENDPOINT = "endpoint";
+    private static final String PROP_ETAG = "etag";
+    private static final String PROP_LAST_MODIFIED = "last_modified";
+    private static final String PROP_VALIDATED_AT = "validated_at";
+    private static final String PROP_CONTENT_ENCODING = "content_encoding";
+
+    private final File directory;
+    private final long maxAgeMillis;
+
+    /**
+     * @param directory    The directory to keep cached responses in; created on first use
+     * @param maxAgeMillis How long a cached response is served without checking with the server at all
+     */
+    public TleResponseCache(File directory, long maxAgeMillis) {
+        this.directory = directory;
+        this.maxAgeMillis = maxAgeMillis;
+    }
+
+    /**
+     * @param endpoint The TLE data endpoint
+     * @return The file the endpoint's catalog is cached in; may not exist yet
+     */
+    public File bodyFile(String endpoint) {
+        return new File(directory, key(endpoint) + ".tle");
+    }
+
+    /**
+     * @param endpoint The TLE data endpoint
+     * @return Whether there is a cached catalog for the endpoint that is young enough to serve without revalidating
+     */
+    public boolean isFresh(String endpoint) {
+        Properties metadata = metadata(endpoint);
+        if (metadata == null) {
+            return false;
+        }
+        long validatedAt = Long.parseLong(metadata.getProperty(PROP_VALIDATED_AT, "0"));
+        long age = System.currentTimeMillis() - validatedAt;
+        return age >= 0 && age < maxAgeMillis;
+    }
+
+    /**
+     * @param endpoint The TLE data endpoint
+     * @return The {@code ETag} the cached catalog was served with, or null if there isn't one
+     */
+    public String etag(String endpoint) {
+        Properties metadata = metadata(endpoint);
+        return metadata == null ? null : metadata.getProperty(PROP_ETAG);
+    }
+
+    /**
+     * @param endpoint The TLE data endpoint
+     * @return The {@code Last-Modified} date the cached catalog was served with, or null if there isn't one
+     */
+    public String lastModified(String endpoint) {
+        Properties metadata = metadata(endpoint);
+        return metadata == null ? null : metadata.getProperty(PROP_LAST_MODIFIED);
+    }
+
+    /**
+     * Stores a fresh response body for the endpoint.  The body is written to a temporary file and moved into place, so
+     * a failed download never clobbers the previously cached catalog.
+     *
+     * @param endpoint     The TLE data endpoint
+     * @param body         The response body; read fully but not closed
+     * @param etag         The {@code ETag} response header, or null
+     * @param lastModified The {@code Last-Modified} response header, or null
+     * @return The file the catalog is now cached in
+     * @throws IOException If there is an issue reading the response or writing the cache
+     */
+    public File store(String endpoint, InputStream body, String etag, String lastModified) throws IOException {
+        File bodyFile = bodyFile(endpoint);
+        Files.createDirectories(directory.toPath());
+        File temp = File.createTempFile(key(endpoint), ".part", directory);
+        try {
+            try (OutputStream out = Files.newOutputStream(temp.toPath())) {
+                byte[] buffer = new byte[64 * 1024];
+                int read;
+                while ((read = body.read(buffer)) >= 0) {
+                    out.write(buffer, 0, read);
+                }
+            }
+            move(temp, bodyFile);
+        } finally {
+            Files.deleteIfExists(temp.toPath());
+        }
+        Properties metadata = new Properties();
+        metadata.setProperty(PROP_ENDPOINT, endpoint);
+        if (etag != null) {
+            metadata.setProperty(PROP_ETAG, etag);
+        }
+        if (lastModified != null) {
+            metadata.setProperty(PROP_LAST_MODIFIED, lastModified);
+        }
+        writeMetadata(endpoint, metadata);
+        return bodyFile;
+    }
+
+    /**
+     * Marks the cached catalog as just validated, after the server answered {@code 304 Not Modified}.
+     *
+     * @param endpoint The TLE data endpoint
+     * @return The file the catalog is cached in
+     * @throws IOException If there is an issue updating the cache
+     */
+    public File revalidated(String endpoint) throws IOException {
+        Properties metadata = metadata(endpoint);
+        if (metadata == null) {
+            throw new IOException("No cached TLE data to revalidate for " + endpoint);
+        }
+        writeMetadata(endpoint, metadata);
+        return bodyFile(endpoint);
+    }
+
+    /**
+     * @param endpoint The TLE data endpoint
+     * @return The interrupted download for the endpoint, or null if there isn't one that can be resumed
+     */
+    public Partial partial(String endpoint) {
+        Partial partial = readPartial(endpoint);
+        // Without a validator the server can't be asked to send only the rest of the same catalog
+        return partial == null || partial.validator() == null ? null : partial;
+    }
+
+    /**
+     * @return The download in the partial file for the endpoint, whether or not it can be resumed, or null if there
+     * isn't one
+     */
+    private Partial readPartial(String endpoint) {
+        File partialFile = partialFile(endpoint);
+        File metadataFile = partialMetadataFile(endpoint);
+        if (!partialFile.isFile() || !metadataFile.isFile()) {
+            return null;
+        }
+        Properties metadata = new Properties();
+        try (InputStream in = Files.newInputStream(metadataFile.toPath())) {
+            metadata.load(in);
+        } catch (IOException e) {
+            System.err.println("Ignoring unreadable partial TLE download " + metadataFile + ": " + e.getMessage());
+            return null;
+        }
+        if (!endpoint.equals(metadata.getProperty(PROP_ENDPOINT))) {
+            return null;
+        }
+        return new Partial(metadata.getProperty(PROP_ETAG), metadata.getProperty(PROP_LAST_MODIFIED),
+                metadata.getProperty(PROP_CONTENT_ENCODING), partialFile.length());
+    }
+
+    /**
+     * Opens the partial file to write a download to.
+     *
+     * @param endpoint        The TLE data endpoint
+     * @param resume          Whether the response continues the existing partial download; otherwise it starts over
+     * @param etag            The {@code ETag} response header, or null
+     * @param lastModified    The {@code Last-Modified} response header, or null
+     * @param contentEncoding The {@code Content-Encoding} response header, or null
+     * @return A stream to write the response body to, as it was sent
+     * @throws IOException If there is an issue opening the partial file
+     */
+    public OutputStream openPartial(String endpoint, boolean resume, String etag, String lastModified,
+                                    String contentEncoding) throws IOException {
+        Files.createDirectories(directory.toPath());
+        if (!resume) {
+            Properties metadata = new Properties();
+            metadata.setProperty(PROP_ENDPOINT, endpoint);
+            if (etag != null) {
+                metadata.setProperty(PROP_ETAG, etag);
+            }
+            if (lastModified != null) {
+                metadata.setProperty(PROP_LAST_MODIFIED, lastModified);
+            }
+            if (contentEncoding != null) {
+                metadata.setProperty(PROP_CONTENT_ENCODING, contentEncoding);
+            }
+            try (OutputStream out = Files.newOutputStream(partialMetadataFile(endpoint).toPath())) {
+                metadata.store(out, "TLEasy partial download");
+            }
+        }
+        return resume
+                ? Files.newOutputStream(partialFile(endpoint).toPath(), StandardOpenOption.CREATE,
+                StandardOpenOption.APPEND)
+                : Files.newOutputStream(partialFile(endpoint).toPath());
+    }
+
+    /**
+     * Decodes a finished download into the cache and clears it out of the partial file.
+     *
+     * @param endpoint The TLE data endpoint
+     * @return The file the catalog is now cached in
+     * @throws IOException If there is no partial download or there is an issue decoding it
+     */
+    public File completePartial(String endpoint) throws IOException {
+        // A finished download is complete whether or not it could have been resumed
+        Partial partial = readPartial(endpoint);
+        if (partial == null) {
+            throw new IOException("No partial TLE download to complete for " + endpoint);
+        }
+        File bodyFile;
+        try (InputStream body = ContentEncodings.decode(Files.newInputStream(partialFile(endpoint).toPath()),
+                partial.getContentEncoding())) {
+            bodyFile = store(endpoint, body, partial.getEtag(), partial.getLastModified());
+        }
+        discardPartial(endpoint);
+        return bodyFile;
+    }
+
+    /**
+     * Throws away any partial download for the endpoint.
+     *
+     * @param endpoint The TLE data endpoint
+     * @throws IOException If there is an issue deleting the partial download
+     */
+    public void discardPartial(String endpoint) throws IOException {
+        Files.deleteIfExists(partialFile(endpoint).toPath());
+        Files.deleteIfExists(partialMetadataFile(endpoint).toPath());
+    }
+
+    /**
+     * @return The metadata of the cached response, or null if nothing usable is cached for the endpoint
+     */
+    private Properties metadata(String endpoint) {
+        File metadataFile = metadataFile(endpoint);
+        if (!metadataFile.isFile() || !bodyFile(endpoint).isFile()) {
+            return null;
+        }
+        Properties metadata = new Properties();
+        try (InputStream in = Files.newInputStream(metadataFile.toPath())) {
+            metadata.load(in);
+        } catch (IOException e) {
+            System.err.println("Ignoring unreadable TLE cache metadata " + metadataFile + ": " + e.getMessage());
+            return null;
+        }
+        return endpoint.equals(metadata.getProperty(PROP_ENDPOINT)) ? metadata : null;
+    }
+
+    private void writeMetadata(String endpoint, Properties metadata) throws IOException {
+        metadata.setProperty(PROP_VALIDATED_AT, String.valueOf(System.currentTimeMillis()));
+        File temp = File.createTempFile(key(endpoint), ".part", directory);
+        try {
+            try (OutputStream out = Files.newOutputStream(temp.toPath())) {
+                metadata.store(out, "TLEasy cached response");
+            }
+            move(temp, metadataFile(endpoint));
+        } finally {
+            Files.deleteIfExists(temp.toPath());
+        }
+    }
+
+    private File metadataFile(String endpoint) {
+        return new File(directory, key(endpoint) + ".properties");
+    }
+
+    private File partialFile(String endpoint) {
+        return new File(directory, key(endpoint) + ".partial");
+    }
+
+    private File partialMetadataFile(String endpoint) {
+        return new File(directory, key(endpoint) + ".partial.properties");
+    }
+
+    private static void move(File source, File target) throws IOException {
+        try {
+            Files.move(source.toPath(), target.toPath(), StandardCopyOption.REPLACE_EXISTING,
+                    StandardCopyOption.ATOMIC_MOVE);
+        } catch (AtomicMoveNotSupportedException e) {
+            Files.move(source.toPath(), target.toPath(), StandardCopyOption.REPLACE_EXISTING);
+        }
+    }
+
+    /**
+     * @return A file name safe key for the endpoint
+     */
+    private static String key(String endpoint) {
+        try {
+            byte[] digest = MessageDigest.getInstance("SHA-256").digest(endpoint.getBytes(StandardCharsets.UTF_8));
+            StringBuilder key = new StringBuilder("tle-");
+            for (int i = 0; i < 8; i++) {
+                key.append(String.format("%02x", digest[i]));
+            }
+            return key.toString();
+        } catch (NoSuchAlgorithmException e) {
+            // Every Java platform is required to support SHA-256
+            throw new IllegalStateException(e);
+        }
+    }
+
+    /**
+     * A download that was cut off part way through.
+     */
+    public static final class Partial {
+
+        private final String etag;
+        private final String lastModified;
+        private final String contentEncoding;
+        private final long length;
+
+        private Partial(String etag, String lastModified, String contentEncoding, long length) {
+            this.etag = etag;
+            this.lastModified = lastModified;
+            this.contentEncoding = contentEncoding;
+            this.length = length;
+        }
+
+        /**
+         * @return The {@code ETag} the download was served with, or null
+         */
+        public String getEtag() {
+            return etag;
+        }
+
+        /**
+         * @return The {@code Last-Modified} date the download was served with, or null
+         */
+        public String getLastModified() {
+            return lastModified;
+        }
+
+        /**
+         * @return The {@code Content-Encoding} the download was served with, or null
+         */
+        public String getContentEncoding() {
+            return contentEncoding;
+        }
+
+        /**
+         * @return The number of bytes downloaded so far
+         */
+        public long getLength() {
+            return length;
+        }
+
+        /**
+         * @return The value to send in {@code If-Range} so the server only resumes an unchanged catalog: the
+         * {@code ETag} if it is a strong one, otherwise the {@code Last-Modified} date; null if there's neither
+         */
+        public String validator() {
+            if (etag != null && !etag.startsWith("W/")) {
+                return etag;
+            }
+            return lastModified;
+        }
+    }
+}
@@ -0,0 +1,125 @@
+package com.realmone.tleasy.tle;
+
+import com.realmone.tleasy.TleFilter;
+import lombok.Builder;
+
+import java.io.BufferedOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.util.Arrays;
+
+/**
+ * Byte oriented implementation of the {@link TleFilter} interface.  Produces the same output as
+ * {@link SimpleTleFilter}, but scans the raw bytes of the incoming data for record boundaries and the NORAD identifier
+ * field instead of decoding every line into {@link String}s, and copies matching records to the output as byte ranges.
+ * This keeps full catalog pulls from allocating anything per record.
+ */
+public class ByteTleFilter implements TleFilter {
+
+    private static final int DEFAULT_BUFFER_SIZE = 64 * 1024;
+    private static final byte[] LINE_SEPARATOR = System.lineSeparator().getBytes(StandardCharsets.UTF_8);
+
+    /**
+     * The {@link NoradIdSet} of NORAD Identifiers to target from the incoming data for our output.
+     */
+    private final NoradIdSet targetNoradIds;
+
+    /**
+     * The initial size of the buffer used when reading from a stream.
+     */
+    private final int bufferSize;
+
+    /**
+     * Lombok generated builder based on this private constructor.
+     *
+     * @param targetNoradIds The NORAD Identifiers you want to include in the output
+     * @param bufferSize     The initial size of the read buffer; defaults to 64KB
+     */
+    @Builder
+    private ByteTleFilter(NoradIdSet targetNoradIds, int bufferSize) {
+        this.targetNoradIds = targetNoradIds;
+        this.bufferSize = bufferSize > 0 ? bufferSize : DEFAULT_BUFFER_SIZE;
+    }
+
+    /**
+     * Implementation of the filter method that will only include TLE data that specifies a specific set of NORAD
+     * identifiers.  The input is read in blocks, and any record left incomplete at the end of a block is carried over
+     * to the next one.
+     *
+     * @param input  The incoming TLE data
+     * @param output The TLE data to include in the output of the filter
+     * @return The number of included TLE record rows
+     * @throws IOException If there is an issue processing the stream of TLE data
+     */
+    @Override
+    public long filter(InputStream input, OutputStream output) throws IOException {
+        long counter = 0L;
+        try (InputStream in = input;
+             OutputStream out = new BufferedOutputStream(output, DEFAULT_BUFFER_SIZE)) {
+            TleScanner scanner = new TleScanner();
+            byte[] buffer = new byte[bufferSize];
+            int limit = 0;
+            boolean endOfInput = false;
+            while (!endOfInput) {
+                int read = in.read(buffer, limit, buffer.length - limit);
+                if (read < 0) {
+                    endOfInput = true;
+                } else {
+                    limit += read;
+                }
+                scanner.reset(ByteBuffer.wrap(buffer, 0, limit), endOfInput);
+                counter += writeMatches(scanner, out);
+                int consumed = scanner.position();
+                if (consumed == 0 && limit == buffer.length) {
+                    // A single record doesn't fit in the buffer
+                    buffer = Arrays.copyOf(buffer, buffer.length * 2);
+                } else if (consumed > 0) {
+                    // Carry the incomplete record over to the front of the buffer
+                    System.arraycopy(buffer, consumed, buffer, 0, limit - consumed);
+                    limit -= consumed;
+                }
+            }
+        }
+        return counter;
+    }
+
+    /**
+     * Filters TLE data that is already in memory, such as a memory mapped catalog file.  The buffer is read between
+     * its position and limit, and its position is left unchanged.
+     *
+     * @param input  The incoming TLE data
+     * @param output The TLE data to include in the output of the filter
+     * @return The number of included TLE record rows
+     * @throws IOException If there is an issue processing the TLE data
+     */
+    @Override
+    public long filter(ByteBuffer input, OutputStream output) throws IOException {
+        try (OutputStream out = new BufferedOutputStream(output, DEFAULT_BUFFER_SIZE)) {
+            TleScanner scanner = new TleScanner();
+            scanner.reset(input, true);
+            return writeMatches(scanner, out);
+        }
+    }
+
+    /**
+     * Writes every complete record left in the scanner's region that targets one of our identifiers.
+     *
+     * @param scanner The scanner positioned over the data
+     * @param output  Where to write the matching records
+     * @return The number of records written
+     * @throws IOException If the data was malformed or there was an issue writing the output
+     */
+    private long writeMatches(TleScanner scanner, OutputStream output) throws IOException {
+        long counter = 0L;
+        while (scanner.next()) {
+            if (targetNoradIds.contains(scanner.noradId())) {
+                scanner.writeRecord(output, LINE_SEPARATOR);
+                counter++;
+            }
+        }
+        return counter;
+    }
+}
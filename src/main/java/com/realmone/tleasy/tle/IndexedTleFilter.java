@@ -0,0 +1,183 @@
+package com.realmone.tleasy.tle;
+
+import com.realmone.tleasy.TleFilter;
+import lombok.Builder;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+
+/**
+ * Implementation of the {@link TleFilter} interface that uses a {@link TleIndex} to jump straight to the targeted
+ * records instead of scanning the whole catalog.  The incoming data must be the catalog the index was built from; the
+ * output is the same as {@link SimpleTleFilter} would produce for it.
+ * <p>
+ * When reading from a stream, the gaps between targeted records are skipped, which for a file stream is a seek.
+ * <p>
+ * Every targeted record is checked against its index entry, down to its NORAD identifier, before anything is written.
+ * If the catalog has changed since it was indexed, a {@link StaleIndexException} is thrown with nothing written and the
+ * output left open, so the caller can fall back to scanning the catalog in full.
+ */
+public class IndexedTleFilter implements TleFilter {
+
+    private static final int DEFAULT_BUFFER_SIZE = 64 * 1024;
+    private static final String STALE_INDEX = "TLE catalog no longer matches its index";
+    private static final byte[] LINE_SEPARATOR = System.lineSeparator().getBytes(StandardCharsets.UTF_8);
+
+    /**
+     * The index of the catalog being filtered.
+     */
+    private final TleIndex index;
+
+    /**
+     * The {@link NoradIdSet} of NORAD Identifiers to target from the incoming data for our output.
+     */
+    private final NoradIdSet targetNoradIds;
+
+    /**
+     * Lombok generated builder based on this private constructor.
+     *
+     * @param index          The index of the catalog that will be filtered
+     * @param targetNoradIds The NORAD Identifiers you want to include in the output
+     */
+    @Builder
+    private IndexedTleFilter(TleIndex index, NoradIdSet targetNoradIds) {
+        this.index = index;
+        this.targetNoradIds = targetNoradIds;
+    }
+
+    /**
+     * Reads only the indexed records that target one of our identifiers, skipping over everything else in the stream.
+     *
+     * @param input  The indexed TLE catalog
+     * @param output The TLE data to include in the output of the filter
+     * @return The number of included TLE record rows
+     * @throws StaleIndexException If the stream doesn't hold the indexed catalog
+     * @throws IOException         If there is an issue reading or writing the TLE data
+     */
+    @Override
+    public long filter(InputStream input, OutputStream output) throws IOException {
+        long counter = 0L;
+        ByteArrayOutputStream matched = new ByteArrayOutputStream(DEFAULT_BUFFER_SIZE);
+        try (InputStream in = input) {
+            TleScanner scanner = new TleScanner();
+            byte[] record = new byte[256];
+            long position = 0L;
+            for (int entry = 0; entry < index.size(); entry++) {
+                if (!targetNoradIds.contains(index.id(entry))) {
+                    continue;
+                }
+                skipFully(in, index.offset(entry) - position);
+                int length = index.length(entry);
+                if (record.length < length) {
+                    record = new byte[length];
+                }
+                readFully(in, record, length);
+                position = index.offset(entry) + length;
+                scanner.reset(ByteBuffer.wrap(record, 0, length), true);
+                counter += writeRecord(scanner, index.id(entry), matched);
+            }
+        }
+        return write(matched, output, counter);
+    }
+
+    /**
+     * Reads only the indexed records that target one of our identifiers straight out of the buffer.  Offsets in the
+     * index are relative to the buffer's position, which is left unchanged.
+     *
+     * @param input  The indexed TLE catalog
+     * @param output The TLE data to include in the output of the filter
+     * @return The number of included TLE record rows
+     * @throws StaleIndexException If the buffer doesn't hold the indexed catalog
+     * @throws IOException         If there is an issue writing the TLE data
+     */
+    @Override
+    public long filter(ByteBuffer input, OutputStream output) throws IOException {
+        if (input.remaining() < index.catalogSize()) {
+            throw new StaleIndexException("TLE data is smaller than the indexed catalog");
+        }
+        long counter = 0L;
+        ByteArrayOutputStream matched = new ByteArrayOutputStream(DEFAULT_BUFFER_SIZE);
+        TleScanner scanner = new TleScanner();
+        ByteBuffer region = input.duplicate();
+        int base = input.position();
+        for (int entry = 0; entry < index.size(); entry++) {
+            if (!targetNoradIds.contains(index.id(entry))) {
+                continue;
+            }
+            int start = base + (int) index.offset(entry);
+            region.limit(start + index.length(entry));
+            region.position(start);
+            scanner.reset(region, true);
+            counter += writeRecord(scanner, index.id(entry), matched);
+        }
+        return write(matched, output, counter);
+    }
+
+    /**
+     * Copies the single record the scanner is pointed at to the matched records.
+     *
+     * @param expectedId The NORAD identifier the index has for the record
+     * @return 1 once the record is copied
+     * @throws StaleIndexException If the record no longer matches the index
+     */
+    private static int writeRecord(TleScanner scanner, int expectedId, ByteArrayOutputStream matched)
+            throws IOException {
+        if (!scanner.next() || scanner.noradId() != expectedId) {
+            throw new StaleIndexException(STALE_INDEX);
+        }
+        scanner.writeRecord(matched, LINE_SEPARATOR);
+        return 1;
+    }
+
+    /**
+     * Writes out the matched records once every one of them has been checked against the index.
+     */
+    private static long write(ByteArrayOutputStream matched, OutputStream output, long counter) throws IOException {
+        try (OutputStream out = output) {
+            matched.writeTo(out);
+        }
+        return counter;
+    }
+
+    private static void skipFully(InputStream input, long count) throws IOException {
+        while (count > 0) {
+            long skipped = input.skip(count);
+            if (skipped <= 0) {
+                // skip() may stop short without being at the end, so fall back to a read to tell the two apart
+                if (input.read() < 0) {
+                    throw new StaleIndexException("TLE catalog is shorter than its index");
+                }
+                skipped = 1;
+            }
+            count -= skipped;
+        }
+    }
+
+    private static void readFully(InputStream input, byte[] buffer, int length) throws IOException {
+        int offset = 0;
+        while (offset < length) {
+            int read = input.read(buffer, offset, length - offset);
+            if (read < 0) {
+                throw new StaleIndexException("TLE catalog is shorter than its index");
+            }
+            offset += read;
+        }
+    }
+
+    /**
+     * Thrown when the catalog being filtered isn't the one the index was built from.  Nothing has been written to the
+     * output, which is left open so the catalog can be filtered another way.
+     */
+    public static final class StaleIndexException extends IOException {
+
+        private static final long serialVersionUID = 1L;
+
+        private StaleIndexException(String message) {
+            super(message);
+        }
+    }
+}
@@ -0,0 +1,234 @@
+package com.realmone.tleasy.tle;
+
+import java.util.BitSet;
+import java.util.Collection;
+import java.util.stream.IntStream;
+
+/**
+ * A set of NORAD catalog numbers backed by a {@link BitSet}, so membership checks are an array lookup and the memory
+ * used is capped no matter how wide the ranges added to it are (~12KB for every 5-digit catalog number).
+ * <p>
+ * Catalog numbers are stored by value.  5-digit numbers map to 0-99999, and Alpha-5 identifiers (a letter standing in
+ * for the leading two digits, skipping I and O, e.g. "A0001" for 100001) map to 100000-339999.
+ */
+public final class NoradIdSet {
+
+    /**
+     * The largest catalog number that can be represented, "Z9999".
+     */
+    public static final int MAX_ID = 339999;
+
+    /**
+     * The Alpha-5 letters in order, starting with 'A' for 10.
+     */
+    private static final String ALPHA5_LETTERS = "ABCDEFGHJKLMNPQRSTUVWXYZ";
+
+    private final BitSet ids = new BitSet(100000);
+
+    /**
+     * Creates a set containing the provided identifiers.
+     *
+     * @param ids The 5-digit or Alpha-5 identifiers to include
+     * @return A new {@link NoradIdSet}
+     * @throws IllegalArgumentException If any of the identifiers isn't a valid catalog number
+     */
+    public static NoradIdSet of(String... ids) {
+        NoradIdSet set = new NoradIdSet();
+        for (String id : ids) {
+            set.add(id);
+        }
+        return set;
+    }
+
+    /**
+     * Creates a set containing the provided identifiers.
+     *
+     * @param ids The 5-digit or Alpha-5 identifiers to include
+     * @return A new {@link NoradIdSet}
+     * @throws IllegalArgumentException If any of the identifiers isn't a valid catalog number
+     */
+    public static NoradIdSet of(Collection<String> ids) {
+        return of(ids.toArray(new String[0]));
+    }
+
+    /**
+     * Adds a single identifier to the set.
+     *
+     * @param id The 5-digit or Alpha-5 identifier
+     * @throws IllegalArgumentException If the identifier isn't a valid catalog number
+     */
+    public void add(String id) {
+        add(parseOrThrow(id));
+    }
+
+    /**
+     * Adds a single catalog number to the set.
+     *
+     * @param id The catalog number
+     * @throws IllegalArgumentException If the number is outside the range of catalog numbers
+     */
+    public void add(int id) {
+        checkRange(id);
+        ids.set(id);
+    }
+
+    /**
+     * Adds every catalog number between the provided values, inclusive.
+     *
+     * @param start The first catalog number in the range
+     * @param end   The last catalog number in the range
+     * @throws IllegalArgumentException If the range is reversed or outside the range of catalog numbers
+     */
+    public void addRange(int start, int end) {
+        checkRange(start);
+        checkRange(end);
+        if (start > end) {
+            throw new IllegalArgumentException("Range must be in ascending order.");
+        }
+        ids.set(start, end + 1);
+    }
+
+    /**
+     * @param id A catalog number
+     * @return Whether the catalog number is in the set
+     */
+    public boolean contains(int id) {
+        return id >= 0 && ids.get(id);
+    }
+
+    /**
+     * @param id A 5-digit or Alpha-5 identifier
+     * @return Whether the identifier is in the set; false if it isn't a valid catalog number
+     */
+    public boolean contains(CharSequence id) {
+        return contains(parse(id, 0, id.length()));
+    }
+
+    /**
+     * @return The number of catalog numbers in the set
+     */
+    public int size() {
+        return ids.cardinality();
+    }
+
+    /**
+     * @return Whether the set is empty
+     */
+    public boolean isEmpty() {
+        return ids.isEmpty();
+    }
+
+    /**
+     * Finds the next catalog number in the set, for walking the set in ascending order without boxing.
+     *
+     * @param from The catalog number to start searching from, inclusive
+     * @return The next catalog number in the set, or -1 if there are no more
+     */
+    public int nextId(int from) {
+        return ids.nextSetBit(from);
+    }
+
+    /**
+     * @return The catalog numbers in the set in ascending order
+     */
+    public IntStream stream() {
+        return ids.stream();
+    }
+
+    @Override
+    public boolean equals(Object o) {
+        return o instanceof NoradIdSet && ids.equals(((NoradIdSet) o).ids);
+    }
+
+    @Override
+    public int hashCode() {
+        return ids.hashCode();
+    }
+
+    @Override
+    public String toString() {
+        StringBuilder builder = new StringBuilder("[");
+        for (int id = nextId(0); id >= 0; id = nextId(id + 1)) {
+            if (builder.length() > 1) {
+                builder.append(", ");
+            }
+            builder.append(format(id));
+        }
+        return builder.append(']').toString();
+    }
+
+    /**
+     * Parses a 5-digit or Alpha-5 identifier into its catalog number.
+     *
+     * @param text  The text containing the identifier
+     * @param start The index the identifier starts at
+     * @param end   The index after the end of the identifier
+     * @return The catalog number, or -1 if the text isn't a valid identifier
+     */
+    public static int parse(CharSequence text, int start, int end) {
+        if (end - start != 5) {
+            return -1;
+        }
+        int id = leadingValue(text.charAt(start));
+        if (id < 0) {
+            return -1;
+        }
+        for (int i = start + 1; i < end; i++) {
+            int digit = text.charAt(i) - '0';
+            if (digit < 0 || digit > 9) {
+                return -1;
+            }
+            id = id * 10 + digit;
+        }
+        return id;
+    }
+
+    /**
+     * Formats a catalog number the way it appears in TLE data, zero padded to five digits or as an Alpha-5 identifier.
+     *
+     * @param id The catalog number
+     * @return The 5 character identifier
+     */
+    public static String format(int id) {
+        checkRange(id);
+        if (id < 100000) {
+            return String.format("%05d", id);
+        }
+        return ALPHA5_LETTERS.charAt(id / 10000 - 10) + String.format("%04d", id % 10000);
+    }
+
+    /**
+     * Works out the value of the leading character of an identifier, which is a digit or an Alpha-5 letter.
+     *
+     * @param c The leading character
+     * @return The value of the character, or -1 if it isn't valid
+     */
+    static int leadingValue(int c) {
+        if (c >= '0' && c <= '9') {
+            return c - '0';
+        }
+        int letter = ALPHA5_LETTERS.indexOf(c);
+        return letter < 0 ? -1 : letter + 10;
+    }
+
+    /**
+     * Matches the {@code \s} character class used when the TLE lines are tokenized.
+     */
+    static boolean isWhitespace(int c) {
+        return c == ' ' || c == '\t' || c == '\n' || c == 0x0B || c == '\f' || c == '\r';
+    }
+
+    private static int parseOrThrow(String id) {
+        int value = parse(id, 0, id.length());
+        if (value < 0) {
+            throw new IllegalArgumentException("Not a valid NORAD identifier: " + id);
+        }
+        return value;
+    }
+
+    private static void checkRange(int id) {
+        if (id < 0 || id > MAX_ID) {
+            throw new IllegalArgumentException("Catalog number out of range: " + id);
+        }
+    }
+}
@@ -0,0 +1,163 @@
+package com.realmone.tleasy.tle;
+
+import com.realmone.tleasy.TleFilter;
+import lombok.Builder;
+
+import java.io.BufferedOutputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.File;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.StandardOpenOption;
+import java.util.List;
+import java.util.concurrent.ForkJoinPool;
+
+/**
+ * Parallel implementation of the {@link TleFilter} interface for seekable TLE data: a catalog file on disk (including a
+ * cached download) or a buffer such as a memory mapped catalog.  The data is split into chunks at record boundaries,
+ * each chunk is scanned on a fork-join pool, and the matches are written out in the original order.  The count and
+ * output are byte for byte the same as {@link ByteTleFilter} and {@link SimpleTleFilter}; if the chunks can't be
+ * scanned cleanly, the data is scanned again sequentially so errors are reported exactly as the sequential filters
+ * report them.
+ * <p>
+ * Streams can't be split, so {@link #filter(InputStream, OutputStream)} is a sequential scan.
+ */
+public class ParallelTleFilter implements TleFilter {
+
+    private static final int DEFAULT_CHUNK_SIZE = 4 * 1024 * 1024;
+    private static final byte[] LINE_SEPARATOR = System.lineSeparator().getBytes(StandardCharsets.UTF_8);
+
+    /**
+     * The {@link NoradIdSet} of NORAD Identifiers to target from the incoming data for our output.
+     */
+    private final NoradIdSet targetNoradIds;
+
+    /**
+     * The target size of each chunk; data smaller than two chunks is scanned sequentially.
+     */
+    private final int chunkSize;
+
+    /**
+     * The pool the chunks are scanned on.
+     */
+    private final ForkJoinPool pool;
+
+    /**
+     * Lombok generated builder based on this private constructor.
+     *
+     * @param targetNoradIds The NORAD Identifiers you want to include in the output
+     * @param chunkSize      The target size of each chunk; defaults to 4MB
+     * @param pool           The pool to scan chunks on; defaults to the common pool
+     */
+    @Builder
+    private ParallelTleFilter(NoradIdSet targetNoradIds, int chunkSize, ForkJoinPool pool) {
+        this.targetNoradIds = targetNoradIds;
+        this.chunkSize = chunkSize > 0 ? chunkSize : DEFAULT_CHUNK_SIZE;
+        this.pool = pool != null ? pool : ForkJoinPool.commonPool();
+    }
+
+    /**
+     * Streams can't be split into chunks, so this scans the data sequentially.
+     *
+     * @param input  The incoming TLE data
+     * @param output The TLE data to include in the output of the filter
+     * @return The number of included TLE record rows
+     * @throws IOException If there is an issue processing the stream of TLE data
+     */
+    @Override
+    public long filter(InputStream input, OutputStream output) throws IOException {
+        return sequential().filter(input, output);
+    }
+
+    /**
+     * Filters TLE data that is already in memory, such as a memory mapped catalog file.  The buffer is read between
+     * its position and limit, and its position is left unchanged.
+     *
+     * @param input  The incoming TLE data
+     * @param output The TLE data to include in the output of the filter
+     * @return The number of included TLE record rows
+     * @throws IOException If there is an issue processing the TLE data
+     */
+    @Override
+    public long filter(ByteBuffer input, OutputStream output) throws IOException {
+        if (input.remaining() >= 2L * chunkSize) {
+            long counter = filterChunks(TleChunks.of(input), output);
+            if (counter >= 0) {
+                return counter;
+            }
+        }
+        return sequential().filter(input, output);
+    }
+
+    /**
+     * Filters a TLE catalog file, reading its chunks in parallel with positional reads.
+     *
+     * @param catalog The TLE catalog file
+     * @param output  The TLE data to include in the output of the filter
+     * @return The number of included TLE record rows
+     * @throws IOException If there is an issue reading the catalog or processing the TLE data
+     */
+    public long filter(File catalog, OutputStream output) throws IOException {
+        try (FileChannel channel = FileChannel.open(catalog.toPath(), StandardOpenOption.READ)) {
+            if (channel.size() >= 2L * chunkSize) {
+                long counter = filterChunks(TleChunks.of(channel), output);
+                if (counter >= 0) {
+                    return counter;
+                }
+            }
+        }
+        return sequential().filter(Files.newInputStream(catalog.toPath()), output);
+    }
+
+    /**
+     * Scans the chunks of the data in parallel, holding each chunk's matches in memory until every chunk has been
+     * scanned so nothing is written if the data has to be scanned again sequentially.
+     *
+     * @param source The TLE data
+     * @param output The TLE data to include in the output of the filter; closed if the chunks were scanned
+     * @return The number of included TLE record rows, or -1 if the chunks couldn't be scanned cleanly
+     * @throws IOException If there is an issue reading the data or writing the output
+     */
+    private long filterChunks(TleChunks.Source source, OutputStream output) throws IOException {
+        List<Matches> chunks;
+        try {
+            chunks = TleChunks.scan(source, TleChunks.split(source, chunkSize), pool, (scanner, offset) -> {
+                Matches matches = new Matches();
+                while (scanner.next()) {
+                    if (targetNoradIds.contains(scanner.noradId())) {
+                        scanner.writeRecord(matches, LINE_SEPARATOR);
+                        matches.counter++;
+                    }
+                }
+                return matches;
+            });
+        } catch (IOException e) {
+            // Either a split point landed mid-record or the data is malformed; a sequential scan sorts out which
+            return -1L;
+        }
+        long counter = 0L;
+        try (OutputStream out = new BufferedOutputStream(output, 64 * 1024)) {
+            for (Matches matches : chunks) {
+                matches.writeTo(out);
+                counter += matches.counter;
+            }
+        }
+        return counter;
+    }
+
+    private ByteTleFilter sequential() {
+        return ByteTleFilter.builder().targetNoradIds(targetNoradIds).build();
+    }
+
+    /**
+     * The records a single chunk matched.
+     */
+    private static final class Matches extends ByteArrayOutputStream {
+        private long counter;
+    }
+}
@@ -11,7 +11,6 @@ import java.io.InputStreamReader;
 import java.io.OutputStream;
 import java.io.OutputStreamWriter;
 import java.nio.charset.StandardCharsets;
-import java.util.Set;
 
 /**
  * This simple implementation of the {@link TleFilter} interface allows for the filtering of TLE data based on specific
@@ -21,9 +20,9 @@ import java.util.Set;
 public class SimpleTleFilter implements TleFilter {
 
     /**
-     * The {@link Set} of NORAD Identifiers to target from the incoming stream for our output.
+     * The {@link NoradIdSet} of NORAD Identifiers to target from the incoming stream for our output.
      */
-    private final Set<String> targetNoradIds;
+    private final NoradIdSet targetNoradIds;
 
     /**
      * Lombok generated builder based on this private constructor.
@@ -31,7 +30,7 @@ public class SimpleTleFilter implements TleFilter {
      * @param targetNoradIds The NORAD Identifiers you want to include in the output
      */
     @Builder
-    private SimpleTleFilter(Set<String> targetNoradIds) {
+    private SimpleTleFilter(NoradIdSet targetNoradIds) {
         this.targetNoradIds = targetNoradIds;
     }
 
@@ -69,7 +68,7 @@ public class SimpleTleFilter implements TleFilter {
                     throw new IOException("TLE data was malformed");
                 }
                 // Extract the NORAD ID from the second TLE line (bypass the need for the classification marking handling)
-                String noradId = extractNoradId(line2);
+                int noradId = extractNoradId(line2);
                 // If NORAD ID matches, write it to the output
                 if (targetNoradIds.contains(noradId)) {
                     if (title != null) {
@@ -90,8 +89,22 @@ public class SimpleTleFilter implements TleFilter {
         return counter;
     }
 
-    private String extractNoradId(String line2) {
-        String[] parts = line2.split("\\s+", 3);
-        return (parts.length > 1) ? parts[1] : "";
+    /**
+     * Pulls the NORAD identifier out of the second TLE line, which is the first whitespace separated token after the
+     * line number.
+     *
+     * @param line2 The second TLE line
+     * @return The catalog number, or -1 if the field isn't a valid identifier
+     */
+    private int extractNoradId(String line2) {
+        int start = 1;
+        while (start < line2.length() && NoradIdSet.isWhitespace(line2.charAt(start))) {
+            start++;
+        }
+        int end = start;
+        while (end < line2.length() && !NoradIdSet.isWhitespace(line2.charAt(end))) {
+            end++;
+        }
+        return NoradIdSet.parse(line2, start, end);
     }
 }
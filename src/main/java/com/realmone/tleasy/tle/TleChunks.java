@@ -0,0 +1,236 @@
+package com.realmone.tleasy.tle;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.ForkJoinTask;
+
+/**
+ * Splits seekable TLE data into chunks at record boundaries and scans the chunks in parallel.
+ * <p>
+ * Record boundaries can't be known for certain without parsing everything before them (a title line can be any text),
+ * so the split points are found heuristically: the first {@code "1 "} line followed by a {@code "2 "} line, backed up
+ * over a title line if there is one.  The scan then proves the split points right.  The first chunk starts at a real
+ * boundary, and a chunk that starts at a real boundary only parses cleanly to its end if its end is a real boundary
+ * too, since a record cut off at a line start is always reported as malformed.  So if every chunk scans cleanly, the
+ * chunks saw exactly the records a sequential scan would have; if any chunk fails, the caller has to fall back to a
+ * sequential scan, which reports real errors in the data.
+ */
+final class TleChunks {
+
+    /**
+     * How far past a candidate split point to look for a record boundary.
+     */
+    private static final int WINDOW_SIZE = 16 * 1024;
+
+    private TleChunks() {
+    }
+
+    /**
+     * Random access to the TLE data being chunked.
+     */
+    interface Source {
+
+        /**
+         * @return The number of bytes of TLE data
+         */
+        long size();
+
+        /**
+         * Reads a range of the data.  Must be safe to call from several threads at once.
+         *
+         * @param position The offset of the first byte to read
+         * @param length   The number of bytes to read
+         * @return A buffer holding the range, starting at position zero
+         * @throws IOException If the data can't be read
+         */
+        ByteBuffer read(long position, int length) throws IOException;
+    }
+
+    /**
+     * Scans a single chunk.
+     *
+     * @param <T> The result of scanning the chunk
+     */
+    interface ChunkScan<T> {
+
+        /**
+         * @param scanner The scanner pointed at the chunk, with the end of the chunk as the end of the input
+         * @param offset  The offset of the start of the chunk within the whole of the data; offsets reported by the
+         *                scanner are relative to the start of the chunk
+         * @return The result of scanning the chunk
+         * @throws IOException If the chunk doesn't hold only complete, well-formed records
+         */
+        T scan(TleScanner scanner, long offset) throws IOException;
+    }
+
+    /**
+     * @param data The TLE data between the buffer's position and limit
+     * @return A source reading slices of the buffer; offsets are relative to the buffer's position
+     */
+    static Source of(ByteBuffer data) {
+        ByteBuffer base = data.slice();
+        return new Source() {
+            @Override
+            public long size() {
+                return base.limit();
+            }
+
+            @Override
+            public ByteBuffer read(long position, int length) {
+                ByteBuffer region = base.duplicate();
+                region.limit((int) position + length);
+                region.position((int) position);
+                return region.slice();
+            }
+        };
+    }
+
+    /**
+     * @param channel An open channel on a TLE catalog file
+     * @return A source making positional reads from the channel into heap buffers
+     * @throws IOException If the size of the file can't be read
+     */
+    static Source of(FileChannel channel) throws IOException {
+        long size = channel.size();
+        return new Source() {
+            @Override
+            public long size() {
+                return size;
+            }
+
+            @Override
+            public ByteBuffer read(long position, int length) throws IOException {
+                ByteBuffer buffer = ByteBuffer.allocate(length);
+                while (buffer.hasRemaining()) {
+                    if (channel.read(buffer, position + buffer.position()) < 0) {
+                        throw new IOException("TLE data ended early");
+                    }
+                }
+                buffer.flip();
+                return buffer;
+            }
+        };
+    }
+
+    /**
+     * Picks split points roughly every {@code chunkSize} bytes.
+     *
+     * @param source    The TLE data
+     * @param chunkSize The target size of a chunk
+     * @return The offsets the chunks start at, followed by the size of the data
+     * @throws IOException If the data can't be read
+     */
+    static long[] split(Source source, int chunkSize) throws IOException {
+        long size = source.size();
+        long[] boundaries = new long[(int) (size / chunkSize) + 2];
+        int count = 1;
+        for (long candidate = chunkSize; candidate < size; candidate += chunkSize) {
+            long boundary = findBoundary(source, candidate);
+            if (boundary > boundaries[count - 1] && boundary < size) {
+                boundaries[count++] = boundary;
+            }
+        }
+        boundaries[count++] = size;
+        return Arrays.copyOf(boundaries, count);
+    }
+
+    /**
+     * Scans every chunk on the provided pool.
+     *
+     * @param source     The TLE data
+     * @param boundaries The split points from {@link #split(Source, int)}
+     * @param pool       The pool to run the scans on
+     * @param scan       How to scan each chunk
+     * @param <T>        The result of scanning a chunk
+     * @return The results of each chunk, in the order of the data
+     * @throws IOException If any chunk failed to scan, in which case none of the results can be trusted
+     */
+    static <T> List<T> scan(Source source, long[] boundaries, ForkJoinPool pool, ChunkScan<T> scan)
+            throws IOException {
+        List<ForkJoinTask<T>> tasks = new ArrayList<>(boundaries.length - 1);
+        for (int i = 0; i + 1 < boundaries.length; i++) {
+            long start = boundaries[i];
+            int length = (int) (boundaries[i + 1] - start);
+            tasks.add(pool.submit(() -> {
+                TleScanner scanner = new TleScanner();
+                scanner.reset(source.read(start, length), true);
+                return scan.scan(scanner, start);
+            }));
+        }
+        List<T> results = new ArrayList<>(tasks.size());
+        try {
+            for (ForkJoinTask<T> task : tasks) {
+                results.add(task.get());
+            }
+        } catch (InterruptedException e) {
+            tasks.forEach(task -> task.cancel(true));
+            Thread.currentThread().interrupt();
+            throw new IOException("Interrupted while scanning TLE data", e);
+        } catch (ExecutionException e) {
+            tasks.forEach(task -> task.cancel(true));
+            throw e.getCause() instanceof IOException
+                    ? (IOException) e.getCause()
+                    : new IOException("Issue scanning TLE data", e.getCause());
+        }
+        return results;
+    }
+
+    /**
+     * Looks for the first record that starts at or after the candidate offset.
+     *
+     * @return The offset of the record, or -1 if none was found close enough to the candidate
+     */
+    private static long findBoundary(Source source, long candidate) throws IOException {
+        // Start a byte early to tell whether the candidate itself is the start of a line
+        long windowStart = candidate - 1;
+        ByteBuffer window = source.read(windowStart, (int) Math.min(WINDOW_SIZE, source.size() - windowStart));
+        int base = window.position();
+        int limit = window.limit();
+        int previous = -1;
+        int line = nextLineStart(window, base, limit);
+        while (line >= 0) {
+            int next = nextLineStart(window, line, limit);
+            if (next < 0) {
+                break;
+            }
+            if (previous >= 0 && startsWith(window, line, limit, '1') && startsWith(window, next, limit, '2')) {
+                // The line before a "1 " line is either the end of the previous record or this record's title
+                int start = startsWith(window, previous, limit, '2') ? line : previous;
+                return windowStart + (start - base);
+            }
+            previous = line;
+            line = next;
+        }
+        return -1L;
+    }
+
+    /**
+     * @return The offset of the start of the first line after {@code from}, or -1 if it isn't in the window.  A
+     * {@code \r} at the end of the window could still be half of a {@code \r\n}, so it doesn't count.
+     */
+    private static int nextLineStart(ByteBuffer window, int from, int limit) {
+        for (int i = from; i < limit; i++) {
+            byte b = window.get(i);
+            if (b == '\n') {
+                return i + 1 < limit ? i + 1 : -1;
+            } else if (b == '\r') {
+                if (i + 1 >= limit) {
+                    return -1;
+                }
+                int start = window.get(i + 1) == '\n' ? i + 2 : i + 1;
+                return start < limit ? start : -1;
+            }
+        }
+        return -1;
+    }
+
+    private static boolean startsWith(ByteBuffer window, int start, int limit, char lineNumber) {
+        return start + 1 < limit && window.get(start) == lineNumber && window.get(start + 1) == ' ';
+    }
+}
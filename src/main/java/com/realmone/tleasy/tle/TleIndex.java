@@ -0,0 +1,301 @@
+package com.realmone.tleasy.tle;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.AtomicMoveNotSupportedException;
+import java.nio.file.Files;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.ForkJoinPool;
+
+/**
+ * Index of where each record sits in a TLE catalog file, mapping the NORAD identifier on each record to its byte offset
+ * and length.  With the index in hand, pulling N satellites out of the catalog costs N seeks instead of a full scan
+ * (see {@link IndexedTleFilter}).
+ * <p>
+ * The index is persisted next to the catalog (e.g. {@code catalog.tle.idx}) and stamped with the catalog's size and last
+ * modified time, so it is only rebuilt when the catalog changes.  Entries are kept in file order so indexed output
+ * matches a full scan, duplicates included.
+ */
+public final class TleIndex {
+
+    /**
+     * The suffix appended to the catalog file name to name the index file.
+     */
+    public static final String INDEX_SUFFIX = ".idx";
+
+    /**
+     * "TLEI" followed by the format version; bump the version whenever the layout changes.
+     */
+    private static final int MAGIC = 0x544C4549;
+    private static final int VERSION = 1;
+    private static final int BUFFER_SIZE = 64 * 1024;
+    /**
+     * Catalogs of at least two chunks are indexed in parallel (see {@link TleChunks}).
+     */
+    private static final int CHUNK_SIZE = 4 * 1024 * 1024;
+
+    private final long catalogSize;
+    private final long catalogModified;
+    private int size;
+    private int[] ids;
+    private long[] offsets;
+    private int[] lengths;
+
+    private TleIndex(long catalogSize, long catalogModified, int capacity) {
+        this.catalogSize = catalogSize;
+        this.catalogModified = catalogModified;
+        this.ids = new int[capacity];
+        this.offsets = new long[capacity];
+        this.lengths = new int[capacity];
+    }
+
+    /**
+     * Loads the persisted index for the provided catalog, building and persisting a new one if it is missing or was
+     * built against a different version of the catalog.  If the index can't be written next to the catalog (e.g. the
+     * directory is read-only), the freshly built index is still returned.
+     *
+     * @param catalog The TLE catalog file
+     * @return The index for the current version of the catalog
+     * @throws IOException If the catalog can't be read or the TLE data was malformed
+     */
+    public static TleIndex load(File catalog) throws IOException {
+        File indexFile = indexFile(catalog);
+        if (indexFile.isFile()) {
+            try {
+                TleIndex index = read(indexFile);
+                if (index.isCurrent(catalog)) {
+                    return index;
+                }
+            } catch (IOException e) {
+                System.err.println("Discarding unreadable TLE index " + indexFile + ": " + e.getMessage());
+            }
+        }
+        System.out.println("Building TLE index for " + catalog);
+        TleIndex index = build(catalog);
+        try {
+            index.write(indexFile);
+        } catch (IOException e) {
+            System.err.println("Could not persist TLE index " + indexFile + ": " + e.getMessage());
+        }
+        return index;
+    }
+
+    /**
+     * Scans the provided catalog and records where each record sits in it.  Large catalogs are scanned in parallel
+     * chunks.
+     *
+     * @param catalog The TLE catalog file
+     * @return A new index of the catalog
+     * @throws IOException If the catalog can't be read or the TLE data was malformed
+     */
+    public static TleIndex build(File catalog) throws IOException {
+        // Stamp before reading so a write that lands mid-scan invalidates the index
+        long catalogSize = catalog.length();
+        long catalogModified = catalog.lastModified();
+        TleIndex index = new TleIndex(catalogSize, catalogModified, (int) Math.min(catalogSize / 140 + 16, 1 << 20));
+        if (catalogSize >= 2L * CHUNK_SIZE && buildChunks(catalog, index)) {
+            return index;
+        }
+        try (InputStream in = Files.newInputStream(catalog.toPath())) {
+            TleScanner scanner = new TleScanner();
+            byte[] buffer = new byte[BUFFER_SIZE];
+            // Offset in the catalog of the first byte in the buffer
+            long base = 0L;
+            int limit = 0;
+            boolean endOfInput = false;
+            while (!endOfInput) {
+                int read = in.read(buffer, limit, buffer.length - limit);
+                if (read < 0) {
+                    endOfInput = true;
+                } else {
+                    limit += read;
+                }
+                scanner.reset(ByteBuffer.wrap(buffer, 0, limit), endOfInput);
+                while (scanner.next()) {
+                    int id = scanner.noradId();
+                    // A record without a valid identifier can never be targeted
+                    if (id >= 0) {
+                        index.add(id, base + scanner.recordStart, scanner.recordEnd - scanner.recordStart);
+                    }
+                }
+                int consumed = scanner.position();
+                if (consumed == 0 && limit == buffer.length) {
+                    buffer = Arrays.copyOf(buffer, buffer.length * 2);
+                } else if (consumed > 0) {
+                    System.arraycopy(buffer, consumed, buffer, 0, limit - consumed);
+                    limit -= consumed;
+                    base += consumed;
+                }
+            }
+        }
+        return index;
+    }
+
+    /**
+     * Indexes the chunks of a large catalog in parallel on the common pool.
+     *
+     * @param catalog The TLE catalog file
+     * @param index   The empty index to fill
+     * @return Whether every chunk was indexed; if not, the index is left empty and the catalog has to be scanned
+     * sequentially
+     */
+    private static boolean buildChunks(File catalog, TleIndex index) {
+        List<TleIndex> chunks;
+        try (FileChannel channel = FileChannel.open(catalog.toPath(), StandardOpenOption.READ)) {
+            TleChunks.Source source = TleChunks.of(channel);
+            chunks = TleChunks.scan(source, TleChunks.split(source, CHUNK_SIZE), ForkJoinPool.commonPool(),
+                    (scanner, offset) -> {
+                        TleIndex chunk = new TleIndex(0L, 0L, CHUNK_SIZE / 140 + 16);
+                        while (scanner.next()) {
+                            int id = scanner.noradId();
+                            if (id >= 0) {
+                                chunk.add(id, offset + scanner.recordStart, scanner.recordEnd - scanner.recordStart);
+                            }
+                        }
+                        return chunk;
+                    });
+        } catch (IOException e) {
+            return false;
+        }
+        for (TleIndex chunk : chunks) {
+            for (int i = 0; i < chunk.size; i++) {
+                index.add(chunk.ids[i], chunk.offsets[i], chunk.lengths[i]);
+            }
+        }
+        return true;
+    }
+
+    /**
+     * @param catalog The TLE catalog file
+     * @return Where the index for the provided catalog is persisted
+     */
+    public static File indexFile(File catalog) {
+        return new File(catalog.getAbsoluteFile().getParentFile(), catalog.getName() + INDEX_SUFFIX);
+    }
+
+    /**
+     * @param catalog The TLE catalog file
+     * @return Whether this index was built against the current version of the catalog
+     */
+    public boolean isCurrent(File catalog) {
+        return catalog.length() == catalogSize && catalog.lastModified() == catalogModified;
+    }
+
+    /**
+     * @return The number of records in the index
+     */
+    public int size() {
+        return size;
+    }
+
+    /**
+     * @return The size of the catalog when the index was built
+     */
+    public long catalogSize() {
+        return catalogSize;
+    }
+
+    /**
+     * @param entry The position of the entry, in catalog order
+     * @return The catalog number of the record
+     */
+    int id(int entry) {
+        return ids[entry];
+    }
+
+    /**
+     * @param entry The position of the entry, in catalog order
+     * @return The offset of the first byte of the record, title line included
+     */
+    long offset(int entry) {
+        return offsets[entry];
+    }
+
+    /**
+     * @param entry The position of the entry, in catalog order
+     * @return The length of the record in bytes, line terminators included
+     */
+    int length(int entry) {
+        return lengths[entry];
+    }
+
+    /**
+     * Writes the index to the provided file.  The index is written to a temporary file first and moved into place so a
+     * crash never leaves a half written index behind.
+     *
+     * @param indexFile Where to write the index
+     * @throws IOException If there is an issue writing the index
+     */
+    void write(File indexFile) throws IOException {
+        File temp = new File(indexFile.getPath() + ".tmp");
+        try (DataOutputStream out = new DataOutputStream(new BufferedOutputStream(Files.newOutputStream(temp.toPath()),
+                BUFFER_SIZE))) {
+            out.writeInt(MAGIC);
+            out.writeInt(VERSION);
+            out.writeLong(catalogSize);
+            out.writeLong(catalogModified);
+            out.writeInt(size);
+            for (int i = 0; i < size; i++) {
+                out.writeInt(ids[i]);
+                out.writeLong(offsets[i]);
+                out.writeInt(lengths[i]);
+            }
+        }
+        try {
+            Files.move(temp.toPath(), indexFile.toPath(), StandardCopyOption.REPLACE_EXISTING,
+                    StandardCopyOption.ATOMIC_MOVE);
+        } catch (AtomicMoveNotSupportedException e) {
+            Files.move(temp.toPath(), indexFile.toPath(), StandardCopyOption.REPLACE_EXISTING);
+        }
+    }
+
+    /**
+     * Reads a persisted index.
+     *
+     * @param indexFile The index file
+     * @return The index
+     * @throws IOException If the file can't be read or isn't an index this version understands
+     */
+    static TleIndex read(File indexFile) throws IOException {
+        try (DataInputStream in = new DataInputStream(new BufferedInputStream(Files.newInputStream(indexFile.toPath()),
+                BUFFER_SIZE))) {
+            if (in.readInt() != MAGIC || in.readInt() != VERSION) {
+                throw new IOException("Not a TLE index file");
+            }
+            long catalogSize = in.readLong();
+            long catalogModified = in.readLong();
+            int size = in.readInt();
+            if (size < 0) {
+                throw new IOException("TLE index file is corrupt");
+            }
+            TleIndex index = new TleIndex(catalogSize, catalogModified, size);
+            for (int i = 0; i < size; i++) {
+                index.add(in.readInt(), in.readLong(), in.readInt());
+            }
+            return index;
+        }
+    }
+
+    private void add(int id, long offset, int length) {
+        if (size == ids.length) {
+            int capacity = Math.max(16, size * 2);
+            ids = Arrays.copyOf(ids, capacity);
+            offsets = Arrays.copyOf(offsets, capacity);
+            lengths = Arrays.copyOf(lengths, capacity);
+        }
+        ids[size] = id;
+        offsets[size] = offset;
+        lengths[size] = length;
+        size++;
+    }
+}
@@ -0,0 +1,116 @@
+package com.realmone.tleasy.tle;
+
+import java.time.LocalDateTime;
+import java.util.Objects;
+
+/**
+ * One satellite's TLE as written to the sanitized TLE file: its sanitized name, its two lines, and the NORAD
+ * identifier and epoch parsed from them.  Parsed once, when the TLE data is sanitized, and handed to everything
+ * downstream that needs to know about the satellite rather than having each of them read the file again.
+ * <p>
+ * Immutable.  Two records are equal when their name and lines are.
+ */
+public final class TleRecord {
+
+    private final String name;
+    private final String noradId;
+    private final LocalDateTime epoch;
+    private final String line1;
+    private final String line2;
+
+    private TleRecord(String name, String noradId, LocalDateTime epoch, String line1, String line2) {
+        this.name = name;
+        this.noradId = noradId;
+        this.epoch = epoch;
+        this.line1 = line1;
+        this.line2 = line2;
+    }
+
+    /**
+     * Parses the NORAD identifier and epoch out of a TLE's lines.
+     *
+     * @param name  The sanitized name of the satellite
+     * @param line1 The first line of the TLE
+     * @param line2 The second line of the TLE
+     * @return The record; its epoch is null if line 1 doesn't hold a valid one
+     * @throws IllegalArgumentException If line 1 is too short to hold a NORAD identifier
+     */
+    public static TleRecord parse(String name, String line1, String line2) {
+        if (line1.length() < 7) {
+            throw new IllegalArgumentException("TLE line 1 is too short to hold a NORAD identifier: " + line1);
+        }
+        LocalDateTime epoch;
+        try {
+            epoch = TleUtils.parseTleEpoch(line1);
+        } catch (RuntimeException e) {
+            System.err.println("Warning: Could not parse the epoch of " + name + ": " + line1);
+            epoch = null;
+        }
+        return new TleRecord(name, line1.substring(2, 7).trim(), epoch, line1, line2);
+    }
+
+    /**
+     * @return The sanitized name of the satellite, as it's named in STK
+     */
+    public String getName() {
+        return name;
+    }
+
+    /**
+     * @return The NORAD identifier (SSC number) from line 1
+     */
+    public String getNoradId() {
+        return noradId;
+    }
+
+    /**
+     * @return The epoch from line 1, in UTC, or null if it couldn't be parsed
+     */
+    public LocalDateTime getEpoch() {
+        return epoch;
+    }
+
+    /**
+     * @return The first line of the TLE
+     */
+    public String getLine1() {
+        return line1;
+    }
+
+    /**
+     * @return The second line of the TLE
+     */
+    public String getLine2() {
+        return line2;
+    }
+
+    /**
+     * @param limit The oldest epoch that's still current
+     * @return Whether the epoch is before the limit; false if the epoch isn't known
+     */
+    public boolean isOlderThan(LocalDateTime limit) {
+        return epoch != null && epoch.isBefore(limit);
+    }
+
+    @Override
+    public boolean equals(Object o) {
+        if (this == o) {
+            return true;
+        }
+        if (!(o instanceof TleRecord)) {
+            return false;
+        }
+        TleRecord other = (TleRecord) o;
+        return name.equals(other.name) && line1.equals(other.line1) && line2.equals(other.line2);
+    }
+
+    @Override
+    public int hashCode() {
+        return Objects.hash(name, line1, line2);
+    }
+
+    @Override
+    public String toString() {
+        return name + " (" + noradId + ")";
+    }
+}
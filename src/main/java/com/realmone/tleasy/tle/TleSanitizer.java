@@ -0,0 +1,159 @@
+package com.realmone.tleasy.tle;
+
+import lombok.experimental.UtilityClass;
+
+import java.io.BufferedReader;
+import java.io.BufferedWriter;
+import java.io.IOException;
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.stream.Collectors;
+
+/**
+ * Rewrites filtered TLE data into the form STK loads: every record gets a title line (generated from the NORAD
+ * identifier when the record has none) with characters STK can't take in an object name stripped out.
+ */
+@UtilityClass
+public class TleSanitizer {
+
+    /**
+     * Sanitizes TLE data record by record. This is robust and can handle both 2-line and 3-line TLE formats,
+     * generating default names for satellites when the name line is missing.  Malformed entries are skipped with a
+     * warning.
+     *
+     * @param reader       The filtered TLE data
+     * @param writer       Where to write the sanitized TLE data
+     * @param idToColorMap The group color of each NORAD identifier that has one
+     * @param epochLimit   Records with an epoch before this are counted as old; null to skip the check
+     * @return The sanitized satellites, in order, along with what was learned about them
+     * @throws IOException If there is an issue reading or writing the TLE data
+     */
+    public static Result sanitize(BufferedReader reader, BufferedWriter writer, Map<String, String> idToColorMap,
+                                  LocalDateTime epochLimit) throws IOException {
+        List<TleRecord> records = new ArrayList<>();
+        Map<String, String> satelliteColorMap = new HashMap<>();
+        int filteredCount = 0;
+
+        // Read all lines into a list to process them in chunks
+        List<String> lines = reader.lines().collect(Collectors.toList());
+        int i = 0;
+        while (i < lines.size()) {
+            String currentLine = lines.get(i).trim();
+
+            // Skip any blank lines that might separate TLE chunks
+            if (currentLine.isEmpty()) {
+                i++;
+                continue;
+            }
+
+            String nameLine;
+            String tleLine1;
+            String tleLine2;
+
+            // Case 1: The current line is a TLE line 1 (2-line format or missing name)
+            if (currentLine.startsWith("1 ")) {
+                tleLine1 = currentLine;
+
+                // The next line must be TLE line 2
+                if (i + 1 < lines.size() && lines.get(i + 1).trim().startsWith("2 ")) {
+                    tleLine2 = lines.get(i + 1).trim();
+                    // Extract ID from line 1 to generate a default name
+                    String noradId = tleLine1.substring(2, 7).trim();
+                    nameLine = "tle-" + noradId;
+                    i += 2; // We have consumed two lines from the list
+                } else {
+                    // Malformed entry: Found a Line 1 without a following Line 2. Skip it.
+                    System.err.println("Warning: Found TLE Line 1 without a following Line 2. Skipping: " + tleLine1);
+                    i++;
+                    continue;
+                }
+            }
+            // Case 2: The current line is a name (standard 3-line format)
+            else {
+                nameLine = currentLine;
+
+                // The next two lines must be TLE line 1 and line 2
+                if (i + 2 < lines.size() &&
+                        lines.get(i + 1).trim().startsWith("1 ") &&
+                        lines.get(i + 2).trim().startsWith("2 ")) {
+
+                    tleLine1 = lines.get(i + 1).trim();
+                    tleLine2 = lines.get(i + 2).trim();
+                    i += 3; // We have consumed three lines from the list
+                } else {
+                    // Malformed entry: A name line wasn't followed by TLE lines. Skip it.
+                    System.err.println("Warning: Found a line that wasn't a TLE Line 1 and wasn't followed by a valid TLE set. Skipping: " + nameLine);
+                    i++;
+                    continue;
+                }
+            }
+            String sanitizedName = nameLine.trim().replace(" ", "_").replace("[", "").replace("]", "");
+            // Parse the record once, for everything downstream to use
+            TleRecord record = TleRecord.parse(sanitizedName, tleLine1, tleLine2);
+            records.add(record);
+
+            if (epochLimit != null && record.isOlderThan(epochLimit)) {
+                filteredCount++;
+            }
+
+            // If this ID has a group color, map it to the satellite's name
+            if (idToColorMap.containsKey(record.getNoradId())) {
+                satelliteColorMap.put(sanitizedName, idToColorMap.get(record.getNoradId()));
+            }
+
+            writer.write(sanitizedName);
+            writer.newLine();
+            writer.write(tleLine1);
+            writer.newLine();
+            writer.write(tleLine2);
+            writer.newLine();
+        }
+        return new Result(records, filteredCount, satelliteColorMap);
+    }
+
+    /**
+     * What {@link #sanitize(BufferedReader, BufferedWriter, Map, LocalDateTime)} learned about the satellites it wrote.
+     */
+    public static final class Result {
+        private final List<TleRecord> records;
+        private final int filteredTleCount;
+        private final Map<String, String> satelliteColorMap;
+
+        private Result(List<TleRecord> records, int filteredTleCount, Map<String, String> satelliteColorMap) {
+            this.records = records;
+            this.filteredTleCount = filteredTleCount;
+            this.satelliteColorMap = satelliteColorMap;
+        }
+
+        /**
+         * @return The sanitized names of the satellites, in the order they were written
+         */
+        public List<String> getSatelliteNames() {
+            return records.stream().map(TleRecord::getName).collect(Collectors.toList());
+        }
+
+        /**
+         * @return The parsed record of each satellite, in the order they were written
+         */
+        public List<TleRecord> getRecords() {
+            return records;
+        }
+
+        /**
+         * @return The number of records with an epoch older than the limit
+         */
+        public int getFilteredTleCount() {
+            return filteredTleCount;
+        }
+
+        /**
+         * @return The group color of each satellite that has one, keyed by sanitized name
+         */
+        public Map<String, String> getSatelliteColorMap() {
+            return satelliteColorMap;
+        }
+    }
+}
@@ -0,0 +1,220 @@
+package com.realmone.tleasy.tle;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.ByteBuffer;
+
+/**
+ * Byte level scanner over a region of TLE data.  Finds the optional title line and the two element lines of each record
+ * without decoding anything into {@link String}s, mirroring the line handling of {@link java.io.BufferedReader} (lines
+ * end at {@code \n}, {@code \r} or {@code \r\n}) so the byte oriented filters stay consistent with
+ * {@link SimpleTleFilter}.
+ * <p>
+ * The offsets of the current record are exposed as fields so a caller can copy the record out as byte ranges with no
+ * per-record allocation.
+ */
+final class TleScanner {
+
+    /**
+     * Returned by {@link #readLine(int)} when there are no more lines in the data.
+     */
+    private static final int NO_LINE = -1;
+    /**
+     * Returned by {@link #readLine(int)} when the line isn't terminated yet and more data may still arrive.
+     */
+    private static final int INCOMPLETE = -2;
+
+    private ByteBuffer data;
+    private ByteBuffer view;
+    private byte[] scratch = new byte[256];
+    private int position;
+    private int limit;
+    private boolean endOfInput;
+
+    // Scratch offsets set by readLine
+    private int lineStart;
+    private int lineEnd;
+
+    // Offsets of the current record; titleStart is -1 when the record has no title line
+    int recordStart;
+    int recordEnd;
+    int titleStart;
+    int titleEnd;
+    int line1Start;
+    int line1End;
+    int line2Start;
+    int line2End;
+
+    /**
+     * Points the scanner at the region between the buffer's position and limit.
+     *
+     * @param data       The TLE data to scan; only absolute reads are made, so the buffer's position is left alone
+     * @param endOfInput Whether the region is the end of the data, or more data may be appended after it
+     */
+    void reset(ByteBuffer data, boolean endOfInput) {
+        if (this.data != data) {
+            this.view = null;
+        }
+        this.data = data;
+        this.position = data.position();
+        this.limit = data.limit();
+        this.endOfInput = endOfInput;
+    }
+
+    /**
+     * @return The offset of the first byte that hasn't been consumed as part of a complete record
+     */
+    int position() {
+        return position;
+    }
+
+    /**
+     * Advances to the next complete record in the region.
+     *
+     * @return True if a record was found; false if the region is exhausted (or, when more input may arrive, if the
+     * remaining bytes don't hold a complete record yet)
+     * @throws IOException If the TLE data was malformed
+     */
+    boolean next() throws IOException {
+        int next = readLine(position);
+        if (next < 0) {
+            return false;
+        }
+        titleStart = -1;
+        // If the first line is not a TLE line (i.e., doesn't start with "1 "), treat it as a title
+        if (!startsWith(lineStart, lineEnd, (byte) '1')) {
+            titleStart = lineStart;
+            titleEnd = lineEnd;
+            next = readLine(next);
+            if (next == INCOMPLETE) {
+                return false;
+            } else if (next == NO_LINE) {
+                throw new IOException("TLE data was malformed");
+            }
+        }
+        line1Start = lineStart;
+        line1End = lineEnd;
+        next = readLine(next);
+        if (next == INCOMPLETE) {
+            return false;
+        } else if (next == NO_LINE) {
+            throw new IOException("TLE data was malformed");
+        }
+        line2Start = lineStart;
+        line2End = lineEnd;
+        // Ensure both lines are valid
+        if (!startsWith(line1Start, line1End, (byte) '1') || !startsWith(line2Start, line2End, (byte) '2')) {
+            throw new IOException("TLE data was malformed");
+        }
+        recordStart = position;
+        recordEnd = next;
+        position = next;
+        return true;
+    }
+
+    /**
+     * Parses the NORAD identifier of the current record out of the second TLE line.  Follows the same whitespace
+     * tokenization as {@link SimpleTleFilter} so the two agree on oddly padded records.
+     *
+     * @return The catalog number, or -1 if the field isn't a 5-digit or Alpha-5 identifier
+     */
+    int noradId() {
+        int start = line2Start + 1;
+        while (start < line2End && NoradIdSet.isWhitespace(data.get(start))) {
+            start++;
+        }
+        int end = start;
+        while (end < line2End && !NoradIdSet.isWhitespace(data.get(end))) {
+            end++;
+        }
+        if (end - start != 5) {
+            return -1;
+        }
+        int id = NoradIdSet.leadingValue(data.get(start));
+        if (id < 0) {
+            return -1;
+        }
+        for (int i = start + 1; i < end; i++) {
+            int digit = data.get(i) - '0';
+            if (digit < 0 || digit > 9) {
+                return -1;
+            }
+            id = id * 10 + digit;
+        }
+        return id;
+    }
+
+    /**
+     * Copies the current record to the output as byte ranges, ending each line with the provided separator.
+     *
+     * @param output        The stream to write the record to
+     * @param lineSeparator The bytes to end each line with
+     * @throws IOException If there is an issue writing to the output
+     */
+    void writeRecord(OutputStream output, byte[] lineSeparator) throws IOException {
+        if (titleStart >= 0) {
+            writeRange(output, titleStart, titleEnd);
+            output.write(lineSeparator);
+        }
+        writeRange(output, line1Start, line1End);
+        output.write(lineSeparator);
+        writeRange(output, line2Start, line2End);
+        output.write(lineSeparator);
+    }
+
+    private void writeRange(OutputStream output, int start, int end) throws IOException {
+        if (data.hasArray()) {
+            output.write(data.array(), data.arrayOffset() + start, end - start);
+        } else {
+            // Direct and mapped buffers have to be copied out through a scratch array
+            if (view == null) {
+                view = data.duplicate();
+            }
+            if (scratch.length < end - start) {
+                scratch = new byte[end - start];
+            }
+            view.limit(end);
+            view.position(start);
+            view.get(scratch, 0, end - start);
+            output.write(scratch, 0, end - start);
+        }
+    }
+
+    /**
+     * Finds the bounds of the line starting at the provided offset, storing them in {@link #lineStart} and
+     * {@link #lineEnd}.
+     *
+     * @param from The offset the line starts at
+     * @return The offset the following line starts at, {@link #NO_LINE} if there isn't a line, or {@link #INCOMPLETE}
+     * if the line isn't terminated and more data may still arrive
+     */
+    private int readLine(int from) {
+        if (from >= limit) {
+            return endOfInput ? NO_LINE : INCOMPLETE;
+        }
+        lineStart = from;
+        for (int i = from; i < limit; i++) {
+            byte b = data.get(i);
+            if (b == '\n') {
+                lineEnd = i;
+                return i + 1;
+            } else if (b == '\r') {
+                lineEnd = i;
+                if (i + 1 < limit) {
+                    return data.get(i + 1) == '\n' ? i + 2 : i + 1;
+                }
+                // Can't tell if this is a \r\n pair until more data arrives
+                return endOfInput ? i + 1 : INCOMPLETE;
+            }
+        }
+        if (!endOfInput) {
+            return INCOMPLETE;
+        }
+        lineEnd = limit;
+        return limit;
+    }
+
+    private boolean startsWith(int start, int end, byte lineNumber) {
+        return end - start >= 2 && data.get(start) == lineNumber && data.get(start + 1) == ' ';
+    }
+}
@@ -5,19 +5,23 @@ import lombok.experimental.UtilityClass;
 import java.time.LocalDateTime;
 import java.util.HashSet;
 import java.util.Set;
-import java.util.stream.Collectors;
 
 @UtilityClass
 public class TleUtils {
 
+    /**
+     * Pattern for a single 5-digit or Alpha-5 identifier.
+     */
+    public static final String ID_PATTERN = "[0-9A-HJ-NP-Z]\\d{4}";
+
     /**
      * Parses the text from the ID input field to extract valid ID numbers.
      *
      * <p>
      * This method supports two input formats:
      * <ul>
-     *   <li>Single 5-digit identifiers (e.g., "12345").</li>
-     *   <li>Ranges of 5-digit identifiers specified with a hyphen (e.g., "12345-12350").
+     *   <li>Single 5-digit or Alpha-5 identifiers (e.g., "12345" or "A0001").</li>
+     *   <li>Ranges of identifiers specified with a hyphen (e.g., "12345-12350").
      *       In this case, all numbers in the inclusive range are added to the result.</li>
      * </ul>
      * The input string may contain multiple IDs or ranges separated by commas. Whitespace around
@@ -25,33 +29,27 @@ public class TleUtils {
      * the end number, an {@code IllegalArgumentException} is thrown.
      * </p>
      *
-     * @return a {@link Set} of ID Strings extracted from the input; returns an empty set if no valid IDs
+     * @return a {@link NoradIdSet} of the IDs extracted from the input; returns an empty set if no valid IDs
      * are found.
      */
-    public static Set<String> parseIdentifiers(String inputString) {
+    public static NoradIdSet parseIdentifiers(String inputString) {
         String input = inputString.trim();
-        Set<String> result = new HashSet<>();
+        NoradIdSet result = new NoradIdSet();
         // Split input by commas to allow mixed single IDs and ranges
         String[] parts = input.split("\\s*,\\s*");
         for (String part : parts) {
-            // If the part is a 5 digit identifier
-            if (part.matches("\\d{5}")) {
+            // If the part is a single identifier
+            if (part.matches(ID_PATTERN)) {
                 result.add(part);
             }
             // Else if the part is a range specification
-            else if (part.matches("\\d{5}\\s*-\\s*\\d{5}")) {
+            else if (part.matches(ID_PATTERN + "\\s*-\\s*" + ID_PATTERN)) {
                 // Grab the start and end part
                 String[] rangeParts = part.split("\\s*-\\s*");
-                int start = Integer.parseInt(rangeParts[0]);
-                int end = Integer.parseInt(rangeParts[1]);
-                // Simple validation to ensure the first number is smaller than the second...
-                if (start > end) {
-                    throw new IllegalArgumentException("Range must be in ascending order.");
-                }
-                // Add all the target numbers in the specified range
-                result.addAll(getNumbersBetween(start, end).stream()
-                        .map(Object::toString)
-                        .collect(Collectors.toSet()));
+                int start = NoradIdSet.parse(rangeParts[0], 0, rangeParts[0].length());
+                int end = NoradIdSet.parse(rangeParts[1], 0, rangeParts[1].length());
+                // Sets every bit in the range at once, no matter how wide it is
+                result.addRange(start, end);
             }
         }
         return result;
@@ -2,7 +2,7 @@ package com.realmone.tleasy.util;
 
 import com.realmone.tleasy.Configuration;
 import com.realmone.tleasy.TLEasy;
-import com.realmone.tleasy.tle.TleUtils;
+import com.realmone.tleasy.tle.TleRecord;
 
 import java.io.IOException;
 import java.time.LocalDateTime;
@@ -13,22 +13,27 @@ import java.time.format.DateTimeFormatter;
 import java.time.format.DateTimeFormatterBuilder;
 import java.util.ArrayList;
 import java.util.Arrays;
+import java.util.Collections;
 import java.util.List;
 import java.util.Locale;
+import java.util.function.Consumer;
 import java.util.regex.Matcher;
 import java.util.regex.Pattern;
 
-import java.io.BufferedReader;
-import java.io.File;
-import java.io.FileReader;
 import java.util.HashMap;
 import java.util.Map;
 import com.realmone.tleasy.TLEasy.AccessReportResult;
 
 public class AccessReportGenerator {
 
+    // The fixed parts of the Access and Report_RM commands sent for every pair
+    private static final ConnectCommand.Token SCENARIO_INTERVAL = ConnectCommand.Token.of("TimePeriod UseScenarioInterval");
+    private static final ConnectCommand.Token ACCESS_STYLE = ConnectCommand.Token.of("Style \"Access\" AccessObject");
+    private static final ConnectCommand.Token ACCESS_TIMES = ConnectCommand.Token.of("TimePeriod UseAccessTimes");
+
     private final StkCon stkConnection;
-    private final TLEasy tleasyInstance; // Used to call the setStatus method
+    private final StkConPool stkPool;
+    private final Consumer<String> statusListener; // Used to update the UI status
 
     /**
      * Constructs an AccessReportGenerator.
@@ -36,19 +41,51 @@ public class AccessReportGenerator {
      * @param tleasyInstance The main application instance to update the UI status.
      */
     public AccessReportGenerator(StkCon stkConnection, TLEasy tleasyInstance) {
+        this(stkConnection, new StkConPool(Collections.singletonList(stkConnection)), tleasyInstance::setStatus);
+    }
+
+    /**
+     * Constructs an AccessReportGenerator that computes accesses across a pool of STK Connect sessions.
+     * @param stkConnection The active connection to STK, used to look up the scenario's facilities.
+     * @param stkPool The sessions the satellite/facility pairs are fanned out across.
+     * @param tleasyInstance The main application instance to update the UI status.
+     */
+    public AccessReportGenerator(StkCon stkConnection, StkConPool stkPool, TLEasy tleasyInstance) {
+        this(stkConnection, stkPool, tleasyInstance::setStatus);
+    }
+
+    /**
+     * Constructs an AccessReportGenerator that reports its progress to the provided listener.
+     * @param stkConnection The active connection to STK, used to look up the scenario's facilities.
+     * @param stkPool The sessions the satellite/facility pairs are fanned out across.
+     * @param statusListener Receives a status message as each stage of the report starts.
+     */
+    public AccessReportGenerator(StkCon stkConnection, StkConPool stkPool, Consumer<String> statusListener) {
         this.stkConnection = stkConnection;
-        this.tleasyInstance = tleasyInstance;
+        this.stkPool = stkPool;
+        this.statusListener = statusListener;
     }
 
     /**
      * Computes access between all loaded satellites and existing facilities, then generates a CSV report.
      * @param scenarioName The name of the target scenario.
-     * @param satelliteNames A list of satellite names to calculate access for.
-     * @param sanitizedTleFile The TLE file, used to check epoch dates for labeling.
+     * @param records The loaded satellites to calculate access for, whose epochs are used for labeling.
+     * @return An AccessReportResult object containing the CSV data and filtered access count.
+     */
+    public AccessReportResult generateAccessReportCsv(String scenarioName, List<TleRecord> records) throws IOException {
+        return generateAccessReportCsv(ScenarioPaths.of(scenarioName), records);
+    }
+
+    /**
+     * Computes access between all loaded satellites and existing facilities, naming them with the run's paths, then
+     * generates a CSV report.
+     * @param paths The paths of the target scenario's objects, shared with the rest of the run.
+     * @param records The loaded satellites to calculate access for, whose epochs are used for labeling.
      * @return An AccessReportResult object containing the CSV data and filtered access count.
      */
-    public AccessReportResult generateAccessReportCsv(String scenarioName, List<String> satelliteNames, File sanitizedTleFile) throws IOException {
-        tleasyInstance.setStatus("Calculating access to ground facilities...");
+    public AccessReportResult generateAccessReportCsv(ScenarioPaths paths, List<TleRecord> records)
+            throws IOException {
+        statusListener.accept("Calculating access to ground facilities...");
         String facilityListStr = stkConnection.sendConCommand("AllInstanceNames / Facility");
         if (facilityListStr.trim().isEmpty() || facilityListStr.contains("E_CommandFailed")) {
             return null; // No facilities to check against or command failed
@@ -77,28 +114,12 @@ public class AccessReportGenerator {
         int filteredAccessCount = 0;
         Map<String, String> tleStatusMap = new HashMap<>();
 
-        // If labeling is on, pre-read the TLE file to build the status map
-        if (labelOldTlesEnabled) {
-            tleasyInstance.setStatus("Checking TLE dates...");
-            try (BufferedReader reader = new BufferedReader(new FileReader(sanitizedTleFile))) {
-                String nameLine, tleLine1, tleLine2;
-                while ((nameLine = reader.readLine()) != null) {
-                    tleLine1 = reader.readLine();
-                    tleLine2 = reader.readLine();
-
-                    if (tleLine1 == null || tleLine2 == null) {
-                        break; // End of file
-                    }
-
-                    String sanitizedName = nameLine.trim().replace(" ", "_").replace("[", "").replace("]", "");
-                    LocalDateTime tleEpoch = TleUtils.parseTleEpoch(tleLine1);
-
-                    if (tleEpoch.isBefore(julianDateLimit)) {
-                        tleStatusMap.put(sanitizedName, "Old (>24h)");
-                    } else {
-                        tleStatusMap.put(sanitizedName, "Current");
-                    }
-                }
+        List<String> satelliteNames = new ArrayList<>(records.size());
+        for (TleRecord record : records) {
+            satelliteNames.add(record.getName());
+            // If labeling is on, label each satellite from the epoch parsed when the TLE file was written
+            if (labelOldTlesEnabled && record.getEpoch() != null) {
+                tleStatusMap.put(record.getName(), record.isOlderThan(julianDateLimit) ? "Old (>24h)" : "Current");
             }
         }
 
@@ -109,93 +130,151 @@ public class AccessReportGenerator {
             csvData.append("\n");
         }
 
-        DateTimeFormatter localDateTimeFormatter = DateTimeFormatter.ofPattern("d MMM yyyy HH:mm:ss");
-        DateTimeFormatter stkDateTimeParser = new DateTimeFormatterBuilder()
+        ReportContext context = new ReportContext(accessFilterEnabled ? accessTimeLimit : null,
+                labelOldTlesEnabled ? tleStatusMap : null,
+                Configuration.getTimeFilterSeconds() + (Configuration.getTimeFilterMinutes() * 60));
+
+        // Each satellite/facility pair is independent, so they're spread across the pool's sessions; the results come
+        // back in pair order, so the report reads the same no matter how many sessions computed it
+        List<AccessRows> pairs = stkPool.run(satelliteNames.size() * facilityNames.size(), (session, index) -> {
+            String satName = satelliteNames.get(index / facilityNames.size());
+            String facilityName = facilityNames.get(index % facilityNames.size());
+            ConnectCommand.Token fromObjectPath = paths.facility(facilityName);
+            ConnectCommand.Token toObjectPath = paths.satellite(satName);
+
+            session.sendConCommand(ConnectCommand.builder(ConnectCommand.Verb.ACCESS)
+                    .arg(toObjectPath).arg(fromObjectPath).arg(SCENARIO_INTERVAL).build());
+
+            ConnectCommand reportRmCommand = ConnectCommand.builder(ConnectCommand.Verb.REPORT_RM)
+                    .arg(toObjectPath).arg(ACCESS_STYLE).arg(fromObjectPath).arg(ACCESS_TIMES).build();
+            // Stream the report in line by line rather than holding the whole of it in memory
+            AccessRows rows = new AccessRows(context, satName, facilityName);
+            session.sendConCommand(reportRmCommand, rows);
+            return rows;
+        });
+        for (AccessRows rows : pairs) {
+            if (!rows.failed) {
+                csvData.append(rows.csv);
+                filteredAccessCount += rows.filteredAccessCount;
+            }
+        }
+        // Return the new object instead of just the string
+        return new AccessReportResult(csvData.toString(), filteredAccessCount);
+    }
+
+    /**
+     * Settings and formatters shared by every access report of a run.
+     */
+    private static class ReportContext {
+        final LocalDateTime accessTimeLimit;
+        final Map<String, String> tleStatusMap;
+        final double filterDuration;
+        final DateTimeFormatter localDateTimeFormatter = DateTimeFormatter.ofPattern("d MMM yyyy HH:mm:ss");
+        final DateTimeFormatter stkDateTimeParser = new DateTimeFormatterBuilder()
                 .appendPattern("d MMM yyyy HH:mm:ss")
                 .optionalStart()
                 .appendPattern(".SSS")
                 .optionalEnd()
                 .toFormatter(Locale.ENGLISH);
 
-        for (String satName : satelliteNames) {
-            for (String facilityName : facilityNames) {
-                String fromObjectPath = String.format("/Scenario/%s/Facility/%s", scenarioName, facilityName);
-                String toObjectPath = String.format("/Scenario/%s/Satellite/%s", scenarioName, satName);
-
-                String accessCommand = String.format("Access %s %s TimePeriod UseScenarioInterval", toObjectPath, fromObjectPath);
-                stkConnection.sendConCommand(accessCommand);
-
-                String reportRmCommand = String.format("Report_RM %s Style \"Access\" AccessObject %s TimePeriod UseAccessTimes",
-                        toObjectPath, fromObjectPath);
-                String reportData = stkConnection.sendConCommand(reportRmCommand);
-
-                if (reportData != null && !reportData.trim().isEmpty() && !reportData.contains("E_CommandFailed")) {
-                    String[] reportLines = reportData.split("\\r?\\n");
-                    for (int j = 1; j < reportLines.length; j++) {
-                        String dataLine = reportLines[j].trim();
-                        if (dataLine.isEmpty()) {
-                            continue;
-                        }
-
-                        String processedLine = dataLine.replaceAll("\\s{2,}", ",");
-                        // Split the sanitized line by commas
-                        String[] parts = processedLine.split(",");
-
-                        if (parts.length < 4) {
-                            continue; // Skip malformed lines.
-                        }
-
-                        try {
-                            int mins = Configuration.getTimeFilterMinutes();
-                            int secs = Configuration.getTimeFilterSeconds();
-                            double filterDuration = secs + (mins * 60);
-                            double durationInSeconds = Double.parseDouble(parts[3]);
-                            if (durationInSeconds <= filterDuration) continue;
-
-                            // Format seconds into minutes and seconds
-                            String formattedDuration = formatDuration(durationInSeconds);
-
-                            // Convert UTC to local time
-                            String utcStartStr = parts[1];
-                            String utcStopStr = parts[2];
-
-                            LocalDateTime utcStart = LocalDateTime.parse(utcStartStr, stkDateTimeParser);
-                            LocalDateTime utcStop = LocalDateTime.parse(utcStopStr, stkDateTimeParser);
-
-                            ZonedDateTime localStart = utcStart.atZone(ZoneOffset.UTC).withZoneSameInstant(ZoneId.systemDefault());
-                            ZonedDateTime localStop = utcStop.atZone(ZoneOffset.UTC).withZoneSameInstant(ZoneId.systemDefault());
-
-                            String localStartStr = localStart.format(localDateTimeFormatter);
-                            String localStopStr = localStop.format(localDateTimeFormatter);
-
-                            if (accessFilterEnabled && utcStart.isAfter(accessTimeLimit)) {
-                                filteredAccessCount++; // Count it
-                                continue; // Skip this row
-                            }
-
-                            List<String> csvValues = new ArrayList<>(Arrays.asList(
-                                    satName, facilityName, utcStartStr, utcStopStr,
-                                    localStartStr, localStopStr, formattedDuration
-                            ));
-
-                            if (labelOldTlesEnabled) {
-                                String status = tleStatusMap.getOrDefault(satName, "Unknown");
-                                csvValues.add(status);
-                            }
-
-                            String csvLine = String.join(",", csvValues);
-                            csvData.append(csvLine).append("\n");
-
-                        } catch (Exception e) {
-                            System.err.println("Could not parse access report line: " + dataLine);
-                            e.printStackTrace();
-                        }
-                    }
+        /**
+         * @param accessTimeLimit Accesses starting after this are filtered out; null to keep them all
+         * @param tleStatusMap    The TLE status label of each satellite; null when TLEs aren't being labeled
+         * @param filterDuration  Accesses lasting this many seconds or less are filtered out
+         */
+        ReportContext(LocalDateTime accessTimeLimit, Map<String, String> tleStatusMap, double filterDuration) {
+            this.accessTimeLimit = accessTimeLimit;
+            this.tleStatusMap = tleStatusMap;
+            this.filterDuration = filterDuration;
+        }
+    }
+
+    /**
+     * Turns the lines of a single satellite/facility access report into CSV rows as they are read from STK.  The
+     * rows are only added to the full report once the whole access report has been read, as a failed command
+     * discards it entirely.
+     */
+    private class AccessRows implements StkCon.LineListener {
+        private final ReportContext context;
+        private final String satName;
+        private final String facilityName;
+        private final StringBuilder csv = new StringBuilder();
+        private int filteredAccessCount;
+        private boolean failed;
+        private boolean headerSkipped;
+
+        AccessRows(ReportContext context, String satName, String facilityName) {
+            this.context = context;
+            this.satName = satName;
+            this.facilityName = facilityName;
+        }
+
+        @Override
+        public void line(String line) {
+            if (line.contains("E_CommandFailed")) {
+                failed = true;
+            }
+            // The first line of the report is its header
+            if (failed || !headerSkipped) {
+                headerSkipped = true;
+                return;
+            }
+            String dataLine = line.trim();
+            if (dataLine.isEmpty()) {
+                return;
+            }
+
+            String processedLine = dataLine.replaceAll("\\s{2,}", ",");
+            // Split the sanitized line by commas
+            String[] parts = processedLine.split(",");
+
+            if (parts.length < 4) {
+                return; // Skip malformed lines.
+            }
+
+            try {
+                double durationInSeconds = Double.parseDouble(parts[3]);
+                if (durationInSeconds <= context.filterDuration) return;
+
+                // Format seconds into minutes and seconds
+                String formattedDuration = formatDuration(durationInSeconds);
+
+                // Convert UTC to local time
+                String utcStartStr = parts[1];
+                String utcStopStr = parts[2];
+
+                LocalDateTime utcStart = LocalDateTime.parse(utcStartStr, context.stkDateTimeParser);
+                LocalDateTime utcStop = LocalDateTime.parse(utcStopStr, context.stkDateTimeParser);
+
+                ZonedDateTime localStart = utcStart.atZone(ZoneOffset.UTC).withZoneSameInstant(ZoneId.systemDefault());
+                ZonedDateTime localStop = utcStop.atZone(ZoneOffset.UTC).withZoneSameInstant(ZoneId.systemDefault());
+
+                String localStartStr = localStart.format(context.localDateTimeFormatter);
+                String localStopStr = localStop.format(context.localDateTimeFormatter);
+
+                if (context.accessTimeLimit != null && utcStart.isAfter(context.accessTimeLimit)) {
+                    filteredAccessCount++; // Count it
+                    return; // Skip this row
                 }
+
+                List<String> csvValues = new ArrayList<>(Arrays.asList(
+                        satName, facilityName, utcStartStr, utcStopStr,
+                        localStartStr, localStopStr, formattedDuration
+                ));
+
+                if (context.tleStatusMap != null) {
+                    String status = context.tleStatusMap.getOrDefault(satName, "Unknown");
+                    csvValues.add(status);
+                }
+
+                String csvLine = String.join(",", csvValues);
+                csv.append(csvLine).append("\n");
+
+            } catch (Exception e) {
+                System.err.println("Could not parse access report line: " + dataLine);
+                e.printStackTrace();
             }
         }
-        // Return the new object instead of just the string
-        return new AccessReportResult(csvData.toString(), filteredAccessCount);
     }
 
     /**
@@ -0,0 +1,488 @@
+package com.realmone.tleasy.util;
+
+import java.io.EOFException;
+import java.io.IOException;
+import java.net.InetSocketAddress;
+import java.nio.ByteBuffer;
+import java.nio.channels.ClosedChannelException;
+import java.nio.channels.SelectionKey;
+import java.nio.channels.Selector;
+import java.nio.channels.SocketChannel;
+import java.nio.charset.Charset;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Deque;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.StringTokenizer;
+import java.util.concurrent.CompletableFuture;
+import java.util.function.Consumer;
+
+/**
+ * Non-blocking STK Connect client running in Connect's async mode, where everything STK sends is a packet with a
+ * 42 byte header naming its type, the identifier of the message it belongs to and its place among that message's
+ * packets.  A single selector thread does all of the socket I/O: it writes commands as they're queued and reassembles
+ * packets into messages by identifier, even when packets of different messages arrive interleaved.
+ * <p>
+ * {@link #send(String)} can be called from any number of threads and returns straight away with a future for the
+ * command's result, so many commands can be in flight without a thread waiting on each.  STK answers the commands of
+ * a connection in the order they were sent, so each {@code ACK}/{@code NACK} and data message is matched up with the
+ * oldest command still waiting on one.  Messages that don't answer a command, such as animation updates, are handed
+ * to the {@link #setAsyncListener(Consumer) async listener}.
+ * <p>
+ * Futures are completed on the selector thread, so anything slow chained onto them should use one of the
+ * {@code ...Async} variants to run elsewhere.
+ */
+public class AsyncStkCon implements AutoCloseable {
+
+    private static final int HEADER_LENGTH = ConnectCodec.ASYNC_HEADER_LENGTH;
+
+    /**
+     * The width of the type field in an async packet header; longer command names are cut short to fit.
+     */
+    private static final int TYPE_LENGTH = 15;
+
+    private final String host;
+    private final int port;
+    private final Charset charset = Charset.defaultCharset();
+    private final byte[] lineEnd = System.lineSeparator().getBytes(StandardCharsets.US_ASCII);
+    private final Object lock = new Object();
+    private final Deque<Pending> pending = new ArrayDeque<>();
+    private final Deque<ByteBuffer> outgoing = new ArrayDeque<>();
+    private final Map<Integer, Assembly> assemblies = new HashMap<>();
+    private volatile Consumer<AsyncMessage> asyncListener = message -> { };
+    private SocketChannel channel;
+    private Selector selector;
+    private Thread selectorThread;
+    private ByteBuffer in = ByteBuffer.allocate(64 * 1024);
+    private IOException failure;
+
+    /**
+     * @param host The machine STK is running on
+     * @param port The port STK is listening for Connect sessions on
+     */
+    public AsyncStkCon(String host, int port) {
+        this.host = host;
+        this.port = port;
+    }
+
+    /**
+     * Connects to STK, turns on {@code ACK}s, errors and async mode, and starts the selector thread.
+     *
+     * @throws IOException If STK can't be reached or doesn't accept the setup commands
+     */
+    public void connect() throws IOException {
+        synchronized (lock) {
+            if (channel != null) {
+                return;
+            }
+        }
+        SocketChannel socket = SocketChannel.open(new InetSocketAddress(host, port));
+        try {
+            socket.socket().setTcpNoDelay(true);
+            // Connect starts out synchronous, so set the session up before switching to non-blocking I/O
+            handshake(socket, "ConControl / AckOn");
+            handshake(socket, "ConControl / ErrorOn VerboseOff");
+            handshake(socket, "ConControl / AsyncOn");
+            socket.configureBlocking(false);
+            Selector sel = Selector.open();
+            socket.register(sel, SelectionKey.OP_READ);
+            synchronized (lock) {
+                channel = socket;
+                selector = sel;
+                failure = null;
+            }
+        } catch (IOException e) {
+            socket.close();
+            throw e;
+        }
+        selectorThread = new Thread(this::run, "stk-connect-" + host + ":" + port);
+        selectorThread.setDaemon(true);
+        selectorThread.start();
+    }
+
+    /**
+     * Queues a command to be sent to STK.
+     *
+     * @param command The Connect command
+     * @return A future for the command's result: whether STK ACKed it and any data it returned.  A blank command is
+     * never sent and completes straight away without an ACK.  The future fails if the connection is lost before the
+     * command is answered
+     */
+    public CompletableFuture<StkCon.ConResult> send(String command) {
+        CompletableFuture<StkCon.ConResult> future = new CompletableFuture<>();
+        StringTokenizer st = new StringTokenizer(command);
+        if (!st.hasMoreTokens()) {
+            future.complete(new StkCon.ConResult(command, false, ""));
+            return future;
+        }
+        String cmd = st.nextToken();
+        if (cmd.equalsIgnoreCase("ConControl")) {
+            String upper = command.toUpperCase();
+            if (upper.contains("ACKOFF") || upper.contains("ASYNCOFF")) {
+                // Responses could no longer be matched up with their commands
+                future.completeExceptionally(new IllegalArgumentException(
+                        "ACKs and async mode must stay on for an async Connect session: " + command));
+                return future;
+            }
+        }
+        ByteBuffer bytes = encode(command);
+        synchronized (lock) {
+            if (channel == null || failure != null) {
+                future.completeExceptionally(failure != null ? failure
+                        : new ClosedChannelException());
+                return future;
+            }
+            // The command goes into both queues together, so responses line up with the order commands are written
+            pending.add(new Pending(command, cmd, StkCon.getReturnDataFormat(cmd), future));
+            outgoing.add(bytes);
+        }
+        selector.wakeup();
+        return future;
+    }
+
+    /**
+     * @param listener Receives every message that isn't the answer to a command, on the selector thread
+     */
+    public void setAsyncListener(Consumer<AsyncMessage> listener) {
+        this.asyncListener = listener == null ? message -> { } : listener;
+    }
+
+    /**
+     * @return The number of commands sent or queued that haven't been answered yet
+     */
+    public int getOutstanding() {
+        synchronized (lock) {
+            return pending.size();
+        }
+    }
+
+    /**
+     * Disconnects from STK, failing any commands that haven't been answered.
+     */
+    @Override
+    public void close() {
+        Thread thread;
+        synchronized (lock) {
+            if (channel == null) {
+                return;
+            }
+            outgoing.add(encode("ConControl / disconnect"));
+            thread = selectorThread;
+        }
+        // Let the selector thread send the disconnect, then shut the connection down
+        fail(new ClosedChannelException(), true);
+        selector.wakeup();
+        try {
+            thread.join(1000);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+
+    private void run() {
+        try {
+            while (true) {
+                SelectionKey key = channel.keyFor(selector);
+                synchronized (lock) {
+                    if (failure != null && outgoing.isEmpty()) {
+                        break;
+                    }
+                    key.interestOps(outgoing.isEmpty() ? SelectionKey.OP_READ
+                            : SelectionKey.OP_READ | SelectionKey.OP_WRITE);
+                }
+                selector.select();
+                selector.selectedKeys().clear();
+                if (key.isValid() && key.isWritable()) {
+                    write();
+                }
+                if (key.isValid() && key.isReadable()) {
+                    read();
+                }
+            }
+        } catch (IOException e) {
+            fail(e, false);
+        } catch (RuntimeException e) {
+            fail(new IOException("STK Connect session failed", e), false);
+        } finally {
+            try {
+                channel.close();
+                selector.close();
+            } catch (IOException e) {
+                // Closing anyway
+            }
+        }
+    }
+
+    private void write() throws IOException {
+        synchronized (lock) {
+            while (!outgoing.isEmpty()) {
+                ByteBuffer next = outgoing.peek();
+                channel.write(next);
+                if (next.hasRemaining()) {
+                    return; // The socket buffer is full, carry on when it's writable again
+                }
+                outgoing.poll();
+            }
+        }
+    }
+
+    private void read() throws IOException {
+        if (channel.read(in) < 0) {
+            throw new EOFException("STK closed the connection");
+        }
+        in.flip();
+        while (in.remaining() >= HEADER_LENGTH) {
+            int start = in.position();
+            if (in.get(start) != 'A' || in.get(start + 1) != 'G' || in.get(start + 2) != 'I') {
+                throw new IOException("Lost sync with STK: async packet header expected");
+            }
+            int dataLength = number(start + 38, 4);
+            if (in.remaining() < HEADER_LENGTH + dataLength) {
+                break;
+            }
+            int typeLength = number(start + 7, 2);
+            String type = ascii(start + 9, Math.min(typeLength, TYPE_LENGTH));
+            int ident = number(start + 24, 6);
+            int totalPackets = number(start + 30, 4);
+            int packetNumber = number(start + 34, 4);
+            byte[] data = new byte[dataLength];
+            in.position(start + HEADER_LENGTH);
+            in.get(data);
+            packet(type, ident, totalPackets, packetNumber, data);
+        }
+        in.compact();
+        if (!in.hasRemaining()) {
+            // A packet bigger than the buffer, make room for the rest of it
+            ByteBuffer grown = ByteBuffer.allocate(in.capacity() * 2);
+            in.flip();
+            grown.put(in);
+            in = grown;
+        }
+    }
+
+    /**
+     * Collects one packet of a message, dispatching the message once all of its packets have arrived.
+     */
+    private void packet(String type, int ident, int totalPackets, int packetNumber, byte[] data) {
+        if (totalPackets <= 1) {
+            dispatch(new AsyncMessage(type, ident, new String(data, charset)));
+            return;
+        }
+        Assembly assembly = assemblies.computeIfAbsent(ident, id -> new Assembly(totalPackets));
+        if (packetNumber >= 1 && packetNumber <= totalPackets && assembly.packets[packetNumber - 1] == null) {
+            assembly.packets[packetNumber - 1] = data;
+            assembly.received++;
+            assembly.length += data.length;
+        }
+        if (assembly.received == totalPackets) {
+            assemblies.remove(ident);
+            ByteBuffer message = ByteBuffer.allocate(assembly.length);
+            for (byte[] part : assembly.packets) {
+                message.put(part);
+            }
+            dispatch(new AsyncMessage(type, ident, new String(message.array(), charset)));
+        }
+    }
+
+    /**
+     * Matches a complete message up with the command it answers.
+     */
+    private void dispatch(AsyncMessage message) {
+        Pending head;
+        synchronized (lock) {
+            head = pending.peek();
+        }
+        String type = message.getType();
+        if (head != null && !head.acked && (type.equals("ACK") || type.equals("NACK"))) {
+            head.acked = true;
+            head.ack = type.equals("ACK");
+            if (!head.ack || head.format < 0) {
+                complete(head);
+            }
+        } else if (head != null && head.acked && type.equalsIgnoreCase(head.type)) {
+            if (head.format == 0) {
+                head.data.append(message.getData());
+                complete(head);
+            } else if (head.remaining < 0) {
+                // The first message of a multiple message response holds the number of messages that follow
+                head.remaining = Integer.parseInt(message.getData().trim());
+                if (head.remaining == 0) {
+                    complete(head);
+                }
+            } else {
+                head.data.append(message.getData()).append('\n');
+                if (--head.remaining == 0) {
+                    complete(head);
+                }
+            }
+        } else {
+            asyncListener.accept(message);
+        }
+    }
+
+    private void complete(Pending head) {
+        synchronized (lock) {
+            pending.poll();
+        }
+        head.future.complete(new StkCon.ConResult(head.command, head.ack, head.data.toString()));
+    }
+
+    /**
+     * Fails every unanswered command.  Unless the disconnect is still to be sent, the selector thread stops.
+     */
+    private void fail(IOException e, boolean flushFirst) {
+        List<Pending> failed;
+        synchronized (lock) {
+            if (failure == null) {
+                failure = e;
+            }
+            if (!flushFirst) {
+                outgoing.clear();
+            }
+            failed = new ArrayList<>(pending);
+            pending.clear();
+        }
+        for (Pending p : failed) {
+            p.future.completeExceptionally(e);
+        }
+    }
+
+    private ByteBuffer encode(String command) {
+        byte[] text = command.trim().getBytes(charset);
+        ByteBuffer bytes = ByteBuffer.allocate(text.length + lineEnd.length);
+        bytes.put(text).put(lineEnd).flip();
+        return bytes;
+    }
+
+    private int number(int offset, int length) throws IOException {
+        int value = 0;
+        for (int i = offset; i < offset + length; i++) {
+            byte b = in.get(i);
+            if (b == ' ') {
+                continue;
+            }
+            if (b < '0' || b > '9') {
+                throw new IOException("Invalid number in async packet header: " + ascii(offset, length));
+            }
+            value = value * 10 + (b - '0');
+        }
+        return value;
+    }
+
+    private String ascii(int offset, int length) {
+        byte[] bytes = new byte[length];
+        for (int i = 0; i < length; i++) {
+            bytes[i] = in.get(offset + i);
+        }
+        return new String(bytes, StandardCharsets.US_ASCII).trim();
+    }
+
+    /**
+     * Sends a setup command over the still blocking channel and reads its acknowledgement, which may come back in
+     * either the synchronous or, for the command turning async mode on, the async format.
+     */
+    private static void handshake(SocketChannel socket, String command) throws IOException {
+        ByteBuffer out = ByteBuffer.wrap((command + System.lineSeparator()).getBytes(StandardCharsets.US_ASCII));
+        while (out.hasRemaining()) {
+            socket.write(out);
+        }
+        ByteBuffer ack = readFully(socket, 3);
+        String start = new String(ack.array(), StandardCharsets.US_ASCII);
+        if (start.equals("ACK")) {
+            return;
+        }
+        if (start.equals("AGI")) {
+            ByteBuffer header = readFully(socket, HEADER_LENGTH - 3);
+            String rest = new String(header.array(), StandardCharsets.US_ASCII);
+            int dataLength = Integer.parseInt(rest.substring(35, 39).trim());
+            readFully(socket, dataLength);
+            if (rest.substring(6, 21).trim().equals("ACK")) {
+                return;
+            }
+        }
+        throw new IOException("STK did not accept " + command);
+    }
+
+    private static ByteBuffer readFully(SocketChannel socket, int length) throws IOException {
+        ByteBuffer buffer = ByteBuffer.allocate(length);
+        while (buffer.hasRemaining()) {
+            if (socket.read(buffer) < 0) {
+                throw new EOFException("STK closed the connection");
+            }
+        }
+        return buffer;
+    }
+
+    /**
+     * A complete message received from STK in async mode.
+     */
+    public static class AsyncMessage {
+        private final String type;
+        private final int ident;
+        private final String data;
+
+        public AsyncMessage(String type, int ident, String data) {
+            this.type = type;
+            this.ident = ident;
+            this.data = data;
+        }
+
+        /**
+         * @return The message type, e.g. {@code ACK} or the name of the command whose data it holds
+         */
+        public String getType() {
+            return type;
+        }
+
+        /**
+         * @return The identifier all of the message's packets were sent with
+         */
+        public int getIdent() {
+            return ident;
+        }
+
+        /**
+         * @return The text of the message
+         */
+        public String getData() {
+            return data;
+        }
+    }
+
+    /**
+     * A command sent to STK that is still waiting on some of its response.
+     */
+    private static class Pending {
+        final String command;
+        final String type;
+        final int format;
+        final CompletableFuture<StkCon.ConResult> future;
+        final StringBuilder data = new StringBuilder();
+        boolean acked;
+        boolean ack;
+        int remaining = -1;
+
+        Pending(String command, String cmd, int format, CompletableFuture<StkCon.ConResult> future) {
+            this.command = command;
+            this.type = cmd.length() > TYPE_LENGTH ? cmd.substring(0, TYPE_LENGTH) : cmd;
+            this.format = format;
+            this.future = future;
+        }
+    }
+
+    /**
+     * The packets of a multiple packet message received so far.
+     */
+    private static class Assembly {
+        final byte[][] packets;
+        int received;
+        int length;
+
+        Assembly(int totalPackets) {
+            this.packets = new byte[totalPackets][];
+        }
+    }
+}
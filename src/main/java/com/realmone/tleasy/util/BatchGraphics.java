@@ -0,0 +1,93 @@
+package com.realmone.tleasy.util;
+
+import java.io.IOException;
+
+/**
+ * Suspends STK's graphics updates for as long as it's open, so STK doesn't redraw its 2D and 3D windows after every
+ * satellite created, propagated or colored, and redraws them once when closed.  Meant for a try with resources block,
+ * so graphics are turned back on however the block ends.
+ * <p>
+ * If the session it was opened on has been dropped by the time it's closed, as it is when a run is cancelled or STK
+ * stops answering, graphics are turned back on over a short-lived session of their own instead.  Closing never throws,
+ * so it can't hide why the block failed.
+ */
+public final class BatchGraphics implements AutoCloseable {
+
+    static final ConnectCommand ON = ConnectCommand.builder(ConnectCommand.Verb.BATCH_GRAPHICS)
+            .arg("*").arg("On").build();
+    static final ConnectCommand OFF = ConnectCommand.builder(ConnectCommand.Verb.BATCH_GRAPHICS)
+            .arg("*").arg("Off").build();
+
+    /**
+     * How long STK has to answer when graphics are turned back on over a session of their own.
+     */
+    static final long RESTORE_TIMEOUT_MILLIS = 5000;
+
+    private final StkCon stkConnection;
+    private final boolean suspended;
+
+    private BatchGraphics(StkCon stkConnection, boolean suspended) {
+        this.stkConnection = stkConnection;
+        this.suspended = suspended;
+    }
+
+    /**
+     * Suspends STK's graphics updates, if asked to.  STK without graphics to suspend, such as the Connect console,
+     * may refuse the command, in which case nothing is suspended and nothing is restored.
+     *
+     * @param stkConnection The session to send the command over
+     * @param enabled       Whether to suspend graphics at all
+     * @return An open batch to close once the updates are done
+     * @throws IOException If STK can't be reached
+     */
+    public static BatchGraphics suspend(StkCon stkConnection, boolean enabled) throws IOException {
+        if (!enabled) {
+            return new BatchGraphics(stkConnection, false);
+        }
+        stkConnection.sendConCommand(ON);
+        if (!stkConnection.getAckStatus()) {
+            System.out.println("STK refused to suspend graphics updates, leaving them on");
+            return new BatchGraphics(stkConnection, false);
+        }
+        return new BatchGraphics(stkConnection, true);
+    }
+
+    /**
+     * @return Whether graphics updates were suspended, and so are turned back on when closed
+     */
+    public boolean isSuspended() {
+        return suspended;
+    }
+
+    /**
+     * Turns STK's graphics updates back on, if they were suspended.
+     */
+    @Override
+    public void close() {
+        if (!suspended) {
+            return;
+        }
+        try {
+            if (stkConnection.isConnected()) {
+                stkConnection.sendConCommand(OFF);
+            } else {
+                restoreOverNewSession();
+            }
+        } catch (IOException | NumberFormatException e) {
+            System.err.println("Could not turn STK graphics updates back on: " + e.getMessage());
+        }
+    }
+
+    private void restoreOverNewSession() throws IOException {
+        StkCon restore = new StkCon(stkConnection.getConnectionInfo());
+        restore.setCommandTimeout(RESTORE_TIMEOUT_MILLIS);
+        if (restore.connect() != 0) {
+            throw new IOException("STK could not be reached at " + stkConnection.getConnectionInfo());
+        }
+        try {
+            restore.sendConCommand(OFF);
+        } finally {
+            restore.disconnect();
+        }
+    }
+}
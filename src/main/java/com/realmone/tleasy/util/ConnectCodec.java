@@ -0,0 +1,326 @@
+package com.realmone.tleasy.util;
+
+import java.io.EOFException;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.net.SocketTimeoutException;
+import java.nio.ByteBuffer;
+import java.nio.CharBuffer;
+import java.nio.charset.CharacterCodingException;
+import java.nio.charset.Charset;
+import java.nio.charset.CharsetDecoder;
+import java.nio.charset.CharsetEncoder;
+import java.nio.charset.CoderResult;
+import java.nio.charset.CodingErrorAction;
+import java.nio.charset.StandardCharsets;
+
+/**
+ * Byte oriented codec for the STK Connect socket protocol used by {@link StkCon}.  Connect frames everything in bytes:
+ * a 3 byte {@code ACK} or 4 byte {@code NACK}, a 40 byte {@code "<Command> <length>"} header in front of each message,
+ * and a 42 byte header in front of each asynchronous packet.  Lengths are parsed straight out of the header bytes, and
+ * payloads are read into a reusable buffer and only decoded to text when asked for, so a report with non-ASCII text in
+ * it is still read to the exact byte and reading a large report doesn't allocate per message.
+ * <p>
+ * Not thread safe; the codec belongs to a single connection.
+ */
+final class ConnectCodec {
+
+    /**
+     * The length of the header in front of each message.
+     */
+    static final int HEADER_LENGTH = 40;
+
+    /**
+     * The length of the header in front of each asynchronous packet.
+     */
+    static final int ASYNC_HEADER_LENGTH = 42;
+
+    /**
+     * Offsets and lengths of the fields in an asynchronous packet header.
+     */
+    private static final int[] ASYNC_FIELDS = {0, 3, 3, 2, 5, 1, 6, 1, 7, 2, 9, 15, 24, 6, 30, 4, 34, 4, 38, 4};
+
+    /**
+     * Commands end with the platform line separator, as they always have through {@link java.io.PrintWriter}.
+     */
+    private static final byte[] LINE_END = System.lineSeparator().getBytes(StandardCharsets.US_ASCII);
+
+    /**
+     * Decides whether a read that has gone a socket timeout without any data should keep waiting.
+     */
+    interface ReadCheck {
+        /**
+         * @throws IOException To give up on the read
+         */
+        void check() throws IOException;
+    }
+
+    private final InputStream in;
+    private final OutputStream out;
+    private final CharsetEncoder encoder;
+    private final CharsetDecoder decoder;
+    private final byte[] header = new byte[ASYNC_HEADER_LENGTH];
+    private ByteBuffer payload = ByteBuffer.allocate(8 * 1024);
+    private CharBuffer text = CharBuffer.allocate(8 * 1024);
+    private ByteBuffer command = ByteBuffer.allocate(1024);
+    private ReadCheck readCheck;
+
+    /**
+     * @param in      The stream of data from STK; should be buffered
+     * @param out     The stream of data to STK; should be buffered, as commands are only flushed when asked
+     * @param charset The character set commands and payloads are encoded in
+     */
+    ConnectCodec(InputStream in, OutputStream out, Charset charset) {
+        this.in = in;
+        this.out = out;
+        this.encoder = charset.newEncoder()
+                .onMalformedInput(CodingErrorAction.REPLACE)
+                .onUnmappableCharacter(CodingErrorAction.REPLACE);
+        this.decoder = charset.newDecoder()
+                .onMalformedInput(CodingErrorAction.REPLACE)
+                .onUnmappableCharacter(CodingErrorAction.REPLACE);
+    }
+
+    /**
+     * Sets what decides whether to keep waiting when the input stream's socket times out.  Without one, the timeout
+     * ends the read.
+     *
+     * @param readCheck The check to make on each timeout
+     */
+    void setReadCheck(ReadCheck readCheck) {
+        this.readCheck = readCheck;
+    }
+
+    /**
+     * Writes a command followed by a line separator.  Nothing is sent to STK until {@link #flush()} is called.
+     *
+     * @param line The command
+     * @throws IOException If there is an issue writing to STK
+     */
+    void writeCommand(String line) throws IOException {
+        encoder.reset();
+        CharBuffer chars = CharBuffer.wrap(line);
+        command.clear();
+        while (encoder.encode(chars, command, true).isOverflow()) {
+            command = grow(command, command.capacity() * 2);
+        }
+        while (encoder.flush(command).isOverflow()) {
+            command = grow(command, command.capacity() * 2);
+        }
+        out.write(command.array(), 0, command.position());
+        out.write(LINE_END);
+    }
+
+    /**
+     * Writes an already encoded command followed by a line separator.  Nothing is sent to STK until {@link #flush()} is
+     * called.
+     *
+     * @param command The encoded command
+     * @throws IOException If there is an issue writing to STK
+     */
+    void writeCommand(byte[] command) throws IOException {
+        out.write(command);
+        out.write(LINE_END);
+    }
+
+    /**
+     * Sends any commands written so far.
+     *
+     * @throws IOException If there is an issue writing to STK
+     */
+    void flush() throws IOException {
+        out.flush();
+    }
+
+    /**
+     * Reads the acknowledgement of a command.
+     *
+     * @return True for an {@code ACK}, false for a {@code NACK}
+     * @throws IOException If there is an issue reading from STK
+     */
+    boolean readAck() throws IOException {
+        readFully(header, 0, 3);
+        if (header[0] == 'A') {
+            return true;
+        }
+        // NACK is one byte longer than ACK
+        readFully(header, 3, 1);
+        return false;
+    }
+
+    /**
+     * Reads the 40 byte header in front of a message.
+     *
+     * @return The length of the message that follows
+     * @throws IOException           If there is an issue reading from STK
+     * @throws NumberFormatException If the header doesn't hold a length
+     */
+    int readHeader() throws IOException, NumberFormatException {
+        readFully(header, 0, HEADER_LENGTH);
+        // "<Command> <length>", padded out with spaces
+        int i = skipWhitespace(header, 0, HEADER_LENGTH);
+        while (i < HEADER_LENGTH && !isWhitespace(header[i])) {
+            i++;
+        }
+        i = skipWhitespace(header, i, HEADER_LENGTH);
+        return parseInt(header, i, HEADER_LENGTH);
+    }
+
+    /**
+     * Reads the header in front of an asynchronous packet.
+     *
+     * @return The ten fields of the header, in order: sync pattern, header length, header version, header revision,
+     * type length, async type, identifier, total packets, packet number and data length
+     * @throws IOException If there is an issue reading from STK
+     */
+    String[] readAsyncHeader() throws IOException {
+        readFully(header, 0, ASYNC_HEADER_LENGTH);
+        String[] fields = new String[ASYNC_FIELDS.length / 2];
+        for (int i = 0; i < fields.length; i++) {
+            fields[i] = new String(header, ASYNC_FIELDS[i * 2], ASYNC_FIELDS[i * 2 + 1],
+                    StandardCharsets.US_ASCII);
+        }
+        return fields;
+    }
+
+    /**
+     * Reads a message into the codec's reusable buffer without decoding it.
+     *
+     * @param length The length of the message in bytes
+     * @return The message, between the buffer's position and limit; only valid until the next read
+     * @throws IOException If there is an issue reading from STK
+     */
+    ByteBuffer readPayload(int length) throws IOException {
+        if (payload.capacity() < length) {
+            payload = ByteBuffer.allocate(Math.max(length, payload.capacity() * 2));
+        }
+        readFully(payload.array(), 0, length);
+        payload.clear();
+        payload.limit(length);
+        return payload;
+    }
+
+    /**
+     * Reads a message and decodes it to text, appending it to the provided buffer.
+     *
+     * @param length      The length of the message in bytes
+     * @param destination Where to append the text
+     * @throws IOException If there is an issue reading from STK
+     */
+    void readText(int length, StringBuffer destination) throws IOException {
+        CharBuffer chars = decode(readPayload(length));
+        destination.append(chars.array(), 0, chars.limit());
+    }
+
+    /**
+     * Reads a message and decodes it to text.
+     *
+     * @param length The length of the message in bytes
+     * @return The text of the message
+     * @throws IOException If there is an issue reading from STK
+     */
+    String readText(int length) throws IOException {
+        return decode(readPayload(length)).toString();
+    }
+
+    /**
+     * Reads the first message of a multiple message response, which holds the number of messages that follow.
+     *
+     * @param length The length of the message in bytes
+     * @return The number of messages that follow
+     * @throws IOException           If there is an issue reading from STK
+     * @throws NumberFormatException If the message doesn't start with a count
+     */
+    int readCount(int length) throws IOException, NumberFormatException {
+        ByteBuffer message = readPayload(length);
+        byte[] bytes = message.array();
+        int start = skipWhitespace(bytes, 0, length);
+        return parseInt(bytes, start, length);
+    }
+
+    /**
+     * Decodes a message read with {@link #readPayload(int)} into the codec's reusable character buffer.
+     *
+     * @param message The message
+     * @return The text of the message, between the buffer's position (zero) and limit; only valid until the next decode
+     * @throws CharacterCodingException Never, as malformed input is replaced rather than reported
+     */
+    CharBuffer decode(ByteBuffer message) throws CharacterCodingException {
+        int maxChars = (int) Math.ceil(message.remaining() * (double) decoder.maxCharsPerByte());
+        if (text.capacity() < maxChars) {
+            text = CharBuffer.allocate(Math.max(maxChars, text.capacity() * 2));
+        }
+        decoder.reset();
+        text.clear();
+        ByteBuffer bytes = message.duplicate();
+        CoderResult result = decoder.decode(bytes, text, true);
+        if (!result.isUnderflow()) {
+            result.throwException();
+        }
+        decoder.flush(text);
+        text.flip();
+        return text;
+    }
+
+    private void readFully(byte[] buffer, int offset, int length) throws IOException {
+        int read = 0;
+        while (read < length) {
+            int count;
+            try {
+                count = in.read(buffer, offset + read, length - read);
+            } catch (SocketTimeoutException e) {
+                if (readCheck == null) {
+                    throw e;
+                }
+                // Nothing arrived for a while; nothing was lost either, so carry on unless told to stop
+                readCheck.check();
+                continue;
+            }
+            if (count < 0) {
+                throw new EOFException("STK closed the connection");
+            }
+            read += count;
+        }
+    }
+
+    private static int skipWhitespace(byte[] bytes, int from, int limit) {
+        int i = from;
+        while (i < limit && isWhitespace(bytes[i])) {
+            i++;
+        }
+        return i;
+    }
+
+    private static boolean isWhitespace(byte b) {
+        return b == ' ' || b == '\n' || b == '\r' || b == '\t' || b == 0;
+    }
+
+    /**
+     * Parses the unsigned integer starting at the provided offset, up to the next whitespace.
+     */
+    private static int parseInt(byte[] bytes, int from, int limit) throws NumberFormatException {
+        int value = 0;
+        int i = from;
+        while (i < limit && !isWhitespace(bytes[i])) {
+            int digit = bytes[i] - '0';
+            if (digit < 0 || digit > 9 || value > (Integer.MAX_VALUE - digit) / 10) {
+                throw new NumberFormatException("Invalid length in STK Connect header: "
+                        + new String(bytes, from, limit - from, StandardCharsets.US_ASCII).trim());
+            }
+            value = value * 10 + digit;
+            i++;
+        }
+        if (i == from) {
+            throw new NumberFormatException("Missing length in STK Connect header");
+        }
+        return value;
+    }
+
+    private static ByteBuffer grow(ByteBuffer buffer, int capacity) {
+        ByteBuffer grown = ByteBuffer.allocate(capacity);
+        buffer.flip();
+        grown.put(buffer);
+        return grown;
+    }
+}
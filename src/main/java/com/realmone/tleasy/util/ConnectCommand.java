@@ -0,0 +1,224 @@
+package com.realmone.tleasy.util;
+
+import java.nio.charset.Charset;
+import java.util.Arrays;
+
+/**
+ * A Connect command encoded ahead of time, for the bulk paths that send thousands of commands built from the same
+ * pieces.  The command's {@link Verb} carries how STK answers it, looked up once rather than on every send, and the
+ * object paths and fixed arguments going into a command can be pre-encoded {@link Token}s, so building a command is
+ * mostly copying bytes, and sending it through {@link StkCon} writes those bytes straight to the socket buffer.
+ * <p>
+ * Commands are immutable and can be shared between threads.  {@code ConControl} commands can't be built this way, as
+ * {@link StkCon} needs to see them as text to track the ACK and async settings they change.
+ */
+public final class ConnectCommand {
+
+    /**
+     * Commands are encoded in the same character set {@link StkCon} talks to STK in.
+     */
+    static final Charset CHARSET = Charset.defaultCharset();
+
+    private final Verb verb;
+    private final byte[] bytes;
+
+    private ConnectCommand(Verb verb, byte[] bytes) {
+        this.verb = verb;
+        this.bytes = bytes;
+    }
+
+    /**
+     * @param verb The command to build
+     * @return A builder for a command starting with the verb
+     */
+    public static Builder builder(Verb verb) {
+        return new Builder(verb);
+    }
+
+    /**
+     * @return The command's verb
+     */
+    public Verb getVerb() {
+        return verb;
+    }
+
+    /**
+     * @return The encoded command, without a line separator; not to be modified
+     */
+    byte[] getBytes() {
+        return bytes;
+    }
+
+    /**
+     * @return The text of the command, decoded from its bytes as it's only needed for results and messages
+     */
+    @Override
+    public String toString() {
+        return new String(bytes, CHARSET);
+    }
+
+    /**
+     * The name of a Connect command along with how STK answers it.
+     */
+    public static final class Verb {
+
+        public static final Verb NEW = of("New");
+        public static final Verb SET_STATE = of("SetState");
+        public static final Verb GRAPHICS = of("Graphics");
+        public static final Verb ACCESS = of("Access");
+        public static final Verb REPORT_RM = of("Report_RM");
+        public static final Verb ALL_INSTANCE_NAMES = of("AllInstanceNames");
+        public static final Verb CHECK_SCENARIO = of("CheckScenario");
+        public static final Verb UNLOAD = of("Unload");
+        public static final Verb IMPORT_TLE_FILE = of("ImportTLEFile");
+        public static final Verb BATCH_GRAPHICS = of("BatchGraphics");
+        public static final Verb GET_EPOCH = of("GetEpoch");
+
+        private final String name;
+        private final byte[] encoded;
+        private final int returnDataFormat;
+
+        private Verb(String name) {
+            this.name = name;
+            this.encoded = name.getBytes(CHARSET);
+            this.returnDataFormat = StkCon.getReturnDataFormat(name);
+        }
+
+        /**
+         * @param name The name of the command, e.g. {@code SetState}
+         * @return The verb
+         * @throws IllegalArgumentException If the name is blank, holds whitespace or is {@code ConControl}
+         */
+        public static Verb of(String name) {
+            if (name.isEmpty() || name.chars().anyMatch(Character::isWhitespace)) {
+                throw new IllegalArgumentException("Not a Connect command name: \"" + name + "\"");
+            }
+            if (name.equalsIgnoreCase("ConControl")) {
+                throw new IllegalArgumentException("ConControl commands must be sent as text");
+            }
+            return new Verb(name);
+        }
+
+        /**
+         * @return The name of the command
+         */
+        public String getName() {
+            return name;
+        }
+
+        /**
+         * @return -1 if the command returns no data, 0 if it returns a single message and 1 if it returns multiple
+         */
+        int getReturnDataFormat() {
+            return returnDataFormat;
+        }
+
+        @Override
+        public String toString() {
+            return name;
+        }
+    }
+
+    /**
+     * A piece of a command, such as an object path, encoded once so it can go into any number of commands.
+     */
+    public static final class Token {
+        private final String text;
+        private final byte[] encoded;
+
+        private Token(String text) {
+            this.text = text;
+            this.encoded = text.getBytes(CHARSET);
+        }
+
+        /**
+         * @param text The text of the token, which may hold several space separated arguments
+         * @return The token
+         */
+        public static Token of(String text) {
+            return new Token(text);
+        }
+
+        /**
+         * @param text Text to wrap in double quotes, such as a file path that may hold spaces
+         * @return The quoted token
+         */
+        public static Token quoted(String text) {
+            return new Token("\"" + text + "\"");
+        }
+
+        @Override
+        public String toString() {
+            return text;
+        }
+    }
+
+    /**
+     * Builds a command by appending space separated arguments to its verb.
+     */
+    public static final class Builder {
+        private final Verb verb;
+        private byte[] buffer = new byte[128];
+        private int length;
+
+        private Builder(Verb verb) {
+            this.verb = verb;
+            append(verb.encoded);
+        }
+
+        /**
+         * @param token A pre-encoded argument
+         * @return This builder
+         */
+        public Builder arg(Token token) {
+            put((byte) ' ');
+            append(token.encoded);
+            return this;
+        }
+
+        /**
+         * @param arg An argument, encoded as it is appended
+         * @return This builder
+         */
+        public Builder arg(String arg) {
+            put((byte) ' ');
+            int start = length;
+            ensureCapacity(length + arg.length());
+            for (int i = 0; i < arg.length(); i++) {
+                char c = arg.charAt(i);
+                if (c >= 0x80) {
+                    // Default character sets all encode plain ASCII as is, anything else is left to the character set
+                    length = start;
+                    append(arg.getBytes(CHARSET));
+                    return this;
+                }
+                buffer[length++] = (byte) c;
+            }
+            return this;
+        }
+
+        /**
+         * @return The command
+         */
+        public ConnectCommand build() {
+            return new ConnectCommand(verb, Arrays.copyOf(buffer, length));
+        }
+
+        private void put(byte b) {
+            ensureCapacity(length + 1);
+            buffer[length++] = b;
+        }
+
+        private void append(byte[] bytes) {
+            ensureCapacity(length + bytes.length);
+            System.arraycopy(bytes, 0, buffer, length, bytes.length);
+            length += bytes.length;
+        }
+
+        private void ensureCapacity(int capacity) {
+            if (capacity > buffer.length) {
+                buffer = Arrays.copyOf(buffer, Math.max(capacity, buffer.length * 2));
+            }
+        }
+    }
+}
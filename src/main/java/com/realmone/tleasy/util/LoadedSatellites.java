@@ -0,0 +1,85 @@
+package com.realmone.tleasy.util;
+
+import com.realmone.tleasy.tle.TleRecord;
+
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * What {@link SatelliteLoader} has loaded into each scenario: the TLE each satellite was propagated from and the color
+ * it was given.  Kept between runs, so a run against a scenario that is still open only has to send STK what changed.
+ * A scenario's record has to be forgotten whenever the scenario is created or loaded afresh, as it then no longer holds
+ * what was recorded.
+ * <p>
+ * Thread safe.
+ */
+public final class LoadedSatellites {
+
+    private final Map<String, Map<String, Satellite>> scenarios = new ConcurrentHashMap<>();
+
+    /**
+     * Forgets everything recorded for a scenario.
+     *
+     * @param scenarioName The name of the scenario
+     */
+    public void forget(String scenarioName) {
+        scenarios.remove(scenarioName);
+    }
+
+    /**
+     * Forgets everything recorded for every scenario, for when STK may have been restarted since.
+     */
+    public void forgetAll() {
+        scenarios.clear();
+    }
+
+    /**
+     * @param scenarioName The name of the scenario
+     * @return The number of satellites recorded as loaded into the scenario
+     */
+    public int size(String scenarioName) {
+        Map<String, Satellite> satellites = scenarios.get(scenarioName);
+        return satellites == null ? 0 : satellites.size();
+    }
+
+    Satellite get(String scenarioName, String satelliteName) {
+        Map<String, Satellite> satellites = scenarios.get(scenarioName);
+        return satellites == null ? null : satellites.get(satelliteName);
+    }
+
+    void put(String scenarioName, String satelliteName, Satellite satellite) {
+        scenarios.computeIfAbsent(scenarioName, name -> new ConcurrentHashMap<>()).put(satelliteName, satellite);
+    }
+
+    void remove(String scenarioName, String satelliteName) {
+        Map<String, Satellite> satellites = scenarios.get(scenarioName);
+        if (satellites != null) {
+            satellites.remove(satelliteName);
+        }
+    }
+
+    /**
+     * The state a satellite was loaded with.
+     */
+    static final class Satellite {
+        private final TleRecord tle;
+        private final String color;
+
+        /**
+         * @param tle   The TLE the satellite was propagated from
+         * @param color The color the satellite was given, or null if it was left as is
+         */
+        Satellite(TleRecord tle, String color) {
+            this.tle = tle;
+            this.color = color;
+        }
+
+        TleRecord getTle() {
+            return tle;
+        }
+
+        String getColor() {
+            return color;
+        }
+    }
+}
@@ -0,0 +1,501 @@
+package com.realmone.tleasy.util;
+
+import com.realmone.tleasy.tle.TleRecord;
+
+import java.io.File;
+import java.io.IOException;
+import java.time.Duration;
+import java.time.LocalDateTime;
+import java.time.format.DateTimeFormatter;
+import java.time.format.DateTimeFormatterBuilder;
+import java.time.format.DateTimeParseException;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.TimeUnit;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+/**
+ * Loads satellites from a sanitized TLE file into an STK scenario, bringing the scenario in line with the satellites
+ * asked for rather than re-creating every one of them: satellites that aren't in the scenario yet are created, ones
+ * whose TLE or color changed since they were loaded are updated, ones it loaded before that weren't asked for this time
+ * are unloaded, and the rest are left alone.  Whether a satellite's TLE changed is decided by the epoch STK reports for
+ * it, so a scenario that was reverted or edited in STK since it was loaded is brought back in line too.
+ * <p>
+ * In bulk import mode, the satellites whose state needs setting are all created or updated from the TLE file by a
+ * single {@code ImportTLEFile}, leaving only colors, unloads and any satellites the import didn't bring in to be sent
+ * one at a time.  Only satellites the import created, or that STK reports the new epoch for afterwards, count as
+ * imported; any it created under names other than those asked for are unloaded again.  If STK refuses the import,
+ * every satellite is loaded one at a time as usual.
+ */
+public class SatelliteLoader {
+
+    // The fixed parts of the commands sent for every satellite
+    private static final ConnectCommand.Token SATELLITE_CLASS = ConnectCommand.Token.of("/ */Satellite");
+    private static final ConnectCommand.Token SGP4 = ConnectCommand.Token.of("SGP4 UseScenarioInterval 60.0");
+    private static final ConnectCommand.Token TLE_SOURCE = ConnectCommand.Token.of("TLESource Automatic Source File");
+    private static final ConnectCommand.Token SET_COLOR = ConnectCommand.Token.of("SetColor");
+    private static final ConnectCommand.Token ROOT = ConnectCommand.Token.of("/");
+    private static final ConnectCommand.Token IMPORT_OPTIONS = ConnectCommand.Token.of("Merge On AutoPropagate On");
+    private static final ConnectCommand LIST_SATELLITES = ConnectCommand.builder(ConnectCommand.Verb.ALL_INSTANCE_NAMES)
+            .arg("/ Satellite").build();
+    private static final Pattern SATELLITE_PATH = Pattern.compile("/Satellite/([^/\\s]+)");
+    private static final DateTimeFormatter STK_EPOCH = new DateTimeFormatterBuilder()
+            .appendPattern("d MMM yyyy HH:mm:ss")
+            .optionalStart()
+            .appendPattern(".SSS")
+            .optionalEnd()
+            .toFormatter(Locale.ENGLISH);
+    /**
+     * How far apart the epoch STK reports and the TLE's may be and still be the same, as STK rounds the epoch it
+     * reports and the TLE's is parsed to the second.
+     */
+    private static final Duration EPOCH_TOLERANCE = Duration.ofSeconds(1);
+
+    private final StkCon stkConnection;
+    private final LoadedSatellites loadedSatellites;
+    private final boolean bulkImport;
+
+    /**
+     * Constructs a SatelliteLoader that knows nothing of what was loaded before, so a satellite already in the
+     * scenario is only left alone if STK reports the epoch of its TLE for it.
+     * @param stkConnection The active connection to STK.
+     */
+    public SatelliteLoader(StkCon stkConnection) {
+        this(stkConnection, new LoadedSatellites());
+    }
+
+    /**
+     * Constructs a SatelliteLoader.
+     * @param stkConnection The active connection to STK.
+     * @param loadedSatellites What was loaded into each scenario before; updated as satellites are loaded.
+     */
+    public SatelliteLoader(StkCon stkConnection, LoadedSatellites loadedSatellites) {
+        this(stkConnection, loadedSatellites, false);
+    }
+
+    /**
+     * Constructs a SatelliteLoader.
+     * @param stkConnection The active connection to STK.
+     * @param loadedSatellites What was loaded into each scenario before; updated as satellites are loaded.
+     * @param bulkImport Whether to try importing the satellites from the TLE file all at once.
+     */
+    public SatelliteLoader(StkCon stkConnection, LoadedSatellites loadedSatellites, boolean bulkImport) {
+        this.stkConnection = stkConnection;
+        this.loadedSatellites = loadedSatellites;
+        this.bulkImport = bulkImport;
+    }
+
+    /**
+     * Brings the satellites in the specified STK scenario in line with the ones asked for.  The satellites already in
+     * the scenario are listed first, then the commands for every satellite that needs any are pipelined to STK in one
+     * batch rather than waiting on a round trip per command.  A command that depends on one that failed (e.g. setting
+     * the state of a satellite that couldn't be created) simply fails as well, so only the first failure for each
+     * satellite is reported.  The commands are built from paths and arguments encoded once, rather than formatting and
+     * encoding every command from scratch.
+     * @param scenarioName The name of the target scenario.
+     * @param sanitizedTleFile The sanitized TLE file STK propagates the satellites from.
+     * @param records The satellites in the file to load, as parsed when the file was written.
+     * @param satelliteColorMap The color to give each satellite, if any.
+     * @return What was done to the scenario's satellites.
+     * @throws IOException If the connection to STK is lost.
+     */
+    public LoadResult loadAll(String scenarioName, File sanitizedTleFile, List<TleRecord> records,
+                              Map<String, String> satelliteColorMap) throws IOException {
+        return loadAll(ScenarioPaths.of(scenarioName), sanitizedTleFile, records, satelliteColorMap);
+    }
+
+    /**
+     * Brings the satellites in the specified STK scenario in line with the ones asked for, as
+     * {@link #loadAll(String, File, List, Map)} does, naming them with the run's paths.
+     * @param paths The paths of the target scenario's objects, shared with the rest of the run.
+     * @param sanitizedTleFile The sanitized TLE file STK propagates the satellites from.
+     * @param records The satellites in the file to load, as parsed when the file was written.
+     * @param satelliteColorMap The color to give each satellite, if any.
+     * @return What was done to the scenario's satellites.
+     * @throws IOException If the connection to STK is lost.
+     */
+    public LoadResult loadAll(ScenarioPaths paths, File sanitizedTleFile, List<TleRecord> records,
+                              Map<String, String> satelliteColorMap) throws IOException {
+        long start = System.nanoTime();
+        String scenarioName = paths.getScenarioName();
+        ConnectCommand.Token tleFilePath = ConnectCommand.Token.quoted(sanitizedTleFile.getAbsolutePath());
+        // STK loads the first TLE in the file for each name, so that's the one that counts
+        Map<String, TleRecord> tles = new LinkedHashMap<>();
+        for (TleRecord record : records) {
+            tles.putIfAbsent(record.getName(), record);
+        }
+        Set<String> requested = tles.keySet();
+        Set<String> existing = listSatellites();
+        if (existing == null) {
+            System.err.println("Warning: Could not list the satellites in " + scenarioName + ", loading them all");
+            loadedSatellites.forget(scenarioName);
+            existing = new HashSet<>();
+        }
+
+        // Work out which satellites need their state set, to import them all at once if asked to.  What STK holds for
+        // the ones already in the scenario counts, rather than what was last loaded, as the scenario may have been
+        // reverted or edited in STK since
+        Set<String> listedRequested = new LinkedHashSet<>(requested);
+        listedRequested.retainAll(existing);
+        Map<String, LocalDateTime> epochs = readEpochs(paths, listedRequested);
+        Set<String> needState = new LinkedHashSet<>();
+        for (String satName : requested) {
+            LoadedSatellites.Satellite previous = getPrevious(scenarioName, satName, existing);
+            TleRecord tle = tles.get(satName);
+            if (!isSameEpoch(epochs.get(satName), tle)
+                    || (previous != null && !previous.getTle().equals(tle))) {
+                needState.add(satName);
+            }
+        }
+        LoadMethod method = needState.isEmpty() ? LoadMethod.NONE : LoadMethod.PER_SATELLITE;
+        Set<String> imported = Collections.emptySet();
+        if (bulkImport && !needState.isEmpty()) {
+            imported = importTles(paths, tleFilePath, tles, needState, existing);
+            method = imported.size() == needState.size() ? LoadMethod.BULK_IMPORT
+                    : LoadMethod.BULK_IMPORT_WITH_FALLBACK;
+        }
+
+        List<ConnectCommand> commands = new ArrayList<>();
+        // The satellite and warning to report for each command, should it fail
+        List<String> commandSatellites = new ArrayList<>();
+        List<String> commandWarnings = new ArrayList<>();
+        // What each satellite that was sent commands is recorded as once they succeed
+        Map<String, LoadedSatellites.Satellite> loading = new LinkedHashMap<>();
+        int created = 0;
+        int updated = 0;
+        int unchanged = 0;
+        int removed = 0;
+
+        // Unload the satellites TLEasy loaded that are no longer asked for; any others in the scenario, such as ones the
+        // user created or that came with a saved scenario, aren't TLEasy's to remove
+        for (String satName : existing) {
+            if (!requested.contains(satName) && loadedSatellites.get(scenarioName, satName) != null) {
+                loadedSatellites.remove(scenarioName, satName);
+                commands.add(ConnectCommand.builder(ConnectCommand.Verb.UNLOAD)
+                        .arg(ROOT).arg(paths.satellite(satName)).build());
+                commandSatellites.add(satName);
+                commandWarnings.add("Warning: Failed to unload satellite " + satName);
+                removed++;
+            }
+        }
+
+        for (String satName : requested) {
+            boolean exists = existing.contains(satName);
+            LoadedSatellites.Satellite previous = getPrevious(scenarioName, satName, existing);
+            TleRecord tle = tles.get(satName);
+            String color = satelliteColorMap.get(satName);
+            boolean stateChanged = needState.contains(satName);
+            boolean colorChanged = color != null && (previous == null || !color.equals(previous.getColor()));
+            if (!stateChanged && !colorChanged) {
+                if (previous == null) {
+                    // Already propagated from this TLE, so it's TLEasy's from here on
+                    loading.put(satName, new LoadedSatellites.Satellite(tle, null));
+                }
+                unchanged++;
+                continue;
+            }
+            // Not known to be loaded until the commands below succeed
+            loadedSatellites.remove(scenarioName, satName);
+
+            if (!exists && !imported.contains(satName)) {
+                // Create the satellite object
+                commands.add(ConnectCommand.builder(ConnectCommand.Verb.NEW).arg(SATELLITE_CLASS).arg(satName).build());
+                commandSatellites.add(satName);
+                commandWarnings.add("Warning: Failed to create satellite for " + satName);
+            }
+            if (exists) {
+                updated++;
+            } else {
+                created++;
+            }
+
+            // Build the explicit path for this satellite
+            ConnectCommand.Token satPath = paths.satellite(satName);
+
+            // Propagate the satellite's orbit, unless the import already did
+            if (stateChanged && !imported.contains(satName)) {
+                commands.add(ConnectCommand.builder(ConnectCommand.Verb.SET_STATE)
+                        .arg(satPath).arg(SGP4).arg(tle.getNoradId()).arg(TLE_SOURCE).arg(tleFilePath).build());
+                commandSatellites.add(satName);
+                commandWarnings.add("Warning: Failed to set state for " + satName);
+            }
+
+            // Give the satellite the color assigned to it in the map, if that changed
+            if (colorChanged) {
+                commands.add(ConnectCommand.builder(ConnectCommand.Verb.GRAPHICS)
+                        .arg(satPath).arg(SET_COLOR).arg(color).build());
+                commandSatellites.add(satName);
+                commandWarnings.add("Warning: Failed to set color for " + satName);
+            }
+            loading.put(satName, new LoadedSatellites.Satellite(tle,
+                    color != null ? color : (previous != null ? previous.getColor() : null)));
+        }
+
+        Set<String> failedSatellites = new HashSet<>();
+        if (!commands.isEmpty()) {
+            List<StkCon.ConResult> results = stkConnection.sendConCommandBatch(commands);
+            if (results == null) {
+                throw new IOException("Lost the connection to STK while loading satellites.");
+            }
+            for (int i = 0; i < results.size(); i++) {
+                if (!results.get(i).getAckStatus() && failedSatellites.add(commandSatellites.get(i))) {
+                    System.err.println(commandWarnings.get(i));
+                }
+            }
+        }
+        for (Map.Entry<String, LoadedSatellites.Satellite> satellite : loading.entrySet()) {
+            if (!failedSatellites.contains(satellite.getKey())) {
+                loadedSatellites.put(scenarioName, satellite.getKey(), satellite.getValue());
+            }
+        }
+        return new LoadResult(created, updated, unchanged, removed, failedSatellites.size(), method,
+                TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - start));
+    }
+
+    /**
+     * @return What the satellite was last loaded into the scenario with, if it's still there and that's known.
+     */
+    private LoadedSatellites.Satellite getPrevious(String scenarioName, String satName, Set<String> existing) {
+        return existing.contains(satName) ? loadedSatellites.get(scenarioName, satName) : null;
+    }
+
+    /**
+     * Imports every satellite in the TLE file into the scenario with a single command, updating any already there.
+     * Satellites the import created under names other than those in the file, as STK may name them after their NORAD
+     * identifiers, are unloaded again so falling back to loading the rest one at a time doesn't leave duplicates.
+     * @param paths The scenario's paths.
+     * @param tleFilePath The quoted path of the TLE file.
+     * @param tles The TLE loaded for each satellite asked for.
+     * @param satellites The satellites the import is wanted for.
+     * @param existing The satellites in the scenario before the import.
+     * @return The wanted satellites the import created, or that STK reports the epoch of their new TLE for; none if
+     * STK refused it.
+     * @throws IOException If the connection to STK is lost.
+     */
+    private Set<String> importTles(ScenarioPaths paths, ConnectCommand.Token tleFilePath, Map<String, TleRecord> tles,
+                                   Set<String> satellites, Set<String> existing) throws IOException {
+        String answer = stkConnection.sendConCommand(ConnectCommand.builder(ConnectCommand.Verb.IMPORT_TLE_FILE)
+                .arg(paths.scenario()).arg(tleFilePath).arg(IMPORT_OPTIONS).build());
+        if (answer == null) {
+            throw new IOException("Lost the connection to STK while importing satellites.");
+        }
+        if (!stkConnection.getAckStatus()) {
+            System.err.println("Warning: STK refused the bulk TLE import, loading satellites one at a time");
+            return Collections.emptySet();
+        }
+        Set<String> listed = listSatellites();
+        if (listed == null) {
+            System.err.println("Warning: Could not tell which satellites were imported, loading them one at a time");
+            return Collections.emptySet();
+        }
+        Set<String> extras = new LinkedHashSet<>(listed);
+        extras.removeAll(existing);
+        extras.removeAll(tles.keySet());
+        if (!extras.isEmpty()) {
+            System.err.println("Warning: The bulk TLE import created " + extras.size()
+                    + " satellites under other names, unloading them");
+            unload(paths, extras);
+        }
+        Set<String> updated = new LinkedHashSet<>(satellites);
+        updated.retainAll(existing);
+        Map<String, LocalDateTime> epochs = readEpochs(paths, updated);
+        Set<String> imported = new HashSet<>();
+        for (String satName : satellites) {
+            boolean created = !existing.contains(satName) && listed.contains(satName);
+            if (created || isSameEpoch(epochs.get(satName), tles.get(satName))) {
+                imported.add(satName);
+            }
+        }
+        if (imported.size() < satellites.size()) {
+            System.err.println("Warning: The bulk TLE import left out " + (satellites.size() - imported.size())
+                    + " satellites, loading them one at a time");
+        }
+        return imported;
+    }
+
+    /**
+     * Unloads satellites that aren't wanted in the scenario, warning of any that couldn't be.
+     * @throws IOException If the connection to STK is lost.
+     */
+    private void unload(ScenarioPaths paths, Collection<String> satellites) throws IOException {
+        List<String> names = new ArrayList<>(satellites);
+        List<ConnectCommand> commands = new ArrayList<>(names.size());
+        for (String satName : names) {
+            commands.add(ConnectCommand.builder(ConnectCommand.Verb.UNLOAD)
+                    .arg(ROOT).arg(paths.satellite(satName)).build());
+        }
+        List<StkCon.ConResult> results = stkConnection.sendConCommandBatch(commands);
+        if (results == null) {
+            throw new IOException("Lost the connection to STK while unloading satellites.");
+        }
+        for (int i = 0; i < results.size(); i++) {
+            if (!results.get(i).getAckStatus()) {
+                System.err.println("Warning: Failed to unload satellite " + names.get(i));
+            }
+        }
+    }
+
+    /**
+     * Asks STK for the epoch of each satellite's orbit, pipelined in one batch.
+     * @return The epoch of each satellite STK reported a readable one for.
+     * @throws IOException If the connection to STK is lost.
+     */
+    private Map<String, LocalDateTime> readEpochs(ScenarioPaths paths, Collection<String> satellites)
+            throws IOException {
+        Map<String, LocalDateTime> epochs = new HashMap<>();
+        if (satellites.isEmpty()) {
+            return epochs;
+        }
+        List<String> names = new ArrayList<>(satellites);
+        List<ConnectCommand> commands = new ArrayList<>(names.size());
+        for (String satName : names) {
+            commands.add(ConnectCommand.builder(ConnectCommand.Verb.GET_EPOCH).arg(paths.satellite(satName)).build());
+        }
+        List<StkCon.ConResult> results = stkConnection.sendConCommandBatch(commands);
+        if (results == null) {
+            throw new IOException("Lost the connection to STK while reading satellite epochs.");
+        }
+        for (int i = 0; i < results.size(); i++) {
+            StkCon.ConResult result = results.get(i);
+            if (result.getAckStatus()) {
+                try {
+                    epochs.put(names.get(i), LocalDateTime.parse(result.getData().replace("\"", "").trim(), STK_EPOCH));
+                } catch (DateTimeParseException e) {
+                    // Not known, so the satellite's state is set again
+                }
+            }
+        }
+        return epochs;
+    }
+
+    /**
+     * @return Whether STK's epoch for a satellite is that of the TLE; false if either isn't known.
+     */
+    private static boolean isSameEpoch(LocalDateTime stkEpoch, TleRecord tle) {
+        return stkEpoch != null && tle.getEpoch() != null
+                && Duration.between(stkEpoch, tle.getEpoch()).abs().compareTo(EPOCH_TOLERANCE) <= 0;
+    }
+
+    /**
+     * Lists the satellites in the open scenario.
+     * @return The names of the satellites, or null if STK couldn't list them.
+     * @throws IOException If the connection to STK is lost.
+     */
+    private Set<String> listSatellites() throws IOException {
+        String names = stkConnection.sendConCommand(LIST_SATELLITES);
+        if (names == null) {
+            throw new IOException("Lost the connection to STK while listing satellites.");
+        }
+        if (!stkConnection.getAckStatus() || names.contains("E_CommandFailed")) {
+            return null;
+        }
+        Set<String> satellites = new LinkedHashSet<>();
+        Matcher matcher = SATELLITE_PATH.matcher(names);
+        while (matcher.find()) {
+            satellites.add(matcher.group(1));
+        }
+        return satellites;
+    }
+
+    /**
+     * How the satellites that needed their state set were loaded.
+     */
+    public enum LoadMethod {
+        NONE("nothing to load"),
+        PER_SATELLITE("per satellite"),
+        BULK_IMPORT("bulk import"),
+        BULK_IMPORT_WITH_FALLBACK("bulk import with per satellite fallback");
+
+        private final String description;
+
+        LoadMethod(String description) {
+            this.description = description;
+        }
+
+        @Override
+        public String toString() {
+            return description;
+        }
+    }
+
+    /**
+     * How many of the scenario's satellites were created, updated, left alone and unloaded, and how.
+     */
+    public static class LoadResult {
+        private final int created;
+        private final int updated;
+        private final int unchanged;
+        private final int removed;
+        private final int failed;
+        private final LoadMethod method;
+        private final long elapsedMillis;
+
+        public LoadResult(int created, int updated, int unchanged, int removed, int failed, LoadMethod method,
+                          long elapsedMillis) {
+            this.created = created;
+            this.updated = updated;
+            this.unchanged = unchanged;
+            this.removed = removed;
+            this.failed = failed;
+            this.method = method;
+            this.elapsedMillis = elapsedMillis;
+        }
+
+        public int getCreated() {
+            return created;
+        }
+
+        public int getUpdated() {
+            return updated;
+        }
+
+        public int getUnchanged() {
+            return unchanged;
+        }
+
+        public int getRemoved() {
+            return removed;
+        }
+
+        /**
+         * @return The number of satellites any command failed for
+         */
+        public int getFailed() {
+            return failed;
+        }
+
+        public LoadMethod getMethod() {
+            return method;
+        }
+
+        /**
+         * @return How long loading took, from listing the scenario's satellites to the last command's answer
+         */
+        public long getElapsedMillis() {
+            return elapsedMillis;
+        }
+
+        /**
+         * @return Whether any satellite was created or had its state or color changed
+         */
+        public boolean isChanged() {
+            return created > 0 || updated > 0;
+        }
+
+        @Override
+        public String toString() {
+            return String.format("%d created, %d updated, %d unchanged, %d removed (%s, %d ms)", created, updated,
+                    unchanged, removed, method, elapsedMillis);
+        }
+    }
+}
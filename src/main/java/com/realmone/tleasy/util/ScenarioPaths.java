@@ -0,0 +1,63 @@
+package com.realmone.tleasy.util;
+
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * The object paths of a scenario, each encoded once as a {@link ConnectCommand.Token} and shared by every command that
+ * names the object, whichever thread builds it.  Meant to be made for a run and passed to everything in the run that
+ * names the scenario's objects, so the paths go once the run is done rather than piling up for every satellite and
+ * scenario seen.
+ */
+public final class ScenarioPaths {
+
+    private final String scenarioName;
+    private final ConnectCommand.Token scenario;
+    private final Map<String, ConnectCommand.Token> satellites = new ConcurrentHashMap<>();
+    private final Map<String, ConnectCommand.Token> facilities = new ConcurrentHashMap<>();
+
+    private ScenarioPaths(String scenarioName) {
+        this.scenarioName = scenarioName;
+        this.scenario = ConnectCommand.Token.of("/Scenario/" + scenarioName);
+    }
+
+    /**
+     * @param scenarioName The name of the scenario
+     * @return New, empty, paths of the scenario's objects
+     */
+    public static ScenarioPaths of(String scenarioName) {
+        return new ScenarioPaths(scenarioName);
+    }
+
+    /**
+     * @return The name of the scenario
+     */
+    public String getScenarioName() {
+        return scenarioName;
+    }
+
+    /**
+     * @return The scenario's own path, e.g. {@code /Scenario/TLEasy}
+     */
+    public ConnectCommand.Token scenario() {
+        return scenario;
+    }
+
+    /**
+     * @param name The name of a satellite in the scenario
+     * @return The satellite's path, e.g. {@code /Scenario/TLEasy/Satellite/ISS}
+     */
+    public ConnectCommand.Token satellite(String name) {
+        return satellites.computeIfAbsent(name,
+                satellite -> ConnectCommand.Token.of("/Scenario/" + scenarioName + "/Satellite/" + satellite));
+    }
+
+    /**
+     * @param name The name of a facility in the scenario
+     * @return The facility's path, e.g. {@code /Scenario/TLEasy/Facility/Denver}
+     */
+    public ConnectCommand.Token facility(String name) {
+        return facilities.computeIfAbsent(name,
+                facility -> ConnectCommand.Token.of("/Scenario/" + scenarioName + "/Facility/" + facility));
+    }
+}
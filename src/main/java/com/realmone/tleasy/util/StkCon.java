@@ -8,6 +8,8 @@ package com.realmone.tleasy.util;
 
 import java.net.*;
 import java.io.*;
+import java.nio.CharBuffer;
+import java.nio.charset.Charset;
 import java.util.*;
 
 public class StkCon {
@@ -16,100 +18,37 @@ public class StkCon {
     protected Socket         socket         = null;
     protected String         host           = "localhost";
     protected int            port           = 5001;
-    protected PrintWriter    toStk          = null;
-    protected BufferedReader fromStk        = null;
-    protected Hashtable<String, String>      returnDataHash = null;
+    protected OutputStream   toStk          = null;
+    protected InputStream    fromStk        = null;
+    protected ConnectCodec   codec          = null;
+    protected static final Hashtable<String, String> returnDataHash = new Hashtable<String, String>();
     protected StringBuffer   retStringBuffer;
     protected boolean returnedAck;
     protected boolean        ack            = false;
     protected boolean        async          = false;
+    protected int            pipelineDepth  = 64;
+    protected StkMetrics     metrics        = null;
+    protected long           commandTimeout = 0;
+    protected long           deadline       = 0;
+    protected String         awaiting       = null;
+    protected volatile boolean cancelled    = false;
 
+    // how long a read blocks before checking the deadline and cancellation
+    protected static final int READ_POLL_MILLIS = 250;
 
 
 
 
-    //Methods
-
-    /*Name:StkCon
-     *Returns:  None
-     *Arguments: None
-     *Description: Standard constructor, sets up connection to STK on localhost:5001
-     *Modifications: None
-     *Version: 1.1
-     */
-    public StkCon(){
-        host="localhost";
-        port=5001;
-        initVariables();
-    }
-
-
-
-
-
-    /*Name:StkCon
-     *Returns:  None
-     *Arguments: String Host, int Port#
-     *Description: constructor which lets the user create a connection on any
-                    machine and port, but passes in as separate parameters.
-     *Modifications: 1.1  Moved variable initialization outside of the function to
-                        new method "initVariables" to allow for code reuse
-                        among constructors.
-     *Version: 1.0,1.1
-     *
-     */
-    public StkCon(String h, int p) {
-        host = h;
-        port = p;
-        initVariables();
-    }
-
-
-
-
-
-    /*Name:StkCon
-     *Returns:  None
-     *Arguments: String connectionInfo
-     *Description: constructor which lets the user create a connection on any
-                    machine and port. Data is passed in with a string of the
-                    following format: "<machine>:<port>" so that if one were
-                    connecting to port 5001 on a machine named "artemis" the
-                    string would look like: "artemis:5001"
-     *Modifications: None
-     *Version: 1.1
-     */
-    public StkCon(String connectionInfo) {
-        StringTokenizer st=new StringTokenizer(connectionInfo,":");
-        try{
-            host=st.nextToken();
-            port=new Integer(st.nextToken()).intValue();
-        }catch(java.util.NoSuchElementException e){
-            System.err.println("You did something wrong with the formatting, I'm switching back to the defaults");
-            host="localhost";
-            port=5001;
-        }catch(java.lang.NullPointerException e){
-            System.err.println("You did something wrong with the formatting, I'm switching back to the defaults");
-            host="localhost";
-            port=5001;
-        }
-        initVariables();
-    }
-
 
-
-
-
-    /*Name:initVariables
-     *Returns:  None
-     *Arguments: none
-     *Description: A private function used to initialize the
-                    return data structure and the buffers
-     *Modifications: None
-     *Version: 1.1
+    /*Name:returnDataHash
+     *Description: the table of commands that return data, shared by every
+                    connection and by the code that builds or pipelines
+                    commands ahead of sending them
+     *Modifications: 1.4  Moved out of initVariables so the table is built
+                        once rather than for every connection
+     *Version: 1.1,1.4
      */
-    private void initVariables(){
-        retStringBuffer=new StringBuffer();
+    static {
         // list of commands that return data
         // decided to hardcode here because didn't want to worry about
         // permissionto read the file this is stored in (in case this class
@@ -118,8 +57,6 @@ public class StkCon {
         // NOTE:  This list will have to be updated to include new commands.
         //        <CommandName>  <MultipleMessageData?  (0,1)>
 
-        returnDataHash = new Hashtable<String, String>();
-
 		// *****Keep this list in Alphabetical order!*****
 		//  Update files: connect.dat and StkCon.java to match list...
 
@@ -282,7 +219,94 @@ public class StkCon {
 		returnDataHash.put("WINDOW3D_R",      	     "0");
         returnDataHash.put("ZOOM_R",      	 	     "0");
 		// End ReturnsDataList
+    }
+
+
+
+
+
+    //Methods
+
+    /*Name:StkCon
+     *Returns:  None
+     *Arguments: None
+     *Description: Standard constructor, sets up connection to STK on localhost:5001
+     *Modifications: None
+     *Version: 1.1
+     */
+    public StkCon(){
+        host="localhost";
+        port=5001;
+        initVariables();
+    }
+
+
+
+
+
+    /*Name:StkCon
+     *Returns:  None
+     *Arguments: String Host, int Port#
+     *Description: constructor which lets the user create a connection on any
+                    machine and port, but passes in as separate parameters.
+     *Modifications: 1.1  Moved variable initialization outside of the function to
+                        new method "initVariables" to allow for code reuse
+                        among constructors.
+     *Version: 1.0,1.1
+     *
+     */
+    public StkCon(String h, int p) {
+        host = h;
+        port = p;
+        initVariables();
+    }
+
+
+
+
+
+    /*Name:StkCon
+     *Returns:  None
+     *Arguments: String connectionInfo
+     *Description: constructor which lets the user create a connection on any
+                    machine and port. Data is passed in with a string of the
+                    following format: "<machine>:<port>" so that if one were
+                    connecting to port 5001 on a machine named "artemis" the
+                    string would look like: "artemis:5001"
+     *Modifications: None
+     *Version: 1.1
+     */
+    public StkCon(String connectionInfo) {
+        StringTokenizer st=new StringTokenizer(connectionInfo,":");
+        try{
+            host=st.nextToken();
+            port=new Integer(st.nextToken()).intValue();
+        }catch(java.util.NoSuchElementException e){
+            System.err.println("You did something wrong with the formatting, I'm switching back to the defaults");
+            host="localhost";
+            port=5001;
+        }catch(java.lang.NullPointerException e){
+            System.err.println("You did something wrong with the formatting, I'm switching back to the defaults");
+            host="localhost";
+            port=5001;
+        }
+        initVariables();
+    }
+
+
+
 
+
+    /*Name:initVariables
+     *Returns:  None
+     *Arguments: none
+     *Description: A private function used to initialize the
+                    buffers
+     *Modifications: None
+     *Version: 1.1
+     */
+    private void initVariables(){
+        retStringBuffer=new StringBuffer();
         returnedAck=false;
     }
 
@@ -304,19 +328,25 @@ public class StkCon {
     public int connect() throws IOException, NumberFormatException {
         if (socket == null)
         {
+            cancelled = false;
             // open socket, get output/input streams for socket
             try
             {
                 socket = new Socket(host, port);
 				socket.setTcpNoDelay(true);
-                toStk = new PrintWriter(new OutputStreamWriter(socket.getOutputStream()));
-                fromStk = new BufferedReader(new InputStreamReader(socket.getInputStream()));
+                // reads wake up regularly to check the deadline and cancellation
+                socket.setSoTimeout(READ_POLL_MILLIS);
+                toStk = new BufferedOutputStream(socket.getOutputStream(), 8192);
+                fromStk = new BufferedInputStream(socket.getInputStream(), 65536);
+                codec = new ConnectCodec(fromStk, toStk, Charset.defaultCharset());
+                codec.setReadCheck(this::checkRead);
             }
             catch (Exception e)
             {
                 socket = null;
                 toStk = null;
                 fromStk = null;
+                codec = null;
                 System.out.println("Error connecting to " + host + ":" + port + " -> "  + e);
                 return -1;
             }
@@ -336,6 +366,22 @@ public class StkCon {
 
 
 
+    /*Name:isConnected
+     *Returns:  boolean
+     *Arguments: None
+     *Description: returns true if connected to STK, false if never
+                    connected, disconnected, or the connection was dropped
+     *Modifications: None
+     *Version: 1.4
+     */
+    public boolean isConnected(){
+        return socket != null;
+    }
+
+
+
+
+
     /*Name:disconnect
      *Returns:  None
      *Arguments: None
@@ -346,8 +392,12 @@ public class StkCon {
     public void disconnect() {
         if (socket != null)
         {
-            toStk.println("Concontrol / disconnect");
-            toStk.flush();
+            try
+            {
+                codec.writeCommand("Concontrol / disconnect");
+                codec.flush();
+            }
+            catch (IOException ioe) {}
             try
             {
                 toStk.close();
@@ -358,6 +408,7 @@ public class StkCon {
             socket = null;
             toStk = null;
             fromStk = null;
+            codec = null;
         }
     }
 
@@ -414,130 +465,14 @@ public class StkCon {
      */
     public String sendConCommand(String inputCommand) throws IOException, NumberFormatException
     {
-        StringTokenizer st;
-        boolean blankLine;
-        String cmd,cmdData,buffer,command;
-        boolean foundAck,foundAsync;
-
         retStringBuffer.setLength(0);
-        if ((socket != null) && (toStk != null) && (fromStk != null)){
-            st=new StringTokenizer(inputCommand);
-
-            if(st.hasMoreTokens()){
-                cmd=st.nextToken();
-                blankLine=false;
-            }
-            else{
-                cmd=" ";
-                blankLine=true;
-            }
-            cmdData="";
-
-            if(cmd.equals("CONCONTROL")){
-                foundAck = false;
-                foundAsync = false;
-                while(st.hasMoreTokens()){
-                    buffer=st.nextToken();
-                    if(buffer!=null){
-                        cmdData+=buffer+" ";
-                        if(!foundAck){
-                            if(buffer.equalsIgnoreCase("ACKON")){
-                                ack = true;
-                                foundAck = true;
-                            }
-                            else if(buffer.equalsIgnoreCase("ACKOFF")){
-                                ack = false;
-                                foundAck = true;
-                            }
-                        }
-                        if(!foundAsync){
-                            if(buffer.equalsIgnoreCase("ASYNCON")){
-                                async = true;
-                                foundAsync = true;
-                            }
-                            else if(buffer.equalsIgnoreCase("ASYNCOFF")){
-                                async = false;
-                                foundAsync = true;
-                            }
-                        }
-                    }
-                }
-            }
-            else{
-                while(st.hasMoreTokens()){
-                    cmdData+=st.nextToken()+" ";
-                }
-            }
+        if ((socket != null) && (codec != null)){
+            PendingCommand pending = prepareCommand(inputCommand);
             // send command to stk
-            if(!blankLine){
-				if(cmd.equalsIgnoreCase("SetState") && cmdData.contains("TLE"))
-					command = inputCommand;
-            	else
-                	command = cmd+" "+cmdData;
-                toStk.println(command);
-                toStk.flush();
-
-                // read ack/nack message
-                if (ack){
-                    buffer=readAck();
-                    if(buffer!=null){
-                        if(buffer.equalsIgnoreCase("ACK  ")){
-                            returnedAck=true;
-                        }
-                        else{
-                            returnedAck=false;
-                        }
-                    }
-                    else{
-                        returnedAck=false; //want to short circuit if nothing back
-                    }
-                }
-                else{
-                    returnedAck=false;
-                }
-
-                // read data from stk if command returns data
-                // in the case of Ack, must have returned ACK as well
-                String CommandUpcase = cmd.toUpperCase();
-                if (returnDataHash.containsKey(CommandUpcase)){
-                    if ((ack&&returnedAck) ||
-                        (!ack)){
-                        int multi = 0;
-
-                        multi = convertString2Int((String)returnDataHash.get(CommandUpcase));
-
-                        int hdVal = read40ByteHeader();
-
-                        // single message format
-                        if (multi == 0)
-                        {
-                           // retString = retString + readNBytes(hdVal);
-                           retStringBuffer.append(readNBytes(hdVal));
-                        }
-                        else  // multiple message format
-                        {
-                            // get the number of "records" to be returned
-                            String multiHeader = readNBytes(hdVal);
-                            multiHeader = multiHeader.replace('\n', ' ');
-
-                            StringTokenizer multiTok = new StringTokenizer(multiHeader, " ");
-                            int  numRecs = 0;
-                            numRecs = convertString2Int(multiTok.nextToken());
-
-                            // loop and read the "records"
-                            int numBytes = 0;
-                            for (int i=0; i<numRecs; i++)
-                            {
-                                // read in single message header
-                                numBytes = read40ByteHeader();
-
-                               // retString = retString + readNBytes(numBytes);
-                               retStringBuffer.append(readNBytes(numBytes));
-                               retStringBuffer.append('\n');
-                            }
-                        }
-                    }
-                }
+            if(pending.isSendable()){
+                writeCommand(pending);
+                codec.flush();
+                readResponse(pending, null);
             }
 
             return retStringBuffer.toString();
@@ -548,106 +483,674 @@ public class StkCon {
         }
     }
 
-    /*Name:readAck
-     *Returns:  String
-     *Arguments: None
-     *Description: Returns whether STK returned an ACK or a NACK
-     *Modifications: None
-     *Version: 1.0
-     */
-    private String readAck() throws IOException {
-        String sReturnString;
-		String sAck;
-		sAck = readNBytes (3);
-        if (sAck.charAt(0) == 'A')
-        {
-            sReturnString = new String("ACK  ");
-        }
-        else
-        {
-			readNBytes (1);
-			sReturnString = new String("NACK ");
-        }
-
-        return sReturnString;
-    }
-
 
 
 
 
-    /*Name:read40ByteHeader
-     *Returns:  int
-     *Arguments: None
-     *Description: reads the 40 byte header.
-                    returns the integer value after the command.
+    /*Name:sendConCommand
+     *Returns:  boolean
+     *Arguments: String command, LineListener listener
+     *Description: Streaming version of sendConCommand for commands that
+                    return large reports (e.g. Report_RM).  Instead of
+                    collecting every message of the response into one
+                    String, each line of the returned data is handed to the
+                    listener as soon as it is read off the socket, so memory
+                    use doesn't grow with the size of the report.  Lines are
+                    the same ones splitting the String returned by the other
+                    sendConCommand on line breaks would give.
+                    Returns the ACK status of the command (see getAckStatus),
+                    or false without sending anything if not connected.
      *Modifications: None
-     *Version: 1.0
+     *Version: 1.4
      */
-    private int read40ByteHeader() throws IOException, NumberFormatException {
-		String sRawHeader;
-		sRawHeader = readNBytes (40);
-        String sHeader = sRawHeader.replace('\n', ' ');
-        StringTokenizer stok = new StringTokenizer(sHeader, " ");
-        stok.nextToken();
-        int headerVal = 0;
-        try
-        {
-            headerVal = Integer.parseInt(stok.nextToken().trim());
-        }
-        catch (NumberFormatException nfe)
-        {
-            System.out.println("Error parsing header info: " + nfe);
-			throw nfe;
+    public boolean sendConCommand(String inputCommand, LineListener listener) throws IOException, NumberFormatException
+    {
+        returnedAck = false;
+        if ((socket != null) && (codec != null)){
+            PendingCommand pending = prepareCommand(inputCommand);
+            if(pending.isSendable()){
+                writeCommand(pending);
+                codec.flush();
+                readResponse(pending, listener);
+            }
         }
-        return headerVal;
+        return returnedAck;
     }
 
 
 
 
 
-    /*Name:readNBytes
-     *Returns:  int
-     *Arguments: None
-     *Description: reads N bytes from the socket and returns a string
+    /*Name:sendConCommands
+     *Returns:  List of ConResult
+     *Arguments: List of String commands
+     *Description: Pipelined version of sendConCommand.  Writes the commands
+                    back to back without waiting on STK, then drains the
+                    ACK/NACK and any returned data for each command in the
+                    order they were sent, so a bulk load pays for STK's
+                    processing time instead of a socket round trip per
+                    command.  At most "pipelineDepth" commands are left
+                    waiting on a response at once, so neither side can fill
+                    up its socket buffers and stall the other.
+                    Each command gets its own result and ack status; after
+                    the batch, getAckStatus reports the last command's.
+                    Returns null if not connected.
      *Modifications: None
-     *Version: 1.0
+     *Version: 1.4
      */
-    private String readNBytes(int numBytes) throws IOException {
-        char[] czBuffer = new char[numBytes];
-
-        try
-        {
-			int iCurrentBytesRead,
-				iBytesToRead = numBytes,
-				iBufferLocation = 0,
-				iTotalBytesRead = 0;
-
-			while(iTotalBytesRead < numBytes)
-			{
-				iCurrentBytesRead = fromStk.read(	czBuffer,
-													iBufferLocation,
-													iBytesToRead );
-				iTotalBytesRead += iCurrentBytesRead;
-				iBufferLocation += iCurrentBytesRead;
-				iBytesToRead    -= iCurrentBytesRead;
-			}
-        }
-        catch (IOException ioe)
-        {
-            System.out.println("Error reading from Stk socket:  " + ioe);
-			throw ioe;
-        }
-
-        return (new String(czBuffer));
+    public List<ConResult> sendConCommands(List<String> inputCommands) throws IOException, NumberFormatException
+    {
+        return pipeline(inputCommands);
     }
 
 
 
 
 
-    /*Name:getAckStatus
+    /*Name:sendConCommand
+     *Returns:  String
+     *Arguments: ConnectCommand command
+     *Description: Same as sendConCommand for a command built ahead of time
+                    with ConnectCommand.  The command's bytes are written
+                    straight to the socket buffer and how STK answers it is
+                    already known, so nothing is parsed or looked up.
+     *Modifications: None
+     *Version: 1.4
+     */
+    public String sendConCommand(ConnectCommand command) throws IOException, NumberFormatException
+    {
+        retStringBuffer.setLength(0);
+        if ((socket != null) && (codec != null)){
+            PendingCommand pending = prepareCommand(command);
+            writeCommand(pending);
+            codec.flush();
+            readResponse(pending, null);
+            return retStringBuffer.toString();
+        }
+        else
+        {
+            return null;
+        }
+    }
+
+
+
+
+
+    /*Name:sendConCommand
+     *Returns:  boolean
+     *Arguments: ConnectCommand command, LineListener listener
+     *Description: Streaming sendConCommand for a command built ahead of
+                    time with ConnectCommand.  Returns the ACK status of the
+                    command, or false without sending anything if not
+                    connected.
+     *Modifications: None
+     *Version: 1.4
+     */
+    public boolean sendConCommand(ConnectCommand command, LineListener listener) throws IOException, NumberFormatException
+    {
+        returnedAck = false;
+        if ((socket != null) && (codec != null)){
+            PendingCommand pending = prepareCommand(command);
+            writeCommand(pending);
+            codec.flush();
+            readResponse(pending, listener);
+        }
+        return returnedAck;
+    }
+
+
+
+
+
+    /*Name:sendConCommandBatch
+     *Returns:  List of ConResult
+     *Arguments: List of ConnectCommand commands
+     *Description: Pipelined sendConCommands for commands built ahead of
+                    time with ConnectCommand.  Returns null if not
+                    connected.
+     *Modifications: None
+     *Version: 1.4
+     */
+    public List<ConResult> sendConCommandBatch(List<ConnectCommand> commands) throws IOException, NumberFormatException
+    {
+        return pipeline(commands);
+    }
+
+
+
+
+
+    /*Name:pipeline
+     *Returns:  List of ConResult
+     *Arguments: List of String or ConnectCommand commands
+     *Description: Writes the commands back to back, draining responses
+                    so no more than pipelineDepth are waiting at once, and
+                    returns the result of each command in order.
+     *Modifications: None
+     *Version: 1.4
+     */
+    private List<ConResult> pipeline(List<?> inputCommands) throws IOException, NumberFormatException
+    {
+        if ((socket == null) || (codec == null)){
+            return null;
+        }
+        List<ConResult> results = new ArrayList<ConResult>(inputCommands.size());
+        ArrayDeque<PendingCommand> inFlight = new ArrayDeque<PendingCommand>();
+        for (Object inputCommand : inputCommands) {
+            PendingCommand pending = inputCommand instanceof ConnectCommand
+                    ? prepareCommand((ConnectCommand) inputCommand)
+                    : prepareCommand((String) inputCommand);
+            if (pending.isSendable()) {
+                writeCommand(pending);
+            }
+            inFlight.add(pending);
+            if (inFlight.size() >= pipelineDepth) {
+                codec.flush();
+                results.add(readResult(inFlight.remove()));
+            }
+        }
+        codec.flush();
+        while (!inFlight.isEmpty()) {
+            results.add(readResult(inFlight.remove()));
+        }
+        return results;
+    }
+
+
+
+
+
+    /*Name:setPipelineDepth
+     *Returns:  None
+     *Arguments: int depth
+     *Description: sets how many commands sendConCommands may have waiting
+                    on a response at once.  Defaults to 64.
+     *Modifications: None
+     *Version: 1.4
+     */
+    public void setPipelineDepth(int depth) {
+        pipelineDepth = Math.max(1, depth);
+    }
+
+
+
+
+
+    /*Name:setMetrics
+     *Returns:  None
+     *Arguments: StkMetrics metrics
+     *Description: Sets where the latency, byte and NACK counts of each
+                    command's response are recorded, or null to stop
+                    recording.  The same metrics can be shared by several
+                    connections.
+     *Modifications: None
+     *Version: 1.4
+     */
+    public void setMetrics(StkMetrics metrics) {
+        this.metrics = metrics;
+    }
+
+
+
+
+
+    /*Name:getMetrics
+     *Returns:  StkMetrics
+     *Arguments: None
+     *Description: returns where command responses are recorded, or null
+                    if they aren't
+     *Modifications: None
+     *Version: 1.4
+     */
+    public StkMetrics getMetrics() {
+        return metrics;
+    }
+
+
+
+
+
+    /*Name:setCommandTimeout
+     *Returns:  None
+     *Arguments: long millis
+     *Description: Sets how long to wait on the response to each command
+                    before giving up on it with a SocketTimeoutException
+                    and dropping the connection, or 0 to wait for as long
+                    as STK takes.  Checked every READ_POLL_MILLIS.
+     *Modifications: None
+     *Version: 1.4
+     */
+    public void setCommandTimeout(long millis) {
+        commandTimeout = Math.max(0, millis);
+    }
+
+
+
+
+
+    /*Name:getCommandTimeout
+     *Returns:  long
+     *Arguments: None
+     *Description: returns how long to wait on each command's response in
+                    milliseconds, or 0 if there is no limit
+     *Modifications: None
+     *Version: 1.4
+     */
+    public long getCommandTimeout() {
+        return commandTimeout;
+    }
+
+
+
+
+
+    /*Name:cancel
+     *Returns:  None
+     *Arguments: None
+     *Description: Cancels the connection from any thread.  The command
+                    being waited on, or the next one sent, fails within
+                    READ_POLL_MILLIS with an InterruptedIOException and the
+                    connection is dropped.  Connecting again clears the
+                    cancellation.
+     *Modifications: None
+     *Version: 1.4
+     */
+    public void cancel() {
+        cancelled = true;
+    }
+
+
+
+
+
+    /*Name:checkRead
+     *Returns:  None
+     *Arguments: None
+     *Description: Called whenever a read has waited READ_POLL_MILLIS
+                    without data, and before each response is read.  Ends
+                    the read if the connection was cancelled, the reading
+                    thread interrupted or the command's deadline passed.
+     *Modifications: None
+     *Version: 1.4
+     */
+    private void checkRead() throws IOException {
+        if (cancelled) {
+            throw new InterruptedIOException("Cancelled while waiting on STK to answer " + awaiting);
+        }
+        if (Thread.currentThread().isInterrupted()) {
+            throw new InterruptedIOException("Interrupted while waiting on STK to answer " + awaiting);
+        }
+        if (deadline != 0 && System.nanoTime() - deadline >= 0) {
+            throw new SocketTimeoutException("STK did not answer " + awaiting + " within " + commandTimeout + " ms");
+        }
+    }
+
+
+
+
+
+    /*Name:abandon
+     *Returns:  None
+     *Arguments: None
+     *Description: Drops the connection without sending the disconnect
+                    command, once it can't be trusted to be in step with
+                    STK.
+     *Modifications: None
+     *Version: 1.4
+     */
+    private void abandon() {
+        if (socket != null)
+        {
+            System.out.println("Dropping the connection to " + host + ":" + port + " after an unfinished response");
+            try
+            {
+                socket.close();
+            }
+            catch (IOException ioe) {}
+            socket = null;
+            toStk = null;
+            fromStk = null;
+            codec = null;
+        }
+    }
+
+
+
+
+
+    /*Name:prepareCommand
+     *Returns:  PendingCommand
+     *Arguments: String command
+     *Description: Splits a command into its name and data, tracking any
+                    Ack/Async changes it makes, and builds the line to send
+                    to STK.  The line is null for a blank command, which is
+                    never sent.
+     *Modifications: 1.4    Split out of sendConCommand so commands can be
+                            pipelined
+     *Version: 1.4
+     */
+    private PendingCommand prepareCommand(String inputCommand) {
+        StringTokenizer st;
+        String cmd,cmdData,buffer;
+        boolean foundAck,foundAsync;
+
+        PendingCommand pending = new PendingCommand();
+        pending.inputCommand = inputCommand;
+        st=new StringTokenizer(inputCommand);
+
+        if(st.hasMoreTokens()){
+            cmd=st.nextToken();
+        }
+        else{
+            return pending;
+        }
+        cmdData="";
+
+        if(cmd.equals("CONCONTROL")){
+            foundAck = false;
+            foundAsync = false;
+            while(st.hasMoreTokens()){
+                buffer=st.nextToken();
+                if(buffer!=null){
+                    cmdData+=buffer+" ";
+                    if(!foundAck){
+                        if(buffer.equalsIgnoreCase("ACKON")){
+                            ack = true;
+                            foundAck = true;
+                        }
+                        else if(buffer.equalsIgnoreCase("ACKOFF")){
+                            ack = false;
+                            foundAck = true;
+                        }
+                    }
+                    if(!foundAsync){
+                        if(buffer.equalsIgnoreCase("ASYNCON")){
+                            async = true;
+                            foundAsync = true;
+                        }
+                        else if(buffer.equalsIgnoreCase("ASYNCOFF")){
+                            async = false;
+                            foundAsync = true;
+                        }
+                    }
+                }
+            }
+        }
+        else{
+            while(st.hasMoreTokens()){
+                cmdData+=st.nextToken()+" ";
+            }
+        }
+        pending.cmd = cmd;
+        pending.format = getReturnDataFormat(cmd);
+        if(cmd.equalsIgnoreCase("SetState") && cmdData.contains("TLE"))
+            pending.command = inputCommand;
+        else
+            pending.command = cmd+" "+cmdData;
+        // the ack setting in effect when the command went out decides how its response is read
+        pending.ack = ack;
+        return pending;
+    }
+
+
+
+
+
+    /*Name:prepareCommand
+     *Returns:  PendingCommand
+     *Arguments: ConnectCommand command
+     *Description: Wraps a command built ahead of time with ConnectCommand,
+                    which already knows how STK answers it.
+     *Modifications: None
+     *Version: 1.4
+     */
+    private PendingCommand prepareCommand(ConnectCommand command) {
+        PendingCommand pending = new PendingCommand();
+        pending.cmd = command.getVerb().getName();
+        pending.typed = command;
+        pending.format = command.getVerb().getReturnDataFormat();
+        pending.ack = ack;
+        return pending;
+    }
+
+
+
+
+
+    /*Name:writeCommand
+     *Returns:  None
+     *Arguments: PendingCommand
+     *Description: Writes a prepared command to the socket buffer, without
+                    flushing it.
+     *Modifications: None
+     *Version: 1.4
+     */
+    private void writeCommand(PendingCommand pending) throws IOException {
+        if (pending.typed != null) {
+            codec.writeCommand(pending.typed.getBytes());
+        }
+        else {
+            codec.writeCommand(pending.command);
+        }
+    }
+
+
+
+
+
+    /*Name:readResponse
+     *Returns:  None
+     *Arguments: PendingCommand, LineListener
+     *Description: Reads the response to a command that has been sent,
+                    giving up once the command timeout, if any, has passed
+                    or the connection is cancelled.  A response that isn't
+                    read in full leaves the connection out of step with
+                    STK, so the connection is dropped.
+     *Modifications: None
+     *Version: 1.4
+     */
+    private void readResponse(PendingCommand pending, LineListener listener) throws IOException, NumberFormatException {
+        awaiting = pending.cmd;
+        deadline = (commandTimeout > 0) ? System.nanoTime() + commandTimeout * 1000000L : 0;
+        try {
+            checkRead();
+            readResponseData(pending, listener);
+        }
+        catch (IOException e) {
+            abandon();
+            throw e;
+        }
+        finally {
+            deadline = 0;
+            awaiting = null;
+        }
+    }
+
+
+
+
+
+    /*Name:readResponseData
+     *Returns:  None
+     *Arguments: PendingCommand, LineListener
+     *Description: Reads the ACK/NACK and any returned data for a command
+                    that has been sent, storing the ACK status in
+                    returnedAck.  The data is handed to the listener line by
+                    line, or stored in retStringBuffer if there is no
+                    listener.
+     *Modifications: 1.4    Split out of sendConCommand so commands can be
+                            pipelined, and records each response in the
+                            metrics, if any
+     *Version: 1.4
+     */
+    private void readResponseData(PendingCommand pending, LineListener listener) throws IOException, NumberFormatException {
+        String buffer;
+        long start = (metrics != null) ? System.nanoTime() : 0;
+        long bytes = 0;
+
+        // read ack/nack message
+        if (pending.ack){
+            buffer=readAck();
+            if(buffer!=null){
+                if(buffer.equalsIgnoreCase("ACK  ")){
+                    returnedAck=true;
+                }
+                else{
+                    returnedAck=false;
+                }
+                bytes += buffer.trim().length();
+            }
+            else{
+                returnedAck=false; //want to short circuit if nothing back
+            }
+        }
+        else{
+            returnedAck=false;
+        }
+        long acked = (metrics != null) ? System.nanoTime() : 0;
+
+        // read data from stk if command returns data
+        // in the case of Ack, must have returned ACK as well
+        // how the command returns data was looked up when it was prepared
+        if (pending.format >= 0){
+            if ((pending.ack&&returnedAck) ||
+                (!pending.ack)){
+                int multi = pending.format;
+
+                int hdVal = read40ByteHeader();
+                bytes += ConnectCodec.HEADER_LENGTH + hdVal;
+
+                // single message format
+                if (multi == 0)
+                {
+                    readMessage(hdVal, listener);
+                }
+                else  // multiple message format
+                {
+                    // get the number of "records" to be returned
+                    int  numRecs = codec.readCount(hdVal);
+
+                    // loop and read the "records"
+                    int numBytes = 0;
+                    for (int i=0; i<numRecs; i++)
+                    {
+                        // read in single message header
+                        numBytes = read40ByteHeader();
+                        bytes += ConnectCodec.HEADER_LENGTH + numBytes;
+
+                        readMessage(numBytes, listener);
+                        if (listener == null) {
+                            retStringBuffer.append('\n');
+                        }
+                    }
+                }
+            }
+        }
+
+        if (metrics != null){
+            metrics.record(pending.cmd, acked - start, System.nanoTime() - acked, bytes,
+                    pending.ack && !returnedAck);
+        }
+    }
+
+
+
+
+
+    /*Name:readMessage
+     *Returns:  None
+     *Arguments: int numBytes, LineListener listener
+     *Description: Reads a single message of returned data, handing each
+                    of its lines to the listener, or appending it to
+                    retStringBuffer if there is no listener.
+     *Modifications: None
+     *Version: 1.4
+     */
+    private void readMessage(int numBytes, LineListener listener) throws IOException {
+        if (listener == null) {
+            codec.readText(numBytes, retStringBuffer);
+            return;
+        }
+        CharBuffer text = codec.decode(codec.readPayload(numBytes));
+        char[] chars = text.array();
+        int limit = text.limit();
+        int start = 0;
+        for (int i = 0; i < limit; i++) {
+            if (chars[i] == '\n') {
+                int end = (i > start && chars[i - 1] == '\r') ? i - 1 : i;
+                listener.line(new String(chars, start, end - start));
+                start = i + 1;
+            }
+        }
+        if (start < limit) {
+            listener.line(new String(chars, start, limit - start));
+        }
+    }
+
+
+
+
+
+    /*Name:readResult
+     *Returns:  ConResult
+     *Arguments: PendingCommand
+     *Description: Reads the response to a pipelined command into its own
+                    result.  A blank command was never sent, so it has no
+                    response to read.
+     *Modifications: None
+     *Version: 1.4
+     */
+    private ConResult readResult(PendingCommand pending) throws IOException, NumberFormatException {
+        retStringBuffer.setLength(0);
+        if (!pending.isSendable()) {
+            return new ConResult(pending.inputText(), false, "");
+        }
+        readResponse(pending, null);
+        return new ConResult(pending.inputText(), returnedAck, retStringBuffer.toString());
+    }
+
+    /*Name:readAck
+     *Returns:  String
+     *Arguments: None
+     *Description: Returns whether STK returned an ACK or a NACK
+     *Modifications: 1.4    Reads through the byte oriented ConnectCodec
+     *Version: 1.0,1.4
+     */
+    private String readAck() throws IOException {
+        return codec.readAck() ? "ACK  " : "NACK ";
+    }
+
+
+
+
+
+    /*Name:read40ByteHeader
+     *Returns:  int
+     *Arguments: None
+     *Description: reads the 40 byte header.
+                    returns the integer value after the command.
+     *Modifications: 1.4    Parses the length straight out of the header
+                            bytes through ConnectCodec
+     *Version: 1.0,1.4
+     */
+    private int read40ByteHeader() throws IOException, NumberFormatException {
+        try
+        {
+            return codec.readHeader();
+        }
+        catch (NumberFormatException nfe)
+        {
+            System.out.println("Error parsing header info: " + nfe);
+			throw nfe;
+        }
+    }
+
+
+
+
+
+    /*Name:getAckStatus
      *Returns:  boolean
      *Arguments: None
      *Description: returns true if the last command successeded
@@ -661,6 +1164,42 @@ public class StkCon {
     }
 
 
+
+
+
+    /*Name:getReturnDataFormat
+     *Returns:  int
+     *Arguments: String command name
+     *Description: returns how STK answers the named command: -1 if it
+                   returns no data, 0 if it returns a single message and
+                   1 if it returns multiple messages, the first holding
+                   the number of messages that follow
+     *Modifications: None
+     *Version: 1.4
+     */
+    static int getReturnDataFormat(String cmd){
+        String format = returnDataHash.get(cmd.toUpperCase());
+        return(format == null ? -1 : Integer.parseInt(format));
+    }
+
+
+
+
+
+    /*Name:getConnectionInfo
+     *Returns:  String
+     *Arguments: None
+     *Description: returns the machine and port this connects to, in the
+                   "<machine>:<port>" format accepted by the constructor,
+                   so further sessions to the same STK can be opened
+     *Modifications: None
+     *Version: 1.4
+     */
+    public String getConnectionInfo(){
+        return(host + ":" + port);
+    }
+
+
     /*Name:AckOn
      *Returns:  None
      *Arguments: None
@@ -750,7 +1289,7 @@ public class StkCon {
         AsyncHeader = readAsyncHeader();
         NumOfPackets = convertString2Int(AsyncHeader[7]);
         for(int i = 1; i <= NumOfPackets; i++){
-            outputdata = readNBytes(convertString2Int(AsyncHeader[9]));
+            outputdata = codec.readText(convertString2Int(AsyncHeader[9]));
             if (i < convertString2Int(AsyncHeader[8])) {
                 AsyncHeader = readAsyncHeader();
             }
@@ -769,39 +1308,13 @@ public class StkCon {
      *Returns:  String Array
      *Arguments: None
      *Description: reads async message header.
-     *Modifications: None
-     *Version: 1.3
+     *Modifications: 1.4    Reads the whole 42 byte header at once
+     *Version: 1.3,1.4
      */
     private String[] readAsyncHeader() throws IOException {
-		String syncPattern, headerLength, headerVer, headerRev, typeLength, asyncType,
-		    ident, totalPack, packNum, dataLength;
-        String[] outputheaderarray = new String[10];
-        syncPattern = readNBytes(3);
-        headerLength = readNBytes(2);
-        headerVer = readNBytes(1);
-        headerRev = readNBytes(1);
-        typeLength = readNBytes(2);
-        asyncType = readNBytes(15);
-        ident = readNBytes(6);
-        totalPack = readNBytes(4);
-        packNum = readNBytes(4);
-        dataLength = readNBytes(4);
-
-        outputheaderarray[0] = syncPattern;
-        outputheaderarray[1] = headerLength;
-        outputheaderarray[2] = headerVer;
-        outputheaderarray[3] = headerRev;
-        outputheaderarray[4] = typeLength;
-        outputheaderarray[5] = asyncType;
-        outputheaderarray[6] = ident;
-        outputheaderarray[7] = totalPack;
-        outputheaderarray[8] = packNum;
-        outputheaderarray[9] = dataLength;
-//for(int i=0;i<10;i++){
-//  System.out.println(i+": "+outputheaderarray[i]);
-//}
-        return outputheaderarray;
-
+        // sync pattern, header length, header version, header revision, type length,
+        // async type, identifier, total packets, packet number, data length
+        return codec.readAsyncHeader();
     }
 
     /*Name:convertString2Int
@@ -822,4 +1335,70 @@ public class StkCon {
        }
        return z;
     }
+
+
+
+    /*Name:ConResult
+     *Description: The outcome of a single command sent with sendConCommands:
+                    the command as given, whether STK returned an ACK for it
+                    (always false with Ack turned off), and any data it
+                    returned.
+     *Version: 1.4
+     */
+    public static class ConResult {
+        private final String command;
+        private final boolean ackStatus;
+        private final String data;
+
+        public ConResult(String command, boolean ackStatus, String data) {
+            this.command = command;
+            this.ackStatus = ackStatus;
+            this.data = data;
+        }
+
+        public String getCommand() {
+            return command;
+        }
+
+        public boolean getAckStatus() {
+            return ackStatus;
+        }
+
+        public String getData() {
+            return data;
+        }
+    }
+
+    /*Name:LineListener
+     *Description: Receives the lines of data returned by a command sent
+                    with the streaming sendConCommand, in order, as they
+                    are read.
+     *Version: 1.4
+     */
+    public interface LineListener {
+        void line(String line) throws IOException;
+    }
+
+    /*Name:PendingCommand
+     *Description: A command that has been prepared (and possibly sent) but
+                    whose response hasn't been read yet.
+     *Version: 1.4
+     */
+    private static class PendingCommand {
+        String inputCommand;
+        String cmd;
+        String command;
+        ConnectCommand typed;
+        int format = -1;
+        boolean ack;
+
+        boolean isSendable() {
+            return command != null || typed != null;
+        }
+
+        // a command built ahead of time is only decoded if its text is needed
+        String inputText() {
+            return typed != null ? typed.toString() : inputCommand;
+        }
+    }
 }
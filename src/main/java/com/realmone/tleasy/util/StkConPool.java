@@ -0,0 +1,213 @@
+package com.realmone.tleasy.util;
+
+import java.io.IOException;
+import java.io.InterruptedIOException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * A fixed set of connected {@link StkCon} sessions that a list of independent jobs can be fanned out across.  Each
+ * session is used by only one worker thread at a time, as a Connect session answers its commands strictly in order.
+ * The sessions can all be to the same STK instance, which overlaps the round trips of each session, or to several STK
+ * engine processes listening on different ports, as long as each of them has the same scenario loaded.
+ * <p>
+ * Closing the pool disconnects every session it owns.  A pool built around a primary session with
+ * {@link #connect(StkCon, List)} only owns the sessions it opened; the primary stays connected for its owner.
+ */
+public class StkConPool implements AutoCloseable {
+
+    /**
+     * A job run against one of the pool's sessions.
+     *
+     * @param <T> The type of result the job produces
+     */
+    public interface Job<T> {
+        /**
+         * @param session The session to run the job's commands on; only used by this job until it returns
+         * @param index   The index of the job, from 0 up to the number of jobs run
+         * @return The result of the job
+         * @throws IOException If there is an issue talking to STK
+         */
+        T run(StkCon session, int index) throws IOException;
+    }
+
+    /**
+     * How long the workers of a failed run have to give up their sessions once cancelled.
+     */
+    static final long WORKER_STOP_MILLIS = 5000;
+
+    private final List<StkCon> sessions;
+    // How many sessions at the start of the list are only borrowed, and so left connected when the pool is closed
+    private final int borrowed;
+
+    /**
+     * @param sessions The connected sessions making up the pool; the pool takes ownership of them
+     */
+    public StkConPool(List<StkCon> sessions) {
+        this(sessions, 0);
+    }
+
+    private StkConPool(List<StkCon> sessions, int borrowed) {
+        if (sessions.isEmpty()) {
+            throw new IllegalArgumentException("An STK Connect pool needs at least one session");
+        }
+        this.sessions = new ArrayList<>(sessions);
+        this.borrowed = borrowed;
+    }
+
+    /**
+     * Builds a pool around an already connected session, opening more sessions to each of the provided endpoints.  An
+     * endpoint that can't be connected to is left out of the pool, so the pool always has at least the primary session.
+     * Closing the pool disconnects only the sessions it opened.
+     *
+     * @param primary   The already connected session; still owned by the caller
+     * @param endpoints The {@code "<machine>:<port>"} of each extra session to open; may repeat the primary's
+     * @return The pool
+     * @throws IOException If there is an issue setting up a connected session
+     */
+    public static StkConPool connect(StkCon primary, List<String> endpoints) throws IOException {
+        List<StkCon> sessions = new ArrayList<>();
+        sessions.add(primary);
+        for (String endpoint : endpoints) {
+            StkCon session = new StkCon(endpoint);
+            // Everything the pool sends is recorded alongside the primary session's commands
+            session.setMetrics(primary.getMetrics());
+            session.setCommandTimeout(primary.getCommandTimeout());
+            if (session.connect() == 0) {
+                sessions.add(session);
+            } else {
+                System.err.println("Could not open an extra STK Connect session to " + endpoint);
+            }
+        }
+        return new StkConPool(sessions, 1);
+    }
+
+    /**
+     * Builds a pool of {@code size} sessions to the same STK the primary session is connected to.
+     *
+     * @param primary The already connected session
+     * @param size    The total number of sessions wanted, including the primary
+     * @return The pool, which may hold fewer sessions than asked for if STK didn't accept them all
+     * @throws IOException If there is an issue setting up a connected session
+     */
+    public static StkConPool connect(StkCon primary, int size) throws IOException {
+        return connect(primary, Collections.nCopies(Math.max(0, size - 1), primary.getConnectionInfo()));
+    }
+
+    /**
+     * @return The number of sessions in the pool
+     */
+    public int size() {
+        return sessions.size();
+    }
+
+    /**
+     * Runs {@code count} jobs across the pool's sessions.  Each worker takes the next job index as it finishes the last
+     * one, so slow jobs don't hold up the rest, and the results come back in index order no matter which session ran
+     * them or when.  With a single session the jobs are simply run in order on the calling thread.
+     *
+     * @param count The number of jobs to run
+     * @param job   The job to run for each index
+     * @param <T>   The type of result each job produces
+     * @return The result of each job, in index order
+     * @throws IOException If any job fails; the remaining jobs are abandoned, and every session is cancelled and no
+     *                     longer in use by the time this throws
+     */
+    @SuppressWarnings("unchecked")
+    public <T> List<T> run(int count, Job<T> job) throws IOException {
+        Object[] results = new Object[count];
+        int workers = Math.min(sessions.size(), count);
+        if (workers <= 1) {
+            for (int i = 0; i < count; i++) {
+                results[i] = job.run(sessions.get(0), i);
+            }
+            return (List<T>) Arrays.asList(results);
+        }
+
+        AtomicInteger next = new AtomicInteger();
+        ExecutorService executor = Executors.newFixedThreadPool(workers);
+        try {
+            List<Future<Void>> futures = new ArrayList<>(workers);
+            for (int w = 0; w < workers; w++) {
+                StkCon session = sessions.get(w);
+                futures.add(executor.submit(() -> {
+                    int index;
+                    while ((index = next.getAndIncrement()) < count) {
+                        results[index] = job.run(session, index);
+                    }
+                    return null;
+                }));
+            }
+            for (Future<Void> future : futures) {
+                try {
+                    future.get();
+                } catch (ExecutionException e) {
+                    // The other workers are partway through commands on their sessions, the caller's primary among them
+                    abandon(executor, next, count);
+                    Throwable cause = e.getCause();
+                    if (cause instanceof IOException) {
+                        throw (IOException) cause;
+                    } else if (cause instanceof RuntimeException) {
+                        throw (RuntimeException) cause;
+                    }
+                    throw new IOException("STK Connect job failed", cause);
+                }
+            }
+        } catch (InterruptedException e) {
+            // The workers are stuck on their sessions otherwise, until STK answers
+            abandon(executor, next, count);
+            Thread.currentThread().interrupt();
+            throw new InterruptedIOException("Interrupted waiting on STK Connect jobs");
+        } finally {
+            executor.shutdown();
+        }
+        return (List<T>) Arrays.asList(results);
+    }
+
+    /**
+     * Stops the workers of a failed run: no more jobs are handed out, every session is cancelled so the commands under
+     * way give up, and the workers are waited on, so nothing is still using a session once {@link #run} returns.
+     */
+    private void abandon(ExecutorService executor, AtomicInteger next, int count) {
+        next.set(count);
+        cancel();
+        executor.shutdownNow();
+        try {
+            if (!executor.awaitTermination(WORKER_STOP_MILLIS, TimeUnit.MILLISECONDS)) {
+                System.err.println("Warning: STK Connect workers did not stop within " + WORKER_STOP_MILLIS + " ms");
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+
+    /**
+     * Cancels every session in the pool, from any thread.  Jobs fail with an {@link InterruptedIOException} as soon as
+     * their sessions notice, and the sessions are dropped.
+     *
+     * @see StkCon#cancel()
+     */
+    public void cancel() {
+        for (StkCon session : sessions) {
+            session.cancel();
+        }
+    }
+
+    /**
+     * Disconnects every session the pool owns.
+     */
+    @Override
+    public void close() {
+        for (StkCon session : sessions.subList(borrowed, sessions.size())) {
+            session.disconnect();
+        }
+    }
+}
@@ -0,0 +1,215 @@
+package com.realmone.tleasy.util;
+
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicLongArray;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Timings and counts of the Connect commands sent through {@link StkCon}, kept per command verb ({@code New},
+ * {@code SetState}, {@code Access}, {@code Report_RM}, ...).  For each command it records how long STK took to
+ * acknowledge it, how long its data took to read once acknowledged, how many bytes came back and whether it was
+ * NACKed, which tells slow STK propagation or access computation apart from time spent reading and parsing reports.
+ * <p>
+ * Recording is cheap and lock free, so one instance can be shared by every session of a {@link StkConPool}.  Times are
+ * measured from when a session starts reading a command's response, so for pipelined commands they cover the wait on
+ * STK rather than the time the command spent queued behind the ones before it.
+ */
+public final class StkMetrics {
+
+    private final Map<String, VerbStats> verbs = new ConcurrentHashMap<>();
+
+    /**
+     * Records a command whose response has been read.
+     *
+     * @param verb      The command's verb
+     * @param ackNanos  Time spent waiting on the ACK or NACK
+     * @param dataNanos Time spent reading the data the command returned, after its ACK
+     * @param bytes     The number of bytes STK sent back, headers included
+     * @param nack      Whether STK NACKed the command
+     */
+    void record(String verb, long ackNanos, long dataNanos, long bytes, boolean nack) {
+        VerbStats stats = verbs.get(verb);
+        if (stats == null) {
+            stats = verbs.computeIfAbsent(verb, VerbStats::new);
+        }
+        stats.ack.record(ackNanos);
+        stats.data.record(dataNanos);
+        stats.total.record(ackNanos + dataNanos);
+        stats.bytes.add(bytes);
+        if (nack) {
+            stats.nacks.increment();
+        }
+    }
+
+    /**
+     * @param verb The command verb, as it was sent
+     * @return The stats for the verb, or null if no command with it was recorded
+     */
+    public VerbStats getStats(String verb) {
+        return verbs.get(verb);
+    }
+
+    /**
+     * @return A table of the stats for each verb, in verb order, with times in milliseconds
+     */
+    public String summary() {
+        StringBuilder summary = new StringBuilder(String.format(
+                "%-18s %8s %6s %12s %17s %17s %26s%n", "Command", "Count", "NACKs", "Bytes",
+                "Ack p50/p99", "Data p50/p99", "Total p50/p99/max"));
+        for (VerbStats stats : new TreeMap<>(verbs).values()) {
+            summary.append(String.format("%-18s %8d %6d %12d %8.3f/%-8.3f %8.3f/%-8.3f %8.3f/%8.3f/%-8.3f%n",
+                    stats.verb, stats.getCount(), stats.getNackCount(), stats.getBytes(),
+                    millis(stats.ack.getPercentile(50)), millis(stats.ack.getPercentile(99)),
+                    millis(stats.data.getPercentile(50)), millis(stats.data.getPercentile(99)),
+                    millis(stats.total.getPercentile(50)), millis(stats.total.getPercentile(99)),
+                    millis(stats.total.getMax())));
+        }
+        return summary.toString();
+    }
+
+    private static double millis(long nanos) {
+        return nanos / (double) TimeUnit.MILLISECONDS.toNanos(1);
+    }
+
+    /**
+     * The stats recorded for one command verb.
+     */
+    public static final class VerbStats {
+        private final String verb;
+        private final Histogram ack = new Histogram();
+        private final Histogram data = new Histogram();
+        private final Histogram total = new Histogram();
+        private final LongAdder bytes = new LongAdder();
+        private final LongAdder nacks = new LongAdder();
+
+        private VerbStats(String verb) {
+            this.verb = verb;
+        }
+
+        public String getVerb() {
+            return verb;
+        }
+
+        public long getCount() {
+            return total.getCount();
+        }
+
+        public long getNackCount() {
+            return nacks.sum();
+        }
+
+        public long getBytes() {
+            return bytes.sum();
+        }
+
+        /**
+         * @return Time spent waiting on each command's ACK or NACK
+         */
+        public Histogram getAckLatency() {
+            return ack;
+        }
+
+        /**
+         * @return Time spent reading each command's data after its ACK
+         */
+        public Histogram getDataLatency() {
+            return data;
+        }
+
+        /**
+         * @return Time spent on each command's whole response
+         */
+        public Histogram getLatency() {
+            return total;
+        }
+    }
+
+    /**
+     * A latency histogram in nanoseconds with logarithmic buckets, each power of two split into
+     * {@value #SUB_BUCKETS} linear steps, so percentiles are within an eighth of the true value and recording is a
+     * single atomic increment.
+     */
+    public static final class Histogram {
+        private static final int SUB_BUCKET_BITS = 3;
+        private static final int SUB_BUCKETS = 1 << SUB_BUCKET_BITS;
+
+        private final AtomicLongArray counts = new AtomicLongArray((64 - SUB_BUCKET_BITS + 1) * SUB_BUCKETS);
+        private final LongAdder count = new LongAdder();
+        private final AtomicLong max = new AtomicLong();
+
+        private Histogram() {
+        }
+
+        void record(long nanos) {
+            long value = Math.max(0, nanos);
+            counts.incrementAndGet(bucket(value));
+            count.increment();
+            long current;
+            while (value > (current = max.get()) && !max.compareAndSet(current, value)) {
+                // raced with another recording, try again
+            }
+        }
+
+        public long getCount() {
+            return count.sum();
+        }
+
+        /**
+         * @return The longest time recorded, exactly
+         */
+        public long getMax() {
+            return max.get();
+        }
+
+        /**
+         * @param percentile The percentile wanted, from 0 to 100
+         * @return The upper bound of the bucket holding the percentile, capped at the longest time recorded, or 0 if
+         * nothing was recorded
+         */
+        public long getPercentile(double percentile) {
+            long total = 0;
+            long[] snapshot = new long[counts.length()];
+            for (int i = 0; i < snapshot.length; i++) {
+                snapshot[i] = counts.get(i);
+                total += snapshot[i];
+            }
+            if (total == 0) {
+                return 0;
+            }
+            long rank = Math.max(1, (long) Math.ceil(total * percentile / 100.0));
+            long seen = 0;
+            for (int i = 0; i < snapshot.length; i++) {
+                seen += snapshot[i];
+                if (seen >= rank) {
+                    return Math.min(upperBound(i), getMax());
+                }
+            }
+            return getMax();
+        }
+
+        /**
+         * Values below {@value #SUB_BUCKETS} get a bucket each; above that, the bucket is picked by the position of
+         * the value's highest bit and the {@value #SUB_BUCKET_BITS} bits below it.
+         */
+        static int bucket(long value) {
+            if (value < SUB_BUCKETS) {
+                return (int) value;
+            }
+            int shift = 63 - Long.numberOfLeadingZeros(value) - SUB_BUCKET_BITS;
+            return (shift + 1) * SUB_BUCKETS + (int) ((value >>> shift) - SUB_BUCKETS);
+        }
+
+        static long upperBound(int bucket) {
+            if (bucket < SUB_BUCKETS) {
+                return bucket;
+            }
+            int shift = bucket / SUB_BUCKETS - 1;
+            long sub = bucket % SUB_BUCKETS + SUB_BUCKETS;
+            return ((sub + 1) << shift) - 1;
+        }
+    }
+}
@@ -0,0 +1,150 @@
+package com.realmone.tleasy.util;
+
+import java.io.IOException;
+import java.io.InterruptedIOException;
+import java.net.InetSocketAddress;
+import java.net.Socket;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Waits for a starting STK to accept Connect sessions, and hands back the first session it answers.  Rather than
+ * sleeping a fixed time between attempts, it checks that the Connect port accepts TCP connections, backing off
+ * exponentially from a few tens of milliseconds, and only then opens a session and sends a cheap command to confirm
+ * the engine behind the port is ready.  A fast machine is picked up within moments of STK opening its port, while a
+ * slow one is polled no more than about twice a second.
+ * <p>
+ * Waiting can be cancelled from another thread, or by interrupting the waiting thread, and ends between attempts.
+ */
+public class StkReadinessProbe {
+
+    /**
+     * The command sent to confirm STK answers Connect commands, not just TCP connections.
+     */
+    static final ConnectCommand READY_CHECK = ConnectCommand.builder(ConnectCommand.Verb.CHECK_SCENARIO)
+            .arg("/").build();
+
+    static final long INITIAL_BACKOFF_MILLIS = 20;
+    static final long MAX_BACKOFF_MILLIS = 500;
+
+    /**
+     * The longest a single attempt waits on the TCP connection or on STK to answer the ready check.
+     */
+    static final long MAX_ATTEMPT_MILLIS = 5000;
+
+    private final String host;
+    private final int port;
+    private volatile boolean cancelled;
+
+    /**
+     * @param host The machine STK runs on
+     * @param port STK's Connect port
+     */
+    public StkReadinessProbe(String host, int port) {
+        this.host = host;
+        this.port = port;
+    }
+
+    /**
+     * Probes STK until it answers a Connect session or the time runs out.
+     *
+     * @param timeoutMillis How long to wait on STK to become ready
+     * @return A connected session that STK has answered
+     * @throws IOException          If STK isn't ready in time, or an {@link InterruptedIOException} if cancelled
+     * @throws InterruptedException If interrupted while waiting
+     */
+    public StkCon await(long timeoutMillis) throws IOException, InterruptedException {
+        long start = System.nanoTime();
+        long deadline = start + TimeUnit.MILLISECONDS.toNanos(timeoutMillis);
+        long backoff = INITIAL_BACKOFF_MILLIS;
+        int attempts = 0;
+        while (true) {
+            checkCancelled();
+            attempts++;
+            long remaining = TimeUnit.NANOSECONDS.toMillis(deadline - System.nanoTime());
+            if (remaining <= 0) {
+                throw new IOException("Timed out after " + timeoutMillis + " ms and " + attempts
+                        + " attempts waiting for STK to become ready for connection.");
+            }
+            long attemptMillis = Math.max(1, Math.min(remaining, MAX_ATTEMPT_MILLIS));
+            if (isAccepting(attemptMillis)) {
+                StkCon connection = tryConnect(attemptMillis);
+                if (connection != null && (cancelled || Thread.currentThread().isInterrupted())) {
+                    connection.disconnect();
+                    checkCancelled();
+                }
+                if (connection != null) {
+                    System.out.println("STK ready after " + TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - start)
+                            + " ms and " + attempts + " attempts");
+                    return connection;
+                }
+            }
+            long sleep = Math.min(backoff, TimeUnit.NANOSECONDS.toMillis(deadline - System.nanoTime()));
+            if (sleep > 0) {
+                Thread.sleep(sleep);
+            }
+            backoff = Math.min(backoff * 2, MAX_BACKOFF_MILLIS);
+        }
+    }
+
+    /**
+     * Cancels waiting, from any thread.  {@link #await(long)} gives up with an {@link InterruptedIOException} once its
+     * current attempt ends.
+     */
+    public void cancel() {
+        cancelled = true;
+    }
+
+    private void checkCancelled() throws InterruptedIOException, InterruptedException {
+        if (Thread.interrupted()) {
+            throw new InterruptedException("Interrupted waiting for STK to become ready");
+        }
+        if (cancelled) {
+            throw new InterruptedIOException("Cancelled waiting for STK to become ready");
+        }
+    }
+
+    /**
+     * Waits until STK has finished every command already sent over the session.  STK runs a session's commands in
+     * order, so it only answers the ready check once those before it are done.
+     *
+     * @param connection The session to synchronize with
+     * @throws IOException If STK doesn't answer
+     */
+    public static void sync(StkCon connection) throws IOException {
+        connection.sendConCommand(READY_CHECK);
+        if (!connection.getAckStatus()) {
+            throw new IOException("STK refused " + READY_CHECK);
+        }
+    }
+
+    /**
+     * @return Whether the Connect port accepts a TCP connection, which it does before STK answers on it
+     */
+    private boolean isAccepting(long timeoutMillis) {
+        try (Socket socket = new Socket()) {
+            socket.connect(new InetSocketAddress(host, port), (int) timeoutMillis);
+            return true;
+        } catch (IOException e) {
+            return false;
+        }
+    }
+
+    /**
+     * @return A session STK answered the ready check on, or null if it isn't ready yet
+     */
+    private StkCon tryConnect(long timeoutMillis) {
+        StkCon connection = new StkCon(host, port);
+        connection.setCommandTimeout(timeoutMillis);
+        try {
+            if (connection.connect() == 0 && connection.sendConCommand(READY_CHECK) != null
+                    && connection.getAckStatus()) {
+                connection.setCommandTimeout(0);
+                return connection;
+            }
+        } catch (IOException | NumberFormatException e) {
+            // Not ready yet
+        }
+        connection.disconnect();
+        return null;
+    }
+}
@@ -0,0 +1,139 @@
+package com.realmone.tleasy.util;
+
+import java.io.IOException;
+
+/**
+ * Keeps one STK Connect session open between runs when asked to, so a run after the first starts straight away rather
+ * than connecting, repeating the Connect handshake and possibly waiting on STK to start.  A kept session is checked
+ * with a cheap command before it's handed out again, and replaced only if STK no longer answers it.
+ * <p>
+ * Sessions are only handed out one at a time; a session must be released before the next one is acquired.
+ */
+public class StkSessionManager implements AutoCloseable {
+
+    /**
+     * Opens a new connected session when there's no live one to reuse.
+     */
+    public interface Connector {
+        /**
+         * @return A connected session
+         * @throws IOException          If STK can't be connected to
+         * @throws InterruptedException If interrupted while waiting on STK to start
+         */
+        StkCon connect() throws IOException, InterruptedException;
+    }
+
+    /**
+     * The command used to check that a kept session is still answered.
+     */
+    static final String HEALTH_CHECK = "CheckScenario /";
+
+    /**
+     * How long a kept session has to answer the health check.
+     */
+    static final long HEALTH_CHECK_TIMEOUT_MILLIS = 2000;
+
+    private StkCon session;
+    private boolean reused;
+    private boolean keepAlive;
+
+    /**
+     * @param keepAlive Whether to keep sessions open between runs
+     */
+    public StkSessionManager(boolean keepAlive) {
+        this.keepAlive = keepAlive;
+    }
+
+    /**
+     * @param keepAlive Whether to keep sessions open between runs; takes effect when the current session is released
+     */
+    public synchronized void setKeepAlive(boolean keepAlive) {
+        this.keepAlive = keepAlive;
+    }
+
+    /**
+     * Hands out the kept session if STK still answers it, or else a new one from the connector.
+     *
+     * @param connector Opens a new session if needed
+     * @return A connected session
+     * @throws IOException          If a new session is needed and STK can't be connected to
+     * @throws InterruptedException If interrupted while waiting on STK to start
+     */
+    public synchronized StkCon acquire(Connector connector) throws IOException, InterruptedException {
+        if (session != null) {
+            if (isAlive(session)) {
+                System.out.println("Reusing the open STK session");
+                reused = true;
+                return session;
+            }
+            System.out.println("The open STK session stopped answering, reconnecting");
+            session.disconnect();
+            session = null;
+        }
+        reused = false;
+        session = connector.connect();
+        return session;
+    }
+
+    /**
+     * @return Whether the session last handed out was kept open from an earlier run, rather than newly connected to
+     * what may be a restarted STK
+     */
+    public synchronized boolean isReused() {
+        return reused;
+    }
+
+    /**
+     * Ends a run with the session handed out by {@link #acquire(Connector)}, keeping it open for the next run if asked
+     * to and it's still connected, or disconnecting it otherwise.
+     */
+    public synchronized void release() {
+        if (session != null && (!keepAlive || !session.isConnected())) {
+            session.disconnect();
+            session = null;
+        }
+    }
+
+    /**
+     * Disconnects the session handed out, for when a run failed and left it in an unknown state.
+     */
+    public synchronized void discard() {
+        if (session != null) {
+            session.disconnect();
+            session = null;
+        }
+    }
+
+    /**
+     * @return Whether a session is being kept open
+     */
+    public synchronized boolean hasSession() {
+        return session != null;
+    }
+
+    /**
+     * Disconnects any session being kept open.
+     */
+    @Override
+    public void close() {
+        discard();
+    }
+
+    /**
+     * Sends the health check with a short timeout, so a hung STK is found out quickly.
+     */
+    private static boolean isAlive(StkCon session) {
+        if (!session.isConnected()) {
+            return false;
+        }
+        long commandTimeout = session.getCommandTimeout();
+        session.setCommandTimeout(HEALTH_CHECK_TIMEOUT_MILLIS);
+        try {
+            return session.sendConCommand(HEALTH_CHECK) != null && session.getAckStatus();
+        } catch (IOException | NumberFormatException e) {
+            return false;
+        } finally {
+            session.setCommandTimeout(commandTimeout);
+        }
+    }
+}
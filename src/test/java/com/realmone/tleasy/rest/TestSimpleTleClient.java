@@ -0,0 +1,350 @@
+package com.realmone.tleasy.rest;
+
+import com.realmone.tleasy.TleClient;
+import com.sun.net.httpserver.HttpsConfigurator;
+import com.sun.net.httpserver.HttpsServer;
+import org.junit.After;
+import org.junit.Assert;
+import org.junit.Before;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+import org.junit.runner.RunWith;
+import org.junit.runners.BlockJUnit4ClassRunner;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.File;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.net.InetSocketAddress;
+import java.nio.file.Files;
+import java.nio.file.Paths;
+import java.security.KeyStore;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.zip.Deflater;
+import java.util.zip.DeflaterOutputStream;
+import java.util.zip.GZIPOutputStream;
+import javax.net.ssl.KeyManagerFactory;
+import javax.net.ssl.SSLContext;
+
+/**
+ * Exercises the client against a local HTTPS stand-in for the TLE endpoint, secured with the test keystore.
+ */
+@RunWith(BlockJUnit4ClassRunner.class)
+public class TestSimpleTleClient {
+
+    private static final File KEYSTORE = new File("src/test/resources/keystore.p12");
+    private static final char[] KEYSTORE_PASSWORD = "realm1p@ss".toCharArray();
+    private static final String LAST_MODIFIED = "Mon, 24 Feb 2025 17:50:20 GMT";
+
+    @Rule
+    public TemporaryFolder folder = new TemporaryFolder();
+
+    private HttpsServer server;
+    private String endpoint;
+    private volatile byte[] catalog;
+    private volatile String etag = "\"v1\"";
+    private volatile String contentEncoding;
+    private volatile boolean validators = true;
+    private final AtomicInteger requests = new AtomicInteger();
+    private final AtomicInteger fullResponses = new AtomicInteger();
+    private final AtomicInteger rangeResponses = new AtomicInteger();
+    private final AtomicInteger dropConnections = new AtomicInteger();
+    private final AtomicInteger servedBytes = new AtomicInteger();
+    private final Set<InetSocketAddress> clientAddresses = ConcurrentHashMap.newKeySet();
+
+    @Before
+    public void startServer() throws Exception {
+        catalog = Files.readAllBytes(Paths.get("src/test/resources/data.tle"));
+        server = HttpsServer.create(new InetSocketAddress("localhost", 0), 0);
+        server.setHttpsConfigurator(new HttpsConfigurator(serverSslContext()));
+        server.createContext("/secure/download", exchange -> {
+            requests.incrementAndGet();
+            clientAddresses.add(exchange.getRemoteAddress());
+            if (validators) {
+                exchange.getResponseHeaders().set("ETag", etag);
+                exchange.getResponseHeaders().set("Last-Modified", LAST_MODIFIED);
+            }
+            if (validators && etag.equals(exchange.getRequestHeaders().getFirst("If-None-Match"))) {
+                exchange.sendResponseHeaders(304, -1);
+            } else {
+                String accepted = exchange.getRequestHeaders().getFirst("Accept-Encoding");
+                byte[] body = catalog;
+                if (contentEncoding != null && accepted != null && accepted.contains(contentEncoding)) {
+                    exchange.getResponseHeaders().set("Content-Encoding", contentEncoding);
+                    body = encode(catalog, contentEncoding);
+                }
+                // Only resume if the catalog hasn't changed since the client's partial download began
+                String range = exchange.getRequestHeaders().getFirst("Range");
+                int start = 0;
+                if (range != null && validators && etag.equals(exchange.getRequestHeaders().getFirst("If-Range"))) {
+                    start = Integer.parseInt(range.substring("bytes=".length(), range.indexOf('-')));
+                    rangeResponses.incrementAndGet();
+                    exchange.getResponseHeaders().set("Content-Range",
+                            "bytes " + start + "-" + (body.length - 1) + "/" + body.length);
+                    exchange.sendResponseHeaders(206, body.length - start);
+                } else {
+                    fullResponses.incrementAndGet();
+                    exchange.sendResponseHeaders(200, body.length);
+                }
+                // Simulate a flaky link by cutting the connection half way through the body
+                boolean drop = dropConnections.getAndDecrement() > 0;
+                int length = drop ? (body.length - start) / 2 : body.length - start;
+                servedBytes.addAndGet(length);
+                OutputStream out = exchange.getResponseBody();
+                out.write(body, start, length);
+                out.flush();
+                if (drop) {
+                    // The server closes the connection when a handler fails part way through a response
+                    throw new IOException("Dropping the connection");
+                }
+                out.close();
+            }
+            exchange.close();
+        });
+        server.start();
+        endpoint = "https://localhost:" + server.getAddress().getPort() + "/secure/download";
+    }
+
+    @After
+    public void stopServer() {
+        server.stop(0);
+    }
+
+    @Test
+    public void testFetchWithoutCache() throws Exception {
+        TleClient client = client(null);
+        Assert.assertArrayEquals(catalog, read(client.fetchTle()));
+        Assert.assertFalse(client.localTleFile().isPresent());
+        Assert.assertEquals(1, fullResponses.get());
+    }
+
+    @Test
+    public void testNotModifiedIsServedFromCache() throws Exception {
+        TleClient client = client(new TleResponseCache(folder.getRoot(), 0));
+        Assert.assertArrayEquals(catalog, read(client.fetchTle()));
+        Assert.assertArrayEquals(catalog, read(client.fetchTle()));
+        File cached = client.localTleFile().orElseThrow(AssertionError::new);
+        Assert.assertArrayEquals(catalog, Files.readAllBytes(cached.toPath()));
+        Assert.assertEquals("Every fetch should revalidate", 3, requests.get());
+        Assert.assertEquals("Only the first fetch should download the catalog", 1, fullResponses.get());
+    }
+
+    @Test
+    public void testServerWithoutValidators() throws Exception {
+        validators = false;
+        TleClient client = client(new TleResponseCache(folder.getRoot(), 0));
+        Assert.assertArrayEquals(catalog, read(client.fetchTle()));
+        Assert.assertArrayEquals(catalog, Files.readAllBytes(
+                client.localTleFile().orElseThrow(AssertionError::new).toPath()));
+        // Nothing to revalidate with, so every refresh downloads the catalog again
+        Assert.assertArrayEquals(catalog, read(client.fetchTle()));
+        Assert.assertEquals(3, fullResponses.get());
+    }
+
+    @Test
+    public void testInterruptedDownloadWithoutValidatorsStartsOver() throws Exception {
+        validators = false;
+        dropConnections.set(1);
+        TleResponseCache cache = new TleResponseCache(folder.getRoot(), 0);
+        TleClient client = client(cache);
+        try {
+            client.fetchTle();
+            Assert.fail("A download cut off without a validator can't be resumed");
+        } catch (IOException e) {
+            Assert.assertNull(cache.partial(endpoint));
+        }
+        // The next fetch starts over rather than resuming
+        Assert.assertArrayEquals(catalog, read(client.fetchTle()));
+        Assert.assertEquals(0, rangeResponses.get());
+        Assert.assertEquals(2, fullResponses.get());
+    }
+
+    @Test
+    public void testFreshCacheSkipsTheServer() throws Exception {
+        TleClient client = client(new TleResponseCache(folder.getRoot(), TimeUnit.MINUTES.toMillis(10)));
+        Assert.assertArrayEquals(catalog, read(client.fetchTle()));
+        Assert.assertArrayEquals(catalog, read(client.fetchTle()));
+        Assert.assertTrue(client.localTleFile().isPresent());
+        Assert.assertEquals(1, requests.get());
+    }
+
+    @Test
+    public void testChangedCatalogReplacesCache() throws Exception {
+        TleClient client = client(new TleResponseCache(folder.getRoot(), 0));
+        Assert.assertArrayEquals(catalog, read(client.fetchTle()));
+        byte[] original = catalog;
+        catalog = new byte[original.length / 2];
+        System.arraycopy(original, 0, catalog, 0, catalog.length);
+        etag = "\"v2\"";
+        Assert.assertArrayEquals(catalog, read(client.fetchTle()));
+        Assert.assertEquals(2, fullResponses.get());
+        // A new client picks the cached catalog back up from disk
+        TleClient other = client(new TleResponseCache(folder.getRoot(), 0));
+        Assert.assertArrayEquals(catalog, read(other.fetchTle()));
+        Assert.assertEquals(2, fullResponses.get());
+    }
+
+    @Test
+    public void testConnectionIsReused() throws Exception {
+        Assert.assertArrayEquals(catalog, read(client(null).fetchTle()));
+        // A rebuilt client for the same keystore shares the socket factory, and with it the kept-alive connection
+        Assert.assertArrayEquals(catalog, read(client(null).fetchTle()));
+        Assert.assertEquals(2, requests.get());
+        Assert.assertEquals("Both requests should have gone over one connection", 1, clientAddresses.size());
+    }
+
+    @Test
+    public void testCompressedResponses() throws Exception {
+        for (String encoding : new String[]{"gzip", "deflate"}) {
+            contentEncoding = encoding;
+            Assert.assertArrayEquals(encoding, catalog, read(client(null).fetchTle()));
+            // The cache holds the decompressed catalog so it can be indexed
+            TleClient cached = client(new TleResponseCache(folder.newFolder(encoding), 0));
+            Assert.assertArrayEquals(encoding, catalog, read(cached.fetchTle()));
+            File body = cached.localTleFile().orElseThrow(AssertionError::new);
+            Assert.assertArrayEquals(encoding, catalog, Files.readAllBytes(body.toPath()));
+        }
+    }
+
+    @Test
+    public void testRawDeflateResponse() throws Exception {
+        byte[] raw = encode(catalog, "raw");
+        Assert.assertArrayEquals(catalog, read(ContentEncodings.decode(new ByteArrayInputStream(raw), "deflate")));
+    }
+
+    @Test
+    public void testGzipFile() throws Exception {
+        File gzipped = folder.newFile("catalog.tle.gz");
+        Files.write(gzipped.toPath(), encode(catalog, "gzip"));
+        TleClient client = SimpleTleClient.builder()
+                .tleFile(gzipped)
+                .keystoreFile(KEYSTORE)
+                .keystorePassword(KEYSTORE_PASSWORD)
+                .memoryMapTleFile(true)
+                .build();
+        Assert.assertArrayEquals(catalog, read(client.fetchTle()));
+        // Compressed catalogs can only be streamed
+        Assert.assertFalse(client.localTleFile().isPresent());
+        Assert.assertFalse(client.mapTle().isPresent());
+    }
+
+    @Test
+    public void testInterruptedDownloadIsResumed() throws Exception {
+        dropConnections.set(1);
+        TleClient client = client(new TleResponseCache(folder.getRoot(), 0));
+        Assert.assertArrayEquals(catalog, read(client.fetchTle()));
+        Assert.assertEquals(1, fullResponses.get());
+        Assert.assertEquals(1, rangeResponses.get());
+        Assert.assertEquals("Only the missing bytes should be sent again", catalog.length, servedBytes.get());
+    }
+
+    @Test
+    public void testCompressedDownloadIsResumed() throws Exception {
+        contentEncoding = "gzip";
+        dropConnections.set(2);
+        TleClient client = client(new TleResponseCache(folder.getRoot(), 0));
+        Assert.assertArrayEquals(catalog, read(client.fetchTle()));
+        Assert.assertEquals(1, fullResponses.get());
+        Assert.assertEquals(2, rangeResponses.get());
+    }
+
+    @Test
+    public void testPartialDownloadSurvivesAcrossFetches() throws Exception {
+        dropConnections.set(Integer.MAX_VALUE);
+        try {
+            client(new TleResponseCache(folder.getRoot(), 0)).fetchTle();
+            Assert.fail("Every attempt was cut off, so the fetch should fail");
+        } catch (IOException e) {
+            // Expected
+        }
+        dropConnections.set(0);
+        int servedBefore = servedBytes.get();
+        TleClient client = client(new TleResponseCache(folder.getRoot(), 0));
+        Assert.assertArrayEquals(catalog, read(client.fetchTle()));
+        Assert.assertEquals(1, fullResponses.get());
+        Assert.assertEquals(catalog.length, servedBytes.get());
+        Assert.assertTrue(servedBytes.get() - servedBefore < catalog.length / 2);
+    }
+
+    @Test
+    public void testChangedCatalogRestartsDownload() throws Exception {
+        dropConnections.set(Integer.MAX_VALUE);
+        try {
+            client(new TleResponseCache(folder.getRoot(), 0)).fetchTle();
+            Assert.fail("Every attempt was cut off, so the fetch should fail");
+        } catch (IOException e) {
+            // Expected
+        }
+        dropConnections.set(0);
+        rangeResponses.set(0);
+        byte[] original = catalog;
+        catalog = new byte[original.length / 3];
+        System.arraycopy(original, 0, catalog, 0, catalog.length);
+        etag = "\"v2\"";
+        Assert.assertArrayEquals(catalog, read(client(new TleResponseCache(folder.getRoot(), 0)).fetchTle()));
+        Assert.assertEquals(0, rangeResponses.get());
+    }
+
+    @Test(expected = IOException.class)
+    public void testServerError() throws Exception {
+        server.removeContext("/secure/download");
+        client(new TleResponseCache(folder.getRoot(), 0)).fetchTle();
+    }
+
+    private TleClient client(TleResponseCache cache) throws IOException {
+        return SimpleTleClient.builder()
+                .tleDataEndpoint(endpoint)
+                .keystoreFile(KEYSTORE)
+                .keystorePassword(KEYSTORE_PASSWORD)
+                .skipCertValidation(true)
+                .responseCache(cache)
+                .build();
+    }
+
+    private static byte[] read(InputStream input) throws IOException {
+        try (InputStream in = input; ByteArrayOutputStream out = new ByteArrayOutputStream()) {
+            byte[] buffer = new byte[8192];
+            int read;
+            while ((read = in.read(buffer)) >= 0) {
+                out.write(buffer, 0, read);
+            }
+            return out.toByteArray();
+        }
+    }
+
+    private static byte[] encode(byte[] data, String encoding) throws IOException {
+        ByteArrayOutputStream encoded = new ByteArrayOutputStream();
+        if ("gzip".equals(encoding)) {
+            try (OutputStream out = new GZIPOutputStream(encoded)) {
+                out.write(data);
+            }
+        } else {
+            // "deflate" is zlib wrapped, "raw" is the bare deflate stream some servers send instead
+            Deflater deflater = new Deflater(Deflater.DEFAULT_COMPRESSION, "raw".equals(encoding));
+            try (OutputStream out = new DeflaterOutputStream(encoded, deflater)) {
+                out.write(data);
+            } finally {
+                deflater.end();
+            }
+        }
+        return encoded.toByteArray();
+    }
+
+    private static SSLContext serverSslContext() throws Exception {
+        KeyStore keyStore = KeyStore.getInstance("PKCS12");
+        try (InputStream in = Files.newInputStream(KEYSTORE.toPath())) {
+            keyStore.load(in, KEYSTORE_PASSWORD);
+        }
+        KeyManagerFactory kmf = KeyManagerFactory.getInstance(KeyManagerFactory.getDefaultAlgorithm());
+        kmf.init(keyStore, KEYSTORE_PASSWORD);
+        SSLContext sslContext = SSLContext.getInstance("TLS");
+        sslContext.init(kmf.getKeyManagers(), null, null);
+        return sslContext;
+    }
+}
@@ -0,0 +1,156 @@
+package com.realmone.tleasy.tle;
+
+import com.realmone.tleasy.TleFilter;
+import org.junit.Assert;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.junit.runners.BlockJUnit4ClassRunner;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.Charset;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Paths;
+import java.nio.file.StandardOpenOption;
+
+@RunWith(BlockJUnit4ClassRunner.class)
+public class TestByteTleFilter {
+
+    private static final NoradIdSet IDS = NoradIdSet.of("62829", "62903", "62831", "00000");
+
+    @Test(expected = IOException.class)
+    public void testBad() throws Exception {
+        // Invalid TLE data (missing required format)
+        String invalidTleData = "INVALID DATA LINE\nNOT A TLE FORMAT\n1 99999U 12345A   12345.67890123  .00001234  00000-0  12345-6 0  9991";
+
+        ByteArrayInputStream inputStream = new ByteArrayInputStream(invalidTleData.getBytes(StandardCharsets.UTF_8));
+        ByteArrayOutputStream outputStream = new ByteArrayOutputStream();
+
+        TleFilter filter = ByteTleFilter.builder().targetNoradIds(NoradIdSet.of("99999")).build();
+
+        // Expect an IOException due to invalid format
+        filter.filter(inputStream, outputStream);
+    }
+
+    @Test(expected = IOException.class)
+    public void testTruncatedRecord() throws Exception {
+        String truncated = "COSMOS 2582\n1 62903U 25026B   25054.91904369  .00003073  00000+0  29444-3 0  9990\n";
+        TleFilter filter = ByteTleFilter.builder().targetNoradIds(NoradIdSet.of("62903")).build();
+        filter.filter(new ByteArrayInputStream(truncated.getBytes(StandardCharsets.UTF_8)), new ByteArrayOutputStream());
+    }
+
+    @Test
+    public void test() throws Exception {
+        TleFilter filter = ByteTleFilter.builder()
+                .targetNoradIds(NoradIdSet.of("62903"))
+                .build();
+        try (InputStream is = Files.newInputStream(Paths.get("src/test/resources/data.tle"));
+             ByteArrayOutputStream baos = new ByteArrayOutputStream()) {
+            Assert.assertEquals(1L, filter.filter(is, baos));
+            String result = baos.toString(Charset.defaultCharset().name());
+            Assert.assertEquals("COSMOS 2582\n1 62903U 25026B   25054.91904369  .00003073  00000+0  29444-3 0  9990\n2 62903  81.9966 201.7787 0014692 190.6063 169.4848 14.92808070  2797\n", result);
+        }
+    }
+
+    @Test
+    public void testMatchesSimpleTleFilter() throws Exception {
+        byte[] data = Files.readAllBytes(Paths.get("src/test/resources/data.tle"));
+        assertSameAsSimpleFilter(data, 64 * 1024);
+        // A tiny buffer forces records to be carried over between reads and the buffer to grow
+        assertSameAsSimpleFilter(data, 16);
+    }
+
+    @Test
+    public void testLineEndingsAndTitles() throws Exception {
+        String data = "1 62829U 25019A   25055.48571081  .00004910  00000+0  31049-4 0  9999\r\n"
+                + "2 62829  42.9990  67.0699 0001472 289.4728  70.5983 15.77865734  5328\r\n"
+                + "STARLINK-11559 [DTC]\r"
+                + "1 62831U 25019C   25055.47595072  .00004754  00000+0  30153-4 0  9998\r"
+                + "2 62831  42.9988  67.0710 0001490 286.5291  73.5558 15.77865155  5326\n"
+                + "\n"
+                + "1 62903U 25026B   25054.91904369  .00003073  00000+0  29444-3 0  9990\n"
+                + "2 62903  81.9966 201.7787 0014692 190.6063 169.4848 14.92808070  2797";
+        byte[] bytes = data.getBytes(StandardCharsets.UTF_8);
+        assertSameAsSimpleFilter(bytes, 64 * 1024);
+        assertSameAsSimpleFilter(bytes, 8);
+    }
+
+    @Test
+    public void testDirectBuffer() throws Exception {
+        byte[] data = Files.readAllBytes(Paths.get("src/test/resources/data.tle"));
+        ByteBuffer direct = ByteBuffer.allocateDirect(data.length);
+        direct.put(data).flip();
+        ByteArrayOutputStream expected = new ByteArrayOutputStream();
+        long expectedCount = SimpleTleFilter.builder().targetNoradIds(IDS).build()
+                .filter(new ByteArrayInputStream(data), expected);
+        ByteArrayOutputStream actual = new ByteArrayOutputStream();
+        long count = ByteTleFilter.builder().targetNoradIds(IDS).build().filter(direct, actual);
+        Assert.assertEquals(expectedCount, count);
+        Assert.assertArrayEquals(expected.toByteArray(), actual.toByteArray());
+        Assert.assertEquals("Buffer position should be left alone", 0, direct.position());
+    }
+
+    @Test
+    public void testMappedFile() throws Exception {
+        ByteBuffer mapped;
+        try (FileChannel channel = FileChannel.open(Paths.get("src/test/resources/data.tle"), StandardOpenOption.READ)) {
+            mapped = channel.map(FileChannel.MapMode.READ_ONLY, 0, channel.size());
+        }
+        // SimpleTleFilter goes through the default stream-backed implementation
+        ByteArrayOutputStream expected = new ByteArrayOutputStream();
+        long expectedCount = SimpleTleFilter.builder().targetNoradIds(IDS).build().filter(mapped, expected);
+        ByteArrayOutputStream actual = new ByteArrayOutputStream();
+        long count = ByteTleFilter.builder().targetNoradIds(IDS).build().filter(mapped, actual);
+        Assert.assertEquals(3L, count);
+        Assert.assertEquals(expectedCount, count);
+        Assert.assertArrayEquals(expected.toByteArray(), actual.toByteArray());
+    }
+
+    @Test
+    public void testLargeCatalogMatchesSimpleTleFilter() throws Exception {
+        byte[] catalog = syntheticCatalog(50000);
+        NoradIdSet ids = new NoradIdSet();
+        for (int id = 10000; id < 60000; id += 7) {
+            ids.add(id);
+        }
+        ByteArrayOutputStream simpleOutput = new ByteArrayOutputStream();
+        long simpleCount = SimpleTleFilter.builder().targetNoradIds(ids).build()
+                .filter(new ByteArrayInputStream(catalog), simpleOutput);
+        ByteArrayOutputStream bytesOutput = new ByteArrayOutputStream();
+        long bytesCount = ByteTleFilter.builder().targetNoradIds(ids).build()
+                .filter(new ByteArrayInputStream(catalog), bytesOutput);
+
+        Assert.assertEquals(simpleCount, bytesCount);
+        Assert.assertArrayEquals(simpleOutput.toByteArray(), bytesOutput.toByteArray());
+    }
+
+    private static void assertSameAsSimpleFilter(byte[] data, int bufferSize) throws IOException {
+        ByteArrayOutputStream expected = new ByteArrayOutputStream();
+        long expectedCount = SimpleTleFilter.builder().targetNoradIds(IDS).build()
+                .filter(new ByteArrayInputStream(data), expected);
+        ByteArrayOutputStream actual = new ByteArrayOutputStream();
+        long count = ByteTleFilter.builder().targetNoradIds(IDS).bufferSize(bufferSize).build()
+                .filter(new ByteArrayInputStream(data), actual);
+        Assert.assertEquals(expectedCount, count);
+        Assert.assertArrayEquals(expected.toByteArray(), actual.toByteArray());
+    }
+
+    /**
+     * Builds a catalog of 3-line records with sequential NORAD identifiers.
+     */
+    static byte[] syntheticCatalog(int records) {
+        StringBuilder builder = new StringBuilder(records * 166);
+        for (int i = 0; i < records; i++) {
+            String id = String.format("%05d", 10000 + i);
+            builder.append("SAT-").append(id).append('\n')
+                    .append("1 ").append(id).append("U 25019A   25055.48571081  .00004910  00000+0  31049-4 0  9999\n")
+                    .append("2 ").append(id).append("  42.9990  67.0699 0001472 289.4728  70.5983 15.77865734  5328\n");
+        }
+        return builder.toString().getBytes(StandardCharsets.UTF_8);
+    }
+}
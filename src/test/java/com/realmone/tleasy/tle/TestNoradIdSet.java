@@ -0,0 +1,51 @@
+package com.realmone.tleasy.tle;
+
+import org.junit.Assert;
+import org.junit.Test;
+
+public class TestNoradIdSet {
+
+    @Test
+    public void testParseAndFormat() {
+        Assert.assertEquals(12345, NoradIdSet.parse("12345", 0, 5));
+        Assert.assertEquals(5, NoradIdSet.parse("00005", 0, 5));
+        Assert.assertEquals(100001, NoradIdSet.parse("A0001", 0, 5));
+        // I and O are skipped so they aren't confused with 1 and 0
+        Assert.assertEquals(180000, NoradIdSet.parse("J0000", 0, 5));
+        Assert.assertEquals(339999, NoradIdSet.parse("Z9999", 0, 5));
+        Assert.assertEquals(-1, NoradIdSet.parse("I0000", 0, 5));
+        Assert.assertEquals(-1, NoradIdSet.parse("1234", 0, 4));
+        Assert.assertEquals(-1, NoradIdSet.parse("1234X", 0, 5));
+        Assert.assertEquals("00005", NoradIdSet.format(5));
+        Assert.assertEquals("62903", NoradIdSet.format(62903));
+        Assert.assertEquals("A0001", NoradIdSet.format(100001));
+        Assert.assertEquals("J0000", NoradIdSet.format(180000));
+        Assert.assertEquals("Z9999", NoradIdSet.format(NoradIdSet.MAX_ID));
+    }
+
+    @Test
+    public void testWideRange() {
+        NoradIdSet ids = new NoradIdSet();
+        ids.addRange(10000, 99999);
+        ids.add("00001");
+        Assert.assertEquals(90001, ids.size());
+        Assert.assertTrue(ids.contains(1));
+        Assert.assertTrue(ids.contains("55555"));
+        Assert.assertFalse(ids.contains("09999"));
+        Assert.assertFalse(ids.contains("not an id"));
+        Assert.assertFalse(ids.contains(-1));
+        Assert.assertEquals(1, ids.nextId(0));
+        Assert.assertEquals(10000, ids.nextId(2));
+        Assert.assertEquals(-1, ids.nextId(100000));
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void testReversedRange() {
+        new NoradIdSet().addRange(5, 4);
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void testInvalidId() {
+        NoradIdSet.of("123456");
+    }
+}
@@ -0,0 +1,114 @@
+package com.realmone.tleasy.tle;
+
+import org.junit.Assert;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+import org.junit.runner.RunWith;
+import org.junit.runners.BlockJUnit4ClassRunner;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.File;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Paths;
+import java.nio.file.StandardOpenOption;
+import java.util.concurrent.ForkJoinPool;
+
+@RunWith(BlockJUnit4ClassRunner.class)
+public class TestParallelTleFilter {
+
+    private static final NoradIdSet IDS = NoradIdSet.of("62829", "62903", "62831", "00000");
+
+    @Rule
+    public TemporaryFolder folder = new TemporaryFolder();
+
+    @Test
+    public void testMatchesSimpleTleFilter() throws Exception {
+        byte[] data = Files.readAllBytes(Paths.get("src/test/resources/data.tle"));
+        // Tiny chunks put split points all over the catalog, including inside titles and element lines
+        for (int chunkSize : new int[]{64, 100, 333, 1024, 8192}) {
+            assertSameAsSimpleFilter(data, IDS, chunkSize);
+        }
+    }
+
+    @Test
+    public void testLineEndingsAndTitles() throws Exception {
+        String data = "1 62829U 25019A   25055.48571081  .00004910  00000+0  31049-4 0  9999\r\n"
+                + "2 62829  42.9990  67.0699 0001472 289.4728  70.5983 15.77865734  5328\r\n"
+                + "STARLINK-11559 [DTC]\r"
+                + "1 62831U 25019C   25055.47595072  .00004754  00000+0  30153-4 0  9998\r"
+                + "2 62831  42.9988  67.0710 0001490 286.5291  73.5558 15.77865155  5326\n"
+                + "\n"
+                + "1 62903U 25026B   25054.91904369  .00003073  00000+0  29444-3 0  9990\n"
+                + "2 62903  81.9966 201.7787 0014692 190.6063 169.4848 14.92808070  2797";
+        byte[] bytes = data.getBytes(StandardCharsets.UTF_8);
+        for (int chunkSize = 16; chunkSize < bytes.length / 2; chunkSize += 7) {
+            assertSameAsSimpleFilter(bytes, IDS, chunkSize);
+        }
+    }
+
+    @Test
+    public void testMisleadingTitleFallsBackToSequentialScan() throws Exception {
+        // A title that looks like a second element line fools the split point heuristic
+        String data = "2 TITLE\n"
+                + "1 62829U 25019A   25055.48571081  .00004910  00000+0  31049-4 0  9999\n"
+                + "2 62829  42.9990  67.0699 0001472 289.4728  70.5983 15.77865734  5328\n"
+                + "2 TITLE\n"
+                + "1 62831U 25019C   25055.47595072  .00004754  00000+0  30153-4 0  9998\n"
+                + "2 62831  42.9988  67.0710 0001490 286.5291  73.5558 15.77865155  5326\n";
+        assertSameAsSimpleFilter(data.getBytes(StandardCharsets.UTF_8), IDS, 32);
+    }
+
+    @Test
+    public void testWideRangeOfSyntheticCatalog() throws Exception {
+        byte[] catalog = TestByteTleFilter.syntheticCatalog(20000);
+        NoradIdSet ids = new NoradIdSet();
+        ids.addRange(12000, 25000);
+        assertSameAsSimpleFilter(catalog, ids, 64 * 1024);
+    }
+
+    @Test(expected = IOException.class)
+    public void testMalformed() throws Exception {
+        byte[] catalog = TestByteTleFilter.syntheticCatalog(100);
+        byte[] truncated = new byte[catalog.length - 80];
+        System.arraycopy(catalog, 0, truncated, 0, truncated.length);
+        ParallelTleFilter.builder().targetNoradIds(IDS).chunkSize(512).build()
+                .filter(ByteBuffer.wrap(truncated), new ByteArrayOutputStream());
+    }
+
+    private void assertSameAsSimpleFilter(byte[] data, NoradIdSet ids, int chunkSize) throws Exception {
+        ByteArrayOutputStream expected = new ByteArrayOutputStream();
+        long expectedCount = SimpleTleFilter.builder().targetNoradIds(ids).build()
+                .filter(new ByteArrayInputStream(data), expected);
+        ForkJoinPool pool = new ForkJoinPool(4);
+        try {
+            ParallelTleFilter filter = ParallelTleFilter.builder().targetNoradIds(ids).chunkSize(chunkSize).pool(pool)
+                    .build();
+
+            ByteArrayOutputStream fromBuffer = new ByteArrayOutputStream();
+            Assert.assertEquals(expectedCount, filter.filter(ByteBuffer.wrap(data), fromBuffer));
+            Assert.assertArrayEquals(expected.toByteArray(), fromBuffer.toByteArray());
+
+            File catalog = folder.newFile();
+            Files.write(catalog.toPath(), data);
+            ByteArrayOutputStream fromFile = new ByteArrayOutputStream();
+            Assert.assertEquals(expectedCount, filter.filter(catalog, fromFile));
+            Assert.assertArrayEquals(expected.toByteArray(), fromFile.toByteArray());
+
+            ByteBuffer mapped;
+            try (FileChannel channel = FileChannel.open(catalog.toPath(), StandardOpenOption.READ)) {
+                mapped = channel.map(FileChannel.MapMode.READ_ONLY, 0, channel.size());
+            }
+            ByteArrayOutputStream fromMapped = new ByteArrayOutputStream();
+            Assert.assertEquals(expectedCount, filter.filter(mapped, fromMapped));
+            Assert.assertArrayEquals(expected.toByteArray(), fromMapped.toByteArray());
+        } finally {
+            pool.shutdown();
+        }
+    }
+}
@@ -14,7 +14,6 @@ import java.nio.charset.Charset;
 import java.nio.charset.StandardCharsets;
 import java.nio.file.Files;
 import java.nio.file.Paths;
-import java.util.Collections;
 
 @RunWith(BlockJUnit4ClassRunner.class)
 public class TestSimpleTleFilter {
@@ -29,7 +28,7 @@ public class TestSimpleTleFilter {
         ByteArrayOutputStream outputStream = new ByteArrayOutputStream();
 
         // Create TleFilter
-        TleFilter filter = com.realmone.tleasy.tle.SimpleTleFilter.builder().targetNoradIds(Collections.singleton("99999")).build();
+        TleFilter filter = com.realmone.tleasy.tle.SimpleTleFilter.builder().targetNoradIds(NoradIdSet.of("99999")).build();
 
         // Expect an IOException due to invalid format
         filter.filter(inputStream, outputStream);
@@ -38,7 +37,7 @@ public class TestSimpleTleFilter {
     @Test
     public void test() throws Exception {
         com.realmone.tleasy.tle.SimpleTleFilter filter = com.realmone.tleasy.tle.SimpleTleFilter.builder()
-                .targetNoradIds(Collections.singleton("62903"))
+                .targetNoradIds(NoradIdSet.of("62903"))
                 .build();
         try (InputStream is = Files.newInputStream(Paths.get("src/test/resources/data.tle"));
              ByteArrayOutputStream baos = new ByteArrayOutputStream()) {
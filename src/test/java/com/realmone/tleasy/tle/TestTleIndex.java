@@ -0,0 +1,164 @@
+package com.realmone.tleasy.tle;
+
+import com.realmone.tleasy.TleFilter;
+import org.junit.Assert;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+import org.junit.runner.RunWith;
+import org.junit.runners.BlockJUnit4ClassRunner;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.File;
+import java.io.InputStream;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Paths;
+import java.nio.file.StandardOpenOption;
+
+@RunWith(BlockJUnit4ClassRunner.class)
+public class TestTleIndex {
+
+    private static final NoradIdSet IDS = NoradIdSet.of("62829", "62903", "62831");
+
+    @Rule
+    public TemporaryFolder folder = new TemporaryFolder();
+
+    @Test
+    public void testIndexedFilterMatchesSimpleTleFilter() throws Exception {
+        File catalog = copyCatalog(Files.readAllBytes(Paths.get("src/test/resources/data.tle")));
+        TleIndex index = TleIndex.load(catalog);
+        Assert.assertEquals(187, index.size());
+        assertSameAsSimpleFilter(catalog, index);
+    }
+
+    @Test
+    public void testLineEndingsAndTitles() throws Exception {
+        String data = "1 62829U 25019A   25055.48571081  .00004910  00000+0  31049-4 0  9999\r\n"
+                + "2 62829  42.9990  67.0699 0001472 289.4728  70.5983 15.77865734  5328\r\n"
+                + "STARLINK-11559 [DTC]\r"
+                + "1 62831U 25019C   25055.47595072  .00004754  00000+0  30153-4 0  9998\r"
+                + "2 62831  42.9988  67.0710 0001490 286.5291  73.5558 15.77865155  5326\n"
+                + "\n"
+                + "1 62903U 25026B   25054.91904369  .00003073  00000+0  29444-3 0  9990\n"
+                + "2 62903  81.9966 201.7787 0014692 190.6063 169.4848 14.92808070  2797";
+        File catalog = copyCatalog(data.getBytes(StandardCharsets.UTF_8));
+        TleIndex index = TleIndex.load(catalog);
+        Assert.assertEquals(3, index.size());
+        assertSameAsSimpleFilter(catalog, index);
+    }
+
+    @Test
+    public void testPersistedIndexIsReused() throws Exception {
+        File catalog = copyCatalog(Files.readAllBytes(Paths.get("src/test/resources/data.tle")));
+        TleIndex built = TleIndex.load(catalog);
+        File indexFile = TleIndex.indexFile(catalog);
+        Assert.assertTrue(indexFile.isFile());
+        long indexModified = indexFile.lastModified();
+
+        TleIndex loaded = TleIndex.load(catalog);
+        Assert.assertEquals("Index should not have been rewritten", indexModified, indexFile.lastModified());
+        Assert.assertEquals(built.size(), loaded.size());
+        for (int i = 0; i < built.size(); i++) {
+            Assert.assertEquals(built.id(i), loaded.id(i));
+            Assert.assertEquals(built.offset(i), loaded.offset(i));
+            Assert.assertEquals(built.length(i), loaded.length(i));
+        }
+    }
+
+    @Test
+    public void testIndexIsRebuiltWhenCatalogChanges() throws Exception {
+        File catalog = copyCatalog(Files.readAllBytes(Paths.get("src/test/resources/data.tle")));
+        TleIndex.load(catalog);
+        Files.write(catalog.toPath(), TestByteTleFilter.syntheticCatalog(2));
+        Assert.assertFalse(TleIndex.read(TleIndex.indexFile(catalog)).isCurrent(catalog));
+        TleIndex index = TleIndex.load(catalog);
+        Assert.assertTrue(index.isCurrent(catalog));
+        Assert.assertEquals(2, index.size());
+    }
+
+    @Test
+    public void testReplacedCatalogIsDetected() throws Exception {
+        byte[] data = Files.readAllBytes(Paths.get("src/test/resources/data.tle"));
+        File catalog = copyCatalog(data);
+        TleIndex index = TleIndex.load(catalog);
+        // The same size and layout, but a targeted satellite's identifier changed
+        String replaced = new String(data, StandardCharsets.UTF_8).replace(" 62829", " 62828");
+        Assert.assertEquals(data.length, replaced.getBytes(StandardCharsets.UTF_8).length);
+        Files.write(catalog.toPath(), replaced.getBytes(StandardCharsets.UTF_8));
+        TleFilter indexed = IndexedTleFilter.builder().index(index).targetNoradIds(IDS).build();
+
+        ByteArrayOutputStream streamed = new ByteArrayOutputStream();
+        try (InputStream in = Files.newInputStream(catalog.toPath())) {
+            indexed.filter(in, streamed);
+            Assert.fail("The replaced catalog should not match its index");
+        } catch (IndexedTleFilter.StaleIndexException e) {
+            Assert.assertEquals("TLE catalog no longer matches its index", e.getMessage());
+        }
+        Assert.assertEquals("Nothing is written from a stale index", 0, streamed.size());
+
+        ByteArrayOutputStream fromBuffer = new ByteArrayOutputStream();
+        try {
+            indexed.filter(ByteBuffer.wrap(replaced.getBytes(StandardCharsets.UTF_8)), fromBuffer);
+            Assert.fail("The replaced catalog should not match its index");
+        } catch (IndexedTleFilter.StaleIndexException e) {
+            Assert.assertEquals("TLE catalog no longer matches its index", e.getMessage());
+        }
+        Assert.assertEquals(0, fromBuffer.size());
+    }
+
+    @Test
+    public void testCorruptIndexIsRebuilt() throws Exception {
+        File catalog = copyCatalog(Files.readAllBytes(Paths.get("src/test/resources/data.tle")));
+        Files.write(TleIndex.indexFile(catalog).toPath(), "garbage".getBytes(StandardCharsets.UTF_8));
+        Assert.assertEquals(187, TleIndex.load(catalog).size());
+        Assert.assertEquals(187, TleIndex.read(TleIndex.indexFile(catalog)).size());
+    }
+
+    @Test
+    public void testLargeCatalogIsIndexedInChunks() throws Exception {
+        // Large enough to be split into chunks and indexed in parallel
+        byte[] data = TestByteTleFilter.syntheticCatalog(60000);
+        File catalog = copyCatalog(data);
+        TleIndex index = TleIndex.build(catalog);
+        Assert.assertEquals(60000, index.size());
+        long offset = 0L;
+        for (int i = 0; i < index.size(); i++) {
+            Assert.assertEquals(10000 + i, index.id(i));
+            Assert.assertEquals(offset, index.offset(i));
+            offset += index.length(i);
+        }
+        Assert.assertEquals(data.length, offset);
+    }
+
+    private File copyCatalog(byte[] data) throws Exception {
+        File catalog = folder.newFile("catalog.tle");
+        Files.write(catalog.toPath(), data);
+        return catalog;
+    }
+
+    private static void assertSameAsSimpleFilter(File catalog, TleIndex index) throws Exception {
+        byte[] data = Files.readAllBytes(catalog.toPath());
+        ByteArrayOutputStream expected = new ByteArrayOutputStream();
+        long expectedCount = SimpleTleFilter.builder().targetNoradIds(IDS).build()
+                .filter(new ByteArrayInputStream(data), expected);
+        TleFilter indexed = IndexedTleFilter.builder().index(index).targetNoradIds(IDS).build();
+
+        ByteArrayOutputStream streamed = new ByteArrayOutputStream();
+        try (InputStream in = Files.newInputStream(catalog.toPath())) {
+            Assert.assertEquals(expectedCount, indexed.filter(in, streamed));
+        }
+        Assert.assertArrayEquals(expected.toByteArray(), streamed.toByteArray());
+
+        ByteBuffer mapped;
+        try (FileChannel channel = FileChannel.open(catalog.toPath(), StandardOpenOption.READ)) {
+            mapped = channel.map(FileChannel.MapMode.READ_ONLY, 0, channel.size());
+        }
+        ByteArrayOutputStream fromBuffer = new ByteArrayOutputStream();
+        Assert.assertEquals(expectedCount, indexed.filter(mapped, fromBuffer));
+        Assert.assertArrayEquals(expected.toByteArray(), fromBuffer.toByteArray());
+    }
+}
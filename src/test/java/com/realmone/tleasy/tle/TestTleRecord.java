@@ -0,0 +1,49 @@
+package com.realmone.tleasy.tle;
+
+import org.junit.Assert;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.junit.runners.BlockJUnit4ClassRunner;
+
+import java.time.LocalDateTime;
+
+@RunWith(BlockJUnit4ClassRunner.class)
+public class TestTleRecord {
+
+    private static final String LINE_1 = "1 25544U 98067A   25055.50000000  .00016717  00000-0  10270-3 0  9005";
+    private static final String LINE_2 = "2 25544  51.6416 247.4627 0006703 130.5360 325.0288 15.72125391563537";
+
+    @Test
+    public void testParse() {
+        TleRecord record = TleRecord.parse("ISS_ZARYA", LINE_1, LINE_2);
+        Assert.assertEquals("ISS_ZARYA", record.getName());
+        Assert.assertEquals("25544", record.getNoradId());
+        Assert.assertEquals(LocalDateTime.of(2025, 2, 24, 12, 0), record.getEpoch());
+        Assert.assertEquals(LINE_1, record.getLine1());
+        Assert.assertEquals(LINE_2, record.getLine2());
+        Assert.assertTrue(record.isOlderThan(LocalDateTime.of(2025, 2, 25, 0, 0)));
+        Assert.assertFalse(record.isOlderThan(LocalDateTime.of(2025, 2, 24, 0, 0)));
+    }
+
+    @Test
+    public void testBadEpoch() {
+        TleRecord record = TleRecord.parse("BAD", "1 25544U 98067A   2505X.5000000", LINE_2);
+        Assert.assertEquals("25544", record.getNoradId());
+        Assert.assertNull(record.getEpoch());
+        Assert.assertFalse("An unknown epoch isn't counted as old", record.isOlderThan(LocalDateTime.MAX));
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void testTooShort() {
+        TleRecord.parse("SHORT", "1 25", LINE_2);
+    }
+
+    @Test
+    public void testEquality() {
+        TleRecord record = TleRecord.parse("ISS_ZARYA", LINE_1, LINE_2);
+        Assert.assertEquals(record, TleRecord.parse("ISS_ZARYA", LINE_1, LINE_2));
+        Assert.assertEquals(record.hashCode(), TleRecord.parse("ISS_ZARYA", LINE_1, LINE_2).hashCode());
+        Assert.assertNotEquals(record, TleRecord.parse("ISS", LINE_1, LINE_2));
+        Assert.assertNotEquals(record, TleRecord.parse("ISS_ZARYA", LINE_1.replace("25055.5", "25056.5"), LINE_2));
+    }
+}
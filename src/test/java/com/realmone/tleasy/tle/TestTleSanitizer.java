@@ -0,0 +1,66 @@
+package com.realmone.tleasy.tle;
+
+import org.junit.Assert;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.junit.runners.BlockJUnit4ClassRunner;
+
+import java.io.BufferedReader;
+import java.io.BufferedWriter;
+import java.io.StringReader;
+import java.io.StringWriter;
+import java.time.LocalDateTime;
+import java.util.Arrays;
+import java.util.Collections;
+
+@RunWith(BlockJUnit4ClassRunner.class)
+public class TestTleSanitizer {
+
+    private static final String NL = System.lineSeparator();
+
+    @Test
+    public void testSanitize() throws Exception {
+        String data = "STARLINK-11559 [DTC]\n"
+                + "1 62829U 25019A   25055.48571081  .00004910  00000+0  31049-4 0  9999\n"
+                + "2 62829  42.9990  67.0699 0001472 289.4728  70.5983 15.77865734  5328\n"
+                + "\n"
+                + "1 62903U 25026B   25054.91904369  .00003073  00000+0  29444-3 0  9990\n"
+                + "2 62903  81.9966 201.7787 0014692 190.6063 169.4848 14.92808070  2797\n"
+                + "ORPHAN\n";
+        StringWriter output = new StringWriter();
+        TleSanitizer.Result result;
+        try (BufferedReader reader = new BufferedReader(new StringReader(data));
+             BufferedWriter writer = new BufferedWriter(output)) {
+            result = TleSanitizer.sanitize(reader, writer, Collections.singletonMap("62903", "#FF0000"),
+                    LocalDateTime.of(2025, 2, 24, 6, 0));
+        }
+        Assert.assertEquals(Arrays.asList("STARLINK-11559_DTC", "tle-62903"), result.getSatelliteNames());
+        Assert.assertEquals(Collections.singletonMap("tle-62903", "#FF0000"), result.getSatelliteColorMap());
+        // Only the second record has an epoch before the limit
+        Assert.assertEquals(1, result.getFilteredTleCount());
+        Assert.assertEquals(2, result.getRecords().size());
+        TleRecord generated = result.getRecords().get(1);
+        Assert.assertEquals("tle-62903", generated.getName());
+        Assert.assertEquals("62903", generated.getNoradId());
+        Assert.assertEquals(LocalDateTime.of(2025, 2, 23, 22, 3, 25), generated.getEpoch());
+        Assert.assertEquals("2 62903  81.9966 201.7787 0014692 190.6063 169.4848 14.92808070  2797",
+                generated.getLine2());
+        Assert.assertEquals("STARLINK-11559_DTC" + NL
+                + "1 62829U 25019A   25055.48571081  .00004910  00000+0  31049-4 0  9999" + NL
+                + "2 62829  42.9990  67.0699 0001472 289.4728  70.5983 15.77865734  5328" + NL
+                + "tle-62903" + NL
+                + "1 62903U 25026B   25054.91904369  .00003073  00000+0  29444-3 0  9990" + NL
+                + "2 62903  81.9966 201.7787 0014692 190.6063 169.4848 14.92808070  2797" + NL, output.toString());
+    }
+
+    @Test
+    public void testEpochCheckDisabled() throws Exception {
+        String data = "1 62903U 25026B   25054.91904369  .00003073  00000+0  29444-3 0  9990\n"
+                + "2 62903  81.9966 201.7787 0014692 190.6063 169.4848 14.92808070  2797\n";
+        try (BufferedReader reader = new BufferedReader(new StringReader(data));
+             BufferedWriter writer = new BufferedWriter(new StringWriter())) {
+            Assert.assertEquals(0, TleSanitizer.sanitize(reader, writer, Collections.emptyMap(), null)
+                    .getFilteredTleCount());
+        }
+    }
+}
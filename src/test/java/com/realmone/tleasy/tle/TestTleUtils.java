@@ -13,7 +13,7 @@ public class TestTleUtils {
 
     @Test
     public void testGetIds() {
-        Set<String> ids = TleUtils.parseIdentifiers("12345,11111-11115,99999");
+        NoradIdSet ids = TleUtils.parseIdentifiers("12345,11111-11115,99999");
         Set<String> expected = new HashSet<>();
         expected.add("12345");
         expected.add("11111");
@@ -23,11 +23,26 @@ public class TestTleUtils {
         expected.add("11115");
         expected.add("99999");
         Assert.assertEquals(expected.size(), ids.size());
-        for (String id : ids) {
-            Assert.assertTrue(expected.contains(id));
+        for (String id : expected) {
+            Assert.assertTrue(ids.contains(id));
         }
     }
 
+    @Test
+    public void testGetAlpha5Ids() {
+        NoradIdSet ids = TleUtils.parseIdentifiers("A0001, 99998 - B0000");
+        Assert.assertTrue(ids.contains("A0001"));
+        Assert.assertTrue(ids.contains("99998"));
+        Assert.assertTrue(ids.contains("A9999"));
+        Assert.assertTrue(ids.contains("B0000"));
+        Assert.assertEquals(10003, ids.size());
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void testGetIdsReversedRange() {
+        TleUtils.parseIdentifiers("11115-11111");
+    }
+
     @Test
     public void testNumbersBetween() {
         Set<Integer> numbers = TleUtils.getNumbersBetween(11111, 11113);
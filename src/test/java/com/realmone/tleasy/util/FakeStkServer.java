@@ -0,0 +1,587 @@
+package com.realmone.tleasy.util;
+
+import com.realmone.tleasy.tle.TleUtils;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.File;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.net.ServerSocket;
+import java.net.Socket;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.time.LocalDateTime;
+import java.time.ZoneOffset;
+import java.time.format.DateTimeFormatter;
+import java.time.temporal.ChronoUnit;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.Random;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+/**
+ * In-process stand-in for STK's Connect socket, so the STK workflow can be tested and benchmarked without a licensed
+ * STK.  It speaks the synchronous framing {@link StkCon} expects: a 3 byte {@code ACK} or 4 byte {@code NACK}, then,
+ * for commands that return data, either a single message behind a 40 byte header or a count message followed by one
+ * message per record.
+ * <p>
+ * It keeps a minimal scenario with satellites and facilities, and answers {@code CheckScenario},
+ * {@code AllInstanceNames}, {@code New}, {@code Load}, {@code Unload}, {@code ImportTLEFile}, {@code SetState},
+ * {@code GetEpoch}, {@code Graphics}, {@code BatchGraphics}, {@code Access} and {@code Report_RM}.  Satellites
+ * propagated from a TLE file report the epoch of their TLE, and any others the scenario's start.  Access reports are synthetic but shaped
+ * like STK's: zero to six passes a day for each satellite/facility pair, seeded from their names so every run gives the
+ * same report.  Any other command is ACKed, with an empty answer if STK would return data for it.
+ * <p>
+ * Every connection is served on its own thread.  A latency can be set per command, to stand in for the time STK
+ * spends on it, and commands can be serialized across connections the way a single STK instance executes them.
+ */
+public class FakeStkServer implements AutoCloseable {
+
+    private static final DateTimeFormatter STK_TIME = DateTimeFormatter.ofPattern("d MMM yyyy HH:mm:ss.SSS",
+            Locale.ENGLISH);
+    private static final Pattern QUOTED = Pattern.compile("\"([^\"]*)\"");
+
+    private final ServerSocket server;
+    private final Thread acceptThread;
+    private final List<Socket> connections = Collections.synchronizedList(new ArrayList<>());
+    private final Map<String, Long> latencyNanos = new ConcurrentHashMap<>();
+    private final Map<String, AtomicLong> commandCounts = new ConcurrentHashMap<>();
+    private final Set<String> refused = ConcurrentHashMap.newKeySet();
+    private final Set<String> satellites = Collections.synchronizedSet(new LinkedHashSet<>());
+    private final Set<String> facilities = Collections.synchronizedSet(new LinkedHashSet<>());
+    private final Map<String, LocalDateTime> epochs = new ConcurrentHashMap<>();
+    private final Object stk = new Object();
+    private volatile String scenario;
+    private volatile long defaultLatencyNanos;
+    private volatile boolean serialized;
+    private volatile boolean tleImport = true;
+    private volatile boolean importByNoradId;
+    private volatile boolean batchGraphics;
+    private volatile LocalDateTime scenarioStart = LocalDateTime.now(ZoneOffset.UTC).truncatedTo(ChronoUnit.HOURS);
+
+    /**
+     * Starts a fake STK listening on a free local port.
+     *
+     * @throws IOException If the server socket can't be opened
+     */
+    public FakeStkServer() throws IOException {
+        this(0);
+    }
+
+    /**
+     * Starts a fake STK listening on the given local port.
+     *
+     * @param port The port to listen on, or 0 for a free one
+     * @throws IOException If the server socket can't be opened
+     */
+    public FakeStkServer(int port) throws IOException {
+        server = new ServerSocket(port);
+        acceptThread = new Thread(this::accept, "fake-stk-accept");
+        acceptThread.setDaemon(true);
+        acceptThread.start();
+    }
+
+    /**
+     * @return The port the fake STK is listening on
+     */
+    public int getPort() {
+        return server.getLocalPort();
+    }
+
+    /**
+     * @return A new, not yet connected, session to the fake STK
+     */
+    public StkCon newConnection() {
+        return new StkCon("localhost", getPort());
+    }
+
+    /**
+     * Sets how long the named command takes to run.
+     *
+     * @param command The command name, e.g. {@code Report_RM}; case insensitive
+     * @param latency How long the command takes
+     * @param unit    The unit of the latency
+     * @return This server
+     */
+    public FakeStkServer setLatency(String command, long latency, TimeUnit unit) {
+        latencyNanos.put(command.toUpperCase(), unit.toNanos(latency));
+        return this;
+    }
+
+    /**
+     * Sets how long every command without its own latency takes to run.
+     */
+    public FakeStkServer setDefaultLatency(long latency, TimeUnit unit) {
+        defaultLatencyNanos = unit.toNanos(latency);
+        return this;
+    }
+
+    /**
+     * @param serialized Whether commands from different connections wait on each other, like a single STK instance,
+     *                   rather than running at the same time, like separate STK engines
+     */
+    public FakeStkServer setSerialized(boolean serialized) {
+        this.serialized = serialized;
+        return this;
+    }
+
+    /**
+     * @param tleImport Whether {@code ImportTLEFile} is supported, or NACKed like a version of STK without it
+     */
+    public FakeStkServer setTleImport(boolean tleImport) {
+        this.tleImport = tleImport;
+        return this;
+    }
+
+    /**
+     * @param importByNoradId Whether {@code ImportTLEFile} names satellites after their NORAD identifiers, e.g.
+     *                        {@code tle-25544}, rather than after the names in the file
+     */
+    public FakeStkServer setImportByNoradId(boolean importByNoradId) {
+        this.importByNoradId = importByNoradId;
+        return this;
+    }
+
+    /**
+     * Sets the epoch of a satellite's orbit, as though it had been changed in STK.
+     */
+    public FakeStkServer setEpoch(String satellite, LocalDateTime epoch) {
+        epochs.put(satellite, epoch);
+        return this;
+    }
+
+    /**
+     * @param command The command name; case insensitive
+     * @param refuse  Whether to NACK the command whatever it asks for
+     * @return This server
+     */
+    public FakeStkServer setRefused(String command, boolean refuse) {
+        if (refuse) {
+            refused.add(command.toUpperCase());
+        } else {
+            refused.remove(command.toUpperCase());
+        }
+        return this;
+    }
+
+    /**
+     * Opens a scenario, as though it had been loaded before the test connected.
+     */
+    public FakeStkServer setScenario(String name) {
+        this.scenario = name;
+        return this;
+    }
+
+    /**
+     * @param start The time the scenario, and so its accesses, start at
+     */
+    public FakeStkServer setScenarioStart(LocalDateTime start) {
+        this.scenarioStart = start;
+        return this;
+    }
+
+    /**
+     * Adds a facility to the scenario.
+     */
+    public FakeStkServer addFacility(String name) {
+        facilities.add(name);
+        return this;
+    }
+
+    /**
+     * @return The satellites in the scenario, in the order they were created
+     */
+    public List<String> getSatellites() {
+        synchronized (satellites) {
+            return new ArrayList<>(satellites);
+        }
+    }
+
+    /**
+     * @param command The command name; case insensitive
+     * @return How many times the command has been received
+     */
+    public long getCommandCount(String command) {
+        AtomicLong count = commandCounts.get(command.toUpperCase());
+        return count == null ? 0 : count.get();
+    }
+
+    /**
+     * @return Whether graphics updates are suspended by {@code BatchGraphics}
+     */
+    public boolean isBatchGraphics() {
+        return batchGraphics;
+    }
+
+    /**
+     * @return How many connections have been made
+     */
+    public int getConnectionCount() {
+        return connections.size();
+    }
+
+    @Override
+    public void close() throws IOException {
+        server.close();
+        synchronized (connections) {
+            for (Socket socket : connections) {
+                socket.close();
+            }
+        }
+        try {
+            acceptThread.join(5000);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+
+    private void accept() {
+        try {
+            while (true) {
+                Socket socket = server.accept();
+                connections.add(socket);
+                Thread session = new Thread(() -> serve(socket), "fake-stk-session-" + connections.size());
+                session.setDaemon(true);
+                session.start();
+            }
+        } catch (IOException e) {
+            // Closed
+        }
+    }
+
+    private void serve(Socket socket) {
+        try (Socket s = socket;
+             InputStream in = new BufferedInputStream(s.getInputStream());
+             OutputStream out = new BufferedOutputStream(s.getOutputStream())) {
+            s.setTcpNoDelay(true);
+            String line;
+            while ((line = readLine(in)) != null) {
+                String command = line.trim();
+                if (command.isEmpty()) {
+                    continue;
+                }
+                if (command.toLowerCase().contains("concontrol / disconnect")) {
+                    break;
+                }
+                if (serialized) {
+                    synchronized (stk) {
+                        execute(command, out);
+                    }
+                } else {
+                    execute(command, out);
+                }
+                // Only flush once every command that has already arrived has been answered
+                if (in.available() == 0) {
+                    out.flush();
+                }
+            }
+            out.flush();
+        } catch (IOException e) {
+            // The client went away
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+
+    private void execute(String command, OutputStream out) throws IOException, InterruptedException {
+        String[] tokens = command.split("\\s+");
+        String name = tokens[0];
+        String upper = name.toUpperCase();
+        commandCounts.computeIfAbsent(upper, key -> new AtomicLong()).incrementAndGet();
+        long latency = latencyNanos.getOrDefault(upper, defaultLatencyNanos);
+        if (latency > 0) {
+            TimeUnit.NANOSECONDS.sleep(latency);
+        }
+        if (refused.contains(upper)) {
+            nack(out);
+            return;
+        }
+
+        switch (upper) {
+            case "CHECKSCENARIO":
+                ack(out);
+                message(out, name, scenario == null ? "0" : "1");
+                break;
+            case "ALLINSTANCENAMES":
+                ack(out);
+                message(out, name, instanceNames(tokens.length > 2 ? tokens[2] : null));
+                break;
+            case "NEW":
+                respondIf(out, name, create(tokens));
+                break;
+            case "LOAD":
+                Matcher path = QUOTED.matcher(command);
+                if (path.find()) {
+                    String file = path.group(1).replace('\\', '/');
+                    scenario = file.substring(file.lastIndexOf('/') + 1).replace(".sc", "");
+                    acknowledge(out, name);
+                } else {
+                    nack(out);
+                }
+                break;
+            case "IMPORTTLEFILE":
+                respondIf(out, name, importTles(command));
+                break;
+            case "UNLOAD":
+                respondIf(out, name, tokens.length > 2 && unload(objectName(tokens[2])));
+                break;
+            case "SETSTATE":
+                respondIf(out, name, setState(command, tokens));
+                break;
+            case "GETEPOCH":
+                if (tokens.length > 1 && satellites.contains(objectName(tokens[1]))) {
+                    ack(out);
+                    LocalDateTime epoch = epochs.getOrDefault(objectName(tokens[1]), scenarioStart);
+                    message(out, name, "\"" + STK_TIME.format(epoch) + "\"");
+                } else {
+                    nack(out);
+                }
+                break;
+            case "GRAPHICS":
+                respondIf(out, name, tokens.length > 1 && satellites.contains(objectName(tokens[1])));
+                break;
+            case "BATCHGRAPHICS":
+                if (tokens.length > 2 && (tokens[2].equalsIgnoreCase("On") || tokens[2].equalsIgnoreCase("Off"))) {
+                    batchGraphics = tokens[2].equalsIgnoreCase("On");
+                    acknowledge(out, name);
+                } else {
+                    nack(out);
+                }
+                break;
+            case "ACCESS":
+                respondIf(out, name, tokens.length > 2 && satellites.contains(objectName(tokens[1]))
+                        && facilities.contains(objectName(tokens[2])));
+                break;
+            case "REPORT_RM":
+                report(command, tokens, out);
+                break;
+            default:
+                acknowledge(out, name);
+        }
+    }
+
+    /**
+     * Handles {@code New} for the scenario itself and for the satellites and facilities in it.
+     */
+    private boolean create(String[] tokens) {
+        if (tokens.length < 4) {
+            return false;
+        }
+        String type = tokens[2].replace("*/", "");
+        String name = tokens[3];
+        if (type.equalsIgnoreCase("Scenario")) {
+            scenario = name;
+            satellites.clear();
+            facilities.clear();
+            epochs.clear();
+            return true;
+        }
+        if (scenario == null) {
+            return false;
+        }
+        if (type.equalsIgnoreCase("Satellite")) {
+            epochs.remove(name);
+            return satellites.add(name);
+        } else if (type.equalsIgnoreCase("Facility")) {
+            return facilities.add(name);
+        }
+        return false;
+    }
+
+    private boolean unload(String satellite) {
+        epochs.remove(satellite);
+        return satellites.remove(satellite);
+    }
+
+    /**
+     * Handles {@code SetState <satellite> SGP4 ... <ssc> TLESource Automatic Source File "<file>"}, propagating the
+     * satellite from the first TLE in the file with the NORAD identifier.
+     */
+    private boolean setState(String command, String[] tokens) throws IOException {
+        if (tokens.length < 2 || !satellites.contains(objectName(tokens[1]))) {
+            return false;
+        }
+        Matcher path = QUOTED.matcher(command);
+        int source = Arrays.asList(tokens).indexOf("TLESource");
+        if (source < 1 || !path.find()) {
+            return true;
+        }
+        File file = new File(path.group(1));
+        if (!file.isFile()) {
+            return false;
+        }
+        for (String line : Files.readAllLines(file.toPath(), StandardCharsets.US_ASCII)) {
+            if (line.startsWith("1 ") && line.length() > 32 && line.substring(2, 7).trim().equals(tokens[source - 1])) {
+                epochs.put(objectName(tokens[1]), TleUtils.parseTleEpoch(line));
+                return true;
+            }
+        }
+        return false;
+    }
+
+    /**
+     * Handles {@code ImportTLEFile <scenario> "<file>" ...}, creating a satellite for each named TLE in the file, or
+     * updating it if it already exists.
+     */
+    private boolean importTles(String command) throws IOException {
+        Matcher path = QUOTED.matcher(command);
+        if (!tleImport || scenario == null || !path.find()) {
+            return false;
+        }
+        File file = new File(path.group(1));
+        if (!file.isFile()) {
+            return false;
+        }
+        Set<String> imported = new HashSet<>();
+        String satellite = null;
+        for (String line : Files.readAllLines(file.toPath(), StandardCharsets.US_ASCII)) {
+            String trimmed = line.trim();
+            if (trimmed.startsWith("1 ") && trimmed.length() > 32) {
+                if (importByNoradId) {
+                    satellite = "tle-" + trimmed.substring(2, 7).trim();
+                }
+                // The first TLE in the file for each satellite is the one it's propagated from
+                if (satellite != null && imported.add(satellite)) {
+                    satellites.add(satellite);
+                    epochs.put(satellite, TleUtils.parseTleEpoch(trimmed));
+                }
+            } else if (!trimmed.isEmpty() && !trimmed.startsWith("2 ")) {
+                satellite = trimmed;
+            }
+        }
+        return true;
+    }
+
+    private String instanceNames(String type) {
+        if (scenario == null) {
+            return "";
+        }
+        StringBuilder names = new StringBuilder();
+        if (type == null || type.equalsIgnoreCase("Scenario")) {
+            names.append("/Scenario/").append(scenario).append(' ');
+        }
+        if (type == null || type.equalsIgnoreCase("Facility")) {
+            synchronized (facilities) {
+                for (String facility : facilities) {
+                    names.append("/Scenario/").append(scenario).append("/Facility/").append(facility).append(' ');
+                }
+            }
+        }
+        if (type == null || type.equalsIgnoreCase("Satellite")) {
+            synchronized (satellites) {
+                for (String satellite : satellites) {
+                    names.append("/Scenario/").append(scenario).append("/Satellite/").append(satellite).append(' ');
+                }
+            }
+        }
+        return names.toString();
+    }
+
+    /**
+     * Answers {@code Report_RM <satellite> Style "Access" AccessObject <facility> ...} with a header record and one
+     * record per pass, or an error record if either object doesn't exist.
+     */
+    private void report(String command, String[] tokens, OutputStream out) throws IOException {
+        int accessObject = -1;
+        for (int i = 0; i < tokens.length; i++) {
+            if (tokens[i].equalsIgnoreCase("AccessObject")) {
+                accessObject = i + 1;
+            }
+        }
+        String satellite = tokens.length > 1 ? objectName(tokens[1]) : "";
+        String facility = accessObject > 0 && accessObject < tokens.length ? objectName(tokens[accessObject]) : "";
+        if (!satellites.contains(satellite) || !facilities.contains(facility) || !command.contains("\"Access\"")) {
+            nack(out);
+            return;
+        }
+        ack(out);
+        List<String> records = new ArrayList<>();
+        records.add("Access       Start Time (UTCG)            Stop Time (UTCG)        Duration (sec)");
+        Random random = new Random((satellite + "/" + facility).hashCode());
+        int passes = random.nextInt(7);
+        LocalDateTime start = scenarioStart;
+        for (int pass = 1; pass <= passes; pass++) {
+            // Spread the passes out over the day, each lasting between one and fifteen minutes
+            start = start.plusSeconds(600 + random.nextInt(4 * 3600));
+            double duration = 60 + random.nextInt(840_000) / 1000.0;
+            LocalDateTime stop = start.plusNanos((long) (duration * 1_000_000_000L));
+            records.add(String.format(Locale.ENGLISH, "%6d    %s    %s    %14.3f", pass, STK_TIME.format(start),
+                    STK_TIME.format(stop), duration));
+            start = stop;
+        }
+        message(out, "Report_RM", String.valueOf(records.size()));
+        for (String record : records) {
+            message(out, "Report_RM", record);
+        }
+    }
+
+    private void respondIf(OutputStream out, String command, boolean ok) throws IOException {
+        if (ok) {
+            acknowledge(out, command);
+        } else {
+            nack(out);
+        }
+    }
+
+    /**
+     * ACKs a command, following it with an empty answer if {@link StkCon} expects the command to return data.
+     */
+    private void acknowledge(OutputStream out, String command) throws IOException {
+        ack(out);
+        int format = StkCon.getReturnDataFormat(command);
+        if (format == 0) {
+            message(out, command, "");
+        } else if (format == 1) {
+            message(out, command, "0");
+        }
+    }
+
+    private static String objectName(String path) {
+        String trimmed = path.trim();
+        return trimmed.substring(trimmed.lastIndexOf('/') + 1);
+    }
+
+    private static void ack(OutputStream out) throws IOException {
+        out.write("ACK".getBytes(StandardCharsets.US_ASCII));
+    }
+
+    private static void nack(OutputStream out) throws IOException {
+        out.write("NACK".getBytes(StandardCharsets.US_ASCII));
+    }
+
+    private static void message(OutputStream out, String command, String data) throws IOException {
+        byte[] bytes = data.getBytes(StandardCharsets.UTF_8);
+        out.write(String.format("%-40s", command + " " + bytes.length).getBytes(StandardCharsets.US_ASCII));
+        out.write(bytes);
+    }
+
+    /**
+     * Reads a command line, ended by LF or CRLF.
+     */
+    private static String readLine(InputStream in) throws IOException {
+        ByteArrayOutputStream line = new ByteArrayOutputStream(128);
+        int b;
+        while ((b = in.read()) >= 0) {
+            if (b == '\n') {
+                return line.toString("UTF-8");
+            } else if (b != '\r') {
+                line.write(b);
+            }
+        }
+        return line.size() > 0 ? line.toString("UTF-8") : null;
+    }
+}
@@ -0,0 +1,195 @@
+package com.realmone.tleasy.util;
+
+import org.junit.After;
+import org.junit.Assert;
+import org.junit.Before;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.junit.runners.BlockJUnit4ClassRunner;
+
+import java.io.BufferedReader;
+import java.io.InputStreamReader;
+import java.io.OutputStream;
+import java.net.ServerSocket;
+import java.net.Socket;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicReference;
+
+@RunWith(BlockJUnit4ClassRunner.class)
+public class TestAsyncStkCon {
+
+    private ServerSocket server;
+    private Thread serverThread;
+    private final List<String> received = Collections.synchronizedList(new ArrayList<>());
+    private final AtomicReference<Throwable> serverError = new AtomicReference<>();
+    private final AtomicInteger ident = new AtomicInteger();
+
+    @Before
+    public void setup() throws Exception {
+        server = new ServerSocket(0);
+    }
+
+    @After
+    public void teardown() throws Exception {
+        server.close();
+        if (serverThread != null) {
+            serverThread.join(5000);
+        }
+        Assert.assertNull(serverError.get());
+    }
+
+    @Test
+    public void testResponsesAreMatchedToCommands() throws Exception {
+        serve(false);
+        try (AsyncStkCon con = new AsyncStkCon("localhost", server.getLocalPort())) {
+            con.connect();
+            List<AsyncStkCon.AsyncMessage> unsolicited = Collections.synchronizedList(new ArrayList<>());
+            con.setAsyncListener(unsolicited::add);
+
+            CompletableFuture<StkCon.ConResult> version = con.send("GetStkVersion /");
+            CompletableFuture<StkCon.ConResult> bad = con.send("SetState */Satellite/SAT-1 BAD");
+            CompletableFuture<StkCon.ConResult> blank = con.send("  ");
+            CompletableFuture<StkCon.ConResult> report = con.send("Report_RM */Satellite/SAT-1 Style \"Access\"");
+            CompletableFuture<StkCon.ConResult> created = con.send("New / */Satellite SAT-2");
+
+            StkCon.ConResult result = version.get(5, TimeUnit.SECONDS);
+            Assert.assertTrue(result.getAckStatus());
+            // Sent over two packets, with an animation update from STK arriving between them
+            Assert.assertEquals("STK v12.0", result.getData());
+            Assert.assertFalse(bad.get(5, TimeUnit.SECONDS).getAckStatus());
+            Assert.assertFalse(blank.get(5, TimeUnit.SECONDS).getAckStatus());
+            Assert.assertEquals("header\nrow 1\nrow 2\n", report.get(5, TimeUnit.SECONDS).getData());
+            Assert.assertTrue(created.get(5, TimeUnit.SECONDS).getAckStatus());
+            Assert.assertEquals("", created.get().getData());
+            Assert.assertEquals(0, con.getOutstanding());
+
+            Assert.assertEquals(1, unsolicited.size());
+            Assert.assertEquals("ANIMATION", unsolicited.get(0).getType());
+            Assert.assertEquals("Time 0.0", unsolicited.get(0).getData());
+        }
+    }
+
+    @Test
+    public void testManyCommandsFromManyThreads() throws Exception {
+        serve(false);
+        ExecutorService workers = Executors.newFixedThreadPool(8);
+        try (AsyncStkCon con = new AsyncStkCon("localhost", server.getLocalPort())) {
+            con.connect();
+            List<CompletableFuture<CompletableFuture<StkCon.ConResult>>> sent = new ArrayList<>();
+            for (int i = 0; i < 500; i++) {
+                String command = "AllInstanceNames " + i;
+                sent.add(CompletableFuture.supplyAsync(() -> con.send(command), workers));
+            }
+            for (int i = 0; i < sent.size(); i++) {
+                StkCon.ConResult result = sent.get(i).get(5, TimeUnit.SECONDS).get(5, TimeUnit.SECONDS);
+                Assert.assertTrue(result.getAckStatus());
+                Assert.assertEquals(String.valueOf(i), result.getData());
+            }
+        } finally {
+            workers.shutdown();
+        }
+    }
+
+    @Test
+    public void testLostConnectionFailsOutstandingCommands() throws Exception {
+        serve(true);
+        try (AsyncStkCon con = new AsyncStkCon("localhost", server.getLocalPort())) {
+            con.connect();
+            CompletableFuture<StkCon.ConResult> hangup = con.send("HANGUP /");
+            try {
+                hangup.get(5, TimeUnit.SECONDS);
+                Assert.fail("The command should fail when STK closes the connection");
+            } catch (ExecutionException e) {
+                Assert.assertTrue(e.getCause() instanceof java.io.IOException);
+            }
+            Assert.assertTrue(con.send("New / */Satellite SAT-1").isCompletedExceptionally());
+        }
+    }
+
+    @Test
+    public void testCannotTurnAsyncModeOff() throws Exception {
+        serve(false);
+        try (AsyncStkCon con = new AsyncStkCon("localhost", server.getLocalPort())) {
+            con.connect();
+            Assert.assertTrue(con.send("ConControl / AsyncOff").isCompletedExceptionally());
+        }
+    }
+
+    /**
+     * Starts a minimal STK Connect server that acks the setup commands synchronously until async mode is turned on,
+     * then answers everything with async packets.  HANGUP closes the connection, when allowed.
+     */
+    private void serve(boolean allowHangup) {
+        serverThread = new Thread(() -> {
+            try (Socket socket = server.accept();
+                 BufferedReader in = new BufferedReader(new InputStreamReader(socket.getInputStream(),
+                         StandardCharsets.US_ASCII))) {
+                OutputStream out = socket.getOutputStream();
+                boolean async = false;
+                String line;
+                while ((line = in.readLine()) != null) {
+                    received.add(line);
+                    if (line.toLowerCase().contains("disconnect") || (allowHangup && line.startsWith("HANGUP"))) {
+                        break;
+                    }
+                    if (line.contains("AsyncOn")) {
+                        async = true;
+                    }
+                    if (!async) {
+                        out.write("ACK".getBytes(StandardCharsets.US_ASCII));
+                    } else {
+                        respond(line, out);
+                    }
+                    out.flush();
+                }
+            } catch (Throwable e) {
+                if (!server.isClosed()) {
+                    serverError.set(e);
+                }
+            }
+        });
+        serverThread.setDaemon(true);
+        serverThread.start();
+    }
+
+    private void respond(String command, OutputStream out) throws Exception {
+        if (command.contains("BAD")) {
+            packet(out, "NACK", ident.incrementAndGet(), 1, 1, "");
+            return;
+        }
+        packet(out, "ACK", ident.incrementAndGet(), 1, 1, "");
+        if (command.startsWith("GetStkVersion")) {
+            int id = ident.incrementAndGet();
+            packet(out, "GetStkVersion", id, 2, 1, "STK ");
+            packet(out, "ANIMATION", ident.incrementAndGet(), 1, 1, "Time 0.0");
+            packet(out, "GetStkVersion", id, 2, 2, "v12.0");
+        } else if (command.startsWith("Report_RM")) {
+            packet(out, "Report_RM", ident.incrementAndGet(), 1, 1, "3");
+            for (String record : new String[]{"header", "row 1", "row 2"}) {
+                packet(out, "Report_RM", ident.incrementAndGet(), 1, 1, record);
+            }
+        } else if (command.startsWith("AllInstanceNames")) {
+            packet(out, "AllInstanceNames", ident.incrementAndGet(), 1, 1,
+                    command.substring("AllInstanceNames".length()).trim());
+        }
+    }
+
+    private static void packet(OutputStream out, String type, int ident, int total, int number, String data)
+            throws Exception {
+        // Type names longer than the header's 15 character field are cut short, as STK does
+        String shortType = type.length() > 15 ? type.substring(0, 15) : type;
+        String header = String.format("AGI4210%02d%-15s%06d%04d%04d%04d", shortType.length(), shortType, ident, total,
+                number, data.length());
+        out.write(header.getBytes(StandardCharsets.US_ASCII));
+        out.write(data.getBytes(StandardCharsets.US_ASCII));
+    }
+}
@@ -0,0 +1,77 @@
+package com.realmone.tleasy.util;
+
+import org.junit.After;
+import org.junit.Assert;
+import org.junit.Before;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.junit.runners.BlockJUnit4ClassRunner;
+
+import java.io.IOException;
+import java.io.InterruptedIOException;
+
+@RunWith(BlockJUnit4ClassRunner.class)
+public class TestBatchGraphics {
+
+    private FakeStkServer stk;
+    private StkCon con;
+
+    @Before
+    public void setup() throws Exception {
+        stk = new FakeStkServer().setScenario("TLEasy");
+        con = stk.newConnection();
+        Assert.assertEquals(0, con.connect());
+    }
+
+    @After
+    public void teardown() throws Exception {
+        con.disconnect();
+        stk.close();
+    }
+
+    @Test
+    public void testSuspendAndRestore() throws Exception {
+        try (BatchGraphics batch = BatchGraphics.suspend(con, true)) {
+            Assert.assertTrue(batch.isSuspended());
+            Assert.assertTrue(stk.isBatchGraphics());
+        }
+        Assert.assertFalse(stk.isBatchGraphics());
+        Assert.assertEquals(2, stk.getCommandCount("BatchGraphics"));
+    }
+
+    @Test
+    public void testDisabled() throws Exception {
+        try (BatchGraphics batch = BatchGraphics.suspend(con, false)) {
+            Assert.assertFalse(batch.isSuspended());
+        }
+        Assert.assertEquals(0, stk.getCommandCount("BatchGraphics"));
+    }
+
+    @Test
+    public void testRestoredOnFailure() throws Exception {
+        try (BatchGraphics batch = BatchGraphics.suspend(con, true)) {
+            Assert.assertTrue(batch.isSuspended());
+            Assert.assertTrue(stk.isBatchGraphics());
+            throw new IOException("Loading failed");
+        } catch (IOException e) {
+            Assert.assertEquals("Loading failed", e.getMessage());
+        }
+        Assert.assertFalse(stk.isBatchGraphics());
+    }
+
+    @Test
+    public void testRestoredAfterCancel() throws Exception {
+        try (BatchGraphics batch = BatchGraphics.suspend(con, true)) {
+            Assert.assertTrue(batch.isSuspended());
+            con.cancel();
+            con.sendConCommand("CheckScenario /");
+            Assert.fail("The cancelled connection should have been dropped");
+        } catch (InterruptedIOException e) {
+            // Expected
+        }
+        Assert.assertFalse(con.isConnected());
+        // Graphics were turned back on over a session of their own
+        Assert.assertFalse(stk.isBatchGraphics());
+        Assert.assertEquals(2, stk.getConnectionCount());
+    }
+}
@@ -0,0 +1,104 @@
+package com.realmone.tleasy.util;
+
+import org.junit.Assert;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.junit.runners.BlockJUnit4ClassRunner;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.EOFException;
+import java.nio.charset.StandardCharsets;
+
+@RunWith(BlockJUnit4ClassRunner.class)
+public class TestConnectCodec {
+
+    @Test
+    public void testAckAndNack() throws Exception {
+        ConnectCodec codec = codec("ACKNACKACK".getBytes(StandardCharsets.US_ASCII));
+        Assert.assertTrue(codec.readAck());
+        Assert.assertFalse(codec.readAck());
+        Assert.assertTrue(codec.readAck());
+    }
+
+    @Test
+    public void testNonAsciiPayloadIsReadByByteLength() throws Exception {
+        String report = "Facility Ålesund → SAT-1\nSAT-2 °";
+        byte[] payload = report.getBytes(StandardCharsets.UTF_8);
+        ByteArrayOutputStream data = new ByteArrayOutputStream();
+        data.write(header("Report_RM", payload.length));
+        data.write(payload);
+        data.write(header("Report_RM", 3));
+        data.write("end".getBytes(StandardCharsets.UTF_8));
+        ConnectCodec codec = codec(data.toByteArray());
+
+        StringBuffer text = new StringBuffer();
+        codec.readText(codec.readHeader(), text);
+        Assert.assertEquals(report, text.toString());
+        // The next message starts exactly where the byte length said the last one ended
+        Assert.assertEquals("end", codec.readText(codec.readHeader()));
+    }
+
+    @Test
+    public void testMultipleMessageCount() throws Exception {
+        ByteArrayOutputStream data = new ByteArrayOutputStream();
+        data.write(header("GetReport", 6));
+        data.write("12\n   ".getBytes(StandardCharsets.US_ASCII));
+        ConnectCodec codec = codec(data.toByteArray());
+        Assert.assertEquals(12, codec.readCount(codec.readHeader()));
+    }
+
+    @Test
+    public void testHeaderWithLineBreaks() throws Exception {
+        byte[] header = header("AllInstanceNames", 0);
+        header[16] = '\n';
+        Assert.assertEquals(0, codec(header).readHeader());
+    }
+
+    @Test(expected = NumberFormatException.class)
+    public void testMalformedHeader() throws Exception {
+        codec(header("AllInstanceNames", -1)).readHeader();
+    }
+
+    @Test
+    public void testAsyncHeader() throws Exception {
+        String header = "AGI421009ANIMATION      000001000200020005";
+        Assert.assertEquals(ConnectCodec.ASYNC_HEADER_LENGTH, header.length());
+        String[] fields = codec(header.getBytes(StandardCharsets.US_ASCII)).readAsyncHeader();
+        Assert.assertArrayEquals(new String[]{"AGI", "42", "1", "0", "09", "ANIMATION      ", "000001", "0002",
+                "0002", "0005"}, fields);
+    }
+
+    @Test(expected = EOFException.class)
+    public void testConnectionClosedMidMessage() throws Exception {
+        ByteArrayOutputStream data = new ByteArrayOutputStream();
+        data.write(header("Report_RM", 100));
+        data.write("short".getBytes(StandardCharsets.US_ASCII));
+        ConnectCodec codec = codec(data.toByteArray());
+        codec.readText(codec.readHeader());
+    }
+
+    @Test
+    public void testWriteCommand() throws Exception {
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        ConnectCodec codec = new ConnectCodec(new ByteArrayInputStream(new byte[0]), out, StandardCharsets.UTF_8);
+        StringBuilder longCommand = new StringBuilder("SetState */Satellite/SAT-Å ");
+        for (int i = 0; i < 200; i++) {
+            longCommand.append("0123456789");
+        }
+        codec.writeCommand("New / */Satellite SAT-1");
+        codec.writeCommand(longCommand.toString());
+        codec.flush();
+        String separator = System.lineSeparator();
+        Assert.assertEquals("New / */Satellite SAT-1" + separator + longCommand + separator,
+                new String(out.toByteArray(), StandardCharsets.UTF_8));
+    }
+
+    private static ConnectCodec codec(byte[] data) {
+        return new ConnectCodec(new ByteArrayInputStream(data), new ByteArrayOutputStream(), StandardCharsets.UTF_8);
+    }
+
+    private static byte[] header(String command, int length) {
+        return String.format("%-40s", command + " " + length).getBytes(StandardCharsets.US_ASCII);
+    }
+}
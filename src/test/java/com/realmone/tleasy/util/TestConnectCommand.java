@@ -0,0 +1,97 @@
+package com.realmone.tleasy.util;
+
+import org.junit.After;
+import org.junit.Assert;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.junit.runners.BlockJUnit4ClassRunner;
+
+import java.util.Arrays;
+import java.util.List;
+
+@RunWith(BlockJUnit4ClassRunner.class)
+public class TestConnectCommand {
+
+    private FakeStkServer stk;
+
+    @After
+    public void teardown() throws Exception {
+        if (stk != null) {
+            stk.close();
+        }
+    }
+
+    @Test
+    public void testEncoding() {
+        ConnectCommand command = ConnectCommand.builder(ConnectCommand.Verb.SET_STATE)
+                .arg(ScenarioPaths.of("TLEasy").satellite("ISS"))
+                .arg(ConnectCommand.Token.of("SGP4 UseScenarioInterval 60.0"))
+                .arg("25544")
+                .arg(ConnectCommand.Token.quoted("/tmp/some dir/sanitized.tle"))
+                .build();
+        String expected = "SetState /Scenario/TLEasy/Satellite/ISS SGP4 UseScenarioInterval 60.0 25544 "
+                + "\"/tmp/some dir/sanitized.tle\"";
+        Assert.assertEquals(expected, command.toString());
+        Assert.assertArrayEquals(expected.getBytes(ConnectCommand.CHARSET), command.getBytes());
+        Assert.assertEquals(ConnectCommand.Verb.SET_STATE, command.getVerb());
+
+        // Arguments outside plain ASCII are left to the character set
+        ConnectCommand graphics = ConnectCommand.builder(ConnectCommand.Verb.GRAPHICS).arg("Satélite").build();
+        Assert.assertArrayEquals("Graphics Satélite".getBytes(ConnectCommand.CHARSET), graphics.getBytes());
+
+        // Commands longer than the builder's starting buffer
+        StringBuilder longArg = new StringBuilder();
+        for (int i = 0; i < 50; i++) {
+            longArg.append("abcdef");
+        }
+        ConnectCommand longCommand = ConnectCommand.builder(ConnectCommand.Verb.NEW).arg(longArg.toString()).build();
+        Assert.assertArrayEquals(("New " + longArg).getBytes(ConnectCommand.CHARSET), longCommand.getBytes());
+    }
+
+    @Test
+    public void testVerbs() {
+        Assert.assertEquals(-1, ConnectCommand.Verb.NEW.getReturnDataFormat());
+        Assert.assertEquals(-1, ConnectCommand.Verb.SET_STATE.getReturnDataFormat());
+        Assert.assertEquals(0, ConnectCommand.Verb.ACCESS.getReturnDataFormat());
+        Assert.assertEquals(1, ConnectCommand.Verb.REPORT_RM.getReturnDataFormat());
+        Assert.assertEquals(0, ConnectCommand.Verb.ALL_INSTANCE_NAMES.getReturnDataFormat());
+        Assert.assertEquals(1, ConnectCommand.Verb.of("GetReport").getReturnDataFormat());
+        for (String name : Arrays.asList("", "Set State", "ConControl", "concontrol")) {
+            try {
+                ConnectCommand.Verb.of(name);
+                Assert.fail("Expected \"" + name + "\" to be rejected");
+            } catch (IllegalArgumentException e) {
+                // expected
+            }
+        }
+    }
+
+    @Test
+    public void testScenarioPaths() {
+        ScenarioPaths paths = ScenarioPaths.of("TLEasy");
+        Assert.assertSame(paths.satellite("ISS"), paths.satellite("ISS"));
+        Assert.assertEquals("/Scenario/TLEasy/Facility/Denver", paths.facility("Denver").toString());
+        Assert.assertNotSame(paths.facility("Denver"), ScenarioPaths.of("Other").facility("Denver"));
+        // Nothing is kept between runs
+        Assert.assertNotSame(paths.satellite("ISS"), ScenarioPaths.of("TLEasy").satellite("ISS"));
+    }
+
+    @Test
+    public void testSend() throws Exception {
+        stk = new FakeStkServer().setScenario("TLEasy");
+        StkCon con = stk.newConnection();
+        Assert.assertEquals(0, con.connect());
+        Assert.assertEquals("1", con.sendConCommand(ConnectCommand.builder(ConnectCommand.Verb.CHECK_SCENARIO)
+                .arg("/").build()));
+        List<StkCon.ConResult> results = con.sendConCommandBatch(Arrays.asList(
+                ConnectCommand.builder(ConnectCommand.Verb.NEW).arg("/ */Satellite").arg("SAT-1").build(),
+                ConnectCommand.builder(ConnectCommand.Verb.NEW).arg("/ */Satellite").arg("SAT-1").build(),
+                ConnectCommand.builder(ConnectCommand.Verb.ALL_INSTANCE_NAMES).arg("/ Scenario").build()));
+        Assert.assertEquals(3, results.size());
+        Assert.assertTrue(results.get(0).getAckStatus());
+        Assert.assertFalse("Names are unique", results.get(1).getAckStatus());
+        Assert.assertEquals("New / */Satellite SAT-1", results.get(1).getCommand());
+        Assert.assertEquals("/Scenario/TLEasy ", results.get(2).getData());
+        con.disconnect();
+    }
+}
@@ -0,0 +1,147 @@
+package com.realmone.tleasy.util;
+
+import com.realmone.tleasy.TLEasy.AccessReportResult;
+import com.realmone.tleasy.tle.TleRecord;
+import org.junit.After;
+import org.junit.Assert;
+import org.junit.Before;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+import org.junit.runner.RunWith;
+import org.junit.runners.BlockJUnit4ClassRunner;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+
+@RunWith(BlockJUnit4ClassRunner.class)
+public class TestFakeStkServer {
+
+    @Rule
+    public TemporaryFolder temp = new TemporaryFolder();
+
+    private FakeStkServer stk;
+
+    @Before
+    public void setup() throws Exception {
+        stk = new FakeStkServer()
+                .addFacility("Denver")
+                .addFacility("Fairbanks")
+                .addFacility("Hawaii");
+    }
+
+    @After
+    public void teardown() throws Exception {
+        stk.close();
+    }
+
+    @Test
+    public void testScenarioCommands() throws Exception {
+        StkCon con = stk.newConnection();
+        Assert.assertEquals(0, con.connect());
+        Assert.assertEquals("0", con.sendConCommand("CheckScenario /"));
+        con.sendConCommand("New / */Satellite SAT-1");
+        Assert.assertFalse("Satellites need a scenario", con.getAckStatus());
+        con.sendConCommand("New / Scenario TLEasy");
+        Assert.assertTrue(con.getAckStatus());
+        Assert.assertEquals("1", con.sendConCommand("CheckScenario /"));
+        Assert.assertEquals("/Scenario/TLEasy ", con.sendConCommand("AllInstanceNames / Scenario"));
+        con.sendConCommand("New / */Satellite SAT-1");
+        Assert.assertTrue(con.getAckStatus());
+        con.sendConCommand("New / */Satellite SAT-1");
+        Assert.assertFalse("Names are unique", con.getAckStatus());
+        con.sendConCommand("SetState /Scenario/TLEasy/Satellite/SAT-2 SGP4 UseScenarioInterval 60.0 00002");
+        Assert.assertFalse(con.getAckStatus());
+        // Commands the fake knows nothing about still get an answer in the shape StkCon expects
+        Assert.assertEquals("", con.sendConCommand("GetStkVersion /"));
+        Assert.assertTrue(con.getAckStatus());
+        con.disconnect();
+        Assert.assertEquals(Collections.singletonList("SAT-1"), stk.getSatellites());
+    }
+
+    @Test
+    public void testAccessReportWorkflow() throws Exception {
+        List<String> satellites = new ArrayList<>();
+        for (int i = 1; i <= 12; i++) {
+            satellites.add("SAT-" + i);
+        }
+        List<TleRecord> records = new ArrayList<>();
+        File tleFile = tleFile(satellites, records);
+
+        AccessReportResult single = runWorkflow(records, tleFile, 1);
+        Assert.assertEquals(satellites, stk.getSatellites());
+        Assert.assertEquals(36, stk.getCommandCount("Report_RM"));
+        String[] rows = single.getCsvData().split("\n");
+        Assert.assertTrue("Some pairs should have accesses", rows.length > 1);
+        Assert.assertTrue(rows[0].startsWith("Satellite,Facility,Start Time (UTCG)"));
+        for (int i = 1; i < rows.length; i++) {
+            Assert.assertEquals(rows[i], 7, rows[i].split(",").length);
+        }
+
+        // The same report comes back when the pairs are spread over several sessions
+        AccessReportResult pooled = runWorkflow(records, tleFile, 4);
+        Assert.assertEquals(single.getCsvData(), pooled.getCsvData());
+        Assert.assertEquals(72, stk.getCommandCount("Report_RM"));
+    }
+
+    @Test
+    public void testCommandLatency() throws Exception {
+        stk.setScenario("TLEasy").setLatency("CheckScenario", 50, TimeUnit.MILLISECONDS);
+        StkCon con = stk.newConnection();
+        Assert.assertEquals(0, con.connect());
+        long start = System.nanoTime();
+        Assert.assertEquals("1", con.sendConCommand("CheckScenario /"));
+        Assert.assertTrue(System.nanoTime() - start >= TimeUnit.MILLISECONDS.toNanos(50));
+        con.disconnect();
+    }
+
+    /**
+     * Creates a fresh scenario, then loads the satellites and generates the access report the way TLEasy does.
+     */
+    private AccessReportResult runWorkflow(List<TleRecord> records, File tleFile, int sessions) throws Exception {
+        StkCon con = stk.newConnection();
+        Assert.assertEquals(0, con.connect());
+        con.sendConCommand("New / Scenario TLEasy");
+        for (String facility : Arrays.asList("Denver", "Fairbanks", "Hawaii")) {
+            con.sendConCommand("New / */Facility " + facility);
+        }
+        new SatelliteLoader(con).loadAll("TLEasy", tleFile, records, new HashMap<>());
+        List<String> statuses = new ArrayList<>();
+        try (StkConPool pool = StkConPool.connect(con, sessions)) {
+            Assert.assertEquals(sessions, pool.size());
+            return new AccessReportGenerator(con, pool, statuses::add)
+                    .generateAccessReportCsv("TLEasy", records);
+        } finally {
+            con.disconnect();
+        }
+    }
+
+    /**
+     * Writes a TLE file for the satellites, adding the record of each to the list as sanitizing does.
+     */
+    private File tleFile(List<String> satellites, List<TleRecord> records) throws IOException {
+        StringBuilder tle = new StringBuilder();
+        for (String satellite : satellites) {
+            TleRecord record = TleRecord.parse(satellite,
+                    String.format("1 %05dU 98067A   25055.50000000  .00016717  00000-0  10270-3 0  9005",
+                            10000 + records.size()),
+                    String.format("2 %05d  51.6416 247.4627 0006703 130.5360 325.0288 15.72125391563537",
+                            10000 + records.size()));
+            records.add(record);
+            tle.append(satellite).append('\n').append(record.getLine1()).append('\n')
+                    .append(record.getLine2()).append('\n');
+        }
+        File file = temp.newFile("sanitized.tle");
+        Files.write(file.toPath(), tle.toString().getBytes(StandardCharsets.US_ASCII));
+        return file;
+    }
+}
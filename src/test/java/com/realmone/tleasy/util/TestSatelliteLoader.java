@@ -0,0 +1,276 @@
+package com.realmone.tleasy.util;
+
+import com.realmone.tleasy.tle.TleRecord;
+import org.junit.After;
+import org.junit.Assert;
+import org.junit.Before;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+import org.junit.runner.RunWith;
+import org.junit.runners.BlockJUnit4ClassRunner;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+@RunWith(BlockJUnit4ClassRunner.class)
+public class TestSatelliteLoader {
+
+    @Rule
+    public TemporaryFolder temp = new TemporaryFolder();
+
+    private FakeStkServer stk;
+    private StkCon con;
+    private final LoadedSatellites loaded = new LoadedSatellites();
+
+    @Before
+    public void setup() throws Exception {
+        stk = new FakeStkServer().setScenario("TLEasy");
+        con = stk.newConnection();
+        Assert.assertEquals(0, con.connect());
+    }
+
+    @After
+    public void teardown() throws Exception {
+        con.disconnect();
+        stk.close();
+    }
+
+    @Test
+    public void testIncrementalSync() throws Exception {
+        List<String> satellites = Arrays.asList("SAT-1", "SAT-2", "SAT-3", "SAT-4");
+        Map<String, String> colors = new HashMap<>();
+        colors.put("SAT-1", "Red");
+        List<TleRecord> records = records(satellites, "25055.50000000");
+
+        SatelliteLoader.LoadResult first = load(records, colors);
+        Assert.assertEquals(4, first.getCreated());
+        Assert.assertEquals(satellites, stk.getSatellites());
+        Assert.assertEquals(4, stk.getCommandCount("SetState"));
+        Assert.assertEquals(1, stk.getCommandCount("Graphics"));
+        Assert.assertEquals(4, loaded.size("TLEasy"));
+
+        // Nothing changed, so nothing but the listing and the epochs STK holds are sent
+        SatelliteLoader.LoadResult second = load(records, colors);
+        Assert.assertEquals(4, second.getUnchanged());
+        Assert.assertFalse(second.isChanged());
+        Assert.assertEquals(4, stk.getCommandCount("New"));
+        Assert.assertEquals(4, stk.getCommandCount("SetState"));
+        Assert.assertEquals(1, stk.getCommandCount("Graphics"));
+
+        // SAT-1 is dropped, SAT-5 added, SAT-2 has a newer TLE and SAT-3 a new color
+        List<String> edited = Arrays.asList("SAT-2", "SAT-3", "SAT-4", "SAT-5");
+        List<TleRecord> editedRecords = Arrays.asList(record("SAT-2", "25056.50000000"),
+                record("SAT-3", "25055.50000000"), record("SAT-4", "25055.50000000"),
+                record("SAT-5", "25056.50000000"));
+        colors.clear();
+        colors.put("SAT-3", "Green");
+        SatelliteLoader.LoadResult third = load(editedRecords, colors);
+        Assert.assertEquals(1, third.getCreated());
+        Assert.assertEquals(2, third.getUpdated());
+        Assert.assertEquals(1, third.getUnchanged());
+        Assert.assertEquals(1, third.getRemoved());
+        Assert.assertEquals(0, third.getFailed());
+        Assert.assertEquals(edited, stk.getSatellites());
+        // SAT-2 and SAT-5 have their state set, SAT-3 only its color
+        Assert.assertEquals(6, stk.getCommandCount("SetState"));
+        Assert.assertEquals(2, stk.getCommandCount("Graphics"));
+        Assert.assertEquals(1, stk.getCommandCount("Unload"));
+    }
+
+    @Test
+    public void testOtherSatellitesAreLeftAlone() throws Exception {
+        // One the user created, and one that came with the scenario
+        con.sendConCommand("New / */Satellite USER-1");
+        con.sendConCommand("New / */Satellite SAVED-1");
+        load(records(Arrays.asList("SAT-1", "SAT-2"), "25055.50000000"), Collections.emptyMap());
+        SatelliteLoader.LoadResult result = load(records(Collections.singletonList("SAT-2"), "25055.50000000"),
+                Collections.emptyMap());
+        // Only SAT-1, which TLEasy loaded, is unloaded
+        Assert.assertEquals(1, result.getRemoved());
+        Assert.assertEquals(Arrays.asList("USER-1", "SAVED-1", "SAT-2"), stk.getSatellites());
+
+        // Nor are they unloaded once the scenario's record is forgotten
+        loaded.forget("TLEasy");
+        Assert.assertEquals(0, load(Collections.emptyList(), Collections.emptyMap()).getRemoved());
+        Assert.assertEquals(Arrays.asList("USER-1", "SAVED-1", "SAT-2"), stk.getSatellites());
+    }
+
+    @Test
+    public void testUnknownScenario() throws Exception {
+        List<TleRecord> records = records(Arrays.asList("SAT-1", "SAT-2"), "25055.50000000");
+        load(records, Collections.emptyMap());
+
+        // Once the record is forgotten, satellites STK already has the same epochs for are left alone, and are
+        // TLEasy's again
+        loaded.forget("TLEasy");
+        SatelliteLoader.LoadResult result = load(records, Collections.emptyMap());
+        Assert.assertEquals(0, result.getCreated());
+        Assert.assertEquals(0, result.getUpdated());
+        Assert.assertEquals(2, result.getUnchanged());
+        Assert.assertEquals(2, stk.getCommandCount("New"));
+        Assert.assertEquals(2, stk.getCommandCount("SetState"));
+        Assert.assertEquals(2, loaded.size("TLEasy"));
+
+        // Ones with other epochs, such as one the user created by the same name, have their state set
+        loaded.forget("TLEasy");
+        con.sendConCommand("New / */Satellite SAT-3");
+        result = load(records(Arrays.asList("SAT-1", "SAT-2", "SAT-3"), "25055.50000000"), Collections.emptyMap());
+        Assert.assertEquals(1, result.getUpdated());
+        Assert.assertEquals(3, stk.getCommandCount("SetState"));
+    }
+
+    @Test
+    public void testScenarioChangedInStk() throws Exception {
+        List<TleRecord> records = records(Arrays.asList("SAT-1", "SAT-2"), "25055.50000000");
+        load(records, Collections.emptyMap());
+
+        // The scenario is reverted in STK, taking SAT-1 back to an older TLE, which is loaded again
+        stk.setEpoch("SAT-1", LocalDateTime.of(2025, 2, 1, 0, 0));
+        SatelliteLoader.LoadResult result = load(records, Collections.emptyMap());
+        Assert.assertEquals(1, result.getUpdated());
+        Assert.assertEquals(1, result.getUnchanged());
+        Assert.assertEquals(3, stk.getCommandCount("SetState"));
+        Assert.assertEquals(0, load(records, Collections.emptyMap()).getUpdated());
+    }
+
+    @Test
+    public void testFailuresAreNotRecorded() throws Exception {
+        // The satellites are created but their state can't be set
+        stk.setRefused("SetState", true);
+        List<TleRecord> records = records(Arrays.asList("SAT-1", "SAT-2"), "25055.50000000");
+        SatelliteLoader.LoadResult result = load(records, Collections.emptyMap());
+        Assert.assertEquals(2, result.getCreated());
+        Assert.assertEquals(2, result.getFailed());
+        Assert.assertEquals(0, loaded.size("TLEasy"));
+
+        stk.setRefused("SetState", false);
+        result = load(records, Collections.emptyMap());
+        Assert.assertEquals(2, result.getUpdated());
+        Assert.assertEquals(0, result.getFailed());
+        Assert.assertEquals(2, loaded.size("TLEasy"));
+    }
+
+    @Test
+    public void testFirstRecordForANameCounts() throws Exception {
+        List<TleRecord> records = Arrays.asList(record("SAT-1", "25055.50000000"), record("SAT-1", "25056.50000000"));
+        SatelliteLoader.LoadResult result = load(records, Collections.emptyMap());
+        Assert.assertEquals(1, result.getCreated());
+        Assert.assertEquals(1, stk.getCommandCount("SetState"));
+        Assert.assertEquals(0, load(records.subList(0, 1), Collections.emptyMap()).getUpdated());
+    }
+
+    @Test
+    public void testBulkImport() throws Exception {
+        List<String> satellites = Arrays.asList("SAT-1", "SAT-2", "SAT-3");
+        Map<String, String> colors = new HashMap<>();
+        colors.put("SAT-2", "Red");
+        List<TleRecord> records = records(satellites, "25055.50000000");
+
+        SatelliteLoader.LoadResult result = load(new SatelliteLoader(con, loaded, true), records, colors);
+        Assert.assertEquals(SatelliteLoader.LoadMethod.BULK_IMPORT, result.getMethod());
+        Assert.assertEquals(3, result.getCreated());
+        Assert.assertEquals(satellites, stk.getSatellites());
+        // Only the color is sent per satellite
+        Assert.assertEquals(1, stk.getCommandCount("ImportTLEFile"));
+        Assert.assertEquals(0, stk.getCommandCount("New"));
+        Assert.assertEquals(0, stk.getCommandCount("SetState"));
+        Assert.assertEquals(1, stk.getCommandCount("Graphics"));
+        Assert.assertEquals(3, loaded.size("TLEasy"));
+
+        // Nothing left to import
+        result = load(new SatelliteLoader(con, loaded, true), records, colors);
+        Assert.assertEquals(SatelliteLoader.LoadMethod.NONE, result.getMethod());
+        Assert.assertEquals(1, stk.getCommandCount("ImportTLEFile"));
+    }
+
+    @Test
+    public void testBulkImportFallback() throws Exception {
+        stk.setTleImport(false);
+        List<String> satellites = Arrays.asList("SAT-1", "SAT-2");
+        SatelliteLoader.LoadResult result = load(new SatelliteLoader(con, loaded, true),
+                records(satellites, "25055.50000000"), Collections.emptyMap());
+        Assert.assertEquals(SatelliteLoader.LoadMethod.BULK_IMPORT_WITH_FALLBACK, result.getMethod());
+        Assert.assertEquals(2, result.getCreated());
+        Assert.assertEquals(0, result.getFailed());
+        Assert.assertEquals(satellites, stk.getSatellites());
+        Assert.assertEquals(2, stk.getCommandCount("New"));
+        Assert.assertEquals(2, stk.getCommandCount("SetState"));
+    }
+
+    @Test
+    public void testBulkImportUpdatesExistingSatellites() throws Exception {
+        List<String> satellites = Arrays.asList("SAT-1", "SAT-2");
+        load(new SatelliteLoader(con, loaded, true), records(satellites, "25055.50000000"), Collections.emptyMap());
+
+        // SAT-2 has a newer TLE, which the import brings in over the existing satellite
+        List<TleRecord> edited = Arrays.asList(record("SAT-1", "25055.50000000"), record("SAT-2", "25056.50000000"));
+        SatelliteLoader.LoadResult result = load(new SatelliteLoader(con, loaded, true), edited,
+                Collections.emptyMap());
+        Assert.assertEquals(SatelliteLoader.LoadMethod.BULK_IMPORT, result.getMethod());
+        Assert.assertEquals(1, result.getUpdated());
+        Assert.assertEquals(2, stk.getCommandCount("ImportTLEFile"));
+        Assert.assertEquals(0, stk.getCommandCount("SetState"));
+    }
+
+    @Test
+    public void testBulkImportUnderOtherNames() throws Exception {
+        // SAT-1 is already in the scenario, without a TLE, and the import names satellites after their NORAD ids
+        con.sendConCommand("New / */Satellite SAT-1");
+        stk.setImportByNoradId(true);
+        List<String> satellites = Arrays.asList("SAT-1", "SAT-2");
+        SatelliteLoader.LoadResult result = load(new SatelliteLoader(con, loaded, true),
+                records(satellites, "25055.50000000"), Collections.emptyMap());
+        Assert.assertEquals(SatelliteLoader.LoadMethod.BULK_IMPORT_WITH_FALLBACK, result.getMethod());
+        Assert.assertEquals(0, result.getFailed());
+        // Neither counts as imported, and what the import did create is unloaded again
+        Assert.assertEquals(satellites, stk.getSatellites());
+        Assert.assertEquals(2, stk.getCommandCount("Unload"));
+        Assert.assertEquals(2, stk.getCommandCount("New"));
+        Assert.assertEquals(2, stk.getCommandCount("SetState"));
+        Assert.assertEquals(2, loaded.size("TLEasy"));
+    }
+
+    private SatelliteLoader.LoadResult load(List<TleRecord> records, Map<String, String> colors) throws IOException {
+        return load(new SatelliteLoader(con, loaded), records, colors);
+    }
+
+    /**
+     * Writes the records to a TLE file the way sanitizing does, then loads them from it.
+     */
+    private SatelliteLoader.LoadResult load(SatelliteLoader loader, List<TleRecord> records,
+                                            Map<String, String> colors) throws IOException {
+        StringBuilder tle = new StringBuilder();
+        for (TleRecord record : records) {
+            tle.append(record.getName()).append('\n').append(record.getLine1()).append('\n')
+                    .append(record.getLine2()).append('\n');
+        }
+        File file = temp.newFile();
+        Files.write(file.toPath(), tle.toString().getBytes(StandardCharsets.US_ASCII));
+        return loader.loadAll("TLEasy", file, records, colors);
+    }
+
+    private static List<TleRecord> records(List<String> satellites, String epoch) {
+        List<TleRecord> records = new ArrayList<>();
+        for (String satellite : satellites) {
+            records.add(record(satellite, epoch));
+        }
+        return records;
+    }
+
+    private static TleRecord record(String satellite, String epoch) {
+        int id = 10000 + Integer.parseInt(satellite.substring(satellite.indexOf('-') + 1));
+        return TleRecord.parse(satellite,
+                String.format("1 %05dU 98067A   %s  .00016717  00000-0  10270-3 0  9005", id, epoch),
+                String.format("2 %05d  51.6416 247.4627 0006703 130.5360 325.0288 15.72125391563537", id));
+    }
+}
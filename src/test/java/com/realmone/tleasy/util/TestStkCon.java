@@ -0,0 +1,246 @@
+package com.realmone.tleasy.util;
+
+import org.junit.After;
+import org.junit.Assert;
+import org.junit.Before;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.junit.runners.BlockJUnit4ClassRunner;
+
+import java.io.BufferedReader;
+import java.io.EOFException;
+import java.io.InputStreamReader;
+import java.io.InterruptedIOException;
+import java.io.OutputStream;
+import java.net.ServerSocket;
+import java.net.Socket;
+import java.net.SocketTimeoutException;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicReference;
+
+@RunWith(BlockJUnit4ClassRunner.class)
+public class TestStkCon {
+
+    private static final int HANDSHAKE_COMMANDS = 3;
+
+    private ServerSocket server;
+    private Thread serverThread;
+    private final List<String> received = Collections.synchronizedList(new ArrayList<>());
+    private final AtomicReference<Throwable> serverError = new AtomicReference<>();
+
+    @Before
+    public void setup() throws Exception {
+        server = new ServerSocket(0);
+    }
+
+    @After
+    public void teardown() throws Exception {
+        server.close();
+        if (serverThread != null) {
+            serverThread.join(5000);
+        }
+        Assert.assertNull(serverError.get());
+    }
+
+    @Test
+    public void testPipelinedBatch() throws Exception {
+        List<String> batch = Arrays.asList(
+                "New / */Satellite SAT-1",
+                "SetState */Satellite/SAT-1 BAD",
+                "",
+                "GetStkVersion /",
+                "New / */Satellite SAT-2");
+        // The server only answers once the whole batch has arrived, so this only passes if the commands are pipelined
+        serve(batch.size() - 1);
+        StkCon con = new StkCon("localhost", server.getLocalPort());
+        Assert.assertEquals(0, con.connect());
+
+        List<StkCon.ConResult> results = con.sendConCommands(batch);
+        Assert.assertEquals(batch.size(), results.size());
+        Assert.assertTrue(results.get(0).getAckStatus());
+        Assert.assertFalse(results.get(1).getAckStatus());
+        Assert.assertFalse(results.get(2).getAckStatus());
+        Assert.assertTrue(results.get(3).getAckStatus());
+        Assert.assertEquals("STK v12.0", results.get(3).getData());
+        Assert.assertTrue(results.get(4).getAckStatus());
+        Assert.assertEquals("", results.get(4).getData());
+        for (int i = 0; i < batch.size(); i++) {
+            Assert.assertEquals(batch.get(i), results.get(i).getCommand());
+        }
+        // The last command's ack status is left behind for getAckStatus
+        Assert.assertTrue(con.getAckStatus());
+        con.disconnect();
+        serverThread.join(5000);
+        Assert.assertEquals(Arrays.asList("New / */Satellite SAT-1 ", "SetState */Satellite/SAT-1 BAD ",
+                "GetStkVersion / ", "New / */Satellite SAT-2 "), received.subList(HANDSHAKE_COMMANDS,
+                HANDSHAKE_COMMANDS + 4));
+    }
+
+    @Test
+    public void testPipelineDepthBoundsCommandsInFlight() throws Exception {
+        List<String> batch = new ArrayList<>();
+        for (int i = 0; i < 10; i++) {
+            batch.add("New / */Satellite SAT-" + i);
+        }
+        // Answering every command as it arrives works no matter how deep the pipeline is
+        serve(1);
+        StkCon con = new StkCon("localhost", server.getLocalPort());
+        Assert.assertEquals(0, con.connect());
+        con.setPipelineDepth(3);
+        List<StkCon.ConResult> results = con.sendConCommands(batch);
+        Assert.assertEquals(10, results.size());
+        for (StkCon.ConResult result : results) {
+            Assert.assertTrue(result.getAckStatus());
+        }
+        Assert.assertEquals("Single commands still work after a batch", "STK v12.0",
+                con.sendConCommand("GetStkVersion /"));
+        con.disconnect();
+    }
+
+    @Test
+    public void testStreamedReport() throws Exception {
+        serve(1);
+        StkCon con = new StkCon("localhost", server.getLocalPort());
+        Assert.assertEquals(0, con.connect());
+        List<String> lines = new ArrayList<>();
+        Assert.assertTrue(con.sendConCommand("Report_RM */Satellite/SAT-1 Style \"Access\"", lines::add));
+        Assert.assertEquals(Arrays.asList("Access  Start  Stop  Duration", "1  row one", "", "2  row two",
+                "3  row three"), lines);
+        Assert.assertEquals("Buffered commands still work after streaming", "STK v12.0",
+                con.sendConCommand("GetStkVersion /"));
+        Assert.assertFalse(con.sendConCommand("Report_RM BAD", lines::add));
+        con.disconnect();
+    }
+
+    @Test
+    public void testCommandTimeout() throws Exception {
+        // The server waits on a group of commands that never fills up, so STK never answers
+        serve(100);
+        StkCon con = new StkCon("localhost", server.getLocalPort());
+        Assert.assertEquals(0, con.connect());
+        con.setCommandTimeout(300);
+        long start = System.nanoTime();
+        try {
+            con.sendConCommand("GetStkVersion /");
+            Assert.fail("Expected the command to time out");
+        } catch (SocketTimeoutException e) {
+            Assert.assertTrue(e.getMessage().contains("GetStkVersion"));
+        }
+        long elapsed = TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - start);
+        Assert.assertTrue("Took " + elapsed + " ms", elapsed >= 300 && elapsed < 2000);
+        Assert.assertNull("The connection is dropped once it's out of step", con.sendConCommand("GetStkVersion /"));
+    }
+
+    @Test
+    public void testCancel() throws Exception {
+        serve(100);
+        StkCon con = new StkCon("localhost", server.getLocalPort());
+        Assert.assertEquals(0, con.connect());
+        Thread canceller = new Thread(() -> {
+            try {
+                Thread.sleep(200);
+            } catch (InterruptedException e) {
+                return;
+            }
+            con.cancel();
+        });
+        canceller.start();
+        long start = System.nanoTime();
+        try {
+            con.sendConCommands(Arrays.asList("New / */Satellite SAT-1", "New / */Satellite SAT-2"));
+            Assert.fail("Expected the batch to be cancelled");
+        } catch (InterruptedIOException e) {
+            Assert.assertFalse(e instanceof SocketTimeoutException);
+        }
+        Assert.assertTrue(System.nanoTime() - start < TimeUnit.SECONDS.toNanos(2));
+        canceller.join();
+        Assert.assertNull(con.sendConCommand("GetStkVersion /"));
+    }
+
+    @Test
+    public void testEndOfStream() throws Exception {
+        serve(1);
+        StkCon con = new StkCon("localhost", server.getLocalPort());
+        Assert.assertEquals(0, con.connect());
+        try {
+            con.sendConCommand("Crash /");
+            Assert.fail("Expected the closed connection to be noticed");
+        } catch (EOFException e) {
+            // expected
+        }
+        Assert.assertNull(con.sendConCommand("GetStkVersion /"));
+    }
+
+    @Test
+    public void testNotConnected() throws Exception {
+        Assert.assertNull(new StkCon("localhost", server.getLocalPort())
+                .sendConCommands(Collections.singletonList("New / */Satellite SAT-1")));
+    }
+
+    /**
+     * Starts a minimal STK Connect server that answers the connect handshake straight away, then answers commands in
+     * groups of {@code groupSize}, only once the whole group has arrived.  Commands containing "BAD" are NACKed and
+     * GetStkVersion returns a single message, and Report_RM returns a report spread over multiple messages.  Crash
+     * closes the connection without answering.
+     */
+    private void serve(int groupSize) {
+        serverThread = new Thread(() -> {
+            try (Socket socket = server.accept();
+                 BufferedReader in = new BufferedReader(new InputStreamReader(socket.getInputStream(),
+                         StandardCharsets.US_ASCII))) {
+                OutputStream out = socket.getOutputStream();
+                List<String> group = new ArrayList<>();
+                String line;
+                while ((line = in.readLine()) != null) {
+                    received.add(line);
+                    if (line.toLowerCase().contains("disconnect") || line.startsWith("Crash")) {
+                        break;
+                    }
+                    group.add(line);
+                    if (received.size() <= HANDSHAKE_COMMANDS || group.size() == groupSize) {
+                        for (String command : group) {
+                            respond(command, out);
+                        }
+                        out.flush();
+                        group.clear();
+                    }
+                }
+            } catch (Throwable e) {
+                if (!server.isClosed()) {
+                    serverError.set(e);
+                }
+            }
+        });
+        serverThread.setDaemon(true);
+        serverThread.start();
+    }
+
+    private static void respond(String command, OutputStream out) throws Exception {
+        if (command.contains("BAD")) {
+            out.write("NACK".getBytes(StandardCharsets.US_ASCII));
+            return;
+        }
+        out.write("ACK".getBytes(StandardCharsets.US_ASCII));
+        if (command.startsWith("GetStkVersion")) {
+            String data = "STK v12.0";
+            out.write(String.format("%-40s", "GetStkVersion " + data.length()).getBytes(StandardCharsets.US_ASCII));
+            out.write(data.getBytes(StandardCharsets.US_ASCII));
+        } else if (command.startsWith("Report_RM")) {
+            String[] records = {"Access  Start  Stop  Duration\r\n1  row one\r\n", "\n2  row two\n", "3  row three"};
+            writeMessage("Report_RM", String.valueOf(records.length), out);
+            for (String record : records) {
+                writeMessage("Report_RM", record, out);
+            }
+        }
+    }
+
+    private static void writeMessage(String command, String data, OutputStream out) throws Exception {
+        out.write(String.format("%-40s", command + " " + data.length()).getBytes(StandardCharsets.US_ASCII));
+        out.write(data.getBytes(StandardCharsets.US_ASCII));
+    }
+}
@@ -0,0 +1,218 @@
+package com.realmone.tleasy.util;
+
+import org.junit.After;
+import org.junit.Assert;
+import org.junit.Before;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.junit.runners.BlockJUnit4ClassRunner;
+
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.io.OutputStream;
+import java.net.ServerSocket;
+import java.net.Socket;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicReference;
+
+@RunWith(BlockJUnit4ClassRunner.class)
+public class TestStkConPool {
+
+    private ServerSocket server;
+    private Thread acceptThread;
+    private final List<Socket> connections = Collections.synchronizedList(new ArrayList<>());
+    private final AtomicInteger busy = new AtomicInteger();
+    private final AtomicInteger maxBusy = new AtomicInteger();
+    private final AtomicReference<Throwable> serverError = new AtomicReference<>();
+
+    @Before
+    public void setup() throws Exception {
+        server = new ServerSocket(0);
+        acceptThread = new Thread(() -> {
+            try {
+                while (true) {
+                    Socket socket = server.accept();
+                    connections.add(socket);
+                    Thread session = new Thread(() -> serve(socket));
+                    session.setDaemon(true);
+                    session.start();
+                }
+            } catch (IOException e) {
+                // Server closed
+            }
+        });
+        acceptThread.setDaemon(true);
+        acceptThread.start();
+    }
+
+    @After
+    public void teardown() throws Exception {
+        server.close();
+        // Including the primary sessions, which the pools leave connected
+        synchronized (connections) {
+            for (Socket connection : connections) {
+                connection.close();
+            }
+        }
+        acceptThread.join(5000);
+        Assert.assertNull(serverError.get());
+    }
+
+    @Test
+    public void testResultsComeBackInJobOrder() throws Exception {
+        StkCon primary = new StkCon("localhost", server.getLocalPort());
+        Assert.assertEquals(0, primary.connect());
+        Set<StkCon> used = ConcurrentHashMap.newKeySet();
+        try (StkConPool pool = StkConPool.connect(primary, 4)) {
+            Assert.assertEquals(4, pool.size());
+            List<String> results = pool.run(40, (session, index) -> {
+                used.add(session);
+                return session.sendConCommand("AllInstanceNames " + index);
+            });
+            Assert.assertEquals(40, results.size());
+            for (int i = 0; i < results.size(); i++) {
+                Assert.assertEquals(String.valueOf(i), results.get(i));
+            }
+        }
+        Assert.assertEquals("Every session took a share of the jobs", 4, used.size());
+        Assert.assertTrue("Sessions ran their jobs at the same time", maxBusy.get() > 1);
+        Assert.assertEquals(4, connections.size());
+    }
+
+    @Test
+    public void testClosingLeavesThePrimaryConnected() throws Exception {
+        StkCon primary = new StkCon("localhost", server.getLocalPort());
+        Assert.assertEquals(0, primary.connect());
+        Set<StkCon> used = ConcurrentHashMap.newKeySet();
+        try (StkConPool pool = StkConPool.connect(primary, 3)) {
+            pool.run(12, (session, index) -> {
+                used.add(session);
+                return session.sendConCommand("AllInstanceNames " + index);
+            });
+        }
+        Assert.assertTrue("The primary belongs to the caller", primary.isConnected());
+        Assert.assertEquals("5", primary.sendConCommand("AllInstanceNames 5"));
+        for (StkCon session : used) {
+            Assert.assertEquals("Only the sessions the pool opened are closed", session == primary,
+                    session.isConnected());
+        }
+        primary.disconnect();
+    }
+
+    @Test
+    public void testSingleSessionRunsInline() throws Exception {
+        StkCon primary = new StkCon("localhost", server.getLocalPort());
+        Assert.assertEquals(0, primary.connect());
+        try (StkConPool pool = new StkConPool(Collections.singletonList(primary))) {
+            Thread caller = Thread.currentThread();
+            List<String> results = pool.run(3, (session, index) -> {
+                Assert.assertSame(caller, Thread.currentThread());
+                return session.sendConCommand("AllInstanceNames " + index);
+            });
+            Assert.assertEquals(3, results.size());
+            Assert.assertEquals("2", results.get(2));
+        }
+    }
+
+    @Test
+    public void testUnreachableEndpointsAreLeftOut() throws Exception {
+        StkCon primary = new StkCon("localhost", server.getLocalPort());
+        Assert.assertEquals(0, primary.connect());
+        int closedPort;
+        try (ServerSocket closed = new ServerSocket(0)) {
+            closedPort = closed.getLocalPort();
+        }
+        List<String> endpoints = new ArrayList<>();
+        endpoints.add("localhost:" + closedPort);
+        endpoints.add(primary.getConnectionInfo());
+        try (StkConPool pool = StkConPool.connect(primary, endpoints)) {
+            Assert.assertEquals(2, pool.size());
+        }
+    }
+
+    @Test
+    public void testFailedJobFailsTheRun() throws Exception {
+        StkCon primary = new StkCon("localhost", server.getLocalPort());
+        Assert.assertEquals(0, primary.connect());
+        try (StkConPool pool = StkConPool.connect(primary, 3)) {
+            pool.run(20, (session, index) -> {
+                if (index == 7) {
+                    throw new IOException("Job " + index + " failed");
+                }
+                return session.sendConCommand("AllInstanceNames " + index);
+            });
+            Assert.fail("The failed job should have failed the run");
+        } catch (IOException e) {
+            Assert.assertEquals("Job 7 failed", e.getMessage());
+        }
+    }
+
+    @Test
+    public void testFailedJobStopsTheOtherWorkers() throws Exception {
+        StkCon primary = new StkCon("localhost", server.getLocalPort());
+        Assert.assertEquals(0, primary.connect());
+        AtomicInteger running = new AtomicInteger();
+        try (StkConPool pool = StkConPool.connect(primary, 3)) {
+            pool.run(3, (session, index) -> {
+                running.incrementAndGet();
+                try {
+                    if (index == 0) {
+                        throw new IOException("Job " + index + " failed");
+                    }
+                    // Busy on its session for a good while after the first job fails
+                    for (int i = 0; i < 200; i++) {
+                        session.sendConCommand("AllInstanceNames " + i);
+                    }
+                    return null;
+                } finally {
+                    running.decrementAndGet();
+                }
+            });
+            Assert.fail("The failed job should have failed the run");
+        } catch (IOException e) {
+            Assert.assertEquals("Job 0 failed", e.getMessage());
+        }
+        // Nothing is left using a session, the primary included, once the run has failed
+        Assert.assertEquals(0, running.get());
+    }
+
+    /**
+     * Acks every command, taking a few milliseconds over each one, and answers AllInstanceNames with its argument.
+     */
+    private void serve(Socket socket) {
+        try (Socket s = socket;
+             BufferedReader in = new BufferedReader(new InputStreamReader(s.getInputStream(),
+                     StandardCharsets.US_ASCII))) {
+            OutputStream out = s.getOutputStream();
+            String line;
+            while ((line = in.readLine()) != null) {
+                if (line.toLowerCase().contains("disconnect")) {
+                    break;
+                }
+                int working = busy.incrementAndGet();
+                maxBusy.accumulateAndGet(working, Math::max);
+                Thread.sleep(5);
+                out.write("ACK".getBytes(StandardCharsets.US_ASCII));
+                if (line.startsWith("AllInstanceNames")) {
+                    String data = line.substring("AllInstanceNames".length()).trim();
+                    out.write(String.format("%-40s", "AllInstanceNames " + data.length())
+                            .getBytes(StandardCharsets.US_ASCII));
+                    out.write(data.getBytes(StandardCharsets.US_ASCII));
+                }
+                out.flush();
+                busy.decrementAndGet();
+            }
+        } catch (Throwable e) {
+            if (!server.isClosed() && !(e instanceof IOException)) {
+                serverError.set(e);
+            }
+        }
+    }
+}
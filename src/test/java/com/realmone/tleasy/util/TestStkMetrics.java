@@ -0,0 +1,88 @@
+package com.realmone.tleasy.util;
+
+import org.junit.After;
+import org.junit.Assert;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.junit.runners.BlockJUnit4ClassRunner;
+
+import java.util.Arrays;
+import java.util.concurrent.TimeUnit;
+
+@RunWith(BlockJUnit4ClassRunner.class)
+public class TestStkMetrics {
+
+    private FakeStkServer stk;
+
+    @After
+    public void teardown() throws Exception {
+        if (stk != null) {
+            stk.close();
+        }
+    }
+
+    @Test
+    public void testBuckets() {
+        long previous = -1;
+        for (long value : new long[]{0, 1, 7, 8, 9, 15, 16, 17, 100, 1000, 123456789, Long.MAX_VALUE / 3}) {
+            int bucket = StkMetrics.Histogram.bucket(value);
+            long upper = StkMetrics.Histogram.upperBound(bucket);
+            Assert.assertTrue(value + " above its bucket", value <= upper);
+            Assert.assertTrue(value + " in too wide a bucket", upper - value <= value / 8);
+            Assert.assertTrue(upper >= previous);
+            previous = upper;
+        }
+    }
+
+    @Test
+    public void testPercentiles() {
+        StkMetrics metrics = new StkMetrics();
+        for (int i = 1; i <= 100; i++) {
+            metrics.record("Access", TimeUnit.MILLISECONDS.toNanos(i), 0, 10, i % 10 == 0);
+        }
+        StkMetrics.VerbStats stats = metrics.getStats("Access");
+        Assert.assertEquals(100, stats.getCount());
+        Assert.assertEquals(10, stats.getNackCount());
+        Assert.assertEquals(1000, stats.getBytes());
+        assertWithinEighth(TimeUnit.MILLISECONDS.toNanos(50), stats.getLatency().getPercentile(50));
+        assertWithinEighth(TimeUnit.MILLISECONDS.toNanos(99), stats.getLatency().getPercentile(99));
+        Assert.assertEquals(TimeUnit.MILLISECONDS.toNanos(100), stats.getLatency().getMax());
+        Assert.assertEquals(TimeUnit.MILLISECONDS.toNanos(100), stats.getAckLatency().getPercentile(100));
+        Assert.assertEquals(0, stats.getDataLatency().getMax());
+        Assert.assertNull(metrics.getStats("New"));
+        Assert.assertTrue(metrics.summary().contains("Access"));
+    }
+
+    @Test
+    public void testRecordedBySessions() throws Exception {
+        stk = new FakeStkServer().setScenario("TLEasy").setLatency("CheckScenario", 20, TimeUnit.MILLISECONDS);
+        StkCon con = stk.newConnection();
+        Assert.assertEquals(0, con.connect());
+        StkMetrics metrics = new StkMetrics();
+        con.setMetrics(metrics);
+        con.sendConCommand("CheckScenario /");
+        con.sendConCommands(Arrays.asList("New / */Satellite SAT-1", "New / */Satellite SAT-1"));
+
+        StkMetrics.VerbStats check = metrics.getStats("CheckScenario");
+        Assert.assertEquals(1, check.getCount());
+        Assert.assertEquals(0, check.getNackCount());
+        // ACK, then a header and the "1"
+        Assert.assertEquals(3 + 40 + 1, check.getBytes());
+        // Only that a latency was recorded, as the clock starts when reading begins and wall time varies under load
+        Assert.assertTrue(check.getAckLatency().getMax() > 0);
+        StkMetrics.VerbStats created = metrics.getStats("New");
+        Assert.assertEquals(2, created.getCount());
+        Assert.assertEquals(1, created.getNackCount());
+        Assert.assertEquals(3 + 4, created.getBytes());
+
+        // Extra sessions record into the same metrics
+        try (StkConPool pool = StkConPool.connect(con, 3)) {
+            pool.run(6, (session, index) -> session.sendConCommand("CheckScenario /"));
+        }
+        Assert.assertEquals(7, check.getCount());
+    }
+
+    private static void assertWithinEighth(long expected, long actual) {
+        Assert.assertTrue(expected + " vs " + actual, Math.abs(actual - expected) <= expected / 8);
+    }
+}
@@ -0,0 +1,109 @@
+package com.realmone.tleasy.util;
+
+import org.junit.Assert;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.junit.runners.BlockJUnit4ClassRunner;
+
+import java.io.IOException;
+import java.io.InterruptedIOException;
+import java.net.ServerSocket;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.TimeUnit;
+
+@RunWith(BlockJUnit4ClassRunner.class)
+public class TestStkReadinessProbe {
+
+    @Test
+    public void testReady() throws Exception {
+        try (FakeStkServer stk = new FakeStkServer().setScenario("TLEasy")) {
+            long start = System.nanoTime();
+            StkCon con = new StkReadinessProbe("localhost", stk.getPort()).await(5000);
+            try {
+                Assert.assertTrue(con.isConnected());
+                Assert.assertEquals(0, con.getCommandTimeout());
+                Assert.assertEquals("1", con.sendConCommand("CheckScenario /"));
+                Assert.assertTrue("A ready STK is picked up straight away",
+                        System.nanoTime() - start < TimeUnit.SECONDS.toNanos(1));
+            } finally {
+                con.disconnect();
+            }
+        }
+    }
+
+    @Test
+    public void testWaitsForStartingStk() throws Exception {
+        int port = freePort();
+        // STK opens its Connect port a moment after being launched
+        CompletableFuture<FakeStkServer> starting = CompletableFuture.supplyAsync(() -> {
+            try {
+                Thread.sleep(300);
+                return new FakeStkServer(port);
+            } catch (IOException | InterruptedException e) {
+                throw new IllegalStateException(e);
+            }
+        });
+        long start = System.nanoTime();
+        StkCon con = new StkReadinessProbe("localhost", port).await(10000);
+        long elapsed = System.nanoTime() - start;
+        try (FakeStkServer stk = starting.get()) {
+            Assert.assertTrue(con.isConnected());
+            Assert.assertEquals(1, stk.getCommandCount("CheckScenario"));
+            Assert.assertTrue(elapsed >= TimeUnit.MILLISECONDS.toNanos(250));
+            Assert.assertTrue("Picked up within the backoff of the port opening",
+                    elapsed < TimeUnit.SECONDS.toNanos(2));
+            con.disconnect();
+        }
+    }
+
+    @Test
+    public void testTimesOut() throws Exception {
+        int port = freePort();
+        long start = System.nanoTime();
+        try {
+            new StkReadinessProbe("localhost", port).await(300);
+            Assert.fail("Nothing is listening, so the probe should time out");
+        } catch (IOException e) {
+            Assert.assertTrue(e.getMessage().startsWith("Timed out after 300 ms"));
+        }
+        Assert.assertTrue(System.nanoTime() - start < TimeUnit.SECONDS.toNanos(2));
+    }
+
+    @Test
+    public void testCancel() throws Exception {
+        StkReadinessProbe probe = new StkReadinessProbe("localhost", freePort());
+        CompletableFuture.runAsync(() -> {
+            try {
+                Thread.sleep(200);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+            probe.cancel();
+        });
+        long start = System.nanoTime();
+        try {
+            probe.await(30000);
+            Assert.fail("The probe should have been cancelled");
+        } catch (InterruptedIOException e) {
+            Assert.assertTrue("Cancelled within the backoff, not the timeout",
+                    System.nanoTime() - start < TimeUnit.SECONDS.toNanos(2));
+        }
+    }
+
+    @Test
+    public void testSync() throws Exception {
+        try (FakeStkServer stk = new FakeStkServer().setScenario("TLEasy")) {
+            StkCon con = stk.newConnection();
+            Assert.assertEquals(0, con.connect());
+            StkReadinessProbe.sync(con);
+            Assert.assertEquals(1, stk.getCommandCount("CheckScenario"));
+            con.disconnect();
+        }
+    }
+
+    private static int freePort() throws IOException {
+        try (ServerSocket socket = new ServerSocket(0)) {
+            return socket.getLocalPort();
+        }
+    }
+}
@@ -0,0 +1,100 @@
+package com.realmone.tleasy.util;
+
+import org.junit.After;
+import org.junit.Assert;
+import org.junit.Before;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.junit.runners.BlockJUnit4ClassRunner;
+
+import java.io.IOException;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+@RunWith(BlockJUnit4ClassRunner.class)
+public class TestStkSessionManager {
+
+    private FakeStkServer stk;
+    private final AtomicInteger connects = new AtomicInteger();
+
+    @Before
+    public void setup() throws Exception {
+        stk = new FakeStkServer().setScenario("TLEasy");
+    }
+
+    @After
+    public void teardown() throws Exception {
+        stk.close();
+    }
+
+    @Test
+    public void testKeepAlive() throws Exception {
+        StkSessionManager sessions = new StkSessionManager(true);
+        StkCon first = sessions.acquire(this::connect);
+        Assert.assertEquals("1", first.sendConCommand("CheckScenario /"));
+        sessions.release();
+        Assert.assertTrue(first.isConnected());
+
+        Assert.assertFalse(sessions.isReused());
+        StkCon second = sessions.acquire(this::connect);
+        Assert.assertSame(first, second);
+        Assert.assertTrue(sessions.isReused());
+        Assert.assertEquals(1, connects.get());
+        Assert.assertEquals(1, stk.getConnectionCount());
+        sessions.release();
+
+        sessions.close();
+        Assert.assertFalse(sessions.hasSession());
+        Assert.assertFalse("Closing the manager disconnects the kept session", first.isConnected());
+    }
+
+    @Test
+    public void testNoKeepAlive() throws Exception {
+        StkSessionManager sessions = new StkSessionManager(false);
+        StkCon first = sessions.acquire(this::connect);
+        sessions.release();
+        Assert.assertFalse(first.isConnected());
+        Assert.assertFalse(sessions.hasSession());
+        Assert.assertNotSame(first, sessions.acquire(this::connect));
+        Assert.assertEquals(2, connects.get());
+
+        // Turning keep alive on takes effect from the session being used
+        sessions.setKeepAlive(true);
+        sessions.release();
+        Assert.assertTrue(sessions.hasSession());
+        sessions.discard();
+        Assert.assertFalse(sessions.hasSession());
+    }
+
+    @Test
+    public void testReconnectsDeadSession() throws Exception {
+        try (StkSessionManager sessions = new StkSessionManager(true)) {
+            StkCon first = sessions.acquire(this::connect);
+            sessions.release();
+            // A session cancelled after its run fails the health check, and is replaced
+            first.cancel();
+            StkCon second = sessions.acquire(this::connect);
+            Assert.assertNotSame(first, second);
+            Assert.assertFalse(sessions.isReused());
+            sessions.release();
+
+            // So is one that STK stops answering, without waiting on STK for long
+            stk.setLatency("CheckScenario", 10, TimeUnit.SECONDS);
+            long start = System.nanoTime();
+            StkCon third = sessions.acquire(this::connect);
+            Assert.assertNotSame(second, third);
+            Assert.assertTrue(System.nanoTime() - start < TimeUnit.SECONDS.toNanos(5));
+            Assert.assertFalse(second.isConnected());
+            Assert.assertEquals(3, connects.get());
+        }
+    }
+
+    private StkCon connect() throws IOException {
+        connects.incrementAndGet();
+        StkCon con = stk.newConnection();
+        if (con.connect() != 0) {
+            throw new IOException("Could not connect to the fake STK");
+        }
+        return con;
+    }
+}